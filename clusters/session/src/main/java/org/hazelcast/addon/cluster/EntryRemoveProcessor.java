@@ -0,0 +1,25 @@
+package org.hazelcast.addon.cluster;
+
+import java.util.Map;
+
+import com.hazelcast.map.EntryProcessor;
+
+/**
+ * {@linkplain EntryRemoveProcessor} removes every entry that it is applied to.
+ * Combined with a predicate, it removes the matching entries in place on the
+ * partition threads without materializing the key set. The same processor is
+ * applied to the backup replicas.
+ *
+ * @author dpark
+ *
+ */
+public class EntryRemoveProcessor implements EntryProcessor<Object, Object, Object> {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public Object process(Map.Entry<Object, Object> entry) {
+		entry.setValue(null);
+		return null;
+	}
+}
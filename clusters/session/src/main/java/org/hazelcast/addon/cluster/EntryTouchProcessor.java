@@ -0,0 +1,36 @@
+package org.hazelcast.addon.cluster;
+
+import java.util.Map;
+
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.IMap;
+import com.hazelcast.query.Predicate;
+
+/**
+ * {@linkplain EntryTouchProcessor} resets the idle timeout of every entry that
+ * it is applied to by updating the entry's last access time in place. It
+ * neither reads nor modifies the value, so the value is never deserialized or
+ * returned. It is applied to the given keys with a single operation per
+ * partition, e.g., by {@linkplain MapUtil#touchMemberAllKeySet(IMap, Predicate)},
+ * which first builds the local key set with the predicate. Like
+ * {@linkplain IMap#get(Object)}, it does not apply to the backup replicas.
+ *
+ * @author dpark
+ *
+ */
+public class EntryTouchProcessor implements EntryProcessor<Object, Object, Object> {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public Object process(Map.Entry<Object, Object> entry) {
+		// The partition operation records the access of each processed entry that
+		// has not been modified.
+		return null;
+	}
+
+	@Override
+	public EntryProcessor<Object, Object, Object> getBackupProcessor() {
+		return null;
+	}
+}
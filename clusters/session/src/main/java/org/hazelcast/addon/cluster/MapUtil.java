@@ -2,16 +2,42 @@ package org.hazelcast.addon.cluster;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.hazelcast.cluster.Address;
 import com.hazelcast.cluster.Member;
+import com.hazelcast.core.HazelcastException;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.partition.IPartitionService;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.internal.util.ThreadUtil;
+import com.hazelcast.map.EntryProcessor;
 import com.hazelcast.map.IMap;
+import com.hazelcast.map.impl.DataAwareEntryEvent;
+import com.hazelcast.map.impl.MapService;
+import com.hazelcast.map.impl.MapServiceContext;
+import com.hazelcast.map.impl.operation.MapOperation;
+import com.hazelcast.map.impl.operation.MapOperationProvider;
+import com.hazelcast.map.impl.proxy.MapProxyImpl;
 import com.hazelcast.partition.Partition;
+import com.hazelcast.partition.PartitioningStrategy;
 import com.hazelcast.query.PartitionPredicate;
 import com.hazelcast.query.Predicate;
 import com.hazelcast.query.Predicates;
+import com.hazelcast.spi.impl.NodeEngine;
+import com.hazelcast.spi.impl.operationservice.Operation;
+import com.hazelcast.spi.impl.operationservice.OperationFactory;
 
 /**
  * {@linkplain MapUtil} provides IMap specific utility methods.
@@ -41,6 +67,227 @@ public class MapUtil {
 		}
 	}
 
+	/**
+	 * Resets the idle timeout of all keys found by applying the specified predicate
+	 * on the local map key set. Unlike
+	 * {@link #readMemberAllKeySet(IMap, Predicate)}, the keys are touched in place
+	 * by applying {@linkplain EntryTouchProcessor} with a single operation per
+	 * partition, and the values are never deserialized or returned.
+	 * 
+	 * @param map       Map from which the predicate is to be applied.
+	 * @param predicate Predicate to execute on the local keys.
+	 */
+	public static void touchMemberAllKeySet(IMap map, Predicate predicate) {
+		Set keySet = map.localKeySet(predicate);
+		executeOnPartitionKeys(map, keySet, new EntryTouchProcessor());
+	}
+
+	/**
+	 * Returns the specified key in the serialized form that the specified map
+	 * stores, i.e., serialized with the map's partitioning strategy. The returned
+	 * key equals the key of the map's entry events, e.g.,
+	 * {@linkplain DataAwareEntryEvent#getKeyData()}, and is routed to the key's
+	 * partition.
+	 * 
+	 * @param map Member proxy of the map.
+	 * @param key Key to serialize.
+	 * @throws IllegalArgumentException Thrown if the map is not a member proxy.
+	 */
+	public static Data toKeyData(IMap map, Object key) {
+		if (map instanceof MapProxyImpl == false) {
+			throw new IllegalArgumentException("Member map proxy required: " + map.getName());
+		}
+		MapProxyImpl proxy = (MapProxyImpl) map;
+		MapServiceContext mapServiceContext = ((MapService) proxy.getService()).getMapServiceContext();
+		return toKeyData(proxy.getNodeEngine().getSerializationService(),
+				mapServiceContext.getMapContainer(map.getName()).getPartitioningStrategy(), key);
+	}
+
+	/**
+	 * Serializes the specified key with the specified partitioning strategy. A key
+	 * that is already in the serialized form is returned as is unless it lacks the
+	 * partition hash of the strategy, e.g., a key that a client serialized
+	 * without the strategy into session metadata. Such a key is re-serialized with
+	 * the strategy so that it is routed to the partition that stores its entry.
+	 */
+	private static Data toKeyData(SerializationService ss, PartitioningStrategy partitioningStrategy, Object key) {
+		if (key instanceof Data) {
+			Data keyData = (Data) key;
+			if (partitioningStrategy == null || keyData.hasPartitionHash()) {
+				return keyData;
+			}
+			key = ss.toObject(keyData);
+		}
+		return ss.toData(key, partitioningStrategy);
+	}
+
+	/**
+	 * Executes the specified entry processor on the specified keys. If the map is a
+	 * member proxy, then the keys are grouped by partition and each partition is
+	 * invoked with a single operation. The partitions are invoked one at a time so
+	 * that no more than one operation waits ahead of the application operations
+	 * in the partition queues. The results are discarded. Otherwise,
+	 * {@linkplain IMap#executeOnKeys(Set, EntryProcessor)} is invoked.
+	 * 
+	 * @param map            Map to execute the entry processor on.
+	 * @param keys           Keys to process. The keys may be in the serialized
+	 *                       form, i.e., {@linkplain Data}.
+	 * @param entryProcessor Entry processor to execute.
+	 */
+	public static void executeOnPartitionKeys(IMap map, Collection keys, EntryProcessor entryProcessor) {
+		if (keys.size() == 0) {
+			return;
+		}
+		if (map instanceof MapProxyImpl == false) {
+			map.executeOnKeys(keys instanceof Set ? (Set) keys : new HashSet(keys), entryProcessor);
+			return;
+		}
+		MapProxyImpl proxy = (MapProxyImpl) map;
+		NodeEngine nodeEngine = proxy.getNodeEngine();
+		MapServiceContext mapServiceContext = ((MapService) proxy.getService()).getMapServiceContext();
+		String name = map.getName();
+		PartitioningStrategy partitioningStrategy = mapServiceContext.getMapContainer(name).getPartitioningStrategy();
+		HashMap<Integer, Set<Data>> partitionKeyMap = new HashMap<Integer, Set<Data>>();
+		for (Object key : keys) {
+			Data keyData = toKeyData(nodeEngine.getSerializationService(), partitioningStrategy, key);
+			int partitionId = nodeEngine.getPartitionService().getPartitionId(keyData);
+			Set<Data> partitionKeys = partitionKeyMap.get(partitionId);
+			if (partitionKeys == null) {
+				partitionKeys = new HashSet<Data>();
+				partitionKeyMap.put(partitionId, partitionKeys);
+			}
+			partitionKeys.add(keyData);
+		}
+		MapOperationProvider operationProvider = mapServiceContext.getMapOperationProvider(name);
+		for (Map.Entry<Integer, Set<Data>> entry : partitionKeyMap.entrySet()) {
+			Operation operation = operationProvider
+					.createMultipleEntryOperationFactory(name, entry.getValue(), entryProcessor).createOperation();
+			try {
+				nodeEngine.getOperationService().invokeOnPartition(MapService.SERVICE_NAME, operation, entry.getKey())
+						.join();
+			} catch (CompletionException ex) {
+				throw new HazelcastException(ex.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Asynchronously executes the specified entry processor on the specified keys.
+	 * If the map is a member proxy, then the keys are grouped by partition and the
+	 * partitions are grouped by owner member so that each member is invoked with a
+	 * single operation that applies the entry processor to the keys of each of its
+	 * partitions. Unlike {@linkplain IMap#submitToKeys(Set, EntryProcessor)}, each
+	 * key is sent to its owner member only and the results are discarded.
+	 * Otherwise, {@linkplain IMap#submitToKeys(Set, EntryProcessor)} is invoked.
+	 * <p>
+	 * At most as many member operations are in flight as the permits of the
+	 * specified semaphore. The calling thread blocks only while waiting for a
+	 * permit. The returned future never completes exceptionally. Instead, the keys
+	 * of the failed operations are collected so that the caller can retry them.
+	 * 
+	 * @param map             Map to execute the entry processor on.
+	 * @param keys            Keys to process. The keys may be in the serialized
+	 *                        form, i.e., {@linkplain Data}.
+	 * @param entryProcessor  Entry processor to execute.
+	 * @param inFlightPermits Semaphore that bounds the number of in-flight member
+	 *                        operations. It may be shared by multiple callers.
+	 * @return Future that completes with the keys that failed to be processed when
+	 *         all of the member operations have completed.
+	 */
+	public static CompletableFuture<List<Object>> executeOnKeysAsync(IMap map, Collection keys,
+			EntryProcessor entryProcessor, Semaphore inFlightPermits) {
+		CompletableFuture<List<Object>> future = new CompletableFuture<List<Object>>();
+		List<Object> failedKeys = Collections.synchronizedList(new ArrayList<Object>());
+		if (keys.size() == 0) {
+			future.complete(failedKeys);
+			return future;
+		}
+		if (map instanceof MapProxyImpl == false) {
+			inFlightPermits.acquireUninterruptibly();
+			try {
+				map.submitToKeys(keys instanceof Set ? (Set) keys : new HashSet(keys), entryProcessor)
+						.whenComplete((result, throwable) -> {
+							inFlightPermits.release();
+							if (throwable != null) {
+								failedKeys.addAll(keys);
+							}
+							future.complete(failedKeys);
+						});
+			} catch (RuntimeException ex) {
+				inFlightPermits.release();
+				failedKeys.addAll(keys);
+				future.complete(failedKeys);
+			}
+			return future;
+		}
+
+		MapProxyImpl proxy = (MapProxyImpl) map;
+		NodeEngine nodeEngine = proxy.getNodeEngine();
+		MapServiceContext mapServiceContext = ((MapService) proxy.getService()).getMapServiceContext();
+		String name = map.getName();
+		PartitioningStrategy partitioningStrategy = mapServiceContext.getMapContainer(name).getPartitioningStrategy();
+		IPartitionService partitionService = nodeEngine.getPartitionService();
+
+		// <owner address, <partition ID, keys>>. The owner is null if the partition
+		// is not yet assigned.
+		HashMap<Address, Map<Integer, Set<Data>>> memberPartitionKeyMap = new HashMap<Address, Map<Integer, Set<Data>>>();
+		for (Object key : keys) {
+			Data keyData = toKeyData(nodeEngine.getSerializationService(), partitioningStrategy, key);
+			int partitionId = partitionService.getPartitionId(keyData);
+			Address owner = partitionService.getPartitionOwner(partitionId);
+			Map<Integer, Set<Data>> partitionKeyMap = memberPartitionKeyMap.get(owner);
+			if (partitionKeyMap == null) {
+				partitionKeyMap = new HashMap<Integer, Set<Data>>();
+				memberPartitionKeyMap.put(owner, partitionKeyMap);
+			}
+			Set<Data> partitionKeys = partitionKeyMap.get(partitionId);
+			if (partitionKeys == null) {
+				partitionKeys = new HashSet<Data>();
+				partitionKeyMap.put(partitionId, partitionKeys);
+			}
+			partitionKeys.add(keyData);
+		}
+
+		MapOperationProvider operationProvider = mapServiceContext.getMapOperationProvider(name);
+		// One extra count for the calling thread so that the future does not complete
+		// until all operations have been issued.
+		AtomicInteger remainingCount = new AtomicInteger(memberPartitionKeyMap.size() + 1);
+		for (Map<Integer, Set<Data>> partitionKeyMap : memberPartitionKeyMap.values()) {
+			inFlightPermits.acquireUninterruptibly();
+			CompletionStage stage;
+			try {
+				PartitionKeysOperationFactory operationFactory = new PartitionKeysOperationFactory(name,
+						entryProcessor, partitionKeyMap, operationProvider);
+				stage = nodeEngine.getOperationService().invokeOnPartitionsAsync(MapService.SERVICE_NAME,
+						operationFactory, partitionKeyMap.keySet());
+			} catch (RuntimeException ex) {
+				inFlightPermits.release();
+				for (Set<Data> partitionKeys : partitionKeyMap.values()) {
+					failedKeys.addAll(partitionKeys);
+				}
+				if (remainingCount.decrementAndGet() == 0) {
+					future.complete(failedKeys);
+				}
+				continue;
+			}
+			stage.whenComplete((result, throwable) -> {
+				inFlightPermits.release();
+				if (throwable != null) {
+					for (Set<Data> partitionKeys : partitionKeyMap.values()) {
+						failedKeys.addAll(partitionKeys);
+					}
+				}
+				if (remainingCount.decrementAndGet() == 0) {
+					future.complete(failedKeys);
+				}
+			});
+		}
+		if (remainingCount.decrementAndGet() == 0) {
+			future.complete(failedKeys);
+		}
+		return future;
+	}
+
 	/**
 	 * Removes all keys found by applying the specified predicate on the local map
 	 * key set.
@@ -57,6 +304,107 @@ public class MapUtil {
 		}
 	}
 
+	/**
+	 * Asynchronously removes all keys found by applying the specified predicate on
+	 * the local map key set. The key set query is executed by the calling thread.
+	 * The deletes are pipelined with at most as many operations in flight as the
+	 * permits of the specified semaphore. The calling thread blocks only while
+	 * waiting for a permit.
+	 * 
+	 * @param map             Map from which the predicate is to be applied.
+	 * @param predicate       Predicate to execute on the local keys.
+	 * @param inFlightPermits Semaphore that bounds the number of in-flight deletes.
+	 *                        It may be shared by multiple callers.
+	 * @return Future that completes with the keys that failed to be deleted when
+	 *         all of the deletes have completed.
+	 * @see #deleteAllAsync(IMap, Collection, Semaphore)
+	 */
+	public static CompletableFuture<List<Object>> removeMemberAllKeySetAsync(IMap map, Predicate predicate,
+			Semaphore inFlightPermits) {
+		Set keySet = map.localKeySet(predicate);
+		return deleteAllAsync(map, keySet, inFlightPermits);
+	}
+
+	/**
+	 * Asynchronously deletes the specified keys. The deletes are pipelined with at
+	 * most as many operations in flight as the permits of the specified semaphore.
+	 * The calling thread blocks only while waiting for a permit. The returned
+	 * future never completes exceptionally. Instead, the keys that failed to be
+	 * deleted are collected so that the caller can retry them.
+	 * 
+	 * @param map             Map to delete the keys from.
+	 * @param keys            Keys to delete. The keys may be in the serialized
+	 *                        form, i.e., {@linkplain Data}.
+	 * @param inFlightPermits Semaphore that bounds the number of in-flight deletes.
+	 *                        It may be shared by multiple callers.
+	 * @return Future that completes with the keys that failed to be deleted when
+	 *         all of the deletes have completed.
+	 */
+	public static CompletableFuture<List<Object>> deleteAllAsync(IMap map, Collection keys,
+			Semaphore inFlightPermits) {
+		CompletableFuture<List<Object>> future = new CompletableFuture<List<Object>>();
+		List<Object> failedKeys = Collections.synchronizedList(new ArrayList<Object>());
+		// One extra count for the calling thread so that the future does not complete
+		// until all deletes have been issued.
+		AtomicInteger remainingCount = new AtomicInteger(keys.size() + 1);
+		for (Object key : keys) {
+			inFlightPermits.acquireUninterruptibly();
+			CompletionStage stage;
+			try {
+				stage = deleteAsync(map, key);
+			} catch (RuntimeException ex) {
+				inFlightPermits.release();
+				failedKeys.add(key);
+				if (remainingCount.decrementAndGet() == 0) {
+					future.complete(failedKeys);
+				}
+				continue;
+			}
+			stage.whenComplete((result, throwable) -> {
+				inFlightPermits.release();
+				if (throwable != null) {
+					failedKeys.add(key);
+				}
+				if (remainingCount.decrementAndGet() == 0) {
+					future.complete(failedKeys);
+				}
+			});
+		}
+		if (remainingCount.decrementAndGet() == 0) {
+			future.complete(failedKeys);
+		}
+		return future;
+	}
+
+	/**
+	 * Asynchronously deletes the specified key. IMap does not provide an
+	 * asynchronous delete. If the map is a member proxy, then the map's delete
+	 * operation is invoked asynchronously on the key's partition so that, unlike
+	 * {@linkplain IMap#removeAsync(Object)}, the old value is not returned.
+	 * Otherwise, {@linkplain IMap#removeAsync(Object)} is invoked.
+	 * 
+	 * @param map Map to delete the key from.
+	 * @param key Key to delete. The key may be in the serialized form, i.e.,
+	 *            {@linkplain Data}.
+	 */
+	public static CompletionStage deleteAsync(IMap map, Object key) {
+		if (map instanceof MapProxyImpl) {
+			MapProxyImpl proxy = (MapProxyImpl) map;
+			NodeEngine nodeEngine = proxy.getNodeEngine();
+			MapServiceContext mapServiceContext = ((MapService) proxy.getService()).getMapServiceContext();
+			String name = map.getName();
+			Data keyData = toKeyData(nodeEngine.getSerializationService(),
+					mapServiceContext.getMapContainer(name).getPartitioningStrategy(), key);
+			MapOperation operation = mapServiceContext.getMapOperationProvider(name).createDeleteOperation(name,
+					keyData, false);
+			operation.setThreadId(ThreadUtil.getThreadId());
+			int partitionId = nodeEngine.getPartitionService().getPartitionId(keyData);
+			return nodeEngine.getOperationService().invokeOnPartitionAsync(MapService.SERVICE_NAME, operation,
+					partitionId);
+		}
+		return map.removeAsync(key);
+	}
+
 	/**
 	 * Removes all entries in the local member partitions that match the specified
 	 * predicate. This is an expensive operation as it executes the predicate on
@@ -78,6 +426,161 @@ public class MapUtil {
 		}
 	}
 
+	/**
+	 * Asynchronously removes all entries in the local member partitions that match
+	 * the specified predicate. This is the asynchronous version of
+	 * {@link #removeMemberAll(HazelcastInstance, IMap, Predicate)}. The partitions
+	 * are invoked with at most as many partition-wide operations in flight as the
+	 * permits of the specified semaphore.
+	 * 
+	 * @param hz              HazelcastInstance
+	 * @param map             Map from which the predicate is to be applied.
+	 * @param predicate       Predicate to execute.
+	 * @param inFlightPermits Semaphore that bounds the number of in-flight
+	 *                        partition operations. It may be shared by multiple
+	 *                        callers.
+	 * @return Future that completes with the IDs of the partitions that failed
+	 *         when all of the partition operations have completed.
+	 * @see #executeOnMemberEntriesAsync(HazelcastInstance, IMap, EntryProcessor,
+	 *      Predicate, Collection, Semaphore)
+	 */
+	public static CompletableFuture<List<Integer>> removeMemberAllAsync(HazelcastInstance hz, IMap map,
+			Predicate predicate, Semaphore inFlightPermits) {
+		return executeOnMemberEntriesAsync(hz, map, new EntryRemoveProcessor(), predicate,
+				getLocalOwnerPartitionIds(hz), inFlightPermits);
+	}
+
+	/**
+	 * Removes all entries in the local member partitions that match the specified
+	 * predicate by applying {@linkplain EntryRemoveProcessor} in place. Unlike
+	 * {@link #removeMemberAllKeySet(IMap, Predicate)}, the matching keys are never
+	 * materialized and no per-key delete operations are issued. The predicate and
+	 * the removal are applied in a single pass by each local partition thread.
+	 * 
+	 * @param hz        HazelcastInstance
+	 * @param map       Map from which the predicate is to be applied.
+	 * @param predicate Predicate to execute.
+	 */
+	public static void removeMemberAllInPlace(HazelcastInstance hz, IMap map, Predicate predicate) {
+		executeOnMemberEntries(hz, map, new EntryRemoveProcessor(), predicate);
+	}
+
+	/**
+	 * Executes the specified entry processor on the entries that match the
+	 * specified predicate in the partitions owned by the local member. If the map
+	 * is a member proxy, then all local partitions are invoked in parallel with a
+	 * single partition-wide operation each. Otherwise, the partitions are invoked
+	 * one at a time with partition predicates.
+	 * 
+	 * @param hz             HazelcastInstance
+	 * @param map            Map to execute the entry processor on.
+	 * @param entryProcessor Entry processor to execute.
+	 * @param predicate      Predicate that selects the entries to process.
+	 */
+	public static void executeOnMemberEntries(HazelcastInstance hz, IMap map, EntryProcessor entryProcessor,
+			Predicate predicate) {
+		Collection<Integer> partitionIds = getLocalOwnerPartitionIds(hz);
+		if (partitionIds.size() == 0) {
+			return;
+		}
+		if (map instanceof MapProxyImpl) {
+			MapProxyImpl proxy = (MapProxyImpl) map;
+			MapService mapService = (MapService) proxy.getService();
+			OperationFactory operationFactory = mapService.getMapServiceContext()
+					.getMapOperationProvider(map.getName())
+					.createPartitionWideEntryWithPredicateOperationFactory(map.getName(), entryProcessor, predicate);
+			try {
+				proxy.getNodeEngine().getOperationService().invokeOnPartitions(MapService.SERVICE_NAME,
+						operationFactory, partitionIds);
+			} catch (Exception ex) {
+				throw new HazelcastException(ex);
+			}
+		} else {
+			int[] partitionIdsToKeys = getParitionIdsToKeys(hz);
+			for (Integer partitionId : partitionIds) {
+				PartitionPredicate<?, ?> partitionPredicate = Predicates
+						.partitionPredicate(partitionIdsToKeys[partitionId], predicate);
+				map.executeOnEntries(entryProcessor, partitionPredicate);
+			}
+		}
+	}
+
+	/**
+	 * Asynchronously executes the specified entry processor on the entries that
+	 * match the specified predicate in the specified partitions. If the map is a
+	 * member proxy, then each partition is invoked with a partition-wide operation
+	 * with at most as many operations in flight as the permits of the specified
+	 * semaphore. Otherwise, the partitions are invoked synchronously one at a time
+	 * with partition predicates. The returned future never completes
+	 * exceptionally. Instead, the IDs of the failed partitions are collected so
+	 * that the caller can retry them.
+	 * 
+	 * @param hz              HazelcastInstance
+	 * @param map             Map to execute the entry processor on.
+	 * @param entryProcessor  Entry processor to execute.
+	 * @param predicate       Predicate that selects the entries to process.
+	 * @param partitionIds    IDs of the partitions to invoke, typically the local
+	 *                        owner partitions.
+	 * @param inFlightPermits Semaphore that bounds the number of in-flight
+	 *                        partition operations.
+	 * @return Future that completes with the IDs of the partitions that failed
+	 *         when all of the partition operations have completed.
+	 */
+	public static CompletableFuture<List<Integer>> executeOnMemberEntriesAsync(HazelcastInstance hz, IMap map,
+			EntryProcessor entryProcessor, Predicate predicate, Collection<Integer> partitionIds,
+			Semaphore inFlightPermits) {
+		CompletableFuture<List<Integer>> future = new CompletableFuture<List<Integer>>();
+		List<Integer> failedPartitionIds = Collections.synchronizedList(new ArrayList<Integer>());
+		if (map instanceof MapProxyImpl == false) {
+			int[] partitionIdsToKeys = getParitionIdsToKeys(hz);
+			for (Integer partitionId : partitionIds) {
+				try {
+					PartitionPredicate<?, ?> partitionPredicate = Predicates
+							.partitionPredicate(partitionIdsToKeys[partitionId], predicate);
+					map.executeOnEntries(entryProcessor, partitionPredicate);
+				} catch (RuntimeException ex) {
+					failedPartitionIds.add(partitionId);
+				}
+			}
+			future.complete(failedPartitionIds);
+			return future;
+		}
+
+		MapProxyImpl proxy = (MapProxyImpl) map;
+		MapService mapService = (MapService) proxy.getService();
+		OperationFactory operationFactory = mapService.getMapServiceContext().getMapOperationProvider(map.getName())
+				.createPartitionWideEntryWithPredicateOperationFactory(map.getName(), entryProcessor, predicate);
+		AtomicInteger remainingCount = new AtomicInteger(partitionIds.size() + 1);
+		for (Integer partitionId : partitionIds) {
+			inFlightPermits.acquireUninterruptibly();
+			CompletionStage stage;
+			try {
+				stage = proxy.getNodeEngine().getOperationService().invokeOnPartitionAsync(MapService.SERVICE_NAME,
+						operationFactory.createOperation(), partitionId);
+			} catch (RuntimeException ex) {
+				inFlightPermits.release();
+				failedPartitionIds.add(partitionId);
+				if (remainingCount.decrementAndGet() == 0) {
+					future.complete(failedPartitionIds);
+				}
+				continue;
+			}
+			stage.whenComplete((result, throwable) -> {
+				inFlightPermits.release();
+				if (throwable != null) {
+					failedPartitionIds.add(partitionId);
+				}
+				if (remainingCount.decrementAndGet() == 0) {
+					future.complete(failedPartitionIds);
+				}
+			});
+		}
+		if (remainingCount.decrementAndGet() == 0) {
+			future.complete(failedPartitionIds);
+		}
+		return future;
+	}
+
 	/**
 	 * Executes the specified predicate on only the partitions owned by the local
 	 * member.
@@ -131,6 +634,23 @@ public class MapUtil {
 		return results;
 	}
 
+	/**
+	 * Executes the specified predicate on the keys of the partition that maps to
+	 * the specified partition ID.
+	 * 
+	 * @param hz          HazelcastInstance
+	 * @param map         Map to execute the predicate on.
+	 * @param partitionId Partition ID.
+	 * @param predicate   Predicate to execute.
+	 * @return Result set containing keys.
+	 */
+	public static Set queryPartitionKeySet(HazelcastInstance hz, IMap map, int partitionId, Predicate predicate) {
+		int[] partitionIdsToKeys = getParitionIdsToKeys(hz);
+		PartitionPredicate<?, ?> partitionPredicate = Predicates.partitionPredicate(partitionIdsToKeys[partitionId],
+				predicate);
+		return map.keySet(partitionPredicate);
+	}
+
 	/**
 	 * Executes the specified predicate on only the partitions owned by the local
 	 * member.
@@ -193,6 +713,20 @@ public class MapUtil {
 		return localOwnerPartitionSet;
 	}
 
+	/**
+	 * Returns the IDs of all the partitions owned by the local member.
+	 * 
+	 * @param hz HazelcastInstance
+	 */
+	public static Collection<Integer> getLocalOwnerPartitionIds(HazelcastInstance hz) {
+		Collection<Partition> localOwnerPartitions = getLocalOwnerPartitions(hz);
+		ArrayList<Integer> partitionIds = new ArrayList<Integer>(localOwnerPartitions.size());
+		for (Partition partition : localOwnerPartitions) {
+			partitionIds.add(partition.getPartitionId());
+		}
+		return partitionIds;
+	}
+
 	/**
 	 * Returns an array containing partition keys. The array indexes represent
 	 * partition IDs.
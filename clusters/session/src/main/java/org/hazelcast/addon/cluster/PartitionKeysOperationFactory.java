@@ -0,0 +1,143 @@
+package org.hazelcast.addon.cluster;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.hazelcast.addon.cluster.expiration.metadata.ExpirationDataSerializableFactory;
+
+import com.hazelcast.internal.nio.IOUtil;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.impl.MapService;
+import com.hazelcast.map.impl.operation.MapOperationProvider;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.spi.impl.NodeEngine;
+import com.hazelcast.spi.impl.operationservice.Operation;
+import com.hazelcast.spi.impl.operationservice.impl.operations.PartitionAwareOperationFactory;
+
+/**
+ * {@linkplain PartitionKeysOperationFactory} creates a map entry processor
+ * operation per partition that applies the entry processor to only the keys
+ * that belong to that partition. Invoked with
+ * <code>OperationService.invokeOnPartitionsAsync()</code>, all of the
+ * partitions owned by a member are processed by a single member operation, and
+ * each key is sent once to its owner member only.
+ * <p>
+ * The factory is registered with
+ * {@linkplain ExpirationDataSerializableFactory} so that it can be sent to
+ * other members.
+ *
+ * @author dpark
+ *
+ */
+@SuppressWarnings("rawtypes")
+public class PartitionKeysOperationFactory extends PartitionAwareOperationFactory {
+
+	private String name;
+	private EntryProcessor entryProcessor;
+
+	// Parallel to the sorted partitions array
+	private Set<Data>[] partitionKeys;
+
+	private transient MapOperationProvider operationProvider;
+
+	public PartitionKeysOperationFactory() {
+	}
+
+	/**
+	 * Constructs a factory that applies the specified entry processor to the
+	 * specified partition keys.
+	 *
+	 * @param name              Map name
+	 * @param entryProcessor    Entry processor to apply
+	 * @param partitionKeyMap   &lt;partition ID, serialized keys&gt;
+	 * @param operationProvider Operation provider of the map. It is used to
+	 *                          create the operations of the partitions that are
+	 *                          retried locally.
+	 */
+	@SuppressWarnings("unchecked")
+	public PartitionKeysOperationFactory(String name, EntryProcessor entryProcessor,
+			Map<Integer, Set<Data>> partitionKeyMap, MapOperationProvider operationProvider) {
+		this.name = name;
+		this.entryProcessor = entryProcessor;
+		this.operationProvider = operationProvider;
+		partitions = new int[partitionKeyMap.size()];
+		int i = 0;
+		for (Integer partitionId : partitionKeyMap.keySet()) {
+			partitions[i++] = partitionId;
+		}
+		Arrays.sort(partitions);
+		partitionKeys = new Set[partitions.length];
+		for (i = 0; i < partitions.length; i++) {
+			partitionKeys[i] = partitionKeyMap.get(partitions[i]);
+		}
+	}
+
+	/**
+	 * Returns the IDs of the partitions that have keys.
+	 */
+	public int[] getPartitions() {
+		return partitions;
+	}
+
+	@Override
+	public PartitionAwareOperationFactory createFactoryOnRunner(NodeEngine nodeEngine, int[] partitions) {
+		if (operationProvider == null) {
+			MapService mapService = nodeEngine.getService(MapService.SERVICE_NAME);
+			operationProvider = mapService.getMapServiceContext().getMapOperationProvider(name);
+		}
+		return this;
+	}
+
+	@Override
+	public Operation createPartitionOperation(int partitionId) {
+		int index = Arrays.binarySearch(partitions, partitionId);
+		Set<Data> keys = index < 0 ? Collections.<Data>emptySet() : partitionKeys[index];
+		return operationProvider.createMultipleEntryOperationFactory(name, keys, entryProcessor).createOperation();
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeString(name);
+		out.writeObject(entryProcessor);
+		out.writeIntArray(partitions);
+		for (Set<Data> keys : partitionKeys) {
+			out.writeInt(keys.size());
+			for (Data key : keys) {
+				IOUtil.writeData(out, key);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		name = in.readString();
+		entryProcessor = in.readObject();
+		partitions = in.readIntArray();
+		partitionKeys = new Set[partitions.length];
+		for (int i = 0; i < partitions.length; i++) {
+			int size = in.readInt();
+			Set<Data> keys = new HashSet<Data>(size * 4 / 3 + 1);
+			for (int j = 0; j < size; j++) {
+				keys.add(IOUtil.readData(in));
+			}
+			partitionKeys[i] = keys;
+		}
+	}
+
+	@Override
+	public int getFactoryId() {
+		return ExpirationDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getClassId() {
+		return ExpirationDataSerializableFactory.PARTITION_KEYS_OPERATION_FACTORY;
+	}
+}
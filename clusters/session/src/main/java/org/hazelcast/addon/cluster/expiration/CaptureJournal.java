@@ -0,0 +1,335 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Properties;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.logging.ILogger;
+import com.hazelcast.map.impl.DataAwareEntryEvent;
+import com.hazelcast.spi.impl.SerializationServiceSupport;
+
+/**
+ * {@linkplain CaptureJournal} appends the primary map events received by an
+ * expiration listener to memory-mapped journal files so that they can be
+ * replayed offline by CaptureJournalReplayer to compare configurations. It is
+ * created by the expiration services if
+ * {@linkplain SessionExpirationServiceConfiguration#PROPERTY_CAPTURE_DIR} is
+ * set.
+ * <p>
+ * A record is a timestamp, a map name ID, the serialized key and, for the
+ * SessionMetadata plugins, the serialized SessionMetadata value. The serialized
+ * forms are taken from the event as is, so capturing an event costs a copy
+ * into the page cache and no serialization. The map names are written once per
+ * file as dictionary records. The journal is split into files of
+ * {@linkplain SessionExpirationServiceConfiguration#PROPERTY_CAPTURE_SEGMENT_SIZE_MB}
+ * each, and the events are dropped and counted once the last of
+ * {@linkplain SessionExpirationServiceConfiguration#PROPERTY_CAPTURE_MAX_SEGMENTS}
+ * files is full. Files are named
+ * &lt;dir&gt;/&lt;instance&gt;-&lt;yyyyMMdd-HHmmss&gt;-&lt;nnnn&gt;.journal.
+ * <p>
+ * File layout: a {@value #HEADER_SIZE} byte header (magic, version, capture
+ * start time in epoch milliseconds and file index) followed by records, each
+ * starting with a record type byte. A 0 record type marks the end of the file.
+ *
+ * <pre>
+ * MAP_NAME: type(1) mapId(2) nameLength(2) name(UTF-8)
+ * EVENT:    type(1) source(1) eventType(2) mapId(2) timeNanos(8) keyLength(4) key valueLength(4) [value]
+ * </pre>
+ *
+ * The event time is in nanoseconds since the capture start. The value length
+ * is -1 if there is no value.
+ *
+ * @author dpark
+ *
+ */
+public class CaptureJournal implements SessionExpirationServiceConfiguration {
+
+	/**
+	 * Event source, i.e., the listener that captured the event.
+	 */
+	public final static byte SOURCE_EXPIRATION = 0;
+	public final static byte SOURCE_GET = 1;
+	public final static byte SOURCE_METADATA_DELETE = 2;
+	public final static byte SOURCE_METADATA_GET = 3;
+
+	final static int MAGIC = 0x53434a31; // "SCJ1"
+	final static int VERSION = 1;
+	final static int HEADER_SIZE = 32;
+
+	final static byte RECORD_END = 0;
+	final static byte RECORD_MAP_NAME = 1;
+	final static byte RECORD_EVENT = 2;
+
+	private final HazelcastInstance hazelcastInstance;
+	private final ILogger logger;
+	private final String logPrefix;
+	private final String filePrefix;
+	private final int segmentSize;
+	private final int maxSegments;
+	private final long startTimeMillis = System.currentTimeMillis();
+	private final long startNanos = System.nanoTime();
+
+	// <map name, map ID> of all files and the IDs written to the current file
+	private final HashMap<String, Short> mapIdMap = new HashMap<String, Short>();
+	private boolean[] isMapIdWritten = new boolean[16];
+
+	private MappedByteBuffer buffer;
+	private int segmentIndex = -1;
+	private boolean isClosed;
+	private volatile long capturedCount;
+	private volatile long droppedCount;
+
+	private CaptureJournal(HazelcastInstance hazelcastInstance, File dir, int segmentSizeMb, int maxSegments,
+			ILogger logger, String logPrefix) throws IOException {
+		this.hazelcastInstance = hazelcastInstance;
+		this.logger = logger;
+		this.logPrefix = logPrefix;
+		this.segmentSize = segmentSizeMb * 1024 * 1024;
+		this.maxSegments = maxSegments;
+		String instanceName = hazelcastInstance == null ? "hazelcast" : hazelcastInstance.getName();
+		this.filePrefix = new File(dir,
+				instanceName + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(startTimeMillis)))
+						.getPath();
+		nextSegment();
+	}
+
+	/**
+	 * Returns a new capture journal if
+	 * {@linkplain SessionExpirationServiceConfiguration#PROPERTY_CAPTURE_DIR} is
+	 * set in the specified properties, otherwise null. Invalid values are logged
+	 * and replaced with the defaults.
+	 *
+	 * @param properties        Expiration service properties
+	 * @param hazelcastInstance Member instance that serializes the keys of the
+	 *                          events that carry objects only
+	 * @param logger            Logger. If null, errors are not logged.
+	 * @param logPrefix         Log message prefix
+	 */
+	public static CaptureJournal create(Properties properties, HazelcastInstance hazelcastInstance, ILogger logger,
+			String logPrefix) {
+		String dirStr = properties.getProperty(PROPERTY_CAPTURE_DIR);
+		if (dirStr == null || dirStr.trim().length() == 0) {
+			return null;
+		}
+		// A file is mapped by a single buffer, i.e., less than 2 GB.
+		int segmentSizeMb = getInt(properties, PROPERTY_CAPTURE_SEGMENT_SIZE_MB, DEFAULT_CAPTURE_SEGMENT_SIZE_MB,
+				2047, logger, logPrefix);
+		int maxSegments = getInt(properties, PROPERTY_CAPTURE_MAX_SEGMENTS, DEFAULT_CAPTURE_MAX_SEGMENTS,
+				Integer.MAX_VALUE, logger, logPrefix);
+		try {
+			File dir = new File(dirStr.trim());
+			if (dir.exists() == false && dir.mkdirs() == false) {
+				throw new IOException("Unable to create directory " + dir.getAbsolutePath());
+			}
+			CaptureJournal journal = new CaptureJournal(hazelcastInstance, dir, segmentSizeMb, maxSegments, logger,
+					logPrefix);
+			if (logger != null) {
+				logger.info(logPrefix + CaptureJournal.class.getSimpleName() + " started: files="
+						+ journal.filePrefix + "-*.journal, segmentSizeMb=" + segmentSizeMb + ", maxSegments="
+						+ maxSegments);
+			}
+			return journal;
+		} catch (Exception ex) {
+			if (logger != null) {
+				logger.warning(logPrefix + CaptureJournal.class.getSimpleName() + " error [" + PROPERTY_CAPTURE_DIR
+						+ "=" + dirStr + "]. Capture disabled.", ex);
+			}
+			return null;
+		}
+	}
+
+	private static int getInt(Properties properties, String property, int defaultValue, int maxValue,
+			ILogger logger, String logPrefix) {
+		String value = properties.getProperty(property);
+		if (value != null) {
+			try {
+				int intValue = Integer.parseInt(value.trim());
+				if (intValue > 0 && intValue <= maxValue) {
+					return intValue;
+				}
+			} catch (Exception ex) {
+				// fall through
+			}
+			if (logger != null) {
+				logger.warning(logPrefix + "Invalid value [" + property + "=" + value + "]. Using the default value of "
+						+ defaultValue + " instead.");
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Maps the next journal file. Returns false if the maximum number of files has
+	 * been reached.
+	 */
+	private boolean nextSegment() throws IOException {
+		if (segmentIndex + 1 >= maxSegments) {
+			buffer = null;
+			return false;
+		}
+		segmentIndex++;
+		File file = new File(String.format("%s-%04d.journal", filePrefix, segmentIndex));
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+			// The mapping remains valid after the channel is closed.
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		}
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putLong(startTimeMillis);
+		buffer.putInt(segmentIndex);
+		buffer.position(HEADER_SIZE);
+		isMapIdWritten = new boolean[isMapIdWritten.length];
+		return true;
+	}
+
+	/**
+	 * Captures the specified event. The value is captured for the SessionMetadata
+	 * sources only, i.e., the old value of an 'expired' event and the new value
+	 * of the others.
+	 *
+	 * @param source Event source, i.e., one of the SOURCE_ constants
+	 * @param event  Primary map event
+	 */
+	public void capture(byte source, EntryEvent<?, ?> event) {
+		long timeNanos = System.nanoTime() - startNanos;
+		boolean isValue = source == SOURCE_METADATA_DELETE || source == SOURCE_METADATA_GET;
+		boolean isOldValue = source == SOURCE_METADATA_DELETE;
+		byte[] key;
+		byte[] value = null;
+		if (event instanceof DataAwareEntryEvent) {
+			DataAwareEntryEvent<?, ?> dataEvent = (DataAwareEntryEvent<?, ?>) event;
+			key = toBytes(dataEvent.getKeyData());
+			if (isValue) {
+				value = toBytes(isOldValue ? dataEvent.getOldValueData() : dataEvent.getNewValueData());
+			}
+		} else {
+			key = serialize(event.getKey());
+			if (isValue) {
+				value = serialize(isOldValue ? event.getOldValue() : event.getValue());
+			}
+		}
+		append(source, (short) event.getEventType().getType(), event.getName(), timeNanos, key, value);
+	}
+
+	private static byte[] toBytes(Data data) {
+		return data == null ? null : data.toByteArray();
+	}
+
+	private byte[] serialize(Object object) {
+		if (object == null || hazelcastInstance instanceof SerializationServiceSupport == false) {
+			return null;
+		}
+		Data data = ((SerializationServiceSupport) hazelcastInstance).getSerializationService().toData(object);
+		return toBytes(data);
+	}
+
+	private synchronized void append(byte source, short eventType, String mapName, long timeNanos, byte[] key,
+			byte[] value) {
+		if (buffer == null || key == null) {
+			droppedCount++;
+			return;
+		}
+		try {
+			Short mapId = mapIdMap.get(mapName);
+			if (mapId == null) {
+				mapId = (short) mapIdMap.size();
+				mapIdMap.put(mapName, mapId);
+			}
+			byte[] nameBytes = null;
+			if (mapId >= isMapIdWritten.length || isMapIdWritten[mapId] == false) {
+				nameBytes = mapName.getBytes(StandardCharsets.UTF_8);
+			}
+			int recordSize = 22 + key.length + (value == null ? 0 : value.length);
+			int size = recordSize + (nameBytes == null ? 0 : 5 + nameBytes.length);
+
+			// Leave a byte for the end marker
+			if (size >= buffer.remaining()) {
+				if (size >= segmentSize - HEADER_SIZE) {
+					droppedCount++;
+					return;
+				}
+				buffer.put(RECORD_END);
+				if (nextSegment() == false) {
+					droppedCount++;
+					return;
+				}
+				if (nameBytes == null) {
+					nameBytes = mapName.getBytes(StandardCharsets.UTF_8);
+				}
+			}
+			if (nameBytes != null) {
+				buffer.put(RECORD_MAP_NAME);
+				buffer.putShort(mapId);
+				buffer.putShort((short) nameBytes.length);
+				buffer.put(nameBytes);
+				if (mapId >= isMapIdWritten.length) {
+					boolean[] newArray = new boolean[mapId * 2];
+					System.arraycopy(isMapIdWritten, 0, newArray, 0, isMapIdWritten.length);
+					isMapIdWritten = newArray;
+				}
+				isMapIdWritten[mapId] = true;
+			}
+			buffer.put(RECORD_EVENT);
+			buffer.put(source);
+			buffer.putShort(eventType);
+			buffer.putShort(mapId);
+			buffer.putLong(timeNanos);
+			buffer.putInt(key.length);
+			buffer.put(key);
+			if (value == null) {
+				buffer.putInt(-1);
+			} else {
+				buffer.putInt(value.length);
+				buffer.put(value);
+			}
+			capturedCount++;
+		} catch (IOException ex) {
+			buffer = null;
+			droppedCount++;
+		}
+	}
+
+	/**
+	 * Returns the number of captured events.
+	 */
+	public long getCapturedCount() {
+		return capturedCount;
+	}
+
+	/**
+	 * Returns the number of events that were not captured because the journal was
+	 * full or the event had no key.
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Flushes the current file and stops capturing. The captured and dropped
+	 * counts are logged.
+	 */
+	public synchronized void close() {
+		if (isClosed) {
+			return;
+		}
+		isClosed = true;
+		if (buffer != null) {
+			buffer.force();
+			buffer = null;
+		}
+		if (logger != null) {
+			logger.info(logPrefix + CaptureJournal.class.getSimpleName() + " closed: captured=" + capturedCount
+					+ ", dropped=" + droppedCount);
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * {@linkplain CaptureJournalReader} reads the events captured by
+ * {@linkplain CaptureJournal} from the files of a single capture in order. A
+ * truncated last record, e.g., of a member that crashed, ends the file.
+ *
+ * <pre>
+ * try (CaptureJournalReader reader = new CaptureJournalReader(files)) {
+ * 	while (reader.next()) {
+ * 		reader.getTimeNanos();
+ * 		reader.getMapName();
+ * 		reader.getKey();
+ * 	}
+ * }
+ * </pre>
+ *
+ * @author dpark
+ *
+ */
+public class CaptureJournalReader implements AutoCloseable {
+
+	private final List<File> fileList;
+	private final HashMap<Short, String> mapNameMap = new HashMap<Short, String>();
+	private int fileIndex = -1;
+	private MappedByteBuffer buffer;
+	private long startTimeMillis = -1;
+
+	private byte source;
+	private int eventType;
+	private String mapName;
+	private long timeNanos;
+	private byte[] key;
+	private byte[] value;
+
+	/**
+	 * Creates a reader of the specified files, which are read in the order of their
+	 * names.
+	 *
+	 * @param files Journal files of a single capture
+	 */
+	public CaptureJournalReader(List<File> files) {
+		this.fileList = new ArrayList<File>(files);
+		this.fileList.sort((f1, f2) -> f1.getName().compareTo(f2.getName()));
+	}
+
+	/**
+	 * Returns the journal files in the specified directory or the specified file
+	 * if it is not a directory. If prefix is not null, only the files whose names
+	 * start with it are returned, e.g., the files of a single member and capture.
+	 */
+	public static List<File> listFiles(File fileOrDir, String prefix) {
+		if (fileOrDir.isDirectory() == false) {
+			return Arrays.asList(fileOrDir);
+		}
+		File[] files = fileOrDir.listFiles(
+				(dir, name) -> name.endsWith(".journal") && (prefix == null || name.startsWith(prefix)));
+		return files == null ? new ArrayList<File>() : Arrays.asList(files);
+	}
+
+	private boolean nextFile() throws IOException {
+		buffer = null;
+		while (++fileIndex < fileList.size()) {
+			File file = fileList.get(fileIndex);
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+				if (channel.size() < CaptureJournal.HEADER_SIZE) {
+					continue;
+				}
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			if (buffer.getInt() != CaptureJournal.MAGIC) {
+				throw new IOException("Not a capture journal file: " + file.getAbsolutePath());
+			}
+			int version = buffer.getInt();
+			if (version != CaptureJournal.VERSION) {
+				throw new IOException("Unsupported capture journal version " + version + ": " + file.getAbsolutePath());
+			}
+			long fileStartTimeMillis = buffer.getLong();
+			if (startTimeMillis == -1) {
+				startTimeMillis = fileStartTimeMillis;
+			} else if (startTimeMillis != fileStartTimeMillis) {
+				throw new IOException("File belongs to a different capture: " + file.getAbsolutePath());
+			}
+			buffer.position(CaptureJournal.HEADER_SIZE);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Reads the next event. Returns false if there are no more events.
+	 *
+	 * @throws IOException Thrown if a file is not a capture journal file or
+	 *                     belongs to another capture
+	 */
+	public boolean next() throws IOException {
+		while (true) {
+			if (buffer == null && nextFile() == false) {
+				return false;
+			}
+			if (buffer.remaining() == 0) {
+				buffer = null;
+				continue;
+			}
+			byte recordType = buffer.get();
+			if (recordType == CaptureJournal.RECORD_MAP_NAME && buffer.remaining() >= 4) {
+				short mapId = buffer.getShort();
+				int length = buffer.getShort();
+				if (length <= buffer.remaining()) {
+					byte[] nameBytes = new byte[length];
+					buffer.get(nameBytes);
+					mapNameMap.put(mapId, new String(nameBytes, StandardCharsets.UTF_8));
+					continue;
+				}
+			} else if (recordType == CaptureJournal.RECORD_EVENT && readEvent()) {
+				return true;
+			}
+			// End marker or truncated record
+			buffer = null;
+		}
+	}
+
+	private boolean readEvent() {
+		if (buffer.remaining() < 17) {
+			return false;
+		}
+		source = buffer.get();
+		eventType = buffer.getShort();
+		mapName = mapNameMap.get(buffer.getShort());
+		timeNanos = buffer.getLong();
+		key = readBytes();
+		if (key == null || buffer.remaining() < 4) {
+			return false;
+		}
+		if (buffer.getInt(buffer.position()) == -1) {
+			buffer.getInt();
+			value = null;
+		} else {
+			value = readBytes();
+			if (value == null) {
+				return false;
+			}
+		}
+		return mapName != null;
+	}
+
+	/**
+	 * Returns the length prefixed bytes at the current position, or null if they
+	 * are truncated.
+	 */
+	private byte[] readBytes() {
+		if (buffer.remaining() < 4) {
+			return null;
+		}
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Returns the capture start time in epoch milliseconds, or -1 if no file has
+	 * been read yet.
+	 */
+	public long getStartTimeMillis() {
+		return startTimeMillis;
+	}
+
+	/**
+	 * Returns the event source, i.e., one of the CaptureJournal.SOURCE_
+	 * constants.
+	 */
+	public byte getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the EntryEventType type ID of the event.
+	 */
+	public int getEventType() {
+		return eventType;
+	}
+
+	/**
+	 * Returns the primary map name of the event.
+	 */
+	public String getMapName() {
+		return mapName;
+	}
+
+	/**
+	 * Returns the event time in nanoseconds since the capture start.
+	 */
+	public long getTimeNanos() {
+		return timeNanos;
+	}
+
+	/**
+	 * Returns the serialized key.
+	 */
+	public byte[] getKey() {
+		return key;
+	}
+
+	/**
+	 * Returns the serialized value, or null if the value was not captured.
+	 */
+	public byte[] getValue() {
+		return value;
+	}
+
+	@Override
+	public void close() {
+		buffer = null;
+		fileIndex = fileList.size();
+	}
+}
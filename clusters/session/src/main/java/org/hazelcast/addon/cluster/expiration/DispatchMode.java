@@ -0,0 +1,36 @@
+package org.hazelcast.addon.cluster.expiration;
+
+/**
+ * {@linkplain DispatchMode} determines the worker thread that each expiration
+ * or reset event is dispatched to. It is configured with the following
+ * property.
+ *
+ * <pre>
+ * hazelcast.addon.cluster.expiration.thread.dispatch
+ * </pre>
+ *
+ * @author dpark
+ *
+ */
+public enum DispatchMode {
+	/**
+	 * Dispatches each event to the worker thread with the smallest queue. Events
+	 * of the same session may be processed by different worker threads. This is
+	 * the default mode.
+	 */
+	LEAST_LOADED,
+
+	/**
+	 * Dispatches each event to the worker thread determined by the hash of the
+	 * session ID. The events of the same session are processed in order by the
+	 * same worker thread and are batched together.
+	 */
+	SESSION,
+
+	/**
+	 * Dispatches each event to the worker thread determined by the partition ID
+	 * of the primary map key. The events of the same partition are processed in
+	 * order by the same worker thread.
+	 */
+	PARTITION
+}
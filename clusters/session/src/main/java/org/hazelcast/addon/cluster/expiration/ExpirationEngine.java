@@ -0,0 +1,43 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import org.hazelcast.addon.cluster.EntryRemoveProcessor;
+import org.hazelcast.addon.cluster.EntryTouchProcessor;
+
+/**
+ * {@linkplain ExpirationEngine} identifies the method used to remove the
+ * matching entries from the relevant maps. It is configured per primary map
+ * with the following property.
+ *
+ * <pre>
+ * hazelcast.addon.cluster.expiration.session.foo%TAG%yong.engine
+ * </pre>
+ *
+ * @author dpark
+ *
+ */
+public enum ExpirationEngine {
+	/**
+	 * Builds the local key set by applying the predicate and then deletes the keys
+	 * one at a time. {@linkplain SessionExpirationService_Get} gets the keys one at
+	 * a time instead. This is the default engine.
+	 */
+	KEY_SET,
+
+	/**
+	 * Applies the predicate and removes the matching entries in place by executing
+	 * {@linkplain EntryRemoveProcessor} on each local partition in a single pass.
+	 * The key set is never materialized. {@linkplain SessionExpirationService_Get}
+	 * builds the local key set instead and executes {@linkplain EntryTouchProcessor}
+	 * with a single operation per partition, which resets the idle timeout of the
+	 * matching entries without reading their values.
+	 */
+	ENTRY_PROCESSOR,
+
+	/**
+	 * Deletes the relevant map keys found in the member-local
+	 * {@linkplain SessionIndex} without executing a query. Supported by
+	 * {@linkplain SessionExpirationService} only. {@linkplain KeyType#CUSTOM} is
+	 * not supported.
+	 */
+	SESSION_INDEX
+}
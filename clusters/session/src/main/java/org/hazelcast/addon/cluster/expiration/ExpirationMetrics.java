@@ -0,0 +1,316 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * {@linkplain ExpirationMetrics} holds the instrumentation of an expiration
+ * service. The latencies of each {@linkplain Stage} and the batch sizes are
+ * recorded in per worker {@linkplain LatencyHistogram}s so that the workers
+ * never contend. The counters are {@linkplain LongAdder}s, which are striped
+ * across the threads that update them, and they are broken down per worker
+ * and per primary map. Each service records only the stages that apply to
+ * its engine, and only those stages are exported by
+ * {@linkplain ExpirationMetricsMBean}.
+ *
+ * @author dpark
+ *
+ */
+public class ExpirationMetrics {
+
+	/**
+	 * {@linkplain Stage} is a stage of the expiration of a session.
+	 */
+	public enum Stage {
+		/**
+		 * From the expiration event to the worker draining it from its queue.
+		 */
+		QUEUE_WAIT("QueueWait"),
+		/**
+		 * Building the predicate of a batch.
+		 */
+		PREDICATE_BUILD("PredicateBuild"),
+		/**
+		 * Querying the relevant keys of a batch from a relevant map.
+		 */
+		QUERY("Query"),
+		/**
+		 * Removing, or getting, the relevant entries of a batch from a relevant map.
+		 * For the engines that query and remove in a single operation, it includes
+		 * the query.
+		 */
+		REMOVE("Remove"),
+		/**
+		 * From the expiration event to the completion of its relevant map removals.
+		 */
+		LAG("Lag");
+
+		private final String attributeName;
+
+		Stage(String attributeName) {
+			this.attributeName = attributeName;
+		}
+
+		/**
+		 * Returns the MBean attribute name prefix.
+		 */
+		public String getAttributeName() {
+			return attributeName;
+		}
+	}
+
+	private final static Stage[] STAGES = Stage.values();
+
+	private final Stage[] stages;
+	private final WorkerMetrics[] workerMetrics;
+	private final LongAdder eventCount = new LongAdder();
+
+	// <primary map name, MapMetrics>
+	private final ConcurrentHashMap<String, MapMetrics> mapMetricsMap = new ConcurrentHashMap<String, MapMetrics>(
+			16);
+	private volatile Consumer<MapMetrics> mapMetricsListener;
+
+	/**
+	 * Creates the metrics of the specified number of workers that record all the
+	 * stages.
+	 *
+	 * @param workerCount Number of worker threads
+	 */
+	public ExpirationMetrics(int workerCount) {
+		this(workerCount, STAGES);
+	}
+
+	/**
+	 * Creates the metrics of the specified number of workers that record the
+	 * specified stages only.
+	 *
+	 * @param workerCount Number of worker threads
+	 * @param stages      Recorded stages
+	 */
+	public ExpirationMetrics(int workerCount, Stage... stages) {
+		this.stages = stages.clone();
+		workerMetrics = new WorkerMetrics[workerCount];
+		for (int i = 0; i < workerCount; i++) {
+			workerMetrics[i] = new WorkerMetrics(i);
+		}
+	}
+
+	/**
+	 * Returns the recorded stages.
+	 */
+	public Stage[] getStages() {
+		return stages.clone();
+	}
+
+	/**
+	 * Sets the listener that is invoked when the metrics of a new primary map are
+	 * created, e.g., to register its MBean. It is also invoked for the metrics
+	 * that already exist.
+	 */
+	public void setMapMetricsListener(Consumer<MapMetrics> mapMetricsListener) {
+		this.mapMetricsListener = mapMetricsListener;
+		if (mapMetricsListener != null) {
+			mapMetricsMap.values().forEach(mapMetricsListener);
+		}
+	}
+
+	/**
+	 * Counts an expiration event of the specified primary map. If the map name is
+	 * null, then the event is counted for the service only.
+	 */
+	public void recordEvent(String sessionMapName) {
+		eventCount.increment();
+		if (sessionMapName != null) {
+			getMapMetrics(sessionMapName).eventCount.increment();
+		}
+	}
+
+	/**
+	 * Returns the metrics of the specified worker.
+	 */
+	public WorkerMetrics getWorkerMetrics(int workerIndex) {
+		return workerMetrics[workerIndex];
+	}
+
+	/**
+	 * Returns the metrics of all the workers.
+	 */
+	public WorkerMetrics[] getWorkerMetrics() {
+		return workerMetrics;
+	}
+
+	/**
+	 * Returns the metrics of the specified primary map. They are created if they
+	 * do not exist.
+	 */
+	public MapMetrics getMapMetrics(String sessionMapName) {
+		MapMetrics mapMetrics = mapMetricsMap.get(sessionMapName);
+		if (mapMetrics == null) {
+			MapMetrics newMapMetrics = new MapMetrics(sessionMapName);
+			mapMetrics = mapMetricsMap.putIfAbsent(sessionMapName, newMapMetrics);
+			if (mapMetrics == null) {
+				mapMetrics = newMapMetrics;
+				Consumer<MapMetrics> listener = mapMetricsListener;
+				if (listener != null) {
+					listener.accept(mapMetrics);
+				}
+			}
+		}
+		return mapMetrics;
+	}
+
+	/**
+	 * Returns the metrics of all the primary maps that have had expiration
+	 * events.
+	 */
+	public Collection<MapMetrics> getAllMapMetrics() {
+		return mapMetricsMap.values();
+	}
+
+	/**
+	 * Returns the number of expiration events.
+	 */
+	public long getEventCount() {
+		return eventCount.sum();
+	}
+
+	/**
+	 * Adds the stage latencies of all the workers to the specified snapshot and
+	 * returns the sum.
+	 */
+	public long addTo(Stage stage, long[] snapshot) {
+		long sum = 0;
+		for (WorkerMetrics worker : workerMetrics) {
+			sum += worker.getHistogram(stage).addTo(snapshot);
+		}
+		return sum;
+	}
+
+	/**
+	 * {@linkplain WorkerMetrics} holds the metrics recorded by a single worker
+	 * thread.
+	 */
+	public static class WorkerMetrics {
+		private final int workerIndex;
+		private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+		private final LatencyHistogram batchSizeHistogram = new LatencyHistogram();
+		private final LongAdder batchCount = new LongAdder();
+		private final LongAdder sessionCount = new LongAdder();
+		private final LongAdder entryCount = new LongAdder();
+
+		WorkerMetrics(int workerIndex) {
+			this.workerIndex = workerIndex;
+			for (int i = 0; i < histograms.length; i++) {
+				histograms[i] = new LatencyHistogram();
+			}
+		}
+
+		/**
+		 * Returns the worker index.
+		 */
+		public int getWorkerIndex() {
+			return workerIndex;
+		}
+
+		/**
+		 * Records the latency of the specified stage in nanoseconds.
+		 */
+		public void record(Stage stage, long nanos) {
+			histograms[stage.ordinal()].record(nanos);
+		}
+
+		/**
+		 * Counts a drained batch of the specified size.
+		 */
+		public void recordBatch(int batchSize) {
+			batchCount.increment();
+			batchSizeHistogram.record(batchSize);
+		}
+
+		/**
+		 * Counts the specified number of expired sessions of the specified primary
+		 * map.
+		 */
+		public void recordSessions(MapMetrics mapMetrics, int count) {
+			sessionCount.add(count);
+			mapMetrics.sessionCount.add(count);
+		}
+
+		/**
+		 * Counts the specified number of expired sessions that are not attributed
+		 * to a primary map.
+		 */
+		public void recordSessions(int count) {
+			sessionCount.add(count);
+		}
+
+		/**
+		 * Counts the specified number of removed relevant entries of the specified
+		 * primary map.
+		 */
+		public void recordEntries(MapMetrics mapMetrics, long count) {
+			entryCount.add(count);
+			mapMetrics.entryCount.add(count);
+		}
+
+		/**
+		 * Counts the specified number of removed relevant entries that are not
+		 * attributed to a primary map.
+		 */
+		public void recordEntries(long count) {
+			entryCount.add(count);
+		}
+
+		public LatencyHistogram getHistogram(Stage stage) {
+			return histograms[stage.ordinal()];
+		}
+
+		public LatencyHistogram getBatchSizeHistogram() {
+			return batchSizeHistogram;
+		}
+
+		public long getBatchCount() {
+			return batchCount.sum();
+		}
+
+		public long getSessionCount() {
+			return sessionCount.sum();
+		}
+
+		public long getEntryCount() {
+			return entryCount.sum();
+		}
+	}
+
+	/**
+	 * {@linkplain MapMetrics} holds the counters of a single primary map.
+	 */
+	public static class MapMetrics {
+		private final String sessionMapName;
+		private final LongAdder eventCount = new LongAdder();
+		private final LongAdder sessionCount = new LongAdder();
+		private final LongAdder entryCount = new LongAdder();
+
+		MapMetrics(String sessionMapName) {
+			this.sessionMapName = sessionMapName;
+		}
+
+		public String getSessionMapName() {
+			return sessionMapName;
+		}
+
+		public long getEventCount() {
+			return eventCount.sum();
+		}
+
+		public long getSessionCount() {
+			return sessionCount.sum();
+		}
+
+		public long getEntryCount() {
+			return entryCount.sum();
+		}
+	}
+}
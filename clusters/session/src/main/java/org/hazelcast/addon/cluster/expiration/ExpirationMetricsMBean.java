@@ -0,0 +1,385 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.ArrayList;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.MapMetrics;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.Stage;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.WorkerMetrics;
+
+import com.hazelcast.logging.ILogger;
+
+/**
+ * {@linkplain ExpirationMetricsMBean} exports {@linkplain ExpirationMetrics}
+ * through JMX. An MBean is registered per scope, i.e., one for the service with
+ * the metrics of all the workers merged, one per worker and one per primary
+ * map, and it is distinguished by the "scope" and "id" keys of its object name.
+ * <p>
+ * For each {@linkplain Stage} recorded by the service, the following
+ * attributes are exported, e.g.,
+ * for {@linkplain Stage#QUEUE_WAIT}:
+ * <ul>
+ * <li>QueueWaitCount - Total number of recorded latencies.</li>
+ * <li>QueueWaitMeanMicros, QueueWaitP50Micros, QueueWaitP90Micros,
+ * QueueWaitP99Micros, QueueWaitP999Micros, QueueWaitMaxMicros - Latencies in
+ * microseconds recorded over the last one to two windows of
+ * {@value #WINDOW_MILLIS} msec.</li>
+ * </ul>
+ * The counters, i.e., EventCount, BatchCount, SessionsExpired and
+ * EntriesRemoved, are totals. The map MBeans export the counters only.
+ *
+ * @author dpark
+ *
+ */
+public class ExpirationMetricsMBean implements DynamicMBean {
+
+	/**
+	 * Percentile window in milliseconds.
+	 */
+	public final static long WINDOW_MILLIS = 60000;
+
+	// Computed values are reused by the attributes read in the same scrape
+	private final static long CACHE_MILLIS = 1000;
+
+	private final static String[] PERCENTILE_NAMES = { "P50", "P90", "P99", "P999" };
+	private final static double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	private final ExpirationMetrics metrics;
+	private final WorkerMetrics workerMetrics;
+	private final MapMetrics mapMetrics;
+	private final Stage[] stages;
+	private final MBeanInfo mbeanInfo;
+
+	// Indexed by Stage.ordinal(). The last is the batch size.
+	private final Window[] windows = new Window[Stage.values().length + 1];
+
+	/**
+	 * Creates an MBean of the service scope.
+	 */
+	public ExpirationMetricsMBean(ExpirationMetrics metrics) {
+		this(metrics, null, null);
+	}
+
+	/**
+	 * Creates an MBean of the worker scope.
+	 */
+	public ExpirationMetricsMBean(ExpirationMetrics metrics, WorkerMetrics workerMetrics) {
+		this(metrics, workerMetrics, null);
+	}
+
+	/**
+	 * Creates an MBean of the map scope.
+	 */
+	public ExpirationMetricsMBean(MapMetrics mapMetrics) {
+		this(null, null, mapMetrics);
+	}
+
+	private ExpirationMetricsMBean(ExpirationMetrics metrics, WorkerMetrics workerMetrics, MapMetrics mapMetrics) {
+		this.metrics = metrics;
+		this.workerMetrics = workerMetrics;
+		this.mapMetrics = mapMetrics;
+		this.stages = metrics == null ? new Stage[0] : metrics.getStages();
+		for (int i = 0; i < windows.length; i++) {
+			windows[i] = new Window();
+		}
+		ArrayList<MBeanAttributeInfo> list = new ArrayList<MBeanAttributeInfo>();
+		if (mapMetrics == null) {
+			for (Stage stage : stages) {
+				String name = stage.getAttributeName();
+				addAttribute(list, name + "Count", Long.class, "Total number of " + name + " latencies");
+				addAttribute(list, name + "MeanMicros", Double.class, "Mean " + name + " latency in microseconds");
+				for (String percentileName : PERCENTILE_NAMES) {
+					addAttribute(list, name + percentileName + "Micros", Long.class,
+							percentileName + " " + name + " latency in microseconds");
+				}
+				addAttribute(list, name + "MaxMicros", Long.class, "Max " + name + " latency in microseconds");
+			}
+			addAttribute(list, "BatchCount", Long.class, "Total number of drained batches");
+			addAttribute(list, "BatchSizeMean", Double.class, "Mean batch size");
+			addAttribute(list, "BatchSizeP99", Long.class, "P99 batch size");
+			addAttribute(list, "BatchSizeMax", Long.class, "Max batch size");
+		}
+		if (workerMetrics == null) {
+			addAttribute(list, "EventCount", Long.class, "Total number of expiration events");
+		}
+		addAttribute(list, "SessionsExpired", Long.class, "Total number of expired sessions");
+		addAttribute(list, "EntriesRemoved", Long.class, "Total number of removed relevant entries");
+		mbeanInfo = new MBeanInfo(getClass().getName(), "Session expiration metrics",
+				list.toArray(new MBeanAttributeInfo[list.size()]), null, null, null);
+	}
+
+	/**
+	 * Registers the MBeans of the service, each worker and each primary map of the
+	 * specified metrics. The object names append the scope and ID to the specified
+	 * service object name. The primary map MBeans are registered as the maps
+	 * receive their first events.
+	 *
+	 * @param mbeanServer MBean server
+	 * @param name        Service object name
+	 * @param metrics     Service metrics
+	 * @param logger      Logger
+	 * @param logPrefix   Log message prefix
+	 */
+	public static void registerAll(MBeanServer mbeanServer, String name, ExpirationMetrics metrics, ILogger logger,
+			String logPrefix) {
+		register(mbeanServer, name, "service", "all", new ExpirationMetricsMBean(metrics), logger, logPrefix);
+		for (WorkerMetrics workerMetrics : metrics.getWorkerMetrics()) {
+			register(mbeanServer, name, "worker", "worker" + (workerMetrics.getWorkerIndex() + 1),
+					new ExpirationMetricsMBean(metrics, workerMetrics), logger, logPrefix);
+		}
+		metrics.setMapMetricsListener(mapMetrics -> register(mbeanServer, name, "map",
+				mapMetrics.getSessionMapName(), new ExpirationMetricsMBean(mapMetrics), logger, logPrefix));
+	}
+
+	/**
+	 * Registers the specified MBean with the object name that appends the
+	 * specified scope and ID to the specified name. The ID is quoted if it
+	 * contains characters that are not allowed in an object name value, e.g., a
+	 * map name with a colon.
+	 */
+	private static void register(MBeanServer mbeanServer, String name, String scope, String id,
+			ExpirationMetricsMBean mbean, ILogger logger, String logPrefix) {
+		String value = id;
+		for (char c : ",=:\"*?\n".toCharArray()) {
+			if (id.indexOf(c) != -1) {
+				value = ObjectName.quote(id);
+				break;
+			}
+		}
+		try {
+			ObjectName objectName = new ObjectName(name + ",scope=" + scope + ",id=" + value);
+			mbeanServer.registerMBean(mbean, objectName);
+			if (logger.isFineEnabled()) {
+				logger.fine(logPrefix + ExpirationMetricsMBean.class.getSimpleName() + " registered: objectName="
+						+ objectName.toString());
+			}
+		} catch (MalformedObjectNameException | InstanceAlreadyExistsException | MBeanRegistrationException
+				| NotCompliantMBeanException ex) {
+			logger.warning(logPrefix + ExpirationMetricsMBean.class.getSimpleName() + " registration error: name="
+					+ name + ", scope=" + scope + ", id=" + id, ex);
+		}
+	}
+
+	private static void addAttribute(ArrayList<MBeanAttributeInfo> list, String name, Class<?> type,
+			String description) {
+		list.add(new MBeanAttributeInfo(name, type.getName(), description, true, false, false));
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		switch (attribute) {
+		case "EventCount":
+			if (workerMetrics == null) {
+				return mapMetrics != null ? mapMetrics.getEventCount() : metrics.getEventCount();
+			}
+			break;
+		case "SessionsExpired":
+			if (mapMetrics != null) {
+				return mapMetrics.getSessionCount();
+			} else if (workerMetrics != null) {
+				return workerMetrics.getSessionCount();
+			} else {
+				long count = 0;
+				for (WorkerMetrics worker : metrics.getWorkerMetrics()) {
+					count += worker.getSessionCount();
+				}
+				return count;
+			}
+		case "EntriesRemoved":
+			if (mapMetrics != null) {
+				return mapMetrics.getEntryCount();
+			} else if (workerMetrics != null) {
+				return workerMetrics.getEntryCount();
+			} else {
+				long count = 0;
+				for (WorkerMetrics worker : metrics.getWorkerMetrics()) {
+					count += worker.getEntryCount();
+				}
+				return count;
+			}
+		case "BatchCount":
+			if (mapMetrics == null) {
+				if (workerMetrics != null) {
+					return workerMetrics.getBatchCount();
+				}
+				long count = 0;
+				for (WorkerMetrics worker : metrics.getWorkerMetrics()) {
+					count += worker.getBatchCount();
+				}
+				return count;
+			}
+			break;
+		case "BatchSizeMean":
+			if (mapMetrics == null) {
+				return getView(windows.length - 1).mean;
+			}
+			break;
+		case "BatchSizeP99":
+			if (mapMetrics == null) {
+				return getView(windows.length - 1).percentiles[2];
+			}
+			break;
+		case "BatchSizeMax":
+			if (mapMetrics == null) {
+				return getView(windows.length - 1).max;
+			}
+			break;
+		default:
+			if (mapMetrics == null) {
+				for (Stage stage : stages) {
+					String name = stage.getAttributeName();
+					if (attribute.startsWith(name)) {
+						String suffix = attribute.substring(name.length());
+						View view = getView(stage.ordinal());
+						if (suffix.equals("Count")) {
+							return view.totalCount;
+						} else if (suffix.equals("MeanMicros")) {
+							return view.mean / 1000;
+						} else if (suffix.equals("MaxMicros")) {
+							return view.max / 1000;
+						}
+						for (int i = 0; i < PERCENTILE_NAMES.length; i++) {
+							if (suffix.equals(PERCENTILE_NAMES[i] + "Micros")) {
+								return view.percentiles[i] / 1000;
+							}
+						}
+					}
+				}
+			}
+			break;
+		}
+		throw new AttributeNotFoundException(attribute);
+	}
+
+	/**
+	 * Returns the view of the specified window index. The last index is the batch
+	 * size.
+	 */
+	private View getView(int index) {
+		Window window = windows[index];
+		synchronized (window) {
+			long now = System.currentTimeMillis();
+			if (window.view != null && now - window.viewTime < CACHE_MILLIS) {
+				return window.view;
+			}
+			long[] current = new long[LatencyHistogram.BUCKET_COUNT];
+			long sum = 0;
+			if (index < windows.length - 1) {
+				Stage stage = Stage.values()[index];
+				if (workerMetrics != null) {
+					sum = workerMetrics.getHistogram(stage).addTo(current);
+				} else {
+					sum = metrics.addTo(stage, current);
+				}
+			} else {
+				if (workerMetrics != null) {
+					sum = workerMetrics.getBatchSizeHistogram().addTo(current);
+				} else {
+					for (WorkerMetrics worker : metrics.getWorkerMetrics()) {
+						sum += worker.getBatchSizeHistogram().addTo(current);
+					}
+				}
+			}
+			window.rotate(now, current, sum);
+
+			long[] interval = new long[LatencyHistogram.BUCKET_COUNT];
+			for (int i = 0; i < interval.length; i++) {
+				interval[i] = current[i] - window.base[i];
+			}
+			View view = new View();
+			view.totalCount = LatencyHistogram.getCount(current);
+			long count = LatencyHistogram.getCount(interval);
+			view.mean = count == 0 ? 0 : (double) (sum - window.baseSum) / count;
+			view.percentiles = new long[PERCENTILES.length];
+			for (int i = 0; i < PERCENTILES.length; i++) {
+				view.percentiles[i] = LatencyHistogram.getValueAtPercentile(interval, PERCENTILES[i]);
+			}
+			view.max = LatencyHistogram.getMax(interval);
+			window.view = view;
+			window.viewTime = now;
+			return view;
+		}
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Read-only attribute: " + attribute.getName());
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		AttributeList list = new AttributeList();
+		for (String attribute : attributes) {
+			try {
+				list.add(new Attribute(attribute, getAttribute(attribute)));
+			} catch (AttributeNotFoundException ex) {
+				// Skip as specified by DynamicMBean
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) {
+		throw new UnsupportedOperationException(actionName);
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		return mbeanInfo;
+	}
+
+	/**
+	 * {@linkplain Window} holds the histogram snapshots at the starts of the
+	 * previous and current windows. The percentiles are computed over the counts
+	 * recorded since the start of the previous window.
+	 */
+	private static class Window {
+		long[] base = new long[LatencyHistogram.BUCKET_COUNT];
+		long baseSum;
+		long[] start = new long[LatencyHistogram.BUCKET_COUNT];
+		long startSum;
+		long startTime = System.currentTimeMillis();
+		View view;
+		long viewTime;
+
+		void rotate(long now, long[] current, long sum) {
+			if (now - startTime >= WINDOW_MILLIS) {
+				long[] temp = base;
+				base = start;
+				baseSum = startSum;
+				start = temp;
+				System.arraycopy(current, 0, start, 0, current.length);
+				startSum = sum;
+				startTime = now;
+			}
+		}
+	}
+
+	/**
+	 * {@linkplain View} holds the values computed from a window.
+	 */
+	private static class View {
+		long totalCount;
+		double mean;
+		long[] percentiles;
+		long max;
+	}
+}
@@ -0,0 +1,247 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntToLongFunction;
+import java.util.function.LongSupplier;
+
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanAttributeInfo;
+
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.MapMetrics;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.instance.impl.HazelcastInstanceImpl;
+import com.hazelcast.instance.impl.HazelcastInstanceProxy;
+import com.hazelcast.internal.metrics.DynamicMetricsProvider;
+import com.hazelcast.internal.metrics.MetricDescriptor;
+import com.hazelcast.internal.metrics.MetricsCollectionContext;
+import com.hazelcast.internal.metrics.MetricsRegistry;
+import com.hazelcast.internal.metrics.ProbeLevel;
+import com.hazelcast.internal.metrics.ProbeUnit;
+
+/**
+ * {@linkplain ExpirationMetricsProvider} publishes the metrics of an
+ * expiration service through the Hazelcast metrics system. It is registered as
+ * a {@linkplain DynamicMetricsProvider} with the member's
+ * {@linkplain MetricsRegistry} so that the metrics are collected on the same
+ * schedule as the map statistics and reach Management Center, the
+ * "com.hazelcast:type=Metrics" MBeans and diagnostics without polling the
+ * service MBeans.
+ * <p>
+ * The metrics are published with the {@value #PREFIX} prefix, the service
+ * class name as the "service" discriminator and the "tag" tag. The worker and
+ * primary map metrics are further tagged with "worker" and "map". The
+ * {@linkplain ExpirationMetrics}, if set, are published with the
+ * {@linkplain ExpirationMetricsMBean} attribute names, with the first letter
+ * in lower case.
+ *
+ * @author dpark
+ *
+ */
+public class ExpirationMetricsProvider implements DynamicMetricsProvider {
+
+	/**
+	 * Metric name prefix.
+	 */
+	public final static String PREFIX = "sessionExpiration";
+
+	private final String serviceName;
+	private final String tag;
+	private final int workerCount;
+
+	private final CopyOnWriteArrayList<Gauge> gaugeList = new CopyOnWriteArrayList<Gauge>();
+	private final CopyOnWriteArrayList<WorkerGauge> workerGaugeList = new CopyOnWriteArrayList<WorkerGauge>();
+
+	private volatile ExpirationMetrics metrics;
+	private volatile ExpirationMetricsMBean serviceView;
+	private volatile ExpirationMetricsMBean[] workerViews;
+	// <primary map name, ExpirationMetricsMBean>
+	private final ConcurrentHashMap<String, ExpirationMetricsMBean> mapViewMap = new ConcurrentHashMap<String, ExpirationMetricsMBean>(
+			16);
+
+	private MetricsRegistry metricsRegistry;
+
+	/**
+	 * Creates a metrics provider.
+	 *
+	 * @param serviceName Service name, typically the service class's simple name
+	 * @param tag         Service tag
+	 * @param workerCount Number of worker threads
+	 */
+	public ExpirationMetricsProvider(String serviceName, String tag, int workerCount) {
+		this.serviceName = serviceName;
+		this.tag = tag;
+		this.workerCount = workerCount;
+	}
+
+	/**
+	 * Adds a service level gauge.
+	 *
+	 * @param name     Metric name
+	 * @param unit     Metric unit
+	 * @param supplier Supplies the current value
+	 */
+	public void addGauge(String name, ProbeUnit unit, LongSupplier supplier) {
+		gaugeList.add(new Gauge(name, unit, supplier));
+	}
+
+	/**
+	 * Adds a worker level gauge that is collected for each worker thread.
+	 *
+	 * @param name     Metric name
+	 * @param unit     Metric unit
+	 * @param function Returns the current value of the specified worker index
+	 */
+	public void addWorkerGauge(String name, ProbeUnit unit, IntToLongFunction function) {
+		workerGaugeList.add(new WorkerGauge(name, unit, function));
+	}
+
+	/**
+	 * Adds the queue size, rejected, coalesced, blocked and spilled counts, the
+	 * spill size and the high watermark state (1 or 0) of the specified
+	 * dispatcher, and the queue size of each worker.
+	 */
+	public void addDispatcherGauges(WorkerDispatcher<?> dispatcher) {
+		addGauge("queueSize", ProbeUnit.COUNT, () -> dispatcher.size());
+		addGauge("queueRejectedCount", ProbeUnit.COUNT, () -> dispatcher.getRejectedCount());
+		addGauge("queueCoalescedCount", ProbeUnit.COUNT, () -> dispatcher.getCoalescedCount());
+		addGauge("queueBlockedCount", ProbeUnit.COUNT, () -> dispatcher.getBlockedCount());
+		addGauge("queueSpilledCount", ProbeUnit.COUNT, () -> dispatcher.getSpilledCount());
+		addGauge("queueSpillSize", ProbeUnit.COUNT, () -> dispatcher.getSpillSize());
+		addGauge("queueHighWatermark", ProbeUnit.BOOLEAN, () -> dispatcher.isHighWatermark() ? 1 : 0);
+		addWorkerGauge("queueSize", ProbeUnit.COUNT, workerIndex -> dispatcher.size(workerIndex));
+	}
+
+	/**
+	 * Sets the per stage latencies and counters to publish.
+	 */
+	public void setMetrics(ExpirationMetrics metrics) {
+		ExpirationMetricsMBean[] views = new ExpirationMetricsMBean[metrics.getWorkerMetrics().length];
+		for (int i = 0; i < views.length; i++) {
+			views[i] = new ExpirationMetricsMBean(metrics, metrics.getWorkerMetrics(i));
+		}
+		this.workerViews = views;
+		this.serviceView = new ExpirationMetricsMBean(metrics);
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Registers this provider with the metrics registry of the specified member.
+	 *
+	 * @return false if the specified instance is not a member, e.g., a client.
+	 */
+	public synchronized boolean register(HazelcastInstance hazelcastInstance) {
+		MetricsRegistry registry = getMetricsRegistry(hazelcastInstance);
+		if (registry == null) {
+			return false;
+		}
+		registry.registerDynamicMetricsProvider(this);
+		metricsRegistry = registry;
+		return true;
+	}
+
+	/**
+	 * Deregisters this provider if registered.
+	 */
+	public synchronized void deregister() {
+		if (metricsRegistry != null) {
+			metricsRegistry.deregisterDynamicMetricsProvider(this);
+			metricsRegistry = null;
+		}
+	}
+
+	/**
+	 * Returns the metrics registry of the specified member, or null if the
+	 * specified instance is not a member.
+	 */
+	static MetricsRegistry getMetricsRegistry(HazelcastInstance hazelcastInstance) {
+		HazelcastInstanceImpl instanceImpl = null;
+		if (hazelcastInstance instanceof HazelcastInstanceProxy) {
+			instanceImpl = ((HazelcastInstanceProxy) hazelcastInstance).getOriginal();
+		} else if (hazelcastInstance instanceof HazelcastInstanceImpl) {
+			instanceImpl = (HazelcastInstanceImpl) hazelcastInstance;
+		}
+		if (instanceImpl == null) {
+			return null;
+		}
+		return instanceImpl.node.getNodeEngine().getMetricsRegistry();
+	}
+
+	@Override
+	public void provideDynamicMetrics(MetricDescriptor descriptor, MetricsCollectionContext context) {
+		MetricDescriptor root = descriptor.withPrefix(PREFIX).withDiscriminator("service", serviceName)
+				.withTag("tag", tag);
+		for (Gauge gauge : gaugeList) {
+			context.collect(root.copy(), gauge.name, ProbeLevel.INFO, gauge.unit, gauge.supplier.getAsLong());
+		}
+		for (int i = 0; i < workerCount; i++) {
+			MetricDescriptor workerDescriptor = root.copy().withTag("worker", "worker" + (i + 1));
+			for (WorkerGauge gauge : workerGaugeList) {
+				context.collect(workerDescriptor.copy(), gauge.name, ProbeLevel.INFO, gauge.unit,
+						gauge.function.applyAsLong(i));
+			}
+		}
+
+		ExpirationMetrics metrics = this.metrics;
+		if (metrics == null) {
+			return;
+		}
+		collect(root, serviceView, context);
+		ExpirationMetricsMBean[] views = workerViews;
+		for (int i = 0; i < views.length; i++) {
+			collect(root.copy().withTag("worker", "worker" + (i + 1)), views[i], context);
+		}
+		for (MapMetrics mapMetrics : metrics.getAllMapMetrics()) {
+			ExpirationMetricsMBean view = mapViewMap.computeIfAbsent(mapMetrics.getSessionMapName(),
+					mapName -> new ExpirationMetricsMBean(mapMetrics));
+			collect(root.copy().withTag("map", mapMetrics.getSessionMapName()), view, context);
+		}
+	}
+
+	/**
+	 * Collects all the attributes of the specified view.
+	 */
+	private void collect(MetricDescriptor descriptor, ExpirationMetricsMBean view, MetricsCollectionContext context) {
+		for (MBeanAttributeInfo attributeInfo : view.getMBeanInfo().getAttributes()) {
+			String attributeName = attributeInfo.getName();
+			Object value;
+			try {
+				value = view.getAttribute(attributeName);
+			} catch (AttributeNotFoundException ex) {
+				continue;
+			}
+			String name = Character.toLowerCase(attributeName.charAt(0)) + attributeName.substring(1);
+			ProbeUnit unit = attributeName.endsWith("Micros") ? ProbeUnit.US : ProbeUnit.COUNT;
+			if (value instanceof Double) {
+				context.collect(descriptor.copy(), name, ProbeLevel.INFO, unit, (Double) value);
+			} else if (value instanceof Number) {
+				context.collect(descriptor.copy(), name, ProbeLevel.INFO, unit, ((Number) value).longValue());
+			}
+		}
+	}
+
+	private static class Gauge {
+		final String name;
+		final ProbeUnit unit;
+		final LongSupplier supplier;
+
+		Gauge(String name, ProbeUnit unit, LongSupplier supplier) {
+			this.name = name;
+			this.unit = unit;
+			this.supplier = supplier;
+		}
+	}
+
+	private static class WorkerGauge {
+		final String name;
+		final ProbeUnit unit;
+		final IntToLongFunction function;
+
+		WorkerGauge(String name, ProbeUnit unit, IntToLongFunction function) {
+			this.name = name;
+			this.unit = unit;
+			this.function = function;
+		}
+	}
+}
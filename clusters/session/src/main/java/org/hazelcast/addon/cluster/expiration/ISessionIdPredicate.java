@@ -29,4 +29,19 @@ public interface ISessionIdPredicate {
 	 */
 	@SuppressWarnings("rawtypes")
 	public Predicate getPredicate(String primaryMapName, Object key);
+
+	/**
+	 * Returns the session ID of the specified primary or relevant map key. If
+	 * implemented, the session IDs of the expired keys are matched in a single
+	 * {@linkplain SessionIdSetPredicate} instead of ORing the predicates returned
+	 * by {@linkplain #getPredicate(String, Object)}. The implementation class is
+	 * instantiated on each member that evaluates the predicate. The default
+	 * implementation returns null.
+	 * 
+	 * @param key Primary or relevant map key.
+	 * @return null if the session ID cannot be determined.
+	 */
+	default String getSessionId(Object key) {
+		return null;
+	}
 }
@@ -0,0 +1,19 @@
+package org.hazelcast.addon.cluster.expiration;
+
+/**
+ * {@linkplain ISessionTimeout} is implemented by primary map values that
+ * specify their own session timeout. It is honored by
+ * {@linkplain SessionTimer} if
+ * {@linkplain SessionExpirationServiceConfiguration#PROPERTY_TIMER_VALUE_TIMEOUT_ENABLED}
+ * is true.
+ *
+ * @author dpark
+ *
+ */
+public interface ISessionTimeout {
+	/**
+	 * Returns the session timeout in milliseconds. If less than or equal to 0,
+	 * then the primary map's configured timeout applies.
+	 */
+	long getSessionTimeoutMillis();
+}
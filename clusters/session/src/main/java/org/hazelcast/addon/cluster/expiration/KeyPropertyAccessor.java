@@ -0,0 +1,186 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * {@linkplain KeyPropertyAccessor} reads a property of
+ * {@linkplain KeyType#OBJECT} keys by invoking its getter method. The property
+ * may be a nested path, e.g., "a.b.sessionId" invokes
+ * <code>getA().getB().getSessionId()</code>. The getters are resolved once per
+ * runtime class of each object in the path and cached as direct calls built
+ * with {@linkplain LambdaMetafactory}. If a lambda cannot be built, e.g., for a
+ * non-public class, the getter is invoked via a {@linkplain MethodHandle}
+ * instead. Polymorphic keys are supported since each class is resolved
+ * separately.
+ * <p>
+ * Accessors are shared by all session expiration services in the JVM. Use
+ * {@linkplain #getAccessor(String)} to obtain one.
+ *
+ * @author dpark
+ *
+ */
+public final class KeyPropertyAccessor {
+
+	// <property path, KeyPropertyAccessor>
+	private final static ConcurrentHashMap<String, KeyPropertyAccessor> accessorMap = new ConcurrentHashMap<String, KeyPropertyAccessor>();
+
+	// Returned for the classes that do not have the getter method
+	private final static Function<Object, Object> NO_GETTER = target -> null;
+
+	private final String propertyPath;
+	private final PropertyGetter[] getters;
+
+	private KeyPropertyAccessor(String propertyPath) {
+		this.propertyPath = propertyPath;
+		String[] properties = propertyPath.split("\\.");
+		getters = new PropertyGetter[properties.length];
+		for (int i = 0; i < properties.length; i++) {
+			getters[i] = new PropertyGetter(properties[i]);
+		}
+	}
+
+	/**
+	 * Returns the shared accessor of the specified property path.
+	 *
+	 * @param propertyPath Property path, e.g., "sessionId" or "a.b.sessionId"
+	 * @return null if the property path is null or empty.
+	 */
+	public static KeyPropertyAccessor getAccessor(String propertyPath) {
+		if (propertyPath == null || propertyPath.length() == 0) {
+			return null;
+		}
+		KeyPropertyAccessor accessor = accessorMap.get(propertyPath);
+		if (accessor == null) {
+			accessor = accessorMap.computeIfAbsent(propertyPath, path -> new KeyPropertyAccessor(path));
+		}
+		return accessor;
+	}
+
+	/**
+	 * Returns the property path.
+	 */
+	public String getPropertyPath() {
+		return propertyPath;
+	}
+
+	/**
+	 * Returns the property value of the specified object.
+	 *
+	 * @param target Object to read the property from, i.e., key
+	 * @return null if the target or any object in the path is null, or if the
+	 *         getter method is not found.
+	 */
+	public Object getValue(Object target) {
+		Object value = target;
+		for (int i = 0; i < getters.length && value != null; i++) {
+			value = getters[i].get(value.getClass()).apply(value);
+		}
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "KeyPropertyAccessor[" + propertyPath + "]";
+	}
+
+	/**
+	 * {@linkplain PropertyGetter} caches the getter of a single property per
+	 * class.
+	 */
+	private static class PropertyGetter extends ClassValue<Function<Object, Object>> {
+		private final String getterMethodName;
+
+		PropertyGetter(String property) {
+			// Change the first letter to upper case for constructing the get method.
+			this.getterMethodName = "get" + property.substring(0, 1).toUpperCase() + property.substring(1);
+		}
+
+		@Override
+		protected Function<Object, Object> computeValue(Class<?> type) {
+			Method method;
+			try {
+				method = type.getMethod(getterMethodName);
+			} catch (NoSuchMethodException ex) {
+				return NO_GETTER;
+			}
+			if (method.getParameterCount() != 0 || Modifier.isStatic(method.getModifiers())
+					|| method.getReturnType() == void.class) {
+				return NO_GETTER;
+			}
+			MethodHandle handle;
+			try {
+				handle = MethodHandles.publicLookup().unreflect(method);
+			} catch (IllegalAccessException ex) {
+				try {
+					method.setAccessible(true);
+					handle = MethodHandles.lookup().unreflect(method);
+				} catch (Exception ex2) {
+					return NO_GETTER;
+				}
+			}
+			Function<Object, Object> function = createLambda(method, handle);
+			if (function != null) {
+				return function;
+			}
+			MethodHandle genericHandle = handle.asType(MethodType.methodType(Object.class, Object.class));
+			return target -> {
+				try {
+					return genericHandle.invokeExact(target);
+				} catch (RuntimeException | Error ex) {
+					throw ex;
+				} catch (Throwable th) {
+					throw new IllegalStateException(th);
+				}
+			};
+		}
+
+		/**
+		 * Returns a lambda that directly invokes the getter method, or null if it
+		 * cannot be created.
+		 */
+		@SuppressWarnings("unchecked")
+		private Function<Object, Object> createLambda(Method method, MethodHandle handle) {
+			// The lambda class is defined by this class' loader which must be able to
+			// link the getter.
+			if (Modifier.isPublic(method.getDeclaringClass().getModifiers()) == false
+					|| isVisible(method.getDeclaringClass()) == false || isVisible(method.getReturnType()) == false) {
+				return null;
+			}
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				Class<?> returnType = method.getReturnType();
+				if (returnType.isPrimitive()) {
+					returnType = MethodType.methodType(returnType).wrap().returnType();
+				}
+				CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+						MethodType.methodType(Function.class), MethodType.methodType(Object.class, Object.class),
+						handle, MethodType.methodType(returnType, method.getDeclaringClass()));
+				return (Function<Object, Object>) site.getTarget().invokeExact();
+			} catch (Throwable th) {
+				return null;
+			}
+		}
+
+		private static boolean isVisible(Class<?> clazz) {
+			while (clazz.isArray()) {
+				clazz = clazz.getComponentType();
+			}
+			if (clazz.isPrimitive()) {
+				return true;
+			}
+			try {
+				return Class.forName(clazz.getName(), false, KeyPropertyAccessor.class.getClassLoader()) == clazz;
+			} catch (ClassNotFoundException ex) {
+				return false;
+			}
+		}
+	}
+}
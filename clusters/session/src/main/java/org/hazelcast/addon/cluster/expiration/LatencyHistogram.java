@@ -0,0 +1,151 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@linkplain LatencyHistogram} is a low overhead, log-linear histogram of
+ * non-negative values, typically latencies in nanoseconds. Values less than
+ * {@value #LINEAR_COUNT} are counted exactly. Larger values are counted in
+ * {@value #SUB_BUCKET_COUNT} sub-buckets per power of two, i.e., with a
+ * relative error of at most 12.5%. Values greater than or equal to 2^
+ * {@value #MAX_EXPONENT} are counted in the last bucket.
+ * <p>
+ * A histogram has a single writer, e.g., a worker thread, and any number of
+ * readers. Recording a value is a few arithmetic operations and two ordered
+ * stores without contention. Readers take a {@linkplain #snapshot(long[])} of
+ * the counts and merge or subtract snapshots to compute percentiles over
+ * multiple writers or over an interval.
+ *
+ * @author dpark
+ *
+ */
+public class LatencyHistogram {
+
+	final static int SUB_BUCKET_BITS = 3;
+	final static int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	final static int LINEAR_COUNT = SUB_BUCKET_COUNT * 2;
+	final static int MAX_EXPONENT = 41;
+
+	/**
+	 * Number of buckets.
+	 */
+	public final static int BUCKET_COUNT = LINEAR_COUNT
+			+ (MAX_EXPONENT - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong sum = new AtomicLong();
+
+	/**
+	 * Records the specified value. Must be invoked by the single writer only.
+	 *
+	 * @param value Value to record. Negative values are recorded as 0.
+	 */
+	public void record(long value) {
+		int index = getIndex(value);
+		counts.lazySet(index, counts.get(index) + 1);
+		sum.lazySet(sum.get() + Math.max(0, value));
+	}
+
+	/**
+	 * Copies the bucket counts into the specified array and returns the sum of the
+	 * recorded values. The snapshot may be slightly inconsistent with the sum if
+	 * the writer is recording concurrently.
+	 *
+	 * @param snapshot Array of at least {@linkplain #BUCKET_COUNT} elements
+	 */
+	public long snapshot(long[] snapshot) {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = counts.get(i);
+		}
+		return sum.get();
+	}
+
+	/**
+	 * Adds the counts of this histogram to the specified array and returns the
+	 * sum of the recorded values.
+	 *
+	 * @param snapshot Array of at least {@linkplain #BUCKET_COUNT} elements
+	 */
+	public long addTo(long[] snapshot) {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] += counts.get(i);
+		}
+		return sum.get();
+	}
+
+	/**
+	 * Returns the bucket index of the specified value.
+	 */
+	static int getIndex(long value) {
+		if (value < LINEAR_COUNT) {
+			return value < 0 ? 0 : (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent >= MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return LINEAR_COUNT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * Returns the largest value counted in the specified bucket.
+	 */
+	static long getUpperBound(int index) {
+		if (index < LINEAR_COUNT) {
+			return index;
+		}
+		int exponent = (index - LINEAR_COUNT) / SUB_BUCKET_COUNT + SUB_BUCKET_BITS + 1;
+		int subBucket = (index - LINEAR_COUNT) % SUB_BUCKET_COUNT;
+		return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * Returns the total count of the specified snapshot.
+	 */
+	public static long getCount(long[] snapshot) {
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			count += snapshot[i];
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the value at the specified percentile of the specified snapshot. The
+	 * value is the upper bound of the bucket that contains the percentile.
+	 *
+	 * @param snapshot   Bucket counts
+	 * @param percentile Percentile between 0 and 100
+	 * @return 0 if the snapshot is empty
+	 */
+	public static long getValueAtPercentile(long[] snapshot, double percentile) {
+		long count = getCount(snapshot);
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+		long accumulated = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			accumulated += snapshot[i];
+			if (accumulated >= rank) {
+				return getUpperBound(i);
+			}
+		}
+		return getUpperBound(BUCKET_COUNT - 1);
+	}
+
+	/**
+	 * Returns the upper bound of the highest non-empty bucket of the specified
+	 * snapshot, or 0 if the snapshot is empty.
+	 */
+	public static long getMax(long[] snapshot) {
+		for (int i = BUCKET_COUNT - 1; i >= 0; i--) {
+			if (snapshot[i] > 0) {
+				return getUpperBound(i);
+			}
+		}
+		return 0;
+	}
+}
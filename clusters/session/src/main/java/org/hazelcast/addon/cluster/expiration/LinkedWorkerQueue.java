@@ -0,0 +1,63 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@linkplain LinkedWorkerQueue} is the {@linkplain QueueType#LINKED} queue
+ * backed by {@linkplain LinkedBlockingQueue}. The worker thread blocks on the
+ * underlying queue, so the wait strategy applies to blocked producers only.
+ * If the queue spills, then the worker thread waits according to the wait
+ * strategy instead since the spilled elements bypass the underlying queue.
+ *
+ * @author dpark
+ *
+ * @param <E> Element type
+ */
+class LinkedWorkerQueue<E> extends WorkerQueue<E> {
+
+	private final LinkedBlockingQueue<E> queue;
+
+	LinkedWorkerQueue(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+		this(capacity, waitStrategy, overflowPolicy, 0, null);
+	}
+
+	LinkedWorkerQueue(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy,
+			long blockTimeoutMillis, SpillFile<E> spillFile) {
+		super(capacity <= 0 ? Integer.MAX_VALUE : capacity, waitStrategy, overflowPolicy, blockTimeoutMillis,
+				spillFile);
+		this.queue = new LinkedBlockingQueue<E>(this.capacity);
+	}
+
+	@Override
+	protected boolean tryOffer(E element) {
+		return queue.offer(element);
+	}
+
+	@Override
+	protected E tryPoll() {
+		return queue.poll();
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		if (isSpillEnabled()) {
+			return super.take();
+		}
+		return consumed(queue.take());
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		if (isSpillEnabled()) {
+			return super.poll(timeout, unit);
+		}
+		E element = queue.poll(timeout, unit);
+		return element == null ? null : consumed(element);
+	}
+
+	@Override
+	public int size() {
+		return queue.size();
+	}
+}
@@ -0,0 +1,51 @@
+package org.hazelcast.addon.cluster.expiration;
+
+/**
+ * {@linkplain OverflowPolicy} determines what happens to an event that is
+ * offered to a full {@linkplain WorkerQueue}. It is configured with the
+ * following property.
+ *
+ * <pre>
+ * hazelcast.addon.cluster.expiration.queue.overflow-policy
+ * </pre>
+ *
+ * @author dpark
+ *
+ */
+public enum OverflowPolicy {
+	/**
+	 * Blocks the producer until the queue has room. The producer is the Hazelcast
+	 * event thread, so blocking delays the delivery of other events. If
+	 * queue.block-timeout-millis is set, then the event is rejected after the
+	 * timeout. This is the default policy.
+	 */
+	BLOCK,
+
+	/**
+	 * Drops an event that is equal to an event already in the queue, i.e., an
+	 * event of the same session. If the queue is full and the event is not a
+	 * duplicate, then the producer blocks as in BLOCK.
+	 */
+	COALESCE,
+
+	/**
+	 * Drops the event if the queue is full and increments the rejected count.
+	 * Rejected expiration events leave the relevant entries to be expired by
+	 * their own expiration settings, if any. Rejected resets only shorten the
+	 * idle time of the relevant entries, so this is the recommended policy for
+	 * queue.reset.overflow-policy.
+	 */
+	REJECT,
+
+	/**
+	 * Writes the event to the queue's local overflow file in the
+	 * queue.spill.dir directory if the queue is full, optionally after waiting up
+	 * to queue.block-timeout-millis. The worker thread reads the spilled events
+	 * in order once the queue has been drained, so no events are lost unless the
+	 * member goes down. The overflow files are deleted when the service
+	 * terminates. If the file has reached queue.spill.max-mb, then the producer
+	 * blocks as in BLOCK. This is the recommended policy for
+	 * queue.expiration.overflow-policy.
+	 */
+	SPILL
+}
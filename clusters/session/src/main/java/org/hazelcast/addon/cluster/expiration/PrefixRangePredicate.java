@@ -0,0 +1,137 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.hazelcast.query.impl.Index;
+import com.hazelcast.query.impl.OrResultSet;
+import com.hazelcast.query.impl.QueryContext;
+import com.hazelcast.query.impl.QueryableEntry;
+import com.hazelcast.query.impl.predicates.IndexAwarePredicate;
+
+/**
+ * {@linkplain PrefixRangePredicate} matches string attribute values that begin
+ * with any of the specified prefixes. Each prefix is converted to the range
+ * <code>[prefix, prefix + "\\uffff")</code> and overlapping ranges are merged.
+ * If the attribute has a SORTED index, the predicate is evaluated as one index
+ * range lookup per merged range. Otherwise, each entry is matched by a binary
+ * search over the ranges.
+ * <p>
+ * Unlike ORed LIKE predicates, the predicate is flat, so the number of prefixes
+ * is not limited by the predicate nesting depth.
+ *
+ * @author dpark
+ *
+ */
+@SuppressWarnings("rawtypes")
+public class PrefixRangePredicate implements IndexAwarePredicate {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String attributeName;
+
+	// Sorted and merged ranges. Lower bounds are inclusive and upper bounds are
+	// exclusive.
+	private final String[] froms;
+	private final String[] tos;
+
+	/**
+	 * Constructs a predicate that matches the values of the specified attribute
+	 * that begin with any of the specified prefixes.
+	 *
+	 * @param attributeName Attribute name, e.g., "__key"
+	 * @param prefixes      Prefixes. Empty prefixes are ignored.
+	 */
+	public PrefixRangePredicate(String attributeName, Collection<String> prefixes) {
+		this.attributeName = attributeName;
+		String[] sortedPrefixes = prefixes.toArray(new String[prefixes.size()]);
+		Arrays.sort(sortedPrefixes);
+		ArrayList<String> fromList = new ArrayList<String>(sortedPrefixes.length);
+		ArrayList<String> toList = new ArrayList<String>(sortedPrefixes.length);
+		for (String prefix : sortedPrefixes) {
+			if (prefix == null || prefix.length() == 0) {
+				continue;
+			}
+			String to = prefix + '\uffff';
+			int last = fromList.size() - 1;
+			if (last >= 0 && prefix.compareTo(toList.get(last)) < 0) {
+				// Overlaps the previous range
+				if (to.compareTo(toList.get(last)) > 0) {
+					toList.set(last, to);
+				}
+			} else {
+				fromList.add(prefix);
+				toList.add(to);
+			}
+		}
+		this.froms = fromList.toArray(new String[fromList.size()]);
+		this.tos = toList.toArray(new String[toList.size()]);
+	}
+
+	/**
+	 * Returns the number of merged ranges.
+	 */
+	public int getRangeCount() {
+		return froms.length;
+	}
+
+	@Override
+	public boolean apply(Map.Entry mapEntry) {
+		Object value;
+		if ("__key".equals(attributeName)) {
+			value = mapEntry.getKey();
+		} else if (mapEntry instanceof QueryableEntry) {
+			value = ((QueryableEntry) mapEntry).getAttributeValue(attributeName);
+		} else {
+			return false;
+		}
+		if (value == null) {
+			return false;
+		}
+		String str = value.toString();
+		// Find the last range whose lower bound is less than or equal to str
+		int index = Arrays.binarySearch(froms, str);
+		if (index >= 0) {
+			return true;
+		}
+		index = -index - 2;
+		return index >= 0 && str.compareTo(tos[index]) < 0;
+	}
+
+	@Override
+	public boolean isIndexed(QueryContext queryContext) {
+		Index index = queryContext.matchIndex(attributeName, QueryContext.IndexMatchHint.PREFER_ORDERED);
+		return index != null && index.isOrdered();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Set<QueryableEntry> filter(QueryContext queryContext) {
+		Index index = queryContext.matchIndex(attributeName, QueryContext.IndexMatchHint.PREFER_ORDERED);
+		if (index == null) {
+			return null;
+		}
+		List<Set<QueryableEntry>> results = new ArrayList<Set<QueryableEntry>>(froms.length);
+		for (int i = 0; i < froms.length; i++) {
+			results.add(index.getRecords(froms[i], true, tos[i], false));
+		}
+		return new OrResultSet(results);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		for (int i = 0; i < froms.length; i++) {
+			if (i > 0) {
+				buffer.append(" OR ");
+			}
+			buffer.append(attributeName).append(" IN [").append(froms[i]).append(", ").append(froms[i])
+					.append("\\uffff)");
+		}
+		return buffer.toString();
+	}
+}
@@ -0,0 +1,27 @@
+package org.hazelcast.addon.cluster.expiration;
+
+/**
+ * {@linkplain QueueType} identifies the {@linkplain WorkerQueue} implementation
+ * used by the worker threads. It is configured with the following property.
+ *
+ * <pre>
+ * hazelcast.addon.cluster.expiration.queue.type
+ * </pre>
+ *
+ * @author dpark
+ *
+ */
+public enum QueueType {
+	/**
+	 * Linked blocking queue that allocates a node per event. Unbounded unless
+	 * the capacity is set. This is the default type.
+	 */
+	LINKED,
+
+	/**
+	 * Preallocated bounded lock-free ring buffer. Producers and consumers claim
+	 * slots by CAS and the consumer waits according to the configured
+	 * {@linkplain WaitStrategy}.
+	 */
+	RING_BUFFER
+}
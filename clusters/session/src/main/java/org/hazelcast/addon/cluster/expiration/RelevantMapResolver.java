@@ -0,0 +1,226 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.hazelcast.core.DistributedObject;
+import com.hazelcast.core.DistributedObjectEvent;
+import com.hazelcast.core.DistributedObjectListener;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.map.impl.MapService;
+
+/**
+ * {@linkplain RelevantMapResolver} resolves the relevant map name patterns of
+ * a session tag to the maps that exist in the cluster. The patterns are
+ * compiled once per tag and the resolved maps are cached in
+ * {@linkplain RelevantMaps}. The cache is updated incrementally by a
+ * {@linkplain DistributedObjectListener} as maps are created and destroyed, so
+ * the worker threads never walk the distributed objects.
+ *
+ * @author dpark
+ *
+ */
+@SuppressWarnings("rawtypes")
+public class RelevantMapResolver implements SessionExpirationServiceConfiguration {
+
+	private final HazelcastInstance hazelcastInstance;
+
+	// All maps known to this member, <map name, IMap>
+	private final ConcurrentHashMap<String, IMap> allMaps = new ConcurrentHashMap<String, IMap>();
+
+	// <tag + relevant map names, RelevantMaps>
+	private final ConcurrentHashMap<String, RelevantMaps> relevantMapsMap = new ConcurrentHashMap<String, RelevantMaps>();
+
+	/**
+	 * Constructs a resolver and starts listening on distributed object events.
+	 *
+	 * @param hazelcastInstance Hazelcast instance
+	 */
+	public RelevantMapResolver(HazelcastInstance hazelcastInstance) {
+		this.hazelcastInstance = hazelcastInstance;
+		hazelcastInstance.addDistributedObjectListener(new DistributedObjectListener() {
+			@Override
+			public void distributedObjectCreated(DistributedObjectEvent event) {
+				if (MapService.SERVICE_NAME.equals(event.getServiceName())) {
+					addMap(hazelcastInstance.getMap(event.getObjectName().toString()));
+				}
+			}
+
+			@Override
+			public void distributedObjectDestroyed(DistributedObjectEvent event) {
+				if (MapService.SERVICE_NAME.equals(event.getServiceName())) {
+					removeMap(event.getObjectName().toString());
+				}
+			}
+		});
+		for (DistributedObject dobj : hazelcastInstance.getDistributedObjects()) {
+			if (dobj instanceof IMap) {
+				addMap((IMap) dobj);
+			}
+		}
+	}
+
+	/**
+	 * Compiles the specified relevant map name pattern with the specified tag in
+	 * place of {@linkplain #NAME_TAG}. If the tag is empty, the pattern is
+	 * compiled as is.
+	 *
+	 * @param relevantMapName Relevant map name with zero or more
+	 *                        {@linkplain #NAME_TAG} and optional regex.
+	 * @param tag             Tag value or regex
+	 */
+	public static Pattern compile(String relevantMapName, String tag) {
+		if (tag != null && tag.length() > 0) {
+			relevantMapName = relevantMapName.replaceAll(NAME_TAG, Matcher.quoteReplacement(tag));
+		}
+		return Pattern.compile(relevantMapName);
+	}
+
+	/**
+	 * Returns the relevant maps of the specified relevant map name patterns and
+	 * tag. The returned object is shared and kept up to date as maps are created
+	 * and destroyed. The caller may cache it.
+	 *
+	 * @param relevantMapNames Relevant map name patterns
+	 * @param tag              Tag value. Empty if the primary map has no tag.
+	 */
+	public RelevantMaps getRelevantMaps(String[] relevantMapNames, String tag) {
+		String key = tag + "\0" + Arrays.toString(relevantMapNames);
+		RelevantMaps relevantMaps = relevantMapsMap.get(key);
+		if (relevantMaps != null) {
+			return relevantMaps;
+		}
+		// Synchronized with addMap() and removeMap() so that no map event is missed
+		// while resolving.
+		synchronized (this) {
+			return relevantMapsMap.computeIfAbsent(key, k -> {
+				RelevantMaps newRelevantMaps = new RelevantMaps(relevantMapNames, tag);
+				for (IMap map : allMaps.values()) {
+					newRelevantMaps.add(map);
+				}
+				return newRelevantMaps;
+			});
+		}
+	}
+
+	private synchronized void addMap(IMap map) {
+		if (allMaps.putIfAbsent(map.getName(), map) == null) {
+			for (RelevantMaps relevantMaps : relevantMapsMap.values()) {
+				relevantMaps.add(map);
+			}
+		}
+	}
+
+	private synchronized void removeMap(String mapName) {
+		if (allMaps.remove(mapName) != null) {
+			for (RelevantMaps relevantMaps : relevantMapsMap.values()) {
+				relevantMaps.remove(mapName);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of maps known to the resolver.
+	 */
+	public int getMapCount() {
+		return allMaps.size();
+	}
+
+	/**
+	 * {@linkplain RelevantMaps} holds the compiled patterns of a session tag and
+	 * the maps that match them. The map array is replaced on each change so that
+	 * the worker threads can iterate it without locking.
+	 *
+	 * @author dpark
+	 *
+	 */
+	public static class RelevantMaps {
+		private final Pattern[] patterns;
+		private volatile IMap[] maps = new IMap[0];
+
+		RelevantMaps(String[] relevantMapNames, String tag) {
+			patterns = new Pattern[relevantMapNames.length];
+			for (int i = 0; i < relevantMapNames.length; i++) {
+				patterns[i] = compile(relevantMapNames[i], tag);
+			}
+		}
+
+		/**
+		 * Returns the maps that match the patterns. The returned array must not be
+		 * modified.
+		 */
+		public IMap[] getMaps() {
+			return maps;
+		}
+
+		/**
+		 * Returns true if the specified map name matches any of the patterns.
+		 */
+		public boolean matches(String mapName) {
+			for (Pattern pattern : patterns) {
+				if (pattern.matcher(mapName).matches()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		synchronized void add(IMap map) {
+			if (matches(map.getName()) == false) {
+				return;
+			}
+			for (IMap m : maps) {
+				if (m.getName().equals(map.getName())) {
+					return;
+				}
+			}
+			IMap[] newMaps = Arrays.copyOf(maps, maps.length + 1);
+			newMaps[maps.length] = map;
+			maps = newMaps;
+		}
+
+		synchronized void remove(String mapName) {
+			ArrayList<IMap> list = new ArrayList<IMap>(maps.length);
+			for (IMap m : maps) {
+				if (m.getName().equals(mapName) == false) {
+					list.add(m);
+				}
+			}
+			if (list.size() != maps.length) {
+				maps = list.toArray(new IMap[list.size()]);
+			}
+		}
+
+		/**
+		 * Returns the map names. For logging only.
+		 */
+		@Override
+		public String toString() {
+			ArrayList<String> names = new ArrayList<String>(maps.length);
+			for (IMap m : maps) {
+				names.add(m.getName());
+			}
+			return names.toString();
+		}
+	}
+
+	/**
+	 * Returns the relevant maps of all cached tags. For logging only.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		for (Map.Entry<String, RelevantMaps> entry : relevantMapsMap.entrySet()) {
+			if (buffer.length() > 0) {
+				buffer.append(", ");
+			}
+			buffer.append(entry.getKey().replace('\0', ':')).append("=").append(entry.getValue());
+		}
+		return "[" + buffer.toString() + "]";
+	}
+}
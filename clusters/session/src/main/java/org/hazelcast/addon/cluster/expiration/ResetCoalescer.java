@@ -0,0 +1,218 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * {@linkplain ResetCoalescer} sits in front of the worker queues of the idle
+ * timeout reset services and limits the resets of each session to one per
+ * window. The window is a fraction of the session's idle timeout.
+ * <p>
+ * The first reset of a session is passed to the sink immediately. The resets
+ * that follow within the window are not passed. Instead, a single trailing
+ * reset with the latest element is passed when the window ends, so that the
+ * relevant entries are always reset after the last primary map event. If no
+ * event occurs within the window, then the session's state is discarded when
+ * the window ends.
+ * <ul>
+ * <li>Suppressed: the first event of a window that is deferred to the
+ * trailing reset.</li>
+ * <li>Coalesced: the events that are merged into an already deferred trailing
+ * reset.</li>
+ * </ul>
+ * The trailing resets are scheduled in a {@linkplain DelayQueue} and passed to
+ * the sink by a single daemon thread.
+ *
+ * @author dpark
+ *
+ * @param <K> Coalescing key type, typically the primary map name and session
+ *            ID pair.
+ * @param <E> Element type
+ */
+public class ResetCoalescer<K, E> {
+
+	private final static int ADMITTED = 0;
+	private final static int SUPPRESSED = 1;
+	private final static int COALESCED = 2;
+
+	private final BiConsumer<K, E> sink;
+	private final ConcurrentHashMap<K, State<E>> stateMap = new ConcurrentHashMap<K, State<E>>();
+	private final DelayQueue<WindowEnd<K>> windowEndQueue = new DelayQueue<WindowEnd<K>>();
+	private final AtomicLong suppressedCount = new AtomicLong();
+	private final AtomicLong coalescedCount = new AtomicLong();
+	private final Thread thread;
+	private volatile boolean shouldRun = true;
+
+	/**
+	 * Creates a coalescer and starts its daemon thread.
+	 *
+	 * @param threadGroup Thread group of the daemon thread
+	 * @param threadName  Name of the daemon thread
+	 * @param sink        Receives the resets to be enqueued. It is invoked by the
+	 *                    offering thread and the daemon thread.
+	 */
+	public ResetCoalescer(ThreadGroup threadGroup, String threadName, BiConsumer<K, E> sink) {
+		this.sink = sink;
+		thread = new Thread(threadGroup, threadName) {
+			public void run() {
+				while (shouldRun) {
+					try {
+						windowEnded(windowEndQueue.take().key);
+					} catch (InterruptedException ex) {
+						break;
+					} catch (RuntimeException ex) {
+						// The sink failed. The reset is dropped.
+					}
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Offers the specified reset. It is passed to the sink immediately if the
+	 * session has not been reset within the window.
+	 *
+	 * @param key         Coalescing key
+	 * @param element     Reset element
+	 * @param windowNanos Window in nanoseconds. Must be greater than 0.
+	 */
+	public void offer(K key, E element, long windowNanos) {
+		long now = System.nanoTime();
+		int[] result = new int[1];
+		stateMap.compute(key, (k, state) -> {
+			if (state == null) {
+				state = new State<E>(now, windowNanos);
+				result[0] = ADMITTED;
+			} else if (now - state.admittedNanos >= state.windowNanos) {
+				state.admittedNanos = now;
+				state.windowNanos = windowNanos;
+				state.trailingElement = null;
+				result[0] = ADMITTED;
+			} else if (state.trailingElement == null) {
+				state.trailingElement = element;
+				result[0] = SUPPRESSED;
+			} else {
+				state.trailingElement = element;
+				result[0] = COALESCED;
+			}
+			return state;
+		});
+		switch (result[0]) {
+		case ADMITTED:
+			windowEndQueue.offer(new WindowEnd<K>(key, now + windowNanos));
+			sink.accept(key, element);
+			break;
+		case SUPPRESSED:
+			suppressedCount.incrementAndGet();
+			break;
+		default:
+			coalescedCount.incrementAndGet();
+			break;
+		}
+	}
+
+	/**
+	 * Passes the trailing reset of the specified key, if any, or discards the
+	 * key's state.
+	 */
+	@SuppressWarnings("unchecked")
+	private void windowEnded(K key) {
+		long now = System.nanoTime();
+		Object[] trailingElement = new Object[1];
+		stateMap.computeIfPresent(key, (k, state) -> {
+			if (now - state.admittedNanos < state.windowNanos) {
+				// Readmitted since. The new window has its own end.
+				return state;
+			}
+			if (state.trailingElement == null) {
+				return null;
+			}
+			trailingElement[0] = state.trailingElement;
+			state.trailingElement = null;
+			state.admittedNanos = now;
+			return state;
+		});
+		if (trailingElement[0] != null) {
+			State<E> state = stateMap.get(key);
+			if (state != null) {
+				windowEndQueue.offer(new WindowEnd<K>(key, now + state.windowNanos));
+			}
+			sink.accept(key, (E) trailingElement[0]);
+		}
+	}
+
+	/**
+	 * Returns the number of resets deferred to the trailing reset of their
+	 * window.
+	 */
+	public long getSuppressedCount() {
+		return suppressedCount.get();
+	}
+
+	/**
+	 * Returns the number of resets merged into an already deferred trailing
+	 * reset.
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	/**
+	 * Returns the number of sessions that have been reset within their window.
+	 */
+	public int size() {
+		return stateMap.size();
+	}
+
+	/**
+	 * Terminates the daemon thread. The deferred trailing resets are discarded.
+	 */
+	public void terminate() {
+		shouldRun = false;
+		thread.interrupt();
+	}
+
+	/**
+	 * {@linkplain State} holds the last admission time and the deferred trailing
+	 * reset of a session.
+	 */
+	private static class State<E> {
+		long admittedNanos;
+		long windowNanos;
+		E trailingElement;
+
+		State(long admittedNanos, long windowNanos) {
+			this.admittedNanos = admittedNanos;
+			this.windowNanos = windowNanos;
+		}
+	}
+
+	/**
+	 * {@linkplain WindowEnd} is the end of a session's window.
+	 */
+	private static class WindowEnd<K> implements Delayed {
+		final K key;
+		final long endNanos;
+
+		WindowEnd(K key, long endNanos) {
+			this.key = key;
+			this.endNanos = endNanos;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(endNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			return Long.compare(endNanos, ((WindowEnd<?>) o).endNanos);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@linkplain RingBufferWorkerQueue} is the {@linkplain QueueType#RING_BUFFER}
+ * queue. It is a preallocated bounded array of slots, each with a sequence
+ * number that tells producers and consumers whether the slot is free or
+ * published. Producers claim slots by advancing the tail with CAS and consumers
+ * claim slots by advancing the head with CAS, so the owning worker thread and
+ * the work-stealing worker threads may drain it concurrently. No memory is
+ * allocated per element.
+ *
+ * @author dpark
+ *
+ * @param <E> Element type
+ */
+class RingBufferWorkerQueue<E> extends WorkerQueue<E> {
+
+	/**
+	 * Default capacity used if the configured capacity is less than or equal to
+	 * 0.
+	 */
+	final static int DEFAULT_CAPACITY = 65536;
+
+	private final int mask;
+	private final Object[] buffer;
+	private final AtomicLongArray sequences;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	RingBufferWorkerQueue(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+		this(capacity, waitStrategy, overflowPolicy, 0, null);
+	}
+
+	RingBufferWorkerQueue(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy,
+			long blockTimeoutMillis, SpillFile<E> spillFile) {
+		super(powerOfTwo(capacity <= 0 ? DEFAULT_CAPACITY : capacity), waitStrategy, overflowPolicy,
+				blockTimeoutMillis, spillFile);
+		this.mask = this.capacity - 1;
+		this.buffer = new Object[this.capacity];
+		this.sequences = new AtomicLongArray(this.capacity);
+		for (int i = 0; i < this.capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	private static int powerOfTwo(int capacity) {
+		int n = 2;
+		while (n < capacity && n < (1 << 30)) {
+			n <<= 1;
+		}
+		return n;
+	}
+
+	@Override
+	protected boolean tryOffer(E element) {
+		long position;
+		int index;
+		for (;;) {
+			position = tail.get();
+			index = (int) position & mask;
+			long diff = sequences.get(index) - position;
+			if (diff == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+			} else if (diff < 0) {
+				// Full
+				return false;
+			}
+		}
+		buffer[index] = element;
+		sequences.lazySet(index, position + 1);
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected E tryPoll() {
+		long position;
+		int index;
+		for (;;) {
+			position = head.get();
+			index = (int) position & mask;
+			long diff = sequences.get(index) - (position + 1);
+			if (diff == 0) {
+				if (head.compareAndSet(position, position + 1)) {
+					break;
+				}
+			} else if (diff < 0) {
+				// Empty
+				return null;
+			}
+		}
+		E element = (E) buffer[index];
+		buffer[index] = null;
+		sequences.lazySet(index, position + capacity);
+		return element;
+	}
+
+	@Override
+	public int size() {
+		long size = tail.get() - head.get();
+		if (size < 0) {
+			return 0;
+		}
+		return size > capacity ? capacity : (int) size;
+	}
+}
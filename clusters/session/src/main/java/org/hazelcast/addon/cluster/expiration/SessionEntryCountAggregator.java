@@ -0,0 +1,87 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import com.hazelcast.aggregation.Aggregator;
+import com.hazelcast.map.IMap;
+
+/**
+ * {@linkplain SessionEntryCountAggregator} counts the entries of each of the
+ * specified session IDs on the members that own them. The session ID is
+ * extracted from each key in the same way as the primary map key, and only the
+ * counts, i.e., a map of &lt;session ID, count&gt;, are returned to the caller.
+ * Sessions without entries are not included in the result. It is used to
+ * verify that the relevant entries of expired sessions have been removed
+ * without reading the entries, e.g.,
+ *
+ * <pre>
+ * Map&lt;String, Long&gt; countMap = map.aggregate(new SessionEntryCountAggregator(KeyType.STRING, null, "@", false, sessionIds));
+ * </pre>
+ * <p>
+ * Like {@linkplain IMap#aggregate(Aggregator)}, it does not update the last
+ * access time of the entries. {@linkplain KeyType#CUSTOM} is not supported.
+ * Use {@linkplain KeyType#OBJECT} with the key property that returns the
+ * session ID instead.
+ *
+ * @author dpark
+ *
+ */
+public class SessionEntryCountAggregator implements Aggregator<Map.Entry<Object, Object>, Map<String, Long>> {
+
+	private static final long serialVersionUID = 1L;
+
+	private KeyType keyType;
+	private String keyProperty;
+	private String delimiter;
+	private boolean isPostfix;
+	private HashSet<String> sessionIdSet;
+
+	private HashMap<String, Long> countMap = new HashMap<String, Long>();
+
+	/**
+	 * Constructs an aggregator that counts the entries of the specified session
+	 * IDs.
+	 *
+	 * @param keyType     Key type
+	 * @param keyProperty Key property path that returns the session ID. Applies
+	 *                    to {@linkplain KeyType#OBJECT} only.
+	 * @param delimiter   Key delimiter. Applies to {@linkplain KeyType#STRING}
+	 *                    only.
+	 * @param isPostfix   true if the session ID is the last token of the key
+	 *                    string. Applies to {@linkplain KeyType#STRING} only.
+	 * @param sessionIds  Session IDs to count
+	 */
+	public SessionEntryCountAggregator(KeyType keyType, String keyProperty, String delimiter, boolean isPostfix,
+			Collection<String> sessionIds) {
+		this.keyType = keyType;
+		this.keyProperty = keyProperty;
+		this.delimiter = delimiter;
+		this.isPostfix = isPostfix;
+		this.sessionIdSet = new HashSet<String>(sessionIds);
+	}
+
+	@Override
+	public void accumulate(Map.Entry<Object, Object> entry) {
+		String sessionId = SessionMapUtil.getSessionId(keyType, entry.getKey(), keyProperty, delimiter, isPostfix);
+		if (sessionId != null && sessionIdSet.contains(sessionId)) {
+			countMap.merge(sessionId, 1L, Long::sum);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public void combine(Aggregator aggregator) {
+		SessionEntryCountAggregator other = (SessionEntryCountAggregator) aggregator;
+		for (Map.Entry<String, Long> entry : other.countMap.entrySet()) {
+			countMap.merge(entry.getKey(), entry.getValue(), Long::sum);
+		}
+	}
+
+	@Override
+	public Map<String, Long> aggregate() {
+		return countMap;
+	}
+}
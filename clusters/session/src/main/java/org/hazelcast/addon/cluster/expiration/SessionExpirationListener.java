@@ -6,7 +6,8 @@ import com.hazelcast.map.listener.EntryExpiredListener;
 /**
  * {@linkplain SessionExpirationListener} traps the expiration events and
  * invokes {@linkplain SessionExpirationService#expire(String, Object)} to
- * expire all the session relevant entries from the configured maps.
+ * expire all the session relevant entries from the configured maps. The events
+ * are captured first if {@linkplain CaptureJournal} is enabled.
  * 
  * @author dpark
  *
@@ -15,6 +16,11 @@ public class SessionExpirationListener implements EntryExpiredListener<Object, O
 
 	@Override
 	public void entryExpired(EntryEvent<Object, Object> event) {
-		SessionExpirationService.getExpirationService().expire(event.getName() /* map name */, event.getKey());
+		SessionExpirationService expirationService = SessionExpirationService.getExpirationService();
+		CaptureJournal captureJournal = expirationService.getCaptureJournal();
+		if (captureJournal != null) {
+			captureJournal.capture(CaptureJournal.SOURCE_EXPIRATION, event);
+		}
+		expirationService.expire(event.getName() /* map name */, event.getKey());
 	}
 }
\ No newline at end of file
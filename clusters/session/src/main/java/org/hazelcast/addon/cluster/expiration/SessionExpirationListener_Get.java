@@ -10,7 +10,9 @@ import com.hazelcast.map.listener.EntryUpdatedListener;
  * events and invokes
  * {@linkplain SessionExpirationService_Get#resetIdleTimeout(String, Object)}
  * to reset the idle timeout on all the session relevant entries from the
- * configured maps.
+ * configured maps. The events of the same session, e.g., the 'merged' events
+ * that follow a split-brain heal, are coalesced. The events are captured first
+ * if {@linkplain CaptureJournal} is enabled.
  * 
  * @author dpark
  *
@@ -20,20 +22,21 @@ public class SessionExpirationListener_Get implements EntryAddedListener<Object,
 
 	@Override
 	public void entryUpdated(EntryEvent<Object, Object> event) {
-		SessionExpirationService_Get.getExpirationService().resetIdleTimeout(event.getName() /* map name */,
-				event.getKey());
+		SessionExpirationService_Get expirationService = SessionExpirationService_Get.getExpirationService();
+		CaptureJournal captureJournal = expirationService.getCaptureJournal();
+		if (captureJournal != null) {
+			captureJournal.capture(CaptureJournal.SOURCE_GET, event);
+		}
+		expirationService.resetIdleTimeout(event.getName() /* map name */, event.getKey());
 	}
 
 	@Override
 	public void entryAdded(EntryEvent<Object, Object> event) {
-		SessionExpirationService_Get.getExpirationService().resetIdleTimeout(event.getName() /* map name */,
-				event.getKey());
+		entryUpdated(event);
 	}
 
 	@Override
 	public void entryMerged(EntryEvent<Object, Object> event) {
-		event.getEventType();
-		SessionExpirationService_Get.getExpirationService().resetIdleTimeout(event.getName() /* map name */,
-				event.getKey());
+		entryUpdated(event);
 	}
 }
\ No newline at end of file
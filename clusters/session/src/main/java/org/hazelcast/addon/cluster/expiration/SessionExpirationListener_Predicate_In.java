@@ -0,0 +1,22 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.map.listener.EntryExpiredListener;
+
+/**
+ * {@linkplain SessionExpirationListener_Predicate_In} traps the expiration
+ * events and invokes
+ * {@linkplain SessionExpirationService_Predicate_In#expire(String, Object)} to
+ * expire all the session relevant entries from the configured maps.
+ * 
+ * @author dpark
+ *
+ */
+public class SessionExpirationListener_Predicate_In implements EntryExpiredListener<Object, Object> {
+
+	@Override
+	public void entryExpired(EntryEvent<Object, Object> event) {
+		SessionExpirationService_Predicate_In.getExpirationService().expire(event.getName() /* map name */,
+				event.getKey());
+	}
+}
@@ -1,14 +1,18 @@
 package org.hazelcast.addon.cluster.expiration;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanRegistrationException;
@@ -17,13 +21,22 @@ import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
 
-import org.hazelcast.addon.cluster.ClusterUtil;
+import org.hazelcast.addon.cluster.EntryRemoveProcessor;
 import org.hazelcast.addon.cluster.MapUtil;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.MapMetrics;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.Stage;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.WorkerMetrics;
+import org.hazelcast.addon.cluster.expiration.metadata.ExpirationDataSerializableFactory;
 
+import com.hazelcast.config.SerializationConfig;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.metrics.ProbeUnit;
+import com.hazelcast.internal.serialization.Data;
 import com.hazelcast.logging.ILogger;
 import com.hazelcast.map.IMap;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.partition.PartitionAware;
 import com.hazelcast.query.Predicate;
 import com.hazelcast.query.Predicates;
@@ -44,27 +57,75 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 
 	private ThreadGroup workerThreadGroup;
 	private WorkerThread workerThreads[];
-	private LinkedBlockingQueue<SessionInfo> workerQueues[];
+	private WorkerDispatcher<SessionInfo> dispatcher;
 	private HazelcastInstance hazelcastInstance;
+	private RelevantMapResolver relevantMapResolver;
 
 	private String tag;
 	private String logPrefix;
 	private boolean isJmxEnabled;
 	private SessionExpirationServiceStatus status;
+
+	// Publishes the metrics through the Hazelcast metrics system. null if disabled.
+	private ExpirationMetricsProvider metricsProvider;
+
+	// Captures the listener events for replaying. null if disabled.
+	private CaptureJournal captureJournal;
 	private boolean isJmxUseHazelcastObjectName;
 
+	// Per stage latencies and counters. Recorded whether or not JMX is enabled.
+	private ExpirationMetrics metrics;
+
+	// Bounds the asynchronous deletes in flight. null if synchronous.
+	private Semaphore inFlightPermits;
+
+	// Member-local session index. Created only if the SESSION_INDEX engine is
+	// configured.
+	private SessionIndex sessionIndex;
+
+	// Member-local session timer. Created only if a primary map timeout is
+	// configured.
+	private SessionTimer sessionTimer;
+
+	// Session timer resolution
+	private long timerTickMillis = DEFAULT_TIMER_TICK_MILLIS;
+
+	// Honor ISessionTimeout implemented by the primary map values
+	private boolean isTimerValueTimeoutEnabled = false;
+
 	// delimiter is used for STRING key type only
 	private String delimiter = DEFAULT_KEY_DELIMTER;
 
 	// worker thread pool size
 	private int threadPoolSize = DEFAULT_EXPIRATION_THREAD_POOL_SIZE;
 
+	// worker thread dispatch mode
+	private DispatchMode dispatchMode = DispatchMode.LEAST_LOADED;
+
+	// minimum queue size to steal from
+	private int stealThreshold = DEFAULT_EXPIRATION_THREAD_STEAL_THRESHOLD;
+
+	// worker queue type, capacity, wait strategy and overflow policy
+	private WorkerQueueConfig queueConfig = new WorkerQueueConfig();
+
 	// queue drain size
 	private int queueDrainSize = DEFAULT_EXPIRATION_QUEUE_DRAIN_SIZE;
 
+	// Maximum number of asynchronous deletes in flight. <= 0 for synchronous.
+	private int asyncMaxInFlight = DEFAULT_EXPIRATION_ASYNC_MAX_IN_FLIGHT;
+
 	// Session ID as prefix or postfix. Default: prefix (for performance)
 	private boolean isPostfix = false;
 
+	// Session ID prefix as a range over a SORTED __key index instead of LIKE
+	private boolean isStringKeyRange = false;
+
+	// Use the session ID attribute extracted by SessionIdExtractor for STRING keys
+	private boolean isStringKeyAttribute = false;
+
+	// OR per session predicates instead of SessionIdSetPredicate
+	private boolean isLegacyPredicate = false;
+
 	// tagMap contains <tagged primary map name, SessionData> entries
 	private HashMap<String, SessionData> tagMap = new HashMap<String, SessionData>(10);
 
@@ -127,11 +188,7 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 				// key.property
 				sessionData.keyProperty = properties
 						.getProperty(PROPERTY_SESSION_PREFIX + taggedPrimaryMapName + ".key.property");
-				if (sessionData.keyProperty != null && sessionData.keyProperty.length() > 0) {
-					// Change the first letter to upper case for constructing the get method.
-					sessionData.getterMethodName = "get" + sessionData.keyProperty.substring(0, 1).toUpperCase()
-							+ sessionData.keyProperty.substring(1);
-				}
+				sessionData.keyPropertyAccessor = KeyPropertyAccessor.getAccessor(sessionData.keyProperty);
 
 				// key.type
 				String keyTypeStr = properties
@@ -148,6 +205,41 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 						sessionData.keyType = KeyType.STRING;
 					}
 				}
+				// engine
+				String engineStr = properties.getProperty(PROPERTY_SESSION_PREFIX + taggedPrimaryMapName + ".engine");
+				if (engineStr != null) {
+					try {
+						// engine is case-insensitive (change to upper case)
+						sessionData.engine = ExpirationEngine.valueOf(engineStr.toUpperCase());
+					} catch (Exception ex) {
+						if (logger != null) {
+							logger.warning(logPrefix + taggedPrimaryMapName + ".engine - Invalid engine [" + engineStr
+									+ "]. Defaulting to " + ExpirationEngine.KEY_SET);
+						}
+						sessionData.engine = ExpirationEngine.KEY_SET;
+					}
+				}
+				// timeout-seconds
+				String timeoutStr = properties
+						.getProperty(PROPERTY_SESSION_PREFIX + taggedPrimaryMapName + ".timeout-seconds");
+				if (timeoutStr != null) {
+					try {
+						sessionData.timeoutMillis = TimeUnit.SECONDS.toMillis(Integer.parseInt(timeoutStr.trim()));
+					} catch (Exception ex) {
+						if (logger != null) {
+							logger.warning(logPrefix + taggedPrimaryMapName + ".timeout-seconds - Invalid timeout ["
+									+ timeoutStr + "]. The session timer is disabled for the map.");
+						}
+					}
+				}
+				if (sessionData.engine == ExpirationEngine.SESSION_INDEX && sessionData.keyType == KeyType.CUSTOM) {
+					if (logger != null) {
+						logger.warning(logPrefix + taggedPrimaryMapName + ".engine - " + ExpirationEngine.SESSION_INDEX
+								+ " does not support the key type " + KeyType.CUSTOM + ". Defaulting to "
+								+ ExpirationEngine.KEY_SET);
+					}
+					sessionData.engine = ExpirationEngine.KEY_SET;
+				}
 				if (sessionData.keyType == KeyType.CUSTOM) {
 					String sessionIdPredicateClassName = properties
 							.getProperty(PROPERTY_SESSION_PREFIX + taggedPrimaryMapName + ".key.predicate");
@@ -191,6 +283,9 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 		}
 		delimiter = properties.getProperty(PROPERTY_KEY_DELIMITER, DEFAULT_KEY_DELIMTER);
 
+		// worker queues
+		queueConfig = new WorkerQueueConfig(properties, false, logger, logPrefix);
+
 		// queueDrainSize
 		String sizeStr = properties.getProperty(PROPERTY_EXPIRATION_QUEUE_DRAIN_SIZE);
 		if (sizeStr != null) {
@@ -202,12 +297,71 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 			}
 		}
 
+		// asyncMaxInFlight
+		String asyncMaxInFlightStr = properties.getProperty(PROPERTY_EXPIRATION_ASYNC_MAX_IN_FLIGHT);
+		if (asyncMaxInFlightStr != null) {
+			try {
+				asyncMaxInFlight = Integer.parseInt(asyncMaxInFlightStr);
+			} catch (Exception ex) {
+				logger.warning(logPrefix + ex.getMessage() + "[" + PROPERTY_EXPIRATION_ASYNC_MAX_IN_FLIGHT + "="
+						+ asyncMaxInFlightStr + "]. Using the default value of " + asyncMaxInFlight + " instead.");
+			}
+		}
+		if (asyncMaxInFlight > 0) {
+			inFlightPermits = new Semaphore(asyncMaxInFlight);
+		}
+
 		String bool = properties.getProperty(PROPERTY_STRING_KEY_SESSION_POSTFIX_ENABLED, "false");
 		isPostfix = bool.equalsIgnoreCase("true");
 
+		bool = properties.getProperty(PROPERTY_STRING_KEY_RANGE_ENABLED, "false");
+		isStringKeyRange = bool.equalsIgnoreCase("true");
+		if (isStringKeyRange && isPostfix) {
+			if (logger != null) {
+				logger.warning(logPrefix + PROPERTY_STRING_KEY_RANGE_ENABLED + " applies to session ID prefix only. "
+						+ "It is ignored since " + PROPERTY_STRING_KEY_SESSION_POSTFIX_ENABLED + "=true.");
+			}
+			isStringKeyRange = false;
+		}
+
+		bool = properties.getProperty(PROPERTY_STRING_KEY_ATTRIBUTE_ENABLED, "false");
+		isStringKeyAttribute = bool.equalsIgnoreCase("true");
+		SessionIdExtractor.configure(delimiter, isPostfix);
+
+		bool = properties.getProperty(PROPERTY_PREDICATE_LEGACY_ENABLED, "false");
+		isLegacyPredicate = bool.equalsIgnoreCase("true");
+		if (isLegacyPredicate == false && hazelcastInstance != null) {
+			// SessionIdSetPredicate is serialized by query operations
+			SerializationConfig serializationConfig = hazelcastInstance.getConfig().getSerializationConfig();
+			if (serializationConfig.getDataSerializableFactoryClasses()
+					.containsKey(ExpirationDataSerializableFactory.FACTORY_ID) == false
+					&& serializationConfig.getDataSerializableFactories()
+							.containsKey(ExpirationDataSerializableFactory.FACTORY_ID) == false) {
+				if (logger != null) {
+					logger.warning(logPrefix + ExpirationDataSerializableFactory.class.getName()
+							+ " is not registered with the factory ID " + ExpirationDataSerializableFactory.FACTORY_ID
+							+ ". Using the legacy predicates instead.");
+				}
+				isLegacyPredicate = true;
+			}
+		}
+
 		bool = properties.getProperty(JMX_USE_HAZELCAST_OBJECT_NAME, "false");
 		isJmxUseHazelcastObjectName = bool.equalsIgnoreCase("true");
 
+		// Session timer
+		String tickStr = properties.getProperty(PROPERTY_TIMER_TICK_MILLIS);
+		if (tickStr != null) {
+			try {
+				timerTickMillis = Long.parseLong(tickStr);
+			} catch (Exception ex) {
+				logger.warning(logPrefix + ex.getMessage() + "[" + PROPERTY_TIMER_TICK_MILLIS + "=" + tickStr
+						+ "]. Using the default value of " + timerTickMillis + " instead.");
+			}
+		}
+		bool = properties.getProperty(PROPERTY_TIMER_VALUE_TIMEOUT_ENABLED, "false");
+		isTimerValueTimeoutEnabled = bool.equalsIgnoreCase("true");
+
 		// Create thread pool
 		String threadPoolSizeStr = properties.getProperty(PROPERTY_EXPIRATION_THREAD_POOL_SIZE);
 		if (threadPoolSizeStr != null) {
@@ -218,24 +372,103 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 						+ threadPoolSizeStr + "]. Using the default value of " + threadPoolSize + " instead.");
 			}
 		}
+		String dispatchStr = properties.getProperty(PROPERTY_EXPIRATION_THREAD_DISPATCH);
+		if (dispatchStr != null) {
+			try {
+				dispatchMode = DispatchMode.valueOf(dispatchStr.trim().toUpperCase());
+			} catch (Exception ex) {
+				logger.warning(logPrefix + "Invalid dispatch mode [" + PROPERTY_EXPIRATION_THREAD_DISPATCH + "="
+						+ dispatchStr + "]. Using the default value of " + dispatchMode + " instead.");
+			}
+		}
+		String stealThresholdStr = properties.getProperty(PROPERTY_EXPIRATION_THREAD_STEAL_THRESHOLD);
+		if (stealThresholdStr != null) {
+			try {
+				stealThreshold = Integer.parseInt(stealThresholdStr);
+			} catch (Exception ex) {
+				logger.warning(logPrefix + ex.getMessage() + "[" + PROPERTY_EXPIRATION_THREAD_STEAL_THRESHOLD + "="
+						+ stealThresholdStr + "]. Using the default value of " + stealThreshold + " instead.");
+			}
+		}
+		if (hazelcastInstance != null) {
+			relevantMapResolver = new RelevantMapResolver(hazelcastInstance);
+		}
 		String threadGroupName = this.getClass().getSimpleName();
 		workerThreadGroup = new ThreadGroup(threadGroupName);
 		workerThreadGroup.setDaemon(true);
 		workerThreads = new WorkerThread[threadPoolSize];
-		workerQueues = new LinkedBlockingQueue[threadPoolSize];
+		metrics = new ExpirationMetrics(threadPoolSize);
+		dispatcher = new WorkerDispatcher<SessionInfo>(hazelcastInstance, dispatchMode, threadPoolSize, stealThreshold,
+				queueConfig, tag, new SessionInfoCodec(), logger, logPrefix);
 		for (int i = 0; i < threadPoolSize; i++) {
-			workerQueues[i] = new LinkedBlockingQueue<SessionInfo>();
 			WorkerThread workerThread = new WorkerThread(workerThreadGroup, "padogrid." + threadGroupName + "-" + (i + 1) /* thread name */,
-					workerQueues[i]);
+					i);
 			workerThread.start();
 			workerThreads[i] = workerThread;
 		}
 
+		// Session index
+		for (SessionData sessionData : tagMap.values()) {
+			if (sessionData.engine == ExpirationEngine.SESSION_INDEX && hazelcastInstance != null) {
+				sessionIndex = new SessionIndex(hazelcastInstance, logger, logPrefix);
+				sessionIndex.start(mapName -> getSessionIdExtractor(mapName));
+				break;
+			}
+		}
+
+		// Session timer
+		for (SessionData sessionData : tagMap.values()) {
+			if (sessionData.timeoutMillis > 0 && hazelcastInstance != null) {
+				sessionTimer = new SessionTimer(hazelcastInstance, logger, logPrefix, timerTickMillis,
+						isTimerValueTimeoutEnabled);
+				sessionTimer.start(mapName -> getSessionTimeoutMillis(mapName), (mapName, key) -> expire(mapName, key));
+				break;
+			}
+		}
+
 		if (logger != null) {
 			logger.info(logPrefix + this.getClass().getCanonicalName() + " started: delimiter=\"" + delimiter + "\""
-					+ ", threadPoolSize=" + threadPoolSize + ", queueDrainSize=" + queueDrainSize + ", isPostfix="
-					+ isPostfix + ", isJmxUseHazelcastObjectName=" + isJmxUseHazelcastObjectName + " ["
-					+ buffer.toString() + "]");
+					+ ", threadPoolSize=" + threadPoolSize + ", dispatchMode=" + dispatchMode + ", stealThreshold="
+					+ stealThreshold + ", queue=" + queueConfig + ", queueDrainSize=" + queueDrainSize
+					+ ", asyncMaxInFlight=" + asyncMaxInFlight + ", timerTickMillis=" + timerTickMillis
+					+ ", isTimerValueTimeoutEnabled=" + isTimerValueTimeoutEnabled + ", isPostfix=" + isPostfix + ", isStringKeyRange="
+					+ isStringKeyRange + ", isStringKeyAttribute=" + isStringKeyAttribute + ", isLegacyPredicate=" + isLegacyPredicate
+					+ ", isJmxUseHazelcastObjectName=" + isJmxUseHazelcastObjectName + " [" + buffer.toString() + "]");
+		}
+
+		// Event capture
+		captureJournal = CaptureJournal.create(properties, hazelcastInstance, logger, logPrefix);
+
+		// Hazelcast metrics
+		String metricsEnabled = properties.getProperty(PROPERTY_METRICS_ENABLED, "true");
+		if (metricsEnabled.equalsIgnoreCase("true") && hazelcastInstance != null) {
+			try {
+				metricsProvider = new ExpirationMetricsProvider(this.getClass().getSimpleName(), tag, threadPoolSize);
+				metricsProvider.addDispatcherGauges(dispatcher);
+				if (sessionIndex != null) {
+					metricsProvider.addGauge("sessionIndexSessionCount", ProbeUnit.COUNT,
+							() -> sessionIndex.getSessionCount());
+					metricsProvider.addGauge("sessionIndexEntryCount", ProbeUnit.COUNT,
+							() -> sessionIndex.getEntryCount());
+					metricsProvider.addGauge("sessionIndexMemorySize", ProbeUnit.BYTES,
+							() -> sessionIndex.getMemorySize());
+				}
+				if (sessionTimer != null) {
+					metricsProvider.addGauge("timerSessionCount", ProbeUnit.COUNT, () -> sessionTimer.getSessionCount());
+					metricsProvider.addGauge("timerExpiredCount", ProbeUnit.COUNT, () -> sessionTimer.getExpiredCount());
+				}
+				metricsProvider.setMetrics(metrics);
+				if (metricsProvider.register(hazelcastInstance)) {
+					logger.info(logPrefix + ExpirationMetricsProvider.class.getSimpleName() + " registered: prefix="
+							+ ExpirationMetricsProvider.PREFIX + ", tag=" + tag);
+				} else {
+					metricsProvider = null;
+				}
+			} catch (Exception ex) {
+				metricsProvider = null;
+				logger.warning(logPrefix + ExpirationMetricsProvider.class.getSimpleName()
+						+ " registration error: tag=" + tag, ex);
+			}
 		}
 
 		if (hazelcastInstance != null) {
@@ -268,11 +501,15 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 					header = "org.hazelcast.addon";
 					type = this.getClass().getSimpleName();
 				}
-				objectName = new ObjectName(header + ":name=SessionExpirationService"
-						+ ",instance=" + instanceName + ",type=" + type + ",tag=" + tag);
+				String name = header + ":name=SessionExpirationService" + ",instance=" + instanceName + ",type="
+						+ type + ",tag=" + tag;
+				objectName = new ObjectName(name);
 				platformMBeanServer.registerMBean(status, objectName);
 				logger.info(logPrefix + SessionExpirationServiceStatusMBean.class.getSimpleName()
 						+ " registered: objectName=" + objectName.toString() + ", tag=" + tag);
+
+				// Metrics MBeans per service, worker and primary map
+				ExpirationMetricsMBean.registerAll(platformMBeanServer, name, metrics, logger, logPrefix);
 			} catch (MalformedObjectNameException | InstanceAlreadyExistsException | MBeanRegistrationException
 					| NotCompliantMBeanException ex) {
 				logger.warning(logPrefix + SessionExpirationServiceStatusMBean.class.getSimpleName()
@@ -325,17 +562,83 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 	}
 	
 	/**
-	 * Returns the array index of the worker thread that has the smallest queue.
+	 * Returns the session timeout of the specified primary map name if the map is
+	 * configured with the timeout-seconds property.
+	 * 
+	 * @param mapName Primary map name
+	 * @return null if the map is not to be timed by {@linkplain SessionTimer}.
 	 */
-	private int getMinWorkerQueueIndex() {
-		int minIndex = 0;
-		LinkedBlockingQueue<SessionInfo> minQueue = workerQueues[minIndex];
-		for (int i = 1; i < workerQueues.length; i++) {
-			if (minQueue.size() > workerQueues[i].size()) {
-				minIndex = i;
+	private Long getSessionTimeoutMillis(String mapName) {
+		for (Map.Entry<String, SessionData> entry : tagMap.entrySet()) {
+			SessionData sessionData = entry.getValue();
+			if (sessionData.timeoutMillis > 0 && SessionMapUtil.getTag(mapName, entry.getKey()) != null) {
+				return sessionData.timeoutMillis;
 			}
 		}
-		return minIndex;
+		return null;
+	}
+
+	/**
+	 * Returns the session ID extractor for the specified relevant map name if the
+	 * map belongs to a primary map configured with the
+	 * {@linkplain ExpirationEngine#SESSION_INDEX} engine.
+	 * 
+	 * @param mapName Relevant map name
+	 * @return null if the map is not to be indexed.
+	 */
+	private Function<Object, String> getSessionIdExtractor(String mapName) {
+		for (SessionData sessionData : tagMap.values()) {
+			if (sessionData.engine != ExpirationEngine.SESSION_INDEX || sessionData.relevantMapNames == null) {
+				continue;
+			}
+			for (String relevantMapName : sessionData.relevantMapNames) {
+				if (RelevantMapResolver.compile(relevantMapName, ".*").matcher(mapName).matches()) {
+					return key -> SessionMapUtil.getSessionId(sessionData.keyType, key, sessionData.keyProperty,
+							delimiter, isPostfix);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the key that determines the worker thread for the specified primary
+	 * map key. For {@linkplain DispatchMode#SESSION}, it is the session ID if it
+	 * can be extracted from the key. Otherwise, it is the key itself.
+	 */
+	private Object getDispatchKey(SessionTag sessionTag, Object key) {
+		if (dispatchMode == DispatchMode.SESSION && sessionTag.sessionData != null) {
+			SessionData sessionData = sessionTag.sessionData;
+			String sessionId = SessionMapUtil.getSessionId(sessionData.keyType, key, sessionData.keyProperty,
+					delimiter, isPostfix);
+			if (sessionId != null) {
+				return sessionId;
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Returns the relevant maps of the specified session tag. The maps are resolved
+	 * once per session tag and kept up to date by {@linkplain RelevantMapResolver}.
+	 */
+	@SuppressWarnings("rawtypes")
+	private IMap[] getRelevantMaps(SessionTag sessionTag) {
+		RelevantMapResolver.RelevantMaps relevantMaps = sessionTag.relevantMaps;
+		if (relevantMaps == null) {
+			relevantMaps = relevantMapResolver.getRelevantMaps(sessionTag.sessionData.relevantMapNames,
+					sessionTag.tag);
+			sessionTag.relevantMaps = relevantMaps;
+		}
+		return relevantMaps.getMaps();
+	}
+
+	/**
+	 * Returns the capture journal of the listener events, or null if capture is
+	 * disabled.
+	 */
+	public CaptureJournal getCaptureJournal() {
+		return captureJournal;
 	}
 
 	/**
@@ -356,20 +659,27 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 		if (key == null) {
 			return;
 		}
-//		int index = Math.abs(key.hashCode()) % workerThreads.length;
-		int index = getMinWorkerQueueIndex();
-		if (workerThreads[index].isAlive() == false) {
-			return;
-		}
-
 		SessionTag sessionTag = getSessionTag(sessionMapName);
 		if (sessionTag == null) {
 			return;
 		}
-		workerQueues[index].offer(new SessionInfo(sessionMapName, key));
+		int index = dispatcher.getQueueIndex(getDispatchKey(sessionTag, key));
+		if (workerThreads[index].isAlive() == false) {
+			return;
+		}
+		dispatcher.offer(index, new SessionInfo(sessionMapName, key));
+		metrics.recordEvent(sessionMapName);
 		updateMBean();
 	}
 
+	/**
+	 * Returns the per stage latencies and counters. They are recorded whether or
+	 * not JMX is enabled.
+	 */
+	public ExpirationMetrics getMetrics() {
+		return metrics;
+	}
+
 	/**
 	 * Terminates the service thread. Note that it will not terminate if the
 	 * underlying expiration event queue is empty. It will block until queue has at
@@ -379,6 +689,16 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 		for (int i = 0; i < workerThreads.length; i++) {
 			workerThreads[i].terminate();
 		}
+		dispatcher.close();
+		if (metricsProvider != null) {
+			metricsProvider.deregister();
+		}
+		if (captureJournal != null) {
+			captureJournal.close();
+		}
+		if (sessionTimer != null) {
+			sessionTimer.shutdown();
+		}
 	}
 
 	/**
@@ -387,12 +707,7 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 	 * @return
 	 */
 	public int getQueueSize() {
-		int totalSize = 0;
-		for (int i = 0; i < workerQueues.length; i++) {
-			totalSize += workerQueues[i].size();
-
-		}
-		return totalSize;
+		return dispatcher.size();
 	}
 
 	/**
@@ -424,7 +739,178 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 		if (isJmxEnabled) {
 			// Update MBean
 			status.setQueueSize(getQueueSize());
+			status.setQueueRejectedCount(dispatcher.getRejectedCount());
+			status.setQueueCoalescedCount(dispatcher.getCoalescedCount());
+			status.setQueueBlockedCount(dispatcher.getBlockedCount());
+			status.setQueueSpilledCount(dispatcher.getSpilledCount());
+			status.setQueueSpillSize(dispatcher.getSpillSize());
+			status.setQueueHighWatermark(dispatcher.isHighWatermark());
+			status.setQueueHighWatermarkCount(dispatcher.getHighWatermarkCount());
+			if (sessionIndex != null) {
+				status.setSessionIndexSessionCount(sessionIndex.getSessionCount());
+				status.setSessionIndexEntryCount(sessionIndex.getEntryCount());
+				status.setSessionIndexMemorySize(sessionIndex.getMemorySize());
+			}
+			if (sessionTimer != null) {
+				status.setTimerSessionCount(sessionTimer.getSessionCount());
+				status.setTimerExpiredCount(sessionTimer.getExpiredCount());
+			}
+		}
+	}
+
+	/**
+	 * Returns a {@linkplain SessionIdSetPredicate} that matches all the sessions
+	 * of the specified list in the relevant maps. The session ID attribute is
+	 * passed to the predicate so that it can use the index if available.
+	 * 
+	 * @param sessionData     Session data of the primary map
+	 * @param sessionInfoList Expired primary map keys
+	 * @return null if the legacy predicate should be used instead, i.e., for
+	 *         {@linkplain PrefixRangePredicate} or if no session ID can be
+	 *         extracted.
+	 */
+	@SuppressWarnings("rawtypes")
+	private Predicate createSessionIdSetPredicate(SessionData sessionData, List<SessionInfo> sessionInfoList) {
+		String attributeName = null;
+		switch (sessionData.keyType) {
+		case INTERFACE:
+			attributeName = "__key.sessionId";
+			break;
+		case OBJECT:
+			if (sessionData.keyProperty == null) {
+				return null;
+			}
+			attributeName = "__key." + sessionData.keyProperty;
+			break;
+		case PARTITION_AWARE:
+			attributeName = "__key.partitionKey";
+			break;
+		case CUSTOM:
+			if (sessionData.sessionIdPredicate == null) {
+				return null;
+			}
+			break;
+		case STRING:
+		default:
+			if (isStringKeyAttribute) {
+				attributeName = "__key." + SessionIdExtractor.ATTRIBUTE_NAME;
+			} else if (isStringKeyRange) {
+				// PrefixRangePredicate is already flat and uses the SORTED index
+				return null;
+			}
+			break;
+		}
+
+		ArrayList<String> sessionIdList = new ArrayList<String>(sessionInfoList.size());
+		for (SessionInfo sessionInfo : sessionInfoList) {
+			String sessionId;
+			if (sessionData.keyType == KeyType.CUSTOM) {
+				sessionId = sessionData.sessionIdPredicate.getSessionId(sessionInfo.key);
+			} else {
+				sessionId = SessionMapUtil.getSessionId(sessionData.keyType, sessionInfo.key,
+						sessionData.keyProperty, delimiter, isPostfix);
+			}
+			if (sessionId != null) {
+				sessionIdList.add(sessionId);
+			}
+		}
+		if (sessionIdList.size() == 0) {
+			return null;
+		}
+		return new SessionIdSetPredicate(sessionData.keyType, sessionData.keyProperty, delimiter, isPostfix,
+				sessionData.sessionIdPredicate, attributeName, sessionIdList);
+	}
+
+	/**
+	 * Returns the predicate that ORs the per session predicates of the specified
+	 * list in the relevant maps. Note that a large list may build a predicate too
+	 * deep to evaluate.
+	 * 
+	 * @param sessionData           Session data of the primary map
+	 * @param sessionInfoListPerMap Expired primary map keys
+	 * @return null if unable to build the predicate.
+	 */
+	@SuppressWarnings("rawtypes")
+	private Predicate createLegacyPredicate(SessionData sessionData, List<SessionInfo> sessionInfoListPerMap) {
+		Predicate predicate = null;
+		Predicate innerPredicate = null;
+		switch (sessionData.keyType) {
+		case INTERFACE:
+			for (SessionInfo sessionInfo : sessionInfoListPerMap) {
+				if (sessionInfo.key instanceof ISessionId) {
+					String sessionId = ((ISessionId) sessionInfo.key).getSessionId();
+					innerPredicate = Predicates.equal("__key.sessionId", sessionId);
+					if (predicate == null) {
+						predicate = innerPredicate;
+					} else if (innerPredicate != null) {
+						predicate = Predicates.or(predicate, innerPredicate);
+					}
+				}
+			}
+			break;
+
+		case OBJECT:
+			if (sessionData.keyProperty == null) {
+				break;
+			}
+			for (SessionInfo sessionInfo : sessionInfoListPerMap) {
+				try {
+					Object sessionId = sessionData.keyPropertyAccessor.getValue(sessionInfo.key);
+					if (sessionId != null) {
+						innerPredicate = Predicates.equal("__key." + sessionData.keyProperty,
+								sessionId.toString());
+						if (predicate == null) {
+							predicate = innerPredicate;
+						} else if (innerPredicate != null) {
+							predicate = Predicates.or(predicate, innerPredicate);
+						}
+					}
+				} catch (Exception ex) {
+					logger.warning(logPrefix + "Exception ocurred while processing " + KeyType.OBJECT
+							+ " key type for expiring the relevant maps for "
+							+ sessionInfo.sessionMapName + ".", ex);
+				}
+			}
+			break;
+
+		case PARTITION_AWARE:
+			for (SessionInfo sessionInfo : sessionInfoListPerMap) {
+				if (sessionInfo.key instanceof PartitionAware) {
+					Object partitionKey = ((PartitionAware) sessionInfo.key).getPartitionKey();
+					if (partitionKey != null) {
+						innerPredicate = Predicates.equal("__key.partitionKey",
+								partitionKey.toString());
+						if (predicate == null) {
+							predicate = innerPredicate;
+						} else if (innerPredicate != null) {
+							predicate = Predicates.or(predicate, innerPredicate);
+						}
+					}
+				}
+			}
+			break;
+
+		case CUSTOM:
+			for (SessionInfo sessionInfo : sessionInfoListPerMap) {
+				if (sessionData.sessionIdPredicate != null) {
+					innerPredicate = sessionData.sessionIdPredicate
+							.getPredicate(sessionInfo.sessionMapName, sessionInfo.key);
+					if (predicate == null) {
+						predicate = innerPredicate;
+					} else if (innerPredicate != null) {
+						predicate = Predicates.or(predicate, innerPredicate);
+					}
+				}
+			}
+			break;
+
+		case STRING:
+		default:
+			predicate = SessionMapUtil.createStringKeyPredicate(sessionInfoListPerMap, sessionInfo -> sessionInfo.key,
+					delimiter, isPostfix, isStringKeyRange, isStringKeyAttribute);
+			break;
 		}
+		return predicate;
 	}
 
 	/**
@@ -436,17 +922,24 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 	 */
 	class WorkerThread extends Thread {
 
-		protected BlockingQueue<SessionInfo> queue = null;
+		private final int queueIndex;
+		private final WorkerMetrics workerMetrics;
 		private boolean shouldRun = true;
 		private boolean isTerminated = false;
 
-		public WorkerThread(ThreadGroup threadGroup, String threadName, BlockingQueue<SessionInfo> queue) {
+		// Asynchronous removals of the previous batch(es) and the current batch
+		private final ArrayList<PendingRemoval> pendingRemovalList = new ArrayList<PendingRemoval>();
+		private final ArrayList<PendingRemoval> batchRemovalList = new ArrayList<PendingRemoval>();
+
+		public WorkerThread(ThreadGroup threadGroup, String threadName, int queueIndex) {
 			super(threadGroup, threadName);
-			this.queue = queue;
+			this.queueIndex = queueIndex;
+			this.workerMetrics = metrics.getWorkerMetrics(queueIndex);
 		}
 
-		public WorkerThread(BlockingQueue<SessionInfo> queue) {
-			this.queue = queue;
+		public WorkerThread(int queueIndex) {
+			this.queueIndex = queueIndex;
+			this.workerMetrics = metrics.getWorkerMetrics(queueIndex);
 		}
 
 		@SuppressWarnings("rawtypes")
@@ -454,11 +947,21 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 			while (shouldRun) {
 				String sessionMapName = null;
 				try {
-					SessionInfo firstSessionInfo = queue.take();
+					// Complete the previous batch if there are no more batches to pipeline so
+					// that its failed deletes are retried without waiting for the next batch.
+					if (pendingRemovalList.size() > 0 && dispatcher.size(queueIndex) == 0) {
+						completePendingRemovals();
+					}
 					ArrayList<SessionInfo> sessionInfoList = new ArrayList<SessionInfo>();
-					queue.drainTo(sessionInfoList, queueDrainSize);
-					sessionInfoList.add(firstSessionInfo);
+					if (dispatcher.drain(queueIndex, sessionInfoList, queueDrainSize + 1) == 0) {
+						continue;
+					}
 					updateMBean();
+					long drainNanos = System.nanoTime();
+					workerMetrics.recordBatch(sessionInfoList.size());
+					for (SessionInfo si : sessionInfoList) {
+						workerMetrics.record(Stage.QUEUE_WAIT, drainNanos - si.enqueueNanos);
+					}
 
 					HashMap<String, ArrayList<SessionInfo>> smap = new HashMap<String, ArrayList<SessionInfo>>();
 					for (SessionInfo si : sessionInfoList) {
@@ -469,7 +972,6 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 						}
 						sessionInfoListPerMap.add(si);
 					}
-					Map<String, IMap> allMapsInHazelcast = ClusterUtil.getAllMaps(hazelcastInstance);
 
 					for (Map.Entry<String, ArrayList<SessionInfo>> entry : smap.entrySet()) {
 						sessionMapName = entry.getKey();
@@ -483,148 +985,77 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 						if (sessionData == null || sessionData.relevantMapNames == null || sessionTag.tag == null) {
 							continue;
 						}
+						MapMetrics mapMetrics = metrics.getMapMetrics(sessionMapName);
+						int batchRemovalCount = batchRemovalList.size();
 
 						// Expire or remove all session specific entries from
 						// all the maps.
+						long startNanos = System.nanoTime();
 						Predicate predicate = null;
-						Predicate innerPredicate = null;
-						switch (sessionData.keyType) {
-						case INTERFACE:
-							for (SessionInfo sessionInfo : sessionInfoListPerMap) {
-								if (sessionInfo.key instanceof ISessionId) {
-									String sessionId = ((ISessionId) sessionInfo.key).getSessionId();
-									innerPredicate = Predicates.equal("__key.sessionId", sessionId);
-									if (predicate == null) {
-										predicate = innerPredicate;
-									} else if (innerPredicate != null) {
-										predicate = Predicates.or(predicate, innerPredicate);
-									}
-								}
-							}
-							break;
-
-						case OBJECT:
-							if (sessionData.keyProperty == null) {
-								break;
-							}
-							for (SessionInfo sessionInfo : sessionInfoListPerMap) {
-								try {
-									Method method = sessionInfo.key.getClass().getMethod(sessionData.getterMethodName);
-									Object sessionId = method.invoke(sessionInfo.key);
-									if (sessionId != null) {
-										innerPredicate = Predicates.equal("__key." + sessionData.keyProperty,
-												sessionId.toString());
-										if (predicate == null) {
-											predicate = innerPredicate;
-										} else if (innerPredicate != null) {
-											predicate = Predicates.or(predicate, innerPredicate);
-										}
-									}
-								} catch (Exception ex) {
-									logger.warning(logPrefix + "Exception ocurred while processing " + KeyType.OBJECT
-											+ " key type for expiring the relevant maps for "
-											+ sessionInfo.sessionMapName + ".", ex);
-								}
-							}
-							break;
-
-						case PARTITION_AWARE:
-							for (SessionInfo sessionInfo : sessionInfoListPerMap) {
-								if (sessionInfo.key instanceof PartitionAware) {
-									Object partitionKey = ((PartitionAware) sessionInfo.key).getPartitionKey();
-									if (partitionKey != null) {
-										innerPredicate = Predicates.equal("__key.partitionKey",
-												partitionKey.toString());
-										if (predicate == null) {
-											predicate = innerPredicate;
-										} else if (innerPredicate != null) {
-											predicate = Predicates.or(predicate, innerPredicate);
-										}
-									}
-								}
-							}
-							break;
+						if (isLegacyPredicate == false) {
+							predicate = createSessionIdSetPredicate(sessionData, sessionInfoListPerMap);
+						}
+						if (predicate == null) {
+							predicate = createLegacyPredicate(sessionData, sessionInfoListPerMap);
+						}
+						workerMetrics.record(Stage.PREDICATE_BUILD, System.nanoTime() - startNanos);
 
-						case CUSTOM:
+						// Session IDs for looking up the session index
+						ArrayList<String> sessionIdList = null;
+						if (sessionData.engine == ExpirationEngine.SESSION_INDEX && sessionIndex != null) {
+							sessionIdList = new ArrayList<String>(sessionInfoListPerMap.size());
 							for (SessionInfo sessionInfo : sessionInfoListPerMap) {
-								if (sessionData.sessionIdPredicate != null) {
-									innerPredicate = sessionData.sessionIdPredicate
-											.getPredicate(sessionInfo.sessionMapName, sessionInfo.key);
-									if (predicate == null) {
-										predicate = innerPredicate;
-									} else if (innerPredicate != null) {
-										predicate = Predicates.or(predicate, innerPredicate);
-									}
+								String sessionId = SessionMapUtil.getSessionId(sessionData.keyType, sessionInfo.key,
+										sessionData.keyProperty, delimiter, isPostfix);
+								if (sessionId != null) {
+									sessionIdList.add(sessionId);
 								}
 							}
-							break;
-
-						case STRING:
-						default:
-							if (isPostfix) {
-								for (SessionInfo sessionInfo : sessionInfoListPerMap) {
-									/*
-									 * The session ID is the last part of the key string separated by the delimiter.
-									 * If the key does not contain the delimiter, then the entire key string is used
-									 * as the session ID.
-									 */
-									String keyStr = sessionInfo.key.toString();
-									int index = keyStr.lastIndexOf(delimiter);
-									String sessionIdWithDelimiter;
-									if (index == -1) {
-										sessionIdWithDelimiter = keyStr;
-									} else {
-										sessionIdWithDelimiter = keyStr.substring(index);
-									}
-									if (sessionIdWithDelimiter.length() != 0) {
-										innerPredicate = Predicates.like("__key", "%" + sessionIdWithDelimiter);
-										if (predicate == null) {
-											predicate = innerPredicate;
-										} else if (innerPredicate != null) {
-											predicate = Predicates.or(predicate, innerPredicate);
-										}
-									}
-								}
-							} else {
-								for (SessionInfo sessionInfo : sessionInfoListPerMap) {
-									/*
-									 * The session ID is the firstß part of the key string separated by the delimiter.
-									 * If the key does not contain the delimiter, then the entire key string is used
-									 * as the session ID.
-									 */
-									String keyStr = sessionInfo.key.toString();
-									int index = keyStr.indexOf(delimiter);
-									String sessionIdWithDelimiter;
-									if (index == -1) {
-										sessionIdWithDelimiter = keyStr;
-									} else {
-										sessionIdWithDelimiter = keyStr.substring(0, index + 1);
-									}
-									if (sessionIdWithDelimiter.length() != 0) {
-										innerPredicate = Predicates.like("__key", sessionIdWithDelimiter + "%");
-										if (predicate == null) {
-											predicate = innerPredicate;
-										} else if (innerPredicate != null) {
-											predicate = Predicates.or(predicate, innerPredicate);
-										}
-									}
-								}
-							}
-							break;
 						}
 
 						// Remove entries by applying predicate. If predicate is null then unable to
 						// expire entries in the relevant maps.
 						if (predicate != null) {
-							for (String relevantMapName : sessionData.relevantMapNames) {
-								if (sessionTag.tag.length() > 0) {
-									relevantMapName = relevantMapName.replaceAll(NAME_TAG, sessionTag.tag);
-								}
-								for (Map.Entry<String, IMap> entry2 : allMapsInHazelcast.entrySet()) {
-									if (entry2.getKey().matches(relevantMapName)) {
-										IMap map = entry2.getValue();
-										MapUtil.removeMemberAllKeySet(map, predicate);
+							for (IMap map : getRelevantMaps(sessionTag)) {
+								switch (sessionData.engine) {
+								case SESSION_INDEX:
+									// Fall back to the key set if the map has not been indexed yet.
+									if (sessionIdList != null && sessionIndex.isIndexed(map.getName())) {
+										ArrayList<Data> keyList = new ArrayList<Data>();
+										for (String sessionId : sessionIdList) {
+											keyList.addAll(sessionIndex.removeKeys(sessionId, map.getName()));
+										}
+										if (inFlightPermits == null) {
+											// Delete with a single operation per partition
+											long removeStartNanos = System.nanoTime();
+											deleteIndexedKeys(map, keyList);
+											workerMetrics.record(Stage.REMOVE, System.nanoTime() - removeStartNanos);
+											workerMetrics.recordEntries(mapMetrics, keyList.size());
+										} else {
+											deleteAllAsync(map, keyList, mapMetrics);
+										}
+									} else {
+										removeKeySet(map, predicate, mapMetrics);
 									}
+									break;
+								case ENTRY_PROCESSOR:
+									if (inFlightPermits == null) {
+										long removeStartNanos = System.nanoTime();
+										MapUtil.removeMemberAllInPlace(hazelcastInstance, map, predicate);
+										workerMetrics.record(Stage.REMOVE, System.nanoTime() - removeStartNanos);
+									} else {
+										completePendingRemovals();
+										long removeStartNanos = System.nanoTime();
+										batchRemovalList.add(new PendingRemoval(map, predicate, null,
+												MapUtil.removeMemberAllAsync(hazelcastInstance, map, predicate,
+														inFlightPermits),
+												mapMetrics, -1, removeStartNanos));
+									}
+									break;
+								case KEY_SET:
+								default:
+									removeKeySet(map, predicate, mapMetrics);
+									break;
 								}
 							}
 							if (logger != null && logger.isFineEnabled()) {
@@ -633,17 +1064,126 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 								}
 							}
 						}
+						workerMetrics.recordSessions(mapMetrics, sessionInfoListPerMap.size());
+
+						// The lag is recorded when the last asynchronous removal of the sessions
+						// completes.
+						if (batchRemovalList.size() == batchRemovalCount) {
+							recordLag(sessionInfoListPerMap, System.nanoTime());
+						} else {
+							batchRemovalList.get(batchRemovalList.size() - 1).sessionInfoList = sessionInfoListPerMap;
+						}
 					}
 				} catch (Throwable ex) {
 					logger.warning(logPrefix + "Exception occurred while applying predicate to expire relevant maps ["
 							+ sessionMapName + "]", ex);
+				} finally {
+					// The current batch's removals complete while the next batch is queried.
+					pendingRemovalList.addAll(batchRemovalList);
+					batchRemovalList.clear();
 				}
 			}
+			try {
+				completePendingRemovals();
+			} catch (Throwable ex) {
+				logger.warning(logPrefix + "Exception occurred while completing relevant map removals", ex);
+			}
 			isTerminated = true;
-			queue.clear();
+			dispatcher.clear(queueIndex);
 			updateMBean();
 		}
 
+		/**
+		 * Removes the keys found by applying the specified predicate on the local map
+		 * key set. If asynchronous deletes are enabled, then the key set is queried
+		 * before waiting for the previous batch's deletes to complete.
+		 */
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		private void removeKeySet(IMap map, Predicate predicate, MapMetrics mapMetrics) {
+			long startNanos = System.nanoTime();
+			Set keySet = map.localKeySet(predicate);
+			long queryEndNanos = System.nanoTime();
+			workerMetrics.record(Stage.QUERY, queryEndNanos - startNanos);
+			if (inFlightPermits == null) {
+				for (Object key : keySet) {
+					map.delete(key);
+				}
+				workerMetrics.record(Stage.REMOVE, System.nanoTime() - queryEndNanos);
+				workerMetrics.recordEntries(mapMetrics, keySet.size());
+			} else {
+				deleteAllAsync(map, keySet, mapMetrics);
+			}
+		}
+
+		/**
+		 * Deletes the specified keys removed from the session index with a single
+		 * operation per partition. The partitions that follow a failed partition
+		 * are skipped, so upon failure all the keys are retried one at a time. The
+		 * keys that still fail to be deleted are put back into the index.
+		 */
+		@SuppressWarnings("rawtypes")
+		private void deleteIndexedKeys(IMap map, List<Data> keyList) {
+			try {
+				MapUtil.executeOnPartitionKeys(map, keyList, new EntryRemoveProcessor());
+			} catch (RuntimeException ex) {
+				ArrayList<Data> failedKeyList = new ArrayList<Data>();
+				Exception exception = ex;
+				for (Data keyData : keyList) {
+					try {
+						map.delete(keyData);
+					} catch (RuntimeException ex2) {
+						failedKeyList.add(keyData);
+						exception = ex2;
+					}
+				}
+				if (failedKeyList.size() > 0) {
+					sessionIndex.addKeys(map.getName(), failedKeyList);
+					logger.warning(logPrefix + "Unable to delete " + failedKeyList.size() + " of " + keyList.size()
+							+ " indexed keys after retry. The keys are put back into the session index ["
+							+ map.getName() + "]", exception);
+				}
+			}
+		}
+
+		/**
+		 * Completes the previous batch's removals and asynchronously deletes the
+		 * specified keys as part of the current batch.
+		 */
+		@SuppressWarnings("rawtypes")
+		private void deleteAllAsync(IMap map, Collection keys, MapMetrics mapMetrics) {
+			completePendingRemovals();
+			long startNanos = System.nanoTime();
+			batchRemovalList.add(new PendingRemoval(map, null, MapUtil.deleteAllAsync(map, keys, inFlightPermits),
+					null, mapMetrics, keys.size(), startNanos));
+		}
+
+		/**
+		 * Waits for the previous batch's removals to complete and retries the failed
+		 * ones synchronously. The lag of the sessions is recorded when the last of
+		 * their removals completes.
+		 */
+		private void completePendingRemovals() {
+			long completedNanos = 0;
+			for (PendingRemoval pendingRemoval : pendingRemovalList) {
+				completedNanos = Math.max(completedNanos, pendingRemoval.complete(workerMetrics));
+				if (pendingRemoval.sessionInfoList != null) {
+					recordLag(pendingRemoval.sessionInfoList, completedNanos);
+					completedNanos = 0;
+				}
+			}
+			pendingRemovalList.clear();
+		}
+
+		/**
+		 * Records the lag from the expiration events of the specified sessions to the
+		 * specified completion time.
+		 */
+		private void recordLag(List<SessionInfo> sessionInfoList, long completedNanos) {
+			for (SessionInfo sessionInfo : sessionInfoList) {
+				workerMetrics.record(Stage.LAG, completedNanos - sessionInfo.enqueueNanos);
+			}
+		}
+
 		/**
 		 * Returns true if the {@linkplain #terminate()} method is invoked but it is
 		 * still in termination state. It will terminate only when the current session
@@ -673,6 +1213,97 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 		}
 	}
 
+	/**
+	 * {@linkplain PendingRemoval} holds the future of an asynchronous removal from
+	 * a relevant map. Either the failed keys or the failed partition IDs are
+	 * retried once upon completion.
+	 * 
+	 * @author dpark
+	 *
+	 */
+	@SuppressWarnings("rawtypes")
+	class PendingRemoval {
+		PendingRemoval(IMap map, Predicate predicate, CompletableFuture<List<Object>> keyFuture,
+				CompletableFuture<List<Integer>> partitionFuture, MapMetrics mapMetrics, int keyCount,
+				long startNanos) {
+			this.map = map;
+			this.predicate = predicate;
+			this.keyFuture = keyFuture;
+			this.partitionFuture = partitionFuture;
+			this.mapMetrics = mapMetrics;
+			this.keyCount = keyCount;
+			this.startNanos = startNanos;
+			// The completion time is taken by the completing thread so that it excludes
+			// the time the removal waits for the worker to complete it.
+			CompletableFuture<?> future = keyFuture != null ? keyFuture : partitionFuture;
+			future.whenComplete((result, ex) -> completedNanos = System.nanoTime());
+		}
+
+		IMap map;
+		Predicate predicate;
+		CompletableFuture<List<Object>> keyFuture;
+		CompletableFuture<List<Integer>> partitionFuture;
+		MapMetrics mapMetrics;
+		// Number of keys to delete. -1 if unknown.
+		int keyCount;
+		long startNanos;
+		volatile long completedNanos;
+		// Sessions whose lag is recorded upon completion. null if this is not the last
+		// removal of the sessions.
+		List<SessionInfo> sessionInfoList;
+
+		/**
+		 * Waits for the removal to complete, retries the failures and records the
+		 * removal in the specified worker metrics.
+		 * 
+		 * @return Completion time in nanoseconds
+		 */
+		long complete(WorkerMetrics workerMetrics) {
+			int failedCount = 0;
+			if (keyFuture != null) {
+				List<Object> failedKeys = keyFuture.join();
+				if (failedKeys.size() > 0) {
+					Exception exception = null;
+					for (Object key : failedKeys) {
+						try {
+							map.delete(key);
+						} catch (Exception ex) {
+							failedCount++;
+							exception = ex;
+						}
+					}
+					if (failedCount > 0) {
+						logger.warning(logPrefix + "Unable to delete " + failedCount + " of " + failedKeys.size()
+								+ " failed keys after retry [" + map.getName() + "]", exception);
+					}
+					completedNanos = System.nanoTime();
+				}
+			}
+			if (partitionFuture != null) {
+				List<Integer> failedPartitionIds = partitionFuture.join();
+				if (failedPartitionIds.size() > 0) {
+					failedPartitionIds = MapUtil.executeOnMemberEntriesAsync(hazelcastInstance, map,
+							new EntryRemoveProcessor(), predicate, new ArrayList<Integer>(failedPartitionIds),
+							inFlightPermits).join();
+					if (failedPartitionIds.size() > 0) {
+						logger.warning(logPrefix + "Unable to remove entries from partitions " + failedPartitionIds
+								+ " after retry [" + map.getName() + "]");
+					}
+					completedNanos = System.nanoTime();
+				}
+			}
+			if (completedNanos == 0) {
+				// The join may return before the completion callback runs.
+				completedNanos = System.nanoTime();
+			}
+			workerMetrics.record(Stage.REMOVE, completedNanos - startNanos);
+			if (keyCount >= 0) {
+				workerMetrics.recordEntries(mapMetrics, keyCount - failedCount);
+			}
+			return completedNanos;
+		}
+	}
+
 	/**
 	 * {@linkplain SessionInfo} holds session map name and key.
 	 * {@linkplain SessionExpirationService} enqueues {@linkplain SessionInfo}
@@ -689,6 +1320,45 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 
 		String sessionMapName;
 		Object key;
+		// Time of the expiration event. Not part of the equality.
+		long enqueueNanos = System.nanoTime();
+
+		@Override
+		public int hashCode() {
+			return 31 * sessionMapName.hashCode() + key.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj instanceof SessionInfo == false) {
+				return false;
+			}
+			SessionInfo other = (SessionInfo) obj;
+			return sessionMapName.equals(other.sessionMapName) && key.equals(other.key);
+		}
+	}
+
+	/**
+	 * {@linkplain SessionInfoCodec} writes and reads the {@linkplain SessionInfo}
+	 * objects spilled by the SPILL overflow policy.
+	 */
+	class SessionInfoCodec implements SpillCodec<SessionInfo> {
+		@Override
+		public void write(SessionInfo sessionInfo, ObjectDataOutput out) throws IOException {
+			out.writeString(sessionInfo.sessionMapName);
+			out.writeObject(sessionInfo.key);
+			out.writeLong(sessionInfo.enqueueNanos);
+		}
+
+		@Override
+		public SessionInfo read(ObjectDataInput in) throws IOException {
+			SessionInfo sessionInfo = new SessionInfo(in.readString(), in.readObject());
+			sessionInfo.enqueueNanos = in.readLong();
+			return sessionInfo;
+		}
 	}
 
 	/**
@@ -707,9 +1377,11 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 		String taggedPrimaryMapName;
 		String[] relevantMapNames;
 		String keyProperty;
-		String getterMethodName;
+		KeyPropertyAccessor keyPropertyAccessor;
 		ISessionIdPredicate sessionIdPredicate;
 		KeyType keyType = KeyType.STRING;
+		ExpirationEngine engine = ExpirationEngine.KEY_SET;
+		long timeoutMillis;
 	}
 
 	/**
@@ -728,5 +1400,6 @@ public class SessionExpirationService implements SessionExpirationServiceConfigu
 		String sessionMapName;
 		String tag;
 		SessionData sessionData;
+		volatile RelevantMapResolver.RelevantMaps relevantMaps;
 	}
 }
@@ -28,12 +28,118 @@ public interface SessionExpirationServiceConfiguration {
 	 * limitations on lengthy predicates.
 	 */
 	public final static String PROPERTY_EXPIRATION_QUEUE_DRAIN_SIZE = PROPERTY_EXPIRATION_PREFIX  + "queue.drain-size";
+
+	/**
+	 * Worker queue type. Valid values are the {@linkplain QueueType} names.
+	 * Default: LINKED
+	 */
+	public final static String PROPERTY_QUEUE_TYPE = PROPERTY_EXPIRATION_PREFIX + "queue.type";
+
+	/**
+	 * Maximum number of events per worker queue. For LINKED, 0 or less means
+	 * unbounded. For RING_BUFFER, the value is rounded up to the next power of
+	 * two and 0 or less means 65536. Default: 0
+	 */
+	public final static String PROPERTY_QUEUE_CAPACITY = PROPERTY_EXPIRATION_PREFIX + "queue.capacity";
+
+	/**
+	 * Worker queue wait strategy. Valid values are the {@linkplain WaitStrategy}
+	 * names. Default: PARK
+	 */
+	public final static String PROPERTY_QUEUE_WAIT_STRATEGY = PROPERTY_EXPIRATION_PREFIX + "queue.wait-strategy";
+
+	/**
+	 * Worker queue overflow policy. Valid values are the
+	 * {@linkplain OverflowPolicy} names. Default: BLOCK
+	 */
+	public final static String PROPERTY_QUEUE_OVERFLOW_POLICY = PROPERTY_EXPIRATION_PREFIX + "queue.overflow-policy";
+
+	/**
+	 * Worker queue capacity of the services that process expiration events, i.e.,
+	 * SessionExpirationService, SessionExpirationService_Predicate_In and
+	 * SessionExpirationService_SessionMetadata_Delete. Default: queue.capacity
+	 */
+	public final static String PROPERTY_QUEUE_EXPIRATION_CAPACITY = PROPERTY_EXPIRATION_PREFIX + "queue.expiration.capacity";
+
+	/**
+	 * Worker queue overflow policy of the services that process expiration
+	 * events. Default: queue.overflow-policy
+	 */
+	public final static String PROPERTY_QUEUE_EXPIRATION_OVERFLOW_POLICY = PROPERTY_EXPIRATION_PREFIX + "queue.expiration.overflow-policy";
+
+	/**
+	 * Worker queue capacity of the services that process idle timeout resets,
+	 * i.e., SessionExpirationService_Get and
+	 * SessionExpirationService_SessionMetadata_Get. Default: queue.capacity
+	 */
+	public final static String PROPERTY_QUEUE_RESET_CAPACITY = PROPERTY_EXPIRATION_PREFIX + "queue.reset.capacity";
+
+	/**
+	 * Worker queue overflow policy of the services that process idle timeout
+	 * resets. Default: queue.overflow-policy
+	 */
+	public final static String PROPERTY_QUEUE_RESET_OVERFLOW_POLICY = PROPERTY_EXPIRATION_PREFIX + "queue.reset.overflow-policy";
+
+	/**
+	 * Maximum time in milliseconds an event waits on a full queue. BLOCK and
+	 * COALESCE reject the event after the timeout and SPILL spills it. 0 or less
+	 * means BLOCK and COALESCE wait indefinitely and SPILL spills immediately.
+	 * Default: 0
+	 */
+	public final static String PROPERTY_QUEUE_BLOCK_TIMEOUT_MILLIS = PROPERTY_EXPIRATION_PREFIX + "queue.block-timeout-millis";
+
+	/**
+	 * Directory of the overflow files written by the SPILL overflow policy.
+	 * Default: spill
+	 */
+	public final static String PROPERTY_QUEUE_SPILL_DIR = PROPERTY_EXPIRATION_PREFIX + "queue.spill.dir";
+
+	/**
+	 * Maximum size of each overflow file in megabytes. Once reached, the events
+	 * block until the file has been drained. Default: 1024
+	 */
+	public final static String PROPERTY_QUEUE_SPILL_MAX_MB = PROPERTY_EXPIRATION_PREFIX + "queue.spill.max-mb";
+
+	/**
+	 * Fraction of the queue capacity at which the service enters the high
+	 * watermark state. The state is also entered if any events are spilled, and
+	 * is cleared once all queues are below half of the watermark and the overflow
+	 * files are empty. Default: 0.8
+	 */
+	public final static String PROPERTY_QUEUE_HIGH_WATERMARK = PROPERTY_EXPIRATION_PREFIX + "queue.high-watermark";
 	
 	/**
 	 * Property for enabling or disabling session ID postfix for String keys. Default is false.
 	 */
 	public final static String PROPERTY_STRING_KEY_SESSION_POSTFIX_ENABLED = PROPERTY_EXPIRATION_PREFIX +  "string-key.postfix.enabled";
 
+	/**
+	 * Property for enabling or disabling range predicates for session ID prefixed
+	 * String keys. If enabled, each session ID prefix is converted to a range
+	 * predicate that is evaluated with the SORTED index on "__key", if configured,
+	 * instead of a LIKE predicate. Ignored if the session ID postfix is enabled.
+	 * Default is false.
+	 */
+	public final static String PROPERTY_STRING_KEY_RANGE_ENABLED = PROPERTY_EXPIRATION_PREFIX +  "string-key.range.enabled";
+
+	/**
+	 * Property for enabling or disabling session ID attribute predicates for String
+	 * keys. If enabled, the session IDs are matched with an IN predicate on
+	 * "__key.sessionId" which is extracted by {@linkplain SessionIdExtractor}. The
+	 * relevant maps must register the extractor and should index the attribute.
+	 * Applies to both session ID prefix and postfix and takes precedence over
+	 * {@linkplain #PROPERTY_STRING_KEY_RANGE_ENABLED}. Default is false.
+	 */
+	public final static String PROPERTY_STRING_KEY_ATTRIBUTE_ENABLED = PROPERTY_EXPIRATION_PREFIX +  "string-key.attribute.enabled";
+
+	/**
+	 * Property for enabling or disabling the legacy predicates that OR a predicate
+	 * per session. If disabled, {@linkplain SessionExpirationService} matches each
+	 * batch of sessions with a single {@linkplain SessionIdSetPredicate}. Default
+	 * is false.
+	 */
+	public final static String PROPERTY_PREDICATE_LEGACY_ENABLED = PROPERTY_EXPIRATION_PREFIX +  "predicate.legacy.enabled";
+
 	/**
 	 * Delimiter separating the session ID from the key value. The last token is the
 	 * session ID.
@@ -45,6 +151,90 @@ public interface SessionExpirationServiceConfiguration {
 	 */
 	public final static String PROPERTY_EXPIRATION_THREAD_POOL_SIZE = PROPERTY_EXPIRATION_PREFIX +  "thread.pool-size";
 
+	/**
+	 * Worker thread dispatch mode. Valid values are the {@linkplain DispatchMode}
+	 * names. Default: LEAST_LOADED
+	 */
+	public final static String PROPERTY_EXPIRATION_THREAD_DISPATCH = PROPERTY_EXPIRATION_PREFIX +  "thread.dispatch";
+
+	/**
+	 * Minimum queue size that an idle worker thread steals a batch from. Applies to
+	 * the SESSION and PARTITION dispatch modes only. A value less than or equal to 0
+	 * disables work stealing.
+	 */
+	public final static String PROPERTY_EXPIRATION_THREAD_STEAL_THRESHOLD = PROPERTY_EXPIRATION_PREFIX +  "thread.steal.threshold";
+
+	/**
+	 * Maximum number of asynchronous delete operations in flight per
+	 * {@linkplain SessionExpirationService}. If greater than 0, the worker threads
+	 * delete the relevant entries asynchronously and query the next batch while the
+	 * previous batch's deletes are still completing. Failed deletes are retried
+	 * once synchronously. A value less than or equal to 0 deletes the entries
+	 * synchronously. For the session metadata services, it bounds the number of
+	 * member operations in flight, each of which processes the keys of a single
+	 * map owned by a single member. Default: 0
+	 */
+	public final static String PROPERTY_EXPIRATION_ASYNC_MAX_IN_FLIGHT = PROPERTY_EXPIRATION_PREFIX +  "async.max-in-flight";
+
+	/**
+	 * Comma separated relevant map names that are written as IDs by
+	 * CompactSessionMetadata. The clients and the members must list the same map
+	 * names in the same order. The clients read it from the system properties.
+	 */
+	public final static String PROPERTY_METADATA_MAP_NAMES = PROPERTY_EXPIRATION_PREFIX +  "metadata.map-names";
+
+	/**
+	 * Fraction of the primary map's max idle time within which the idle timeout
+	 * of a session is reset at most once by the reset services, i.e.,
+	 * SessionExpirationService_Get and SessionExpirationService_SessionMetadata_Get.
+	 * The events that follow the first reset within the window are coalesced into
+	 * a single trailing reset at the end of the window. The relevant maps must
+	 * not have a shorter max idle time than the primary map. A value less than or
+	 * equal to 0 resets the idle timeout for every event. Default: 0.1
+	 */
+	public final static String PROPERTY_RESET_COALESCE_WINDOW_FRACTION = PROPERTY_EXPIRATION_PREFIX +  "reset.coalesce.window-fraction";
+
+	/**
+	 * Resolution of the member-local session timer in milliseconds. The session
+	 * timer times the primary maps configured with the "timeout-seconds"
+	 * property, e.g., hazelcast.addon.cluster.expiration.session.smki_%TAG%.timeout-seconds.
+	 * Default: 100
+	 */
+	public final static String PROPERTY_TIMER_TICK_MILLIS = PROPERTY_EXPIRATION_PREFIX +  "timer.tick-millis";
+
+	/**
+	 * If true, the session timer honors ISessionTimeout implemented by the primary
+	 * map values. The values are deserialized for each primary map event.
+	 * Default: false
+	 */
+	public final static String PROPERTY_TIMER_VALUE_TIMEOUT_ENABLED = PROPERTY_EXPIRATION_PREFIX +  "timer.value-timeout.enabled";
+
+	/**
+	 * If true, the service metrics are published through the Hazelcast metrics
+	 * system, i.e., Management Center, the "com.hazelcast:type=Metrics" MBeans and
+	 * diagnostics, as dynamic metrics with the "sessionExpiration" prefix. Default:
+	 * true
+	 */
+	public final static String PROPERTY_METRICS_ENABLED = PROPERTY_EXPIRATION_PREFIX +  "metrics.enabled";
+
+	/**
+	 * Directory in which the primary map events received by the expiration
+	 * listeners are captured in memory-mapped journal files for replaying with
+	 * CaptureJournalReplayer. Capture is disabled if undefined. Default: undefined
+	 */
+	public final static String PROPERTY_CAPTURE_DIR = PROPERTY_EXPIRATION_PREFIX +  "capture.dir";
+
+	/**
+	 * Size of each capture journal file in megabytes. Default: 64
+	 */
+	public final static String PROPERTY_CAPTURE_SEGMENT_SIZE_MB = PROPERTY_EXPIRATION_PREFIX +  "capture.segment-size-mb";
+
+	/**
+	 * Maximum number of capture journal files. The events are dropped and counted
+	 * once the last file is full. Default: 16
+	 */
+	public final static String PROPERTY_CAPTURE_MAX_SEGMENTS = PROPERTY_EXPIRATION_PREFIX +  "capture.max-segments";
+
 	public final static String DEFAULT_KEY_DELIMTER = "@";
 
 	public final static String JMX_USE_HAZELCAST_OBJECT_NAME =  PROPERTY_EXPIRATION_PREFIX +  "jmx-use-hazelcast-object-name";
@@ -60,4 +250,52 @@ public interface SessionExpirationServiceConfiguration {
 	 * Default expiration queue drain size.
 	 */
 	public final static int DEFAULT_EXPIRATION_QUEUE_DRAIN_SIZE = 100;
+
+	/**
+	 * Default maximum number of asynchronous delete operations in flight. The
+	 * asynchronous deletes are opt-in, i.e., the entries are deleted synchronously
+	 * unless the property is set to a value greater than 0.
+	 */
+	public final static int DEFAULT_EXPIRATION_ASYNC_MAX_IN_FLIGHT = 0;
+
+	/**
+	 * Default fraction of the max idle time within which the idle timeout is reset
+	 * at most once per session.
+	 */
+	public final static double DEFAULT_RESET_COALESCE_WINDOW_FRACTION = 0.1;
+
+	/**
+	 * Default session timer resolution in milliseconds.
+	 */
+	public final static long DEFAULT_TIMER_TICK_MILLIS = 100;
+
+	/**
+	 * Default work stealing threshold.
+	 */
+	public final static int DEFAULT_EXPIRATION_THREAD_STEAL_THRESHOLD = 200;
+
+	/**
+	 * Default capture journal file size in megabytes.
+	 */
+	public final static int DEFAULT_CAPTURE_SEGMENT_SIZE_MB = 64;
+
+	/**
+	 * Default maximum number of capture journal files.
+	 */
+	public final static int DEFAULT_CAPTURE_MAX_SEGMENTS = 16;
+
+	/**
+	 * Default spill directory.
+	 */
+	public final static String DEFAULT_QUEUE_SPILL_DIR = "spill";
+
+	/**
+	 * Default maximum overflow file size in megabytes.
+	 */
+	public final static int DEFAULT_QUEUE_SPILL_MAX_MB = 1024;
+
+	/**
+	 * Default high watermark as a fraction of the queue capacity.
+	 */
+	public final static double DEFAULT_QUEUE_HIGH_WATERMARK = 0.8;
 }
@@ -101,18 +101,150 @@ import com.hazelcast.core.LifecycleListener;
  * placed in a blocking queue that is drained by a separate consumer thread to
  * process them. The consumer thread drains the queue based on this value and
  * processes the expiration events in a batch at a time to provide better
- * performance. Note that a large drain size will throw stack overflow
- * exceptions for {@linkplain KeyType#STRING} which ends up building lengthy OR
- * predicates with LIKE conditions. Hazelcast appears to have undocumented
- * limitations on lengthy predicates.</td>
+ * performance. {@linkplain SessionExpirationService} matches each batch with a
+ * single {@linkplain SessionIdSetPredicate}. With the legacy predicates, a
+ * large drain size will throw stack overflow exceptions for
+ * {@linkplain KeyType#STRING} which ends up building lengthy OR predicates with
+ * LIKE conditions. Hazelcast appears to have undocumented limitations on
+ * lengthy predicates.</td>
  * <td>100</td>
  * </tr>
  * <tr>
+ * <td>hazelcast.addon.cluster.expiration.queue.type</td>
+ * <td>Worker queue type. LINKED allocates a node per event. RING_BUFFER is a
+ * preallocated bounded lock-free ring buffer. See {@linkplain QueueType}.</td>
+ * <td>LINKED</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.queue.capacity</td>
+ * <td>Maximum number of events per worker queue. For LINKED, 0 or less means
+ * unbounded. For RING_BUFFER, the value is rounded up to the next power of two
+ * and 0 or less means 65536.</td>
+ * <td>0</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.queue.wait-strategy</td>
+ * <td>How worker threads wait on empty RING_BUFFER queues and how producers
+ * wait on full queues. Valid values are PARK, YIELD and BUSY_SPIN. See
+ * {@linkplain WaitStrategy}.</td>
+ * <td>PARK</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.queue.overflow-policy</td>
+ * <td>What happens to an event offered to a full queue. BLOCK blocks the
+ * producer, COALESCE drops duplicates of queued events and otherwise blocks,
+ * REJECT drops the event and counts it, and SPILL writes it to a local
+ * overflow file. See {@linkplain OverflowPolicy}.</td>
+ * <td>BLOCK</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.queue.expiration.capacity</td>
+ * <td>Queue capacity of the services that process expiration events.</td>
+ * <td>queue.capacity</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.queue.expiration.overflow-policy</td>
+ * <td>Overflow policy of the services that process expiration events. SPILL
+ * is recommended.</td>
+ * <td>queue.overflow-policy</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.queue.reset.capacity</td>
+ * <td>Queue capacity of the services that process idle timeout resets.</td>
+ * <td>queue.capacity</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.queue.reset.overflow-policy</td>
+ * <td>Overflow policy of the services that process idle timeout resets.
+ * REJECT is recommended.</td>
+ * <td>queue.overflow-policy</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.queue.block-timeout-millis</td>
+ * <td>Maximum time in msec an event waits on a full queue before BLOCK and
+ * COALESCE reject it and SPILL spills it. 0 or less waits indefinitely or
+ * spills immediately.</td>
+ * <td>0</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.queue.spill.dir</td>
+ * <td>Directory of the SPILL overflow files.</td>
+ * <td>spill</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.queue.spill.max-mb</td>
+ * <td>Maximum size of each overflow file in MB. The events block once it is
+ * reached.</td>
+ * <td>1024</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.queue.high-watermark</td>
+ * <td>Fraction of the queue capacity at which the high watermark state is
+ * entered and logged.</td>
+ * <td>0.8</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.thread.dispatch</td>
+ * <td>Worker thread dispatch mode. LEAST_LOADED dispatches each event to the
+ * worker thread with the smallest queue. SESSION hashes the session ID and
+ * PARTITION uses the partition ID of the primary map key so that the events of
+ * the same session are processed in order by the same worker thread. See
+ * {@linkplain DispatchMode}.</td>
+ * <td>LEAST_LOADED</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.thread.steal.threshold</td>
+ * <td>Minimum queue size that an idle worker thread steals a batch from.
+ * Applies to SESSION and PARTITION only. A value less than or equal to 0
+ * disables work stealing.</td>
+ * <td>200</td>
+ * </tr>
+ * <tr>
  * <td>hazelcast.addon.cluster.expiration.string-key.postfix.enabled</td>
  * <td>Property for enabling or disabling session ID postfix for String keys.</td>
  * <td>false</td>
  * </tr>
  * <tr>
+ * <td>hazelcast.addon.cluster.expiration.string-key.range.enabled</td>
+ * <td>If true, session ID prefixed String keys are matched with
+ * {@linkplain PrefixRangePredicate} which uses the SORTED index on "__key"
+ * instead of LIKE predicates. Ignored if postfix is enabled.</td>
+ * <td>false</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.string-key.attribute.enabled</td>
+ * <td>If true, String keys are matched with an IN predicate on the
+ * "__key.sessionId" attribute extracted by {@linkplain SessionIdExtractor}
+ * instead of LIKE predicates. Applies to both prefix and postfix. Takes
+ * precedence over the range predicate.</td>
+ * <td>false</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.predicate.legacy.enabled</td>
+ * <td>If true, a predicate is ORed per session. If false, each batch is
+ * matched with a single {@linkplain SessionIdSetPredicate} which requires
+ * ExpirationDataSerializableFactory to be registered with the factory ID
+ * 1010.</td>
+ * <td>false</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.async.max-in-flight</td>
+ * <td>Maximum number of asynchronous deletes in flight. If greater than 0, the
+ * next batch is queried while the previous batch's deletes are still
+ * completing. A value less than or equal to 0 deletes synchronously. For the
+ * session metadata services, it bounds the member operations in flight.</td>
+ * <td>0</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.reset.coalesce.window-fraction</td>
+ * <td>Fraction of the primary map's max idle time within which
+ * SessionExpirationService_Get and SessionExpirationService_SessionMetadata_Get
+ * reset the idle timeout of a session at most once. The events within the
+ * window are coalesced into a single trailing reset. A value less than or equal
+ * to 0 resets for every event.</td>
+ * <td>0.1</td>
+ * </tr>
+ * <tr>
  * <td>hazelcast.addon.cluster.expiration.session.</td>
  * <td>Property prefix for specifying a session map and the relevant maps.</td>
  * <td>N/A</td>
@@ -134,7 +266,8 @@ import com.hazelcast.core.LifecycleListener;
  * <tr>
  * <td>hazelcast.addon.cluster.expiration.session.foo%TAG%yong.key.property</td>
  * <td>Key property. The key class’ “get” method that returns the session
- * ID.</td>
+ * ID. Nested properties are separated by “.”, e.g., a.b.sessionId. See
+ * {@linkplain KeyPropertyAccessor}.</td>
  * <td>N/A</td>
  * </tr>
  * <tr>
@@ -143,6 +276,62 @@ import com.hazelcast.core.LifecycleListener;
  * <td>Predicate class name. Applies to the CUSTOM key type only.</td>
  * <td>N/A</td>
  * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.session.foo%TAG%yong.engine</td>
+ * <td>Engine that removes the matching entries from the relevant maps. KEY_SET
+ * builds the local key set and deletes one key at a time. ENTRY_PROCESSOR
+ * applies the predicate and removes the matching entries in place on each
+ * local partition in a single pass. SESSION_INDEX deletes the keys found in
+ * the member-local session index without executing a query. For
+ * {@linkplain SessionExpirationService_Get}, ENTRY_PROCESSOR resets the idle
+ * timeout of the matching keys in place without reading their values. See
+ * {@linkplain ExpirationEngine}.</td>
+ * <td>KEY_SET</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.session.foo%TAG%yong.timeout-seconds</td>
+ * <td>Session timeout in seconds. If set, the primary map's sessions are timed
+ * by the member-local {@linkplain SessionTimer}, which removes the primary
+ * entries and expires the relevant entries when the sessions time out. The
+ * primary map's max-idle-seconds should be removed or kept as a backstop
+ * greater than the timeout.</td>
+ * <td>N/A</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.timer.tick-millis</td>
+ * <td>Resolution of {@linkplain SessionTimer} in milliseconds.</td>
+ * <td>100</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.timer.value-timeout.enabled</td>
+ * <td>If true, {@linkplain SessionTimer} honors the session timeouts of the
+ * primary map values that implement {@linkplain ISessionTimeout}.</td>
+ * <td>false</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.metrics.enabled</td>
+ * <td>If true, the service metrics are published through the Hazelcast metrics
+ * system with the "sessionExpiration" prefix.</td>
+ * <td>true</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.capture.dir</td>
+ * <td>Directory in which the listener events are captured in memory-mapped
+ * journal files for replaying with bin_sh/replay_capture. Capture is disabled
+ * if undefined.</td>
+ * <td>N/A</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.capture.segment-size-mb</td>
+ * <td>Journal file size in MB.</td>
+ * <td>64</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.capture.max-segments</td>
+ * <td>Maximum number of journal files. The events are dropped once the last
+ * file is full.</td>
+ * <td>16</td>
+ * </tr>
  * </table>
  * <p>
  * <b>Notes:</b> %TAG% is a special replacement annotation that makes an exact
@@ -143,6 +143,30 @@ import com.hazelcast.core.LifecycleListener;
  * <td>Predicate class name. Applies to the CUSTOM key type only.</td>
  * <td>N/A</td>
  * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.metrics.enabled</td>
+ * <td>If true, the service metrics are published through the Hazelcast metrics
+ * system with the "sessionExpiration" prefix.</td>
+ * <td>true</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.capture.dir</td>
+ * <td>Directory in which the listener events are captured in memory-mapped
+ * journal files for replaying with bin_sh/replay_capture. Capture is disabled
+ * if undefined.</td>
+ * <td>N/A</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.capture.segment-size-mb</td>
+ * <td>Journal file size in MB.</td>
+ * <td>64</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.capture.max-segments</td>
+ * <td>Maximum number of journal files. The events are dropped once the last
+ * file is full.</td>
+ * <td>16</td>
+ * </tr>
  * </table>
  * <p>
  * <b>Notes:</b> %TAG% is a special replacement annotation that makes an exact
@@ -0,0 +1,56 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.LifecycleEvent;
+import com.hazelcast.core.LifecycleListener;
+
+/**
+ * {@linkplain SessionExpirationServiceInitializer_Predicate_In} initializes and
+ * starts {@linkplain SessionExpirationService_Predicate_In} with the session
+ * properties extracted from the Hazelcast configuration. It takes the same
+ * properties as {@linkplain SessionExpirationServiceInitializer}. The primary
+ * maps must register
+ * {@linkplain SessionExpirationListener_Predicate_In} instead of
+ * {@linkplain SessionExpirationListener}.
+ * <p>
+ * <b>Experimental:</b>
+ * <p>
+ * {@linkplain SessionExpirationService_Predicate_In} is experimental only.
+ * 
+ * @author dpark
+ *
+ */
+public class SessionExpirationServiceInitializer_Predicate_In implements LifecycleListener {
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void stateChanged(LifecycleEvent event) {
+		Properties serviceProperties = new Properties();
+		switch (event.getState()) {
+		case STARTED:
+			Set<HazelcastInstance> set = Hazelcast.getAllHazelcastInstances();
+			for (HazelcastInstance hazelcastInstance : set) {
+				Config config = hazelcastInstance.getConfig();
+
+				for (Map.Entry entry : config.getProperties().entrySet()) {
+					String key = (String) entry.getKey();
+					if (key.startsWith(SessionExpirationServiceConfiguration.PROPERTY_EXPIRATION_PREFIX)) {
+						serviceProperties.put(key, entry.getValue());
+					}
+				}
+			}
+
+			SessionExpirationService_Predicate_In.getExpirationService().initialize(serviceProperties);
+			break;
+
+		default:
+			break;
+		}
+	}
+}
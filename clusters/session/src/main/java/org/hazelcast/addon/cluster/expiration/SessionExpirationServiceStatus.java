@@ -3,6 +3,20 @@ package org.hazelcast.addon.cluster.expiration;
 public class SessionExpirationServiceStatus implements SessionExpirationServiceStatusMBean {
 	
 	private Integer queueSize = 0;
+	private Long queueRejectedCount = 0L;
+	private Long queueCoalescedCount = 0L;
+	private Long queueBlockedCount = 0L;
+	private Long queueSpilledCount = 0L;
+	private Integer queueSpillSize = 0;
+	private Boolean queueHighWatermark = false;
+	private Long queueHighWatermarkCount = 0L;
+	private Long resetSuppressedCount = 0L;
+	private Long resetCoalescedCount = 0L;
+	private Integer sessionIndexSessionCount = 0;
+	private Long sessionIndexEntryCount = 0L;
+	private Long sessionIndexMemorySize = 0L;
+	private Integer timerSessionCount = 0;
+	private Long timerExpiredCount = 0L;
 
 	@Override
 	public Integer getQueueSize() {
@@ -12,4 +26,130 @@ public class SessionExpirationServiceStatus implements SessionExpirationServiceS
 	public void setQueueSize(Integer queueSize) {
 		this.queueSize = queueSize;
 	}
+
+	@Override
+	public Long getQueueRejectedCount() {
+		return queueRejectedCount;
+	}
+
+	public void setQueueRejectedCount(Long queueRejectedCount) {
+		this.queueRejectedCount = queueRejectedCount;
+	}
+
+	@Override
+	public Long getQueueCoalescedCount() {
+		return queueCoalescedCount;
+	}
+
+	public void setQueueCoalescedCount(Long queueCoalescedCount) {
+		this.queueCoalescedCount = queueCoalescedCount;
+	}
+
+	@Override
+	public Long getQueueBlockedCount() {
+		return queueBlockedCount;
+	}
+
+	public void setQueueBlockedCount(Long queueBlockedCount) {
+		this.queueBlockedCount = queueBlockedCount;
+	}
+
+	@Override
+	public Long getQueueSpilledCount() {
+		return queueSpilledCount;
+	}
+
+	public void setQueueSpilledCount(Long queueSpilledCount) {
+		this.queueSpilledCount = queueSpilledCount;
+	}
+
+	@Override
+	public Integer getQueueSpillSize() {
+		return queueSpillSize;
+	}
+
+	public void setQueueSpillSize(Integer queueSpillSize) {
+		this.queueSpillSize = queueSpillSize;
+	}
+
+	@Override
+	public Boolean getQueueHighWatermark() {
+		return queueHighWatermark;
+	}
+
+	public void setQueueHighWatermark(Boolean queueHighWatermark) {
+		this.queueHighWatermark = queueHighWatermark;
+	}
+
+	@Override
+	public Long getQueueHighWatermarkCount() {
+		return queueHighWatermarkCount;
+	}
+
+	public void setQueueHighWatermarkCount(Long queueHighWatermarkCount) {
+		this.queueHighWatermarkCount = queueHighWatermarkCount;
+	}
+
+	@Override
+	public Long getResetSuppressedCount() {
+		return resetSuppressedCount;
+	}
+
+	public void setResetSuppressedCount(Long resetSuppressedCount) {
+		this.resetSuppressedCount = resetSuppressedCount;
+	}
+
+	@Override
+	public Long getResetCoalescedCount() {
+		return resetCoalescedCount;
+	}
+
+	public void setResetCoalescedCount(Long resetCoalescedCount) {
+		this.resetCoalescedCount = resetCoalescedCount;
+	}
+
+	@Override
+	public Integer getSessionIndexSessionCount() {
+		return sessionIndexSessionCount;
+	}
+
+	public void setSessionIndexSessionCount(Integer sessionIndexSessionCount) {
+		this.sessionIndexSessionCount = sessionIndexSessionCount;
+	}
+
+	@Override
+	public Long getSessionIndexEntryCount() {
+		return sessionIndexEntryCount;
+	}
+
+	public void setSessionIndexEntryCount(Long sessionIndexEntryCount) {
+		this.sessionIndexEntryCount = sessionIndexEntryCount;
+	}
+
+	@Override
+	public Long getSessionIndexMemorySize() {
+		return sessionIndexMemorySize;
+	}
+
+	public void setSessionIndexMemorySize(Long sessionIndexMemorySize) {
+		this.sessionIndexMemorySize = sessionIndexMemorySize;
+	}
+
+	@Override
+	public Integer getTimerSessionCount() {
+		return timerSessionCount;
+	}
+
+	public void setTimerSessionCount(Integer timerSessionCount) {
+		this.timerSessionCount = timerSessionCount;
+	}
+
+	@Override
+	public Long getTimerExpiredCount() {
+		return timerExpiredCount;
+	}
+
+	public void setTimerExpiredCount(Long timerExpiredCount) {
+		this.timerExpiredCount = timerExpiredCount;
+	}
 }
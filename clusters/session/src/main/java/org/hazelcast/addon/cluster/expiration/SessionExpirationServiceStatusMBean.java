@@ -10,4 +10,84 @@ public interface SessionExpirationServiceStatusMBean {
 	 * @return Expiration event queue size.
 	 */
 	Integer getQueueSize();
+
+	/**
+	 * @return Number of events rejected by the REJECT overflow policy.
+	 */
+	Long getQueueRejectedCount();
+
+	/**
+	 * @return Number of duplicate events dropped by the COALESCE overflow policy.
+	 */
+	Long getQueueCoalescedCount();
+
+	/**
+	 * @return Number of events that found the worker queue full and blocked.
+	 */
+	Long getQueueBlockedCount();
+
+	/**
+	 * @return Number of events written to the overflow files by the SPILL
+	 *         overflow policy.
+	 */
+	Long getQueueSpilledCount();
+
+	/**
+	 * @return Number of spilled events that have not been processed yet.
+	 */
+	Integer getQueueSpillSize();
+
+	/**
+	 * @return true if any worker queue has reached the high watermark or has
+	 *         spilled events. A member that stays in this state is not keeping up
+	 *         with the expiration events.
+	 */
+	Boolean getQueueHighWatermark();
+
+	/**
+	 * @return Number of times the worker queues entered the high watermark state.
+	 */
+	Long getQueueHighWatermarkCount();
+
+	/**
+	 * @return Number of idle timeout resets deferred to the trailing reset of
+	 *         their coalescing window.
+	 */
+	Long getResetSuppressedCount();
+
+	/**
+	 * @return Number of idle timeout resets merged into an already deferred
+	 *         trailing reset.
+	 */
+	Long getResetCoalescedCount();
+
+	/**
+	 * @return Number of sessions in the member-local session index. 0 if the
+	 *         session index is not enabled.
+	 */
+	Integer getSessionIndexSessionCount();
+
+	/**
+	 * @return Number of relevant map keys in the member-local session index. 0 if
+	 *         the session index is not enabled.
+	 */
+	Long getSessionIndexEntryCount();
+
+	/**
+	 * @return Estimated heap cost of the member-local session index in bytes. 0 if
+	 *         the session index is not enabled.
+	 */
+	Long getSessionIndexMemorySize();
+
+	/**
+	 * @return Number of sessions armed in the member-local session timer. 0 if
+	 *         the session timer is not enabled.
+	 */
+	Integer getTimerSessionCount();
+
+	/**
+	 * @return Number of sessions expired by the member-local session timer. 0 if
+	 *         the session timer is not enabled.
+	 */
+	Long getTimerExpiredCount();
 }
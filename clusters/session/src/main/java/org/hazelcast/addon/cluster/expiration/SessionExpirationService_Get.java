@@ -1,14 +1,13 @@
 package org.hazelcast.addon.cluster.expiration;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanRegistrationException;
@@ -17,13 +16,18 @@ import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
 
-import org.hazelcast.addon.cluster.ClusterUtil;
 import org.hazelcast.addon.cluster.MapUtil;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.MapMetrics;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.Stage;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.WorkerMetrics;
 
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.metrics.ProbeUnit;
 import com.hazelcast.logging.ILogger;
 import com.hazelcast.map.IMap;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.partition.PartitionAware;
 import com.hazelcast.query.Predicate;
 import com.hazelcast.query.Predicates;
@@ -44,13 +48,25 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 
 	private ThreadGroup workerThreadGroup;
 	private WorkerThread workerThreads[];
-	private LinkedBlockingQueue<SessionInfo> workerQueues[];
+	private WorkerDispatcher<SessionInfo> dispatcher;
 	private HazelcastInstance hazelcastInstance;
+	private RelevantMapResolver relevantMapResolver;
 
 	private String tag;
 	private String logPrefix;
 	private boolean isJmxEnabled;
 	private SessionExpirationServiceStatus status;
+
+	// Publishes the metrics through the Hazelcast metrics system. null if disabled.
+	private ExpirationMetricsProvider metricsProvider;
+
+	// Per stage latencies and counters. The get (or touch) of the relevant entries
+	// includes the query and is recorded as the remove stage. There is no lag
+	// since the resets are synchronous.
+	private ExpirationMetrics metrics;
+
+	// Captures the listener events for replaying. null if disabled.
+	private CaptureJournal captureJournal;
 	private boolean isJmxUseHazelcastObjectName;
 
 	// delimiter is used for STRING key type only
@@ -59,12 +75,33 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 	// worker thread pool size
 	private int threadPoolSize = DEFAULT_EXPIRATION_THREAD_POOL_SIZE;
 
+	// worker thread dispatch mode
+	private DispatchMode dispatchMode = DispatchMode.LEAST_LOADED;
+
+	// minimum queue size to steal from
+	private int stealThreshold = DEFAULT_EXPIRATION_THREAD_STEAL_THRESHOLD;
+
+	// worker queue type, capacity, wait strategy and overflow policy
+	private WorkerQueueConfig queueConfig = new WorkerQueueConfig();
+
 	// queue drain size
 	private int queueDrainSize = DEFAULT_EXPIRATION_QUEUE_DRAIN_SIZE;
 
 	// Session ID as prefix or postfix. Default: prefix (for performance)
 	private boolean isPostfix = false;
 
+	// Session ID prefix as a range over a SORTED __key index instead of LIKE
+	private boolean isStringKeyRange = false;
+
+	// Use the session ID attribute extracted by SessionIdExtractor for STRING keys
+	private boolean isStringKeyAttribute = false;
+
+	// Fraction of the max idle time within which a session is reset at most once
+	private double resetWindowFraction = DEFAULT_RESET_COALESCE_WINDOW_FRACTION;
+
+	// null if resetWindowFraction <= 0
+	private ResetCoalescer<SessionInfo, SessionInfo> resetCoalescer;
+
 	// tagMap contains <tagged primary map name, SessionData> entries
 	private HashMap<String, SessionData> tagMap = new HashMap<String, SessionData>(10);
 
@@ -127,11 +164,7 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 				// key.property
 				sessionData.keyProperty = properties
 						.getProperty(PROPERTY_SESSION_PREFIX + taggedPrimaryMapName + ".key.property");
-				if (sessionData.keyProperty != null && sessionData.keyProperty.length() > 0) {
-					// Change the first letter to upper case for constructing the get method.
-					sessionData.getterMethodName = "get" + sessionData.keyProperty.substring(0, 1).toUpperCase()
-							+ sessionData.keyProperty.substring(1);
-				}
+				sessionData.keyPropertyAccessor = KeyPropertyAccessor.getAccessor(sessionData.keyProperty);
 
 				// key.type
 				String keyTypeStr = properties
@@ -148,6 +181,28 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 						sessionData.keyType = KeyType.STRING;
 					}
 				}
+				// engine
+				String engineStr = properties.getProperty(PROPERTY_SESSION_PREFIX + taggedPrimaryMapName + ".engine");
+				if (engineStr != null) {
+					try {
+						// engine is case-insensitive (change to upper case)
+						sessionData.engine = ExpirationEngine.valueOf(engineStr.toUpperCase());
+					} catch (Exception ex) {
+						if (logger != null) {
+							logger.warning(logPrefix + taggedPrimaryMapName + ".engine - Invalid engine [" + engineStr
+									+ "]. Defaulting to " + ExpirationEngine.KEY_SET);
+						}
+						sessionData.engine = ExpirationEngine.KEY_SET;
+					}
+				}
+				if (sessionData.engine == ExpirationEngine.SESSION_INDEX) {
+					if (logger != null) {
+						logger.warning(logPrefix + taggedPrimaryMapName + ".engine - " + ExpirationEngine.SESSION_INDEX
+								+ " is not supported by " + this.getClass().getSimpleName() + ". Defaulting to "
+								+ ExpirationEngine.KEY_SET);
+					}
+					sessionData.engine = ExpirationEngine.KEY_SET;
+				}
 				if (sessionData.keyType == KeyType.CUSTOM) {
 					String sessionIdPredicateClassName = properties
 							.getProperty(PROPERTY_SESSION_PREFIX + taggedPrimaryMapName + ".key.predicate");
@@ -191,6 +246,9 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 		}
 		delimiter = properties.getProperty(PROPERTY_KEY_DELIMITER, DEFAULT_KEY_DELIMTER);
 
+		// worker queues
+		queueConfig = new WorkerQueueConfig(properties, true, logger, logPrefix);
+
 		// queueDrainSize
 		String sizeStr = properties.getProperty(PROPERTY_EXPIRATION_QUEUE_DRAIN_SIZE);
 		if (sizeStr != null) {
@@ -205,6 +263,20 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 		String bool = properties.getProperty(PROPERTY_STRING_KEY_SESSION_POSTFIX_ENABLED, "false");
 		isPostfix = bool.equalsIgnoreCase("true");
 
+		bool = properties.getProperty(PROPERTY_STRING_KEY_RANGE_ENABLED, "false");
+		isStringKeyRange = bool.equalsIgnoreCase("true");
+		if (isStringKeyRange && isPostfix) {
+			if (logger != null) {
+				logger.warning(logPrefix + PROPERTY_STRING_KEY_RANGE_ENABLED + " applies to session ID prefix only. "
+						+ "It is ignored since " + PROPERTY_STRING_KEY_SESSION_POSTFIX_ENABLED + "=true.");
+			}
+			isStringKeyRange = false;
+		}
+
+		bool = properties.getProperty(PROPERTY_STRING_KEY_ATTRIBUTE_ENABLED, "false");
+		isStringKeyAttribute = bool.equalsIgnoreCase("true");
+		SessionIdExtractor.configure(delimiter, isPostfix);
+
 		bool = properties.getProperty(JMX_USE_HAZELCAST_OBJECT_NAME, "false");
 		isJmxUseHazelcastObjectName = bool.equalsIgnoreCase("true");
 
@@ -218,24 +290,90 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 						+ threadPoolSizeStr + "]. Using the default value of " + threadPoolSize + " instead.");
 			}
 		}
+		String dispatchStr = properties.getProperty(PROPERTY_EXPIRATION_THREAD_DISPATCH);
+		if (dispatchStr != null) {
+			try {
+				dispatchMode = DispatchMode.valueOf(dispatchStr.trim().toUpperCase());
+			} catch (Exception ex) {
+				logger.warning(logPrefix + "Invalid dispatch mode [" + PROPERTY_EXPIRATION_THREAD_DISPATCH + "="
+						+ dispatchStr + "]. Using the default value of " + dispatchMode + " instead.");
+			}
+		}
+		String stealThresholdStr = properties.getProperty(PROPERTY_EXPIRATION_THREAD_STEAL_THRESHOLD);
+		if (stealThresholdStr != null) {
+			try {
+				stealThreshold = Integer.parseInt(stealThresholdStr);
+			} catch (Exception ex) {
+				logger.warning(logPrefix + ex.getMessage() + "[" + PROPERTY_EXPIRATION_THREAD_STEAL_THRESHOLD + "="
+						+ stealThresholdStr + "]. Using the default value of " + stealThreshold + " instead.");
+			}
+		}
+		String fractionStr = properties.getProperty(PROPERTY_RESET_COALESCE_WINDOW_FRACTION);
+		if (fractionStr != null) {
+			try {
+				resetWindowFraction = Double.parseDouble(fractionStr);
+			} catch (Exception ex) {
+				logger.warning(logPrefix + ex.getMessage() + "[" + PROPERTY_RESET_COALESCE_WINDOW_FRACTION + "="
+						+ fractionStr + "]. Using the default value of " + resetWindowFraction + " instead.");
+			}
+		}
+		if (hazelcastInstance != null) {
+			relevantMapResolver = new RelevantMapResolver(hazelcastInstance);
+		}
 		String threadGroupName = SessionExpirationService.class.getSimpleName();
 		workerThreadGroup = new ThreadGroup(threadGroupName);
 		workerThreadGroup.setDaemon(true);
 		workerThreads = new WorkerThread[threadPoolSize];
-		workerQueues = new LinkedBlockingQueue[threadPoolSize];
+		metrics = new ExpirationMetrics(threadPoolSize, Stage.QUEUE_WAIT, Stage.PREDICATE_BUILD, Stage.REMOVE);
+		dispatcher = new WorkerDispatcher<SessionInfo>(hazelcastInstance, dispatchMode, threadPoolSize, stealThreshold,
+				queueConfig, tag, new SessionInfoCodec(), logger, logPrefix);
 		for (int i = 0; i < threadPoolSize; i++) {
-			workerQueues[i] = new LinkedBlockingQueue<SessionInfo>();
 			WorkerThread workerThread = new WorkerThread(workerThreadGroup, "padogrid." + threadGroupName + "-" + (i + 1) /* thread name */,
-					workerQueues[i]);
+					i);
 			workerThread.start();
 			workerThreads[i] = workerThread;
 		}
+		if (resetWindowFraction > 0) {
+			resetCoalescer = new ResetCoalescer<SessionInfo, SessionInfo>(workerThreadGroup,
+					"padogrid." + threadGroupName + "-coalescer", (coalesceKey, sessionInfo) -> enqueue(sessionInfo));
+		}
 
 		if (logger != null) {
 			logger.info(logPrefix + this.getClass().getCanonicalName() + " started: delimiter=\"" + delimiter + "\""
-					+ ", threadPoolSize=" + threadPoolSize + ", queueDrainSize=" + queueDrainSize + ", isPostfix="
-					+ isPostfix + ", isJmxUseHazelcastObjectName=" + isJmxUseHazelcastObjectName + " ["
-					+ buffer.toString() + "]");
+					+ ", threadPoolSize=" + threadPoolSize + ", dispatchMode=" + dispatchMode + ", stealThreshold="
+					+ stealThreshold + ", queue=" + queueConfig + ", queueDrainSize=" + queueDrainSize + ", resetWindowFraction=" + resetWindowFraction + ", isPostfix="
+					+ isPostfix + ", isStringKeyRange=" + isStringKeyRange + ", isStringKeyAttribute="
+					+ isStringKeyAttribute + ", isJmxUseHazelcastObjectName="
+					+ isJmxUseHazelcastObjectName + " [" + buffer.toString() + "]");
+		}
+
+		// Event capture
+		captureJournal = CaptureJournal.create(properties, hazelcastInstance, logger, logPrefix);
+
+		// Hazelcast metrics
+		String metricsEnabled = properties.getProperty(PROPERTY_METRICS_ENABLED, "true");
+		if (metricsEnabled.equalsIgnoreCase("true") && hazelcastInstance != null) {
+			try {
+				metricsProvider = new ExpirationMetricsProvider(this.getClass().getSimpleName(), tag, threadPoolSize);
+				metricsProvider.addDispatcherGauges(dispatcher);
+				if (resetCoalescer != null) {
+					metricsProvider.addGauge("resetSuppressedCount", ProbeUnit.COUNT,
+							() -> resetCoalescer.getSuppressedCount());
+					metricsProvider.addGauge("resetCoalescedCount", ProbeUnit.COUNT,
+							() -> resetCoalescer.getCoalescedCount());
+				}
+				metricsProvider.setMetrics(metrics);
+				if (metricsProvider.register(hazelcastInstance)) {
+					logger.info(logPrefix + ExpirationMetricsProvider.class.getSimpleName() + " registered: prefix="
+							+ ExpirationMetricsProvider.PREFIX + ", tag=" + tag);
+				} else {
+					metricsProvider = null;
+				}
+			} catch (Exception ex) {
+				metricsProvider = null;
+				logger.warning(logPrefix + ExpirationMetricsProvider.class.getSimpleName()
+						+ " registration error: tag=" + tag, ex);
+			}
 		}
 
 		if (hazelcastInstance != null) {
@@ -268,11 +406,15 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 					header = "org.hazelcast.addon";
 					type = this.getClass().getSimpleName();
 				}
-				objectName = new ObjectName(header + ":name=SessionExpirationService"
-						+ ",instance=" + instanceName + ",type=" + type + ",tag=" + tag);
+				String name = header + ":name=SessionExpirationService" + ",instance=" + instanceName + ",type="
+						+ type + ",tag=" + tag;
+				objectName = new ObjectName(name);
 				platformMBeanServer.registerMBean(status, objectName);
 				logger.info(logPrefix + SessionExpirationServiceStatusMBean.class.getSimpleName()
 						+ " registered: objectName=" + objectName.toString() + ", tag=" + tag);
+
+				// Metrics MBeans per service, worker and primary map
+				ExpirationMetricsMBean.registerAll(platformMBeanServer, name, metrics, logger, logPrefix);
 			} catch (MalformedObjectNameException | InstanceAlreadyExistsException | MBeanRegistrationException
 					| NotCompliantMBeanException ex) {
 				logger.warning(logPrefix + SessionExpirationServiceStatusMBean.class.getSimpleName()
@@ -325,17 +467,62 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 	}
 	
 	/**
-	 * Returns the array index of the worker thread that has the smallest queue.
+	 * Returns the key that determines the worker thread for the specified primary
+	 * map key. For {@linkplain DispatchMode#SESSION}, it is the session ID if it
+	 * can be extracted from the key. Otherwise, it is the key itself.
+	 */
+	private Object getDispatchKey(SessionTag sessionTag, Object key) {
+		if (dispatchMode == DispatchMode.SESSION && sessionTag.sessionData != null) {
+			SessionData sessionData = sessionTag.sessionData;
+			String sessionId = SessionMapUtil.getSessionId(sessionData.keyType, key, sessionData.keyProperty,
+					delimiter, isPostfix);
+			if (sessionId != null) {
+				return sessionId;
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Returns the coalescing window of the specified session tag in nanoseconds.
+	 * It is the configured fraction of the primary map's max idle time, which is
+	 * determined upon the first event. Returns 0 if the map has no max idle time.
 	 */
-	private int getMinWorkerQueueIndex() {
-		int minIndex = 0;
-		LinkedBlockingQueue<SessionInfo> minQueue = workerQueues[minIndex];
-		for (int i = 1; i < workerQueues.length; i++) {
-			if (minQueue.size() > workerQueues[i].size()) {
-				minIndex = i;
+	private long getResetWindowNanos(SessionTag sessionTag) {
+		long windowNanos = sessionTag.resetWindowNanos;
+		if (windowNanos < 0) {
+			windowNanos = 0;
+			if (hazelcastInstance != null) {
+				int maxIdleSeconds = hazelcastInstance.getConfig().findMapConfig(sessionTag.sessionMapName)
+						.getMaxIdleSeconds();
+				windowNanos = (long) (TimeUnit.SECONDS.toNanos(maxIdleSeconds) * resetWindowFraction);
 			}
+			sessionTag.resetWindowNanos = windowNanos;
 		}
-		return minIndex;
+		return windowNanos;
+	}
+
+	/**
+	 * Returns the relevant maps of the specified session tag. The maps are resolved
+	 * once per session tag and kept up to date by {@linkplain RelevantMapResolver}.
+	 */
+	@SuppressWarnings("rawtypes")
+	private IMap[] getRelevantMaps(SessionTag sessionTag) {
+		RelevantMapResolver.RelevantMaps relevantMaps = sessionTag.relevantMaps;
+		if (relevantMaps == null) {
+			relevantMaps = relevantMapResolver.getRelevantMaps(sessionTag.sessionData.relevantMapNames,
+					sessionTag.tag);
+			sessionTag.relevantMaps = relevantMaps;
+		}
+		return relevantMaps.getMaps();
+	}
+
+	/**
+	 * Returns the capture journal of the listener events, or null if capture is
+	 * disabled.
+	 */
+	public CaptureJournal getCaptureJournal() {
+		return captureJournal;
 	}
 
 	/**
@@ -356,20 +543,51 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 		if (key == null) {
 			return;
 		}
-//		int index = Math.abs(key.hashCode()) % workerThreads.length;
-		int index = getMinWorkerQueueIndex();
-		if (workerThreads[index].isAlive() == false) {
+		SessionTag sessionTag = getSessionTag(sessionMapName);
+		if (sessionTag == null) {
 			return;
 		}
+		metrics.recordEvent(sessionMapName);
+		SessionInfo sessionInfo = new SessionInfo(sessionMapName, key);
+		long windowNanos = resetCoalescer == null ? 0 : getResetWindowNanos(sessionTag);
+		if (windowNanos > 0) {
+			// Coalesce per session ID
+			Object sessionId = null;
+			if (sessionTag.sessionData != null) {
+				SessionData sessionData = sessionTag.sessionData;
+				sessionId = SessionMapUtil.getSessionId(sessionData.keyType, key, sessionData.keyProperty, delimiter,
+						isPostfix);
+			}
+			SessionInfo coalesceKey = sessionId == null ? sessionInfo : new SessionInfo(sessionMapName, sessionId);
+			resetCoalescer.offer(coalesceKey, sessionInfo, windowNanos);
+			updateMBean();
+		} else {
+			enqueue(sessionInfo);
+		}
+	}
 
-		SessionTag sessionTag = getSessionTag(sessionMapName);
-		if (sessionTag == null) {
+	/**
+	 * Enqueues the specified session info in its worker queue.
+	 */
+	private void enqueue(SessionInfo sessionInfo) {
+		SessionTag sessionTag = getSessionTag(sessionInfo.sessionMapName);
+		int index = dispatcher.getQueueIndex(getDispatchKey(sessionTag, sessionInfo.key));
+		if (workerThreads[index].isAlive() == false) {
 			return;
 		}
-		workerQueues[index].offer(new SessionInfo(sessionMapName, key));
+		sessionInfo.enqueueNanos = System.nanoTime();
+		dispatcher.offer(index, sessionInfo);
 		updateMBean();
 	}
 
+	/**
+	 * Returns the per stage latencies and counters. They are recorded whether or
+	 * not JMX is enabled.
+	 */
+	public ExpirationMetrics getMetrics() {
+		return metrics;
+	}
+
 	/**
 	 * Terminates the service thread. Note that it will not terminate if the
 	 * underlying expiration event queue is empty. It will block until queue has at
@@ -379,6 +597,16 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 		for (int i = 0; i < workerThreads.length; i++) {
 			workerThreads[i].terminate();
 		}
+		dispatcher.close();
+		if (metricsProvider != null) {
+			metricsProvider.deregister();
+		}
+		if (captureJournal != null) {
+			captureJournal.close();
+		}
+		if (resetCoalescer != null) {
+			resetCoalescer.terminate();
+		}
 	}
 
 	/**
@@ -387,12 +615,7 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 	 * @return
 	 */
 	public int getQueueSize() {
-		int totalSize = 0;
-		for (int i = 0; i < workerQueues.length; i++) {
-			totalSize += workerQueues[i].size();
-
-		}
-		return totalSize;
+		return dispatcher.size();
 	}
 
 	/**
@@ -424,6 +647,17 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 		if (isJmxEnabled) {
 			// Update MBean
 			status.setQueueSize(getQueueSize());
+			status.setQueueRejectedCount(dispatcher.getRejectedCount());
+			status.setQueueCoalescedCount(dispatcher.getCoalescedCount());
+			status.setQueueBlockedCount(dispatcher.getBlockedCount());
+			status.setQueueSpilledCount(dispatcher.getSpilledCount());
+			status.setQueueSpillSize(dispatcher.getSpillSize());
+			status.setQueueHighWatermark(dispatcher.isHighWatermark());
+			status.setQueueHighWatermarkCount(dispatcher.getHighWatermarkCount());
+			if (resetCoalescer != null) {
+				status.setResetSuppressedCount(resetCoalescer.getSuppressedCount());
+				status.setResetCoalescedCount(resetCoalescer.getCoalescedCount());
+			}
 		}
 	}
 
@@ -436,17 +670,20 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 	 */
 	class WorkerThread extends Thread {
 
-		protected BlockingQueue<SessionInfo> queue = null;
+		private final int queueIndex;
+		private final WorkerMetrics workerMetrics;
 		private boolean shouldRun = true;
 		private boolean isTerminated = false;
 
-		public WorkerThread(ThreadGroup threadGroup, String threadName, BlockingQueue<SessionInfo> queue) {
+		public WorkerThread(ThreadGroup threadGroup, String threadName, int queueIndex) {
 			super(threadGroup, threadName);
-			this.queue = queue;
+			this.queueIndex = queueIndex;
+			this.workerMetrics = metrics.getWorkerMetrics(queueIndex);
 		}
 
-		public WorkerThread(BlockingQueue<SessionInfo> queue) {
-			this.queue = queue;
+		public WorkerThread(int queueIndex) {
+			this.queueIndex = queueIndex;
+			this.workerMetrics = metrics.getWorkerMetrics(queueIndex);
 		}
 
 		@SuppressWarnings("rawtypes")
@@ -454,11 +691,16 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 			while (shouldRun) {
 				String sessionMapName = null;
 				try {
-					SessionInfo firstSessionInfo = queue.take();
 					ArrayList<SessionInfo> sessionInfoList = new ArrayList<SessionInfo>();
-					queue.drainTo(sessionInfoList, queueDrainSize);
-					sessionInfoList.add(firstSessionInfo);
+					if (dispatcher.drain(queueIndex, sessionInfoList, queueDrainSize + 1) == 0) {
+						continue;
+					}
 					updateMBean();
+					long drainNanos = System.nanoTime();
+					workerMetrics.recordBatch(sessionInfoList.size());
+					for (SessionInfo si : sessionInfoList) {
+						workerMetrics.record(Stage.QUEUE_WAIT, drainNanos - si.enqueueNanos);
+					}
 
 					HashMap<String, ArrayList<SessionInfo>> smap = new HashMap<String, ArrayList<SessionInfo>>();
 					for (SessionInfo si : sessionInfoList) {
@@ -469,7 +711,6 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 						}
 						sessionInfoListPerMap.add(si);
 					}
-					Map<String, IMap> allMapsInHazelcast = ClusterUtil.getAllMaps(hazelcastInstance);
 
 					for (Map.Entry<String, ArrayList<SessionInfo>> entry : smap.entrySet()) {
 						sessionMapName = entry.getKey();
@@ -483,9 +724,11 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 						if (sessionData == null || sessionData.relevantMapNames == null || sessionTag.tag == null) {
 							continue;
 						}
+						MapMetrics mapMetrics = metrics.getMapMetrics(sessionMapName);
 
 						// Expire or remove all session specific entries from
 						// all the maps.
+						long startNanos = System.nanoTime();
 						Predicate predicate = null;
 						Predicate innerPredicate = null;
 						switch (sessionData.keyType) {
@@ -509,8 +752,7 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 							}
 							for (SessionInfo sessionInfo : sessionInfoListPerMap) {
 								try {
-									Method method = sessionInfo.key.getClass().getMethod(sessionData.getterMethodName);
-									Object sessionId = method.invoke(sessionInfo.key);
+									Object sessionId = sessionData.keyPropertyAccessor.getValue(sessionInfo.key);
 									if (sessionId != null) {
 										innerPredicate = Predicates.equal("__key." + sessionData.keyProperty,
 												sessionId.toString());
@@ -561,71 +803,23 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 
 						case STRING:
 						default:
-							if (isPostfix) {
-								for (SessionInfo sessionInfo : sessionInfoListPerMap) {
-									/*
-									 * The session ID is the last part of the key string separated by the delimiter.
-									 * If the key does not contain the delimiter, then the entire key string is used
-									 * as the session ID.
-									 */
-									String keyStr = sessionInfo.key.toString();
-									int index = keyStr.lastIndexOf(delimiter);
-									String sessionIdWithDelimiter;
-									if (index == -1) {
-										sessionIdWithDelimiter = keyStr;
-									} else {
-										sessionIdWithDelimiter = keyStr.substring(index);
-									}
-									if (sessionIdWithDelimiter.length() != 0) {
-										innerPredicate = Predicates.like("__key", "%" + sessionIdWithDelimiter);
-										if (predicate == null) {
-											predicate = innerPredicate;
-										} else if (innerPredicate != null) {
-											predicate = Predicates.or(predicate, innerPredicate);
-										}
-									}
-								}
-							} else {
-								for (SessionInfo sessionInfo : sessionInfoListPerMap) {
-									/*
-									 * The session ID is the firstß part of the key string separated by the delimiter.
-									 * If the key does not contain the delimiter, then the entire key string is used
-									 * as the session ID.
-									 */
-									String keyStr = sessionInfo.key.toString();
-									int index = keyStr.indexOf(delimiter);
-									String sessionIdWithDelimiter;
-									if (index == -1) {
-										sessionIdWithDelimiter = keyStr;
-									} else {
-										sessionIdWithDelimiter = keyStr.substring(0, index + 1);
-									}
-									if (sessionIdWithDelimiter.length() != 0) {
-										innerPredicate = Predicates.like("__key", sessionIdWithDelimiter + "%");
-										if (predicate == null) {
-											predicate = innerPredicate;
-										} else if (innerPredicate != null) {
-											predicate = Predicates.or(predicate, innerPredicate);
-										}
-									}
-								}
-							}
+							predicate = SessionMapUtil.createStringKeyPredicate(sessionInfoListPerMap, sessionInfo -> sessionInfo.key,
+									delimiter, isPostfix, isStringKeyRange, isStringKeyAttribute);
 							break;
 						}
+						workerMetrics.record(Stage.PREDICATE_BUILD, System.nanoTime() - startNanos);
 
 						// Remove entries by applying predicate. If predicate is null then unable to
 						// expire entries in the relevant maps.
 						if (predicate != null) {
-							for (String relevantMapName : sessionData.relevantMapNames) {
-								if (sessionTag.tag.length() > 0) {
-									relevantMapName = relevantMapName.replaceAll(NAME_TAG, sessionTag.tag);
-								}
-								for (Map.Entry<String, IMap> entry2 : allMapsInHazelcast.entrySet()) {
-									if (entry2.getKey().matches(relevantMapName)) {
-										IMap map = entry2.getValue();
-										MapUtil.readMemberAllKeySet(map, predicate);
-									}
+							for (IMap map : getRelevantMaps(sessionTag)) {
+								long removeStartNanos = System.nanoTime();
+								if (sessionData.engine == ExpirationEngine.ENTRY_PROCESSOR) {
+									MapUtil.touchMemberAllKeySet(map, predicate);
+								} else {
+									MapUtil.readMemberAllKeySet(map, predicate);
 								}
+								workerMetrics.record(Stage.REMOVE, System.nanoTime() - removeStartNanos);
 							}
 							if (logger != null && logger.isFineEnabled()) {
 								for (SessionInfo sessionInfo : sessionInfoList) {
@@ -633,6 +827,7 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 								}
 							}
 						}
+						workerMetrics.recordSessions(mapMetrics, sessionInfoListPerMap.size());
 					}
 				} catch (Throwable ex) {
 					logger.warning(logPrefix + "Exception occurred while applying predicate to expire relevant maps ["
@@ -640,7 +835,7 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 				}
 			}
 			isTerminated = true;
-			queue.clear();
+			dispatcher.clear(queueIndex);
 			updateMBean();
 		}
 
@@ -689,6 +884,45 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 
 		String sessionMapName;
 		Object key;
+		// Time of the enqueue, i.e., after coalescing. Not part of the equality.
+		long enqueueNanos = System.nanoTime();
+
+		@Override
+		public int hashCode() {
+			return 31 * sessionMapName.hashCode() + key.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj instanceof SessionInfo == false) {
+				return false;
+			}
+			SessionInfo other = (SessionInfo) obj;
+			return sessionMapName.equals(other.sessionMapName) && key.equals(other.key);
+		}
+	}
+
+	/**
+	 * {@linkplain SessionInfoCodec} writes and reads the {@linkplain SessionInfo}
+	 * objects spilled by the SPILL overflow policy.
+	 */
+	class SessionInfoCodec implements SpillCodec<SessionInfo> {
+		@Override
+		public void write(SessionInfo sessionInfo, ObjectDataOutput out) throws IOException {
+			out.writeString(sessionInfo.sessionMapName);
+			out.writeObject(sessionInfo.key);
+			out.writeLong(sessionInfo.enqueueNanos);
+		}
+
+		@Override
+		public SessionInfo read(ObjectDataInput in) throws IOException {
+			SessionInfo sessionInfo = new SessionInfo(in.readString(), in.readObject());
+			sessionInfo.enqueueNanos = in.readLong();
+			return sessionInfo;
+		}
 	}
 
 	/**
@@ -707,9 +941,10 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 		String taggedPrimaryMapName;
 		String[] relevantMapNames;
 		String keyProperty;
-		String getterMethodName;
+		KeyPropertyAccessor keyPropertyAccessor;
 		ISessionIdPredicate sessionIdPredicate;
 		KeyType keyType = KeyType.STRING;
+		ExpirationEngine engine = ExpirationEngine.KEY_SET;
 	}
 
 	/**
@@ -728,5 +963,7 @@ public class SessionExpirationService_Get implements SessionExpirationServiceCon
 		String sessionMapName;
 		String tag;
 		SessionData sessionData;
+		volatile RelevantMapResolver.RelevantMaps relevantMaps;
+		volatile long resetWindowNanos = -1;
 	}
 }
@@ -1,14 +1,12 @@
 package org.hazelcast.addon.cluster.expiration;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanRegistrationException;
@@ -17,13 +15,17 @@ import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
 
-import org.hazelcast.addon.cluster.ClusterUtil;
 import org.hazelcast.addon.cluster.MapUtil;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.MapMetrics;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.Stage;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.WorkerMetrics;
 
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.logging.ILogger;
 import com.hazelcast.map.IMap;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.partition.PartitionAware;
 import com.hazelcast.query.Predicate;
 import com.hazelcast.query.Predicates;
@@ -48,13 +50,22 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 
 	private ThreadGroup workerThreadGroup;
 	private WorkerThread workerThreads[];
-	private LinkedBlockingQueue<SessionInfo> workerQueues[];
+	private WorkerDispatcher<SessionInfo> dispatcher;
 	private HazelcastInstance hazelcastInstance;
+	private RelevantMapResolver relevantMapResolver;
 
 	private String tag;
 	private String logPrefix;
 	private boolean isJmxEnabled;
 	private SessionExpirationServiceStatus status;
+
+	// Publishes the metrics through the Hazelcast metrics system. null if disabled.
+	private ExpirationMetricsProvider metricsProvider;
+
+	// Per stage latencies and counters. The removal of the relevant entries
+	// includes the query and is recorded as the remove stage. There is no lag
+	// since the removals are synchronous.
+	private ExpirationMetrics metrics;
 	private boolean isJmxUseHazelcastObjectName;
 
 	// delimiter is used for STRING key type only
@@ -63,12 +74,27 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 	// worker thread pool size
 	private int threadPoolSize = DEFAULT_EXPIRATION_THREAD_POOL_SIZE;
 
+	// worker thread dispatch mode
+	private DispatchMode dispatchMode = DispatchMode.LEAST_LOADED;
+
+	// minimum queue size to steal from
+	private int stealThreshold = DEFAULT_EXPIRATION_THREAD_STEAL_THRESHOLD;
+
+	// worker queue type, capacity, wait strategy and overflow policy
+	private WorkerQueueConfig queueConfig = new WorkerQueueConfig();
+
 	// queue drain size
 	private int queueDrainSize = DEFAULT_EXPIRATION_QUEUE_DRAIN_SIZE;
 
 	// Session ID as prefix or postfix. Default: prefix (for performance)
 	private boolean isPostfix = false;
 
+	// Session ID prefix as a range over a SORTED __key index instead of LIKE
+	private boolean isStringKeyRange = false;
+
+	// Use the session ID attribute extracted by SessionIdExtractor for STRING keys
+	private boolean isStringKeyAttribute = false;
+
 	// tagMap contains <tagged primary map name, SessionData> entries
 	private HashMap<String, SessionData> tagMap = new HashMap<String, SessionData>(10);
 
@@ -131,11 +157,7 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 				// key.property
 				sessionData.keyProperty = properties
 						.getProperty(PROPERTY_SESSION_PREFIX + taggedPrimaryMapName + ".key.property");
-				if (sessionData.keyProperty != null && sessionData.keyProperty.length() > 0) {
-					// Change the first letter to upper case for constructing the get method.
-					sessionData.getterMethodName = "get" + sessionData.keyProperty.substring(0, 1).toUpperCase()
-							+ sessionData.keyProperty.substring(1);
-				}
+				sessionData.keyPropertyAccessor = KeyPropertyAccessor.getAccessor(sessionData.keyProperty);
 
 				// key.type
 				String keyTypeStr = properties
@@ -152,6 +174,28 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 						sessionData.keyType = KeyType.STRING;
 					}
 				}
+				// engine
+				String engineStr = properties.getProperty(PROPERTY_SESSION_PREFIX + taggedPrimaryMapName + ".engine");
+				if (engineStr != null) {
+					try {
+						// engine is case-insensitive (change to upper case)
+						sessionData.engine = ExpirationEngine.valueOf(engineStr.toUpperCase());
+					} catch (Exception ex) {
+						if (logger != null) {
+							logger.warning(logPrefix + taggedPrimaryMapName + ".engine - Invalid engine [" + engineStr
+									+ "]. Defaulting to " + ExpirationEngine.KEY_SET);
+						}
+						sessionData.engine = ExpirationEngine.KEY_SET;
+					}
+				}
+				if (sessionData.engine == ExpirationEngine.SESSION_INDEX) {
+					if (logger != null) {
+						logger.warning(logPrefix + taggedPrimaryMapName + ".engine - " + ExpirationEngine.SESSION_INDEX
+								+ " is not supported by " + this.getClass().getSimpleName() + ". Defaulting to "
+								+ ExpirationEngine.KEY_SET);
+					}
+					sessionData.engine = ExpirationEngine.KEY_SET;
+				}
 				if (sessionData.keyType == KeyType.CUSTOM) {
 					String sessionIdPredicateClassName = properties
 							.getProperty(PROPERTY_SESSION_PREFIX + taggedPrimaryMapName + ".key.predicate");
@@ -195,6 +239,9 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 		}
 		delimiter = properties.getProperty(PROPERTY_KEY_DELIMITER, DEFAULT_KEY_DELIMTER);
 
+		// worker queues
+		queueConfig = new WorkerQueueConfig(properties, false, logger, logPrefix);
+
 		// queueDrainSize
 		String sizeStr = properties.getProperty(PROPERTY_EXPIRATION_QUEUE_DRAIN_SIZE);
 		if (sizeStr != null) {
@@ -209,6 +256,20 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 		String bool = properties.getProperty(PROPERTY_STRING_KEY_SESSION_POSTFIX_ENABLED, "false");
 		isPostfix = bool.equalsIgnoreCase("true");
 
+		bool = properties.getProperty(PROPERTY_STRING_KEY_RANGE_ENABLED, "false");
+		isStringKeyRange = bool.equalsIgnoreCase("true");
+		if (isStringKeyRange && isPostfix) {
+			if (logger != null) {
+				logger.warning(logPrefix + PROPERTY_STRING_KEY_RANGE_ENABLED + " applies to session ID prefix only. "
+						+ "It is ignored since " + PROPERTY_STRING_KEY_SESSION_POSTFIX_ENABLED + "=true.");
+			}
+			isStringKeyRange = false;
+		}
+
+		bool = properties.getProperty(PROPERTY_STRING_KEY_ATTRIBUTE_ENABLED, "false");
+		isStringKeyAttribute = bool.equalsIgnoreCase("true");
+		SessionIdExtractor.configure(delimiter, isPostfix);
+
 		bool = properties.getProperty(JMX_USE_HAZELCAST_OBJECT_NAME, "false");
 		isJmxUseHazelcastObjectName = bool.equalsIgnoreCase("true");
 
@@ -222,24 +283,68 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 						+ threadPoolSizeStr + "]. Using the default value of " + threadPoolSize + " instead.");
 			}
 		}
+		String dispatchStr = properties.getProperty(PROPERTY_EXPIRATION_THREAD_DISPATCH);
+		if (dispatchStr != null) {
+			try {
+				dispatchMode = DispatchMode.valueOf(dispatchStr.trim().toUpperCase());
+			} catch (Exception ex) {
+				logger.warning(logPrefix + "Invalid dispatch mode [" + PROPERTY_EXPIRATION_THREAD_DISPATCH + "="
+						+ dispatchStr + "]. Using the default value of " + dispatchMode + " instead.");
+			}
+		}
+		String stealThresholdStr = properties.getProperty(PROPERTY_EXPIRATION_THREAD_STEAL_THRESHOLD);
+		if (stealThresholdStr != null) {
+			try {
+				stealThreshold = Integer.parseInt(stealThresholdStr);
+			} catch (Exception ex) {
+				logger.warning(logPrefix + ex.getMessage() + "[" + PROPERTY_EXPIRATION_THREAD_STEAL_THRESHOLD + "="
+						+ stealThresholdStr + "]. Using the default value of " + stealThreshold + " instead.");
+			}
+		}
+		if (hazelcastInstance != null) {
+			relevantMapResolver = new RelevantMapResolver(hazelcastInstance);
+		}
 		String threadGroupName = SessionExpirationService.class.getSimpleName();
 		workerThreadGroup = new ThreadGroup(threadGroupName);
 		workerThreadGroup.setDaemon(true);
 		workerThreads = new WorkerThread[threadPoolSize];
-		workerQueues = new LinkedBlockingQueue[threadPoolSize];
+		metrics = new ExpirationMetrics(threadPoolSize, Stage.QUEUE_WAIT, Stage.PREDICATE_BUILD, Stage.REMOVE);
+		dispatcher = new WorkerDispatcher<SessionInfo>(hazelcastInstance, dispatchMode, threadPoolSize, stealThreshold,
+				queueConfig, tag, new SessionInfoCodec(), logger, logPrefix);
 		for (int i = 0; i < threadPoolSize; i++) {
-			workerQueues[i] = new LinkedBlockingQueue<SessionInfo>();
 			WorkerThread workerThread = new WorkerThread(workerThreadGroup, "padogrid." + threadGroupName + "-" + (i + 1) /* thread name */,
-					workerQueues[i]);
+					i);
 			workerThread.start();
 			workerThreads[i] = workerThread;
 		}
 
 		if (logger != null) {
 			logger.info(logPrefix + this.getClass().getCanonicalName() + " started: delimiter=\"" + delimiter + "\""
-					+ ", threadPoolSize=" + threadPoolSize + ", queueDrainSize=" + queueDrainSize + ", isPostfix="
-					+ isPostfix + ", isJmxUseHazelcastObjectName=" + isJmxUseHazelcastObjectName + " ["
-					+ buffer.toString() + "]");
+					+ ", threadPoolSize=" + threadPoolSize + ", dispatchMode=" + dispatchMode + ", stealThreshold="
+					+ stealThreshold + ", queue=" + queueConfig + ", queueDrainSize=" + queueDrainSize + ", isPostfix="
+					+ isPostfix + ", isStringKeyRange=" + isStringKeyRange + ", isStringKeyAttribute="
+					+ isStringKeyAttribute + ", isJmxUseHazelcastObjectName="
+					+ isJmxUseHazelcastObjectName + " [" + buffer.toString() + "]");
+		}
+
+		// Hazelcast metrics
+		String metricsEnabled = properties.getProperty(PROPERTY_METRICS_ENABLED, "true");
+		if (metricsEnabled.equalsIgnoreCase("true") && hazelcastInstance != null) {
+			try {
+				metricsProvider = new ExpirationMetricsProvider(this.getClass().getSimpleName(), tag, threadPoolSize);
+				metricsProvider.addDispatcherGauges(dispatcher);
+				metricsProvider.setMetrics(metrics);
+				if (metricsProvider.register(hazelcastInstance)) {
+					logger.info(logPrefix + ExpirationMetricsProvider.class.getSimpleName() + " registered: prefix="
+							+ ExpirationMetricsProvider.PREFIX + ", tag=" + tag);
+				} else {
+					metricsProvider = null;
+				}
+			} catch (Exception ex) {
+				metricsProvider = null;
+				logger.warning(logPrefix + ExpirationMetricsProvider.class.getSimpleName()
+						+ " registration error: tag=" + tag, ex);
+			}
 		}
 
 		if (hazelcastInstance != null) {
@@ -272,11 +377,15 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 					header = "org.hazelcast.addon";
 					type = this.getClass().getSimpleName();
 				}
-				objectName = new ObjectName(header + ":name=SessionExpirationService"
-						+ ",instance=" + instanceName + ",type=" + type + ",tag=" + tag);
+				String name = header + ":name=SessionExpirationService" + ",instance=" + instanceName + ",type="
+						+ type + ",tag=" + tag;
+				objectName = new ObjectName(name);
 				platformMBeanServer.registerMBean(status, objectName);
 				logger.info(logPrefix + SessionExpirationServiceStatusMBean.class.getSimpleName()
 						+ " registered: objectName=" + objectName.toString() + ", tag=" + tag);
+
+				// Metrics MBeans per service, worker and primary map
+				ExpirationMetricsMBean.registerAll(platformMBeanServer, name, metrics, logger, logPrefix);
 			} catch (MalformedObjectNameException | InstanceAlreadyExistsException | MBeanRegistrationException
 					| NotCompliantMBeanException ex) {
 				logger.warning(logPrefix + SessionExpirationServiceStatusMBean.class.getSimpleName()
@@ -329,17 +438,35 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 	}
 	
 	/**
-	 * Returns the array index of the worker thread that has the smallest queue.
+	 * Returns the key that determines the worker thread for the specified primary
+	 * map key. For {@linkplain DispatchMode#SESSION}, it is the session ID if it
+	 * can be extracted from the key. Otherwise, it is the key itself.
 	 */
-	private int getMinWorkerQueueIndex() {
-		int minIndex = 0;
-		LinkedBlockingQueue<SessionInfo> minQueue = workerQueues[minIndex];
-		for (int i = 1; i < workerQueues.length; i++) {
-			if (minQueue.size() > workerQueues[i].size()) {
-				minIndex = i;
+	private Object getDispatchKey(SessionTag sessionTag, Object key) {
+		if (dispatchMode == DispatchMode.SESSION && sessionTag.sessionData != null) {
+			SessionData sessionData = sessionTag.sessionData;
+			String sessionId = SessionMapUtil.getSessionId(sessionData.keyType, key, sessionData.keyProperty,
+					delimiter, isPostfix);
+			if (sessionId != null) {
+				return sessionId;
 			}
 		}
-		return minIndex;
+		return key;
+	}
+
+	/**
+	 * Returns the relevant maps of the specified session tag. The maps are resolved
+	 * once per session tag and kept up to date by {@linkplain RelevantMapResolver}.
+	 */
+	@SuppressWarnings("rawtypes")
+	private IMap[] getRelevantMaps(SessionTag sessionTag) {
+		RelevantMapResolver.RelevantMaps relevantMaps = sessionTag.relevantMaps;
+		if (relevantMaps == null) {
+			relevantMaps = relevantMapResolver.getRelevantMaps(sessionTag.sessionData.relevantMapNames,
+					sessionTag.tag);
+			sessionTag.relevantMaps = relevantMaps;
+		}
+		return relevantMaps.getMaps();
 	}
 
 	/**
@@ -360,20 +487,27 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 		if (key == null) {
 			return;
 		}
-//		int index = Math.abs(key.hashCode()) % workerThreads.length;
-		int index = getMinWorkerQueueIndex();
-		if (workerThreads[index].isAlive() == false) {
-			return;
-		}
-
 		SessionTag sessionTag = getSessionTag(sessionMapName);
 		if (sessionTag == null) {
 			return;
 		}
-		workerQueues[index].offer(new SessionInfo(sessionMapName, key));
+		int index = dispatcher.getQueueIndex(getDispatchKey(sessionTag, key));
+		if (workerThreads[index].isAlive() == false) {
+			return;
+		}
+		dispatcher.offer(index, new SessionInfo(sessionMapName, key));
+		metrics.recordEvent(sessionMapName);
 		updateMBean();
 	}
 
+	/**
+	 * Returns the per stage latencies and counters. They are recorded whether or
+	 * not JMX is enabled.
+	 */
+	public ExpirationMetrics getMetrics() {
+		return metrics;
+	}
+
 	/**
 	 * Terminates the service thread. Note that it will not terminate if the
 	 * underlying expiration event queue is empty. It will block until queue has at
@@ -383,6 +517,10 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 		for (int i = 0; i < workerThreads.length; i++) {
 			workerThreads[i].terminate();
 		}
+		dispatcher.close();
+		if (metricsProvider != null) {
+			metricsProvider.deregister();
+		}
 	}
 
 	/**
@@ -391,12 +529,7 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 	 * @return
 	 */
 	public int getQueueSize() {
-		int totalSize = 0;
-		for (int i = 0; i < workerQueues.length; i++) {
-			totalSize += workerQueues[i].size();
-
-		}
-		return totalSize;
+		return dispatcher.size();
 	}
 
 	/**
@@ -428,6 +561,13 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 		if (isJmxEnabled) {
 			// Update MBean
 			status.setQueueSize(getQueueSize());
+			status.setQueueRejectedCount(dispatcher.getRejectedCount());
+			status.setQueueCoalescedCount(dispatcher.getCoalescedCount());
+			status.setQueueBlockedCount(dispatcher.getBlockedCount());
+			status.setQueueSpilledCount(dispatcher.getSpilledCount());
+			status.setQueueSpillSize(dispatcher.getSpillSize());
+			status.setQueueHighWatermark(dispatcher.isHighWatermark());
+			status.setQueueHighWatermarkCount(dispatcher.getHighWatermarkCount());
 		}
 	}
 
@@ -440,17 +580,20 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 	 */
 	class WorkerThread extends Thread {
 
-		protected BlockingQueue<SessionInfo> queue = null;
+		private final int queueIndex;
+		private final WorkerMetrics workerMetrics;
 		private boolean shouldRun = true;
 		private boolean isTerminated = false;
 
-		public WorkerThread(ThreadGroup threadGroup, String threadName, BlockingQueue<SessionInfo> queue) {
+		public WorkerThread(ThreadGroup threadGroup, String threadName, int queueIndex) {
 			super(threadGroup, threadName);
-			this.queue = queue;
+			this.queueIndex = queueIndex;
+			this.workerMetrics = metrics.getWorkerMetrics(queueIndex);
 		}
 
-		public WorkerThread(BlockingQueue<SessionInfo> queue) {
-			this.queue = queue;
+		public WorkerThread(int queueIndex) {
+			this.queueIndex = queueIndex;
+			this.workerMetrics = metrics.getWorkerMetrics(queueIndex);
 		}
 
 		@SuppressWarnings("rawtypes")
@@ -458,11 +601,16 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 			while (shouldRun) {
 				String sessionMapName = null;
 				try {
-					SessionInfo firstSessionInfo = queue.take();
 					ArrayList<SessionInfo> sessionInfoList = new ArrayList<SessionInfo>();
-					queue.drainTo(sessionInfoList, queueDrainSize);
-					sessionInfoList.add(firstSessionInfo);
+					if (dispatcher.drain(queueIndex, sessionInfoList, queueDrainSize + 1) == 0) {
+						continue;
+					}
 					updateMBean();
+					long drainNanos = System.nanoTime();
+					workerMetrics.recordBatch(sessionInfoList.size());
+					for (SessionInfo si : sessionInfoList) {
+						workerMetrics.record(Stage.QUEUE_WAIT, drainNanos - si.enqueueNanos);
+					}
 
 					HashMap<String, ArrayList<SessionInfo>> smap = new HashMap<String, ArrayList<SessionInfo>>();
 					for (SessionInfo si : sessionInfoList) {
@@ -474,7 +622,6 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 						sessionInfoListPerMap.add(si);
 					}
 
-					Map<String, IMap> allMapsInHazelcast = ClusterUtil.getAllMaps(hazelcastInstance);
 					ArrayList<Comparable> compareableList = new ArrayList<Comparable>();
 					for (Map.Entry<String, ArrayList<SessionInfo>> entry : smap.entrySet()) {
 						sessionMapName = entry.getKey();
@@ -488,9 +635,11 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 						if (sessionData == null || sessionData.relevantMapNames == null || sessionTag.tag == null) {
 							continue;
 						}
+						MapMetrics mapMetrics = metrics.getMapMetrics(sessionMapName);
 
 						// Expire or remove all session specific entries from
 						// all the maps.
+						long startNanos = System.nanoTime();
 						Predicate predicate = null;
 						Predicate innerPredicate = null;
 						switch (sessionData.keyType) {
@@ -513,8 +662,7 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 							}
 							for (SessionInfo sessionInfo : sessionInfoListPerMap) {
 								try {
-									Method method = sessionInfo.key.getClass().getMethod(sessionData.getterMethodName);
-									Object sessionId = method.invoke(sessionInfo.key);
+									Object sessionId = sessionData.keyPropertyAccessor.getValue(sessionInfo.key);
 									if (sessionId != null) {
 										compareableList.add(sessionId.toString());
 									}
@@ -560,72 +708,27 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 
 						case STRING:
 						default:
-							// Use IN for STRING
-							if (isPostfix) {
-								for (SessionInfo sessionInfo : sessionInfoListPerMap) {
-									/*
-									 * The session ID is the last part of the key string separated by the delimiter.
-									 * If the key does not contain the delimiter, then the entire key string is used
-									 * as the session ID.
-									 */
-									String keyStr = sessionInfo.key.toString();
-									int index = keyStr.lastIndexOf(delimiter);
-									String sessionIdWithDelimiter;
-									if (index == -1) {
-										sessionIdWithDelimiter = keyStr;
-									} else {
-										sessionIdWithDelimiter = keyStr.substring(index);
-									}
-									if (sessionIdWithDelimiter.length() != 0) {
-										innerPredicate = Predicates.like("__key", "%" + sessionIdWithDelimiter);
-										if (predicate == null) {
-											predicate = innerPredicate;
-										} else if (innerPredicate != null) {
-											predicate = Predicates.or(predicate, innerPredicate);
-										}
-									}
-								}
-							} else {
-								for (SessionInfo sessionInfo : sessionInfoListPerMap) {
-									/*
-									 * The session ID is the firstß part of the key string separated by the delimiter.
-									 * If the key does not contain the delimiter, then the entire key string is used
-									 * as the session ID.
-									 */
-									String keyStr = sessionInfo.key.toString();
-									int index = keyStr.indexOf(delimiter);
-									String sessionIdWithDelimiter;
-									if (index == -1) {
-										sessionIdWithDelimiter = keyStr;
-									} else {
-										sessionIdWithDelimiter = keyStr.substring(0, index + 1);
-									}
-									if (sessionIdWithDelimiter.length() != 0) {
-										innerPredicate = Predicates.like("__key", sessionIdWithDelimiter + "%");
-										if (predicate == null) {
-											predicate = innerPredicate;
-										} else if (innerPredicate != null) {
-											predicate = Predicates.or(predicate, innerPredicate);
-										}
-									}
-								}
-							}
+							predicate = SessionMapUtil.createStringKeyPredicate(sessionInfoListPerMap, sessionInfo -> sessionInfo.key,
+									delimiter, isPostfix, isStringKeyRange, isStringKeyAttribute);
 							break;
 						}
+						workerMetrics.record(Stage.PREDICATE_BUILD, System.nanoTime() - startNanos);
 
 						// Remove entries by applying predicate. If predicate is null then unable to
 						// expire entries in the relevant maps.
 						if (predicate != null) {
-							for (String relevantMapName : sessionData.relevantMapNames) {
-								if (sessionTag.tag.length() > 0) {
-									relevantMapName = relevantMapName.replaceAll(NAME_TAG, sessionTag.tag);
-								}
-								for (Map.Entry<String, IMap> entry2 : allMapsInHazelcast.entrySet()) {
-									if (entry2.getKey().matches(relevantMapName)) {
-										IMap map = entry2.getValue();
-										MapUtil.removeMemberAllKeySet(map, predicate);
-									}
+							for (IMap map : getRelevantMaps(sessionTag)) {
+								long removeStartNanos = System.nanoTime();
+								switch (sessionData.engine) {
+								case ENTRY_PROCESSOR:
+									MapUtil.removeMemberAllInPlace(hazelcastInstance, map, predicate);
+									break;
+								case KEY_SET:
+								default:
+									MapUtil.removeMemberAllKeySet(map, predicate);
+									break;
 								}
+								workerMetrics.record(Stage.REMOVE, System.nanoTime() - removeStartNanos);
 							}
 							if (logger != null && logger.isFineEnabled()) {
 								for (SessionInfo sessionInfo : sessionInfoList) {
@@ -633,6 +736,7 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 								}
 							}
 						}
+						workerMetrics.recordSessions(mapMetrics, sessionInfoListPerMap.size());
 					}
 				} catch (Throwable ex) {
 					logger.warning(logPrefix + "Exception occurred while applying predicate to expire relevant maps ["
@@ -640,7 +744,7 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 				}
 			}
 			isTerminated = true;
-			queue.clear();
+			dispatcher.clear(queueIndex);
 			updateMBean();
 		}
 
@@ -690,6 +794,45 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 
 		String sessionMapName;
 		Object key;
+		// Time of the expiration event. Not part of the equality.
+		long enqueueNanos = System.nanoTime();
+
+		@Override
+		public int hashCode() {
+			return 31 * sessionMapName.hashCode() + key.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj instanceof SessionInfo == false) {
+				return false;
+			}
+			SessionInfo other = (SessionInfo) obj;
+			return sessionMapName.equals(other.sessionMapName) && key.equals(other.key);
+		}
+	}
+
+	/**
+	 * {@linkplain SessionInfoCodec} writes and reads the {@linkplain SessionInfo}
+	 * objects spilled by the SPILL overflow policy.
+	 */
+	class SessionInfoCodec implements SpillCodec<SessionInfo> {
+		@Override
+		public void write(SessionInfo sessionInfo, ObjectDataOutput out) throws IOException {
+			out.writeString(sessionInfo.sessionMapName);
+			out.writeObject(sessionInfo.key);
+			out.writeLong(sessionInfo.enqueueNanos);
+		}
+
+		@Override
+		public SessionInfo read(ObjectDataInput in) throws IOException {
+			SessionInfo sessionInfo = new SessionInfo(in.readString(), in.readObject());
+			sessionInfo.enqueueNanos = in.readLong();
+			return sessionInfo;
+		}
 	}
 
 	/**
@@ -708,9 +851,10 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 		String taggedPrimaryMapName;
 		String[] relevantMapNames;
 		String keyProperty;
-		String getterMethodName;
+		KeyPropertyAccessor keyPropertyAccessor;
 		ISessionIdPredicate sessionIdPredicate;
 		KeyType keyType = KeyType.STRING;
+		ExpirationEngine engine = ExpirationEngine.KEY_SET;
 	}
 
 	/**
@@ -729,5 +873,6 @@ public class SessionExpirationService_Predicate_In implements SessionExpirationS
 		String sessionMapName;
 		String tag;
 		SessionData sessionData;
+		volatile RelevantMapResolver.RelevantMaps relevantMaps;
 	}
 }
@@ -0,0 +1,87 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import com.hazelcast.query.extractor.ValueCollector;
+import com.hazelcast.query.extractor.ValueExtractor;
+
+/**
+ * {@linkplain SessionIdExtractor} extracts the session ID from
+ * {@linkplain KeyType#STRING} keys as a virtual attribute so that the relevant
+ * maps can index it. The key string is split by the configured key delimiter.
+ * The session ID is the first token or, if the session ID postfix is enabled,
+ * the last token. Keys that implement {@linkplain ISessionId} are also
+ * supported.
+ * <p>
+ * Register the extractor with the attribute name "sessionId" and index the
+ * attribute "__key.sessionId" in each relevant map. For example,
+ *
+ * <pre>
+ * map:
+ *   mkp_*:
+ *     attributes:
+ *       sessionId:
+ *         extractor-class-name: org.hazelcast.addon.cluster.expiration.SessionIdExtractor
+ *     indexes:
+ *       - type: HASH
+ *         attributes:
+ *           - "__key.sessionId"
+ * </pre>
+ *
+ * The delimiter and the postfix setting are configured by the session
+ * expiration service from the <i>key.delimiter</i> and
+ * <i>string-key.postfix.enabled</i> properties during initialization.
+ *
+ * @author dpark
+ *
+ */
+public class SessionIdExtractor implements ValueExtractor<Object, Object> {
+
+	/**
+	 * Attribute name to register the extractor with.
+	 */
+	public final static String ATTRIBUTE_NAME = "sessionId";
+
+	private static volatile String delimiter = SessionExpirationServiceConfiguration.DEFAULT_KEY_DELIMTER;
+	private static volatile boolean isPostfix = false;
+
+	/**
+	 * Configures the key delimiter and the session ID position for all extractor
+	 * instances in this JVM.
+	 *
+	 * @param delimiter Key delimiter. If null or empty, the default delimiter is
+	 *                  used.
+	 * @param isPostfix true if the session ID is the last token of the key
+	 */
+	public static void configure(String delimiter, boolean isPostfix) {
+		if (delimiter == null || delimiter.length() == 0) {
+			delimiter = SessionExpirationServiceConfiguration.DEFAULT_KEY_DELIMTER;
+		}
+		SessionIdExtractor.delimiter = delimiter;
+		SessionIdExtractor.isPostfix = isPostfix;
+	}
+
+	/**
+	 * {@inheritDoc} {@linkplain ValueExtractor} declares the collector as a raw
+	 * type, so it is narrowed to the session ID type here only.
+	 */
+	@Override
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void extract(Object target, Object argument, ValueCollector collector) {
+		String sessionId = getSessionId(target);
+		if (sessionId != null) {
+			((ValueCollector<String>) collector).addObject(sessionId);
+		}
+	}
+
+	/**
+	 * Returns the session ID of the specified key, or null if the key is neither a
+	 * string nor an {@linkplain ISessionId}.
+	 */
+	static String getSessionId(Object target) {
+		if (target instanceof String) {
+			return SessionMapUtil.getSessionId(KeyType.STRING, target, null, delimiter, isPostfix);
+		} else if (target instanceof ISessionId) {
+			return ((ISessionId) target).getSessionId();
+		}
+		return null;
+	}
+}
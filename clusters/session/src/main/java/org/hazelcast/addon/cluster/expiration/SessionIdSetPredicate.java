@@ -0,0 +1,179 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.hazelcast.addon.cluster.expiration.metadata.ExpirationDataSerializableFactory;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+import com.hazelcast.query.impl.Index;
+import com.hazelcast.query.impl.QueryContext;
+import com.hazelcast.query.impl.QueryableEntry;
+import com.hazelcast.query.impl.predicates.IndexAwarePredicate;
+
+/**
+ * {@linkplain SessionIdSetPredicate} matches the entries whose keys belong to
+ * any of the specified session IDs. The session ID is extracted from each key
+ * once in the same way as the primary map key and looked up in a sorted array
+ * of session IDs by binary search. Unlike ORed predicates, the predicate is
+ * flat and its size grows linearly with the number of session IDs, so the
+ * number of sessions per batch is not limited by the predicate nesting depth.
+ * <p>
+ * If the session ID attribute is indexed in the relevant map, e.g.,
+ * "__key.sessionId" for {@linkplain KeyType#INTERFACE}, the predicate is
+ * evaluated as a single index lookup of all the session IDs.
+ * {@linkplain KeyType#CUSTOM} requires {@linkplain ISessionIdPredicate} to
+ * implement {@linkplain ISessionIdPredicate#getSessionId(Object)} and is never
+ * indexed.
+ * <p>
+ * The predicate is registered with
+ * {@linkplain ExpirationDataSerializableFactory}.
+ *
+ * @author dpark
+ *
+ */
+@SuppressWarnings("rawtypes")
+public class SessionIdSetPredicate implements IndexAwarePredicate, IdentifiedDataSerializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private KeyType keyType = KeyType.STRING;
+	private String keyProperty;
+	private String delimiter = SessionExpirationServiceConfiguration.DEFAULT_KEY_DELIMTER;
+	private boolean isPostfix;
+	private String sessionIdPredicateClassName;
+	private String attributeName;
+
+	// Sorted and unique
+	private String[] sessionIds = new String[0];
+
+	private transient ISessionIdPredicate sessionIdPredicate;
+
+	public SessionIdSetPredicate() {
+	}
+
+	/**
+	 * Constructs a predicate that matches the keys of the specified session IDs.
+	 *
+	 * @param keyType            Key type
+	 * @param keyProperty        Key property path that returns the session ID.
+	 *                           Applies to {@linkplain KeyType#OBJECT} only.
+	 * @param delimiter          Key delimiter. Applies to
+	 *                           {@linkplain KeyType#STRING} only.
+	 * @param isPostfix          true if the session ID is the last token of the
+	 *                           key string. Applies to {@linkplain KeyType#STRING}
+	 *                           only.
+	 * @param sessionIdPredicate Custom predicate that extracts the session IDs.
+	 *                           Applies to {@linkplain KeyType#CUSTOM} only.
+	 * @param attributeName      Session ID attribute name used to look up the
+	 *                           index, e.g., "__key.sessionId". If null, the
+	 *                           predicate is never indexed.
+	 * @param sessionIds         Session IDs
+	 */
+	public SessionIdSetPredicate(KeyType keyType, String keyProperty, String delimiter, boolean isPostfix,
+			ISessionIdPredicate sessionIdPredicate, String attributeName, Collection<String> sessionIds) {
+		this.keyType = keyType;
+		this.keyProperty = keyProperty;
+		this.delimiter = delimiter;
+		this.isPostfix = isPostfix;
+		this.sessionIdPredicate = sessionIdPredicate;
+		if (sessionIdPredicate != null) {
+			this.sessionIdPredicateClassName = sessionIdPredicate.getClass().getName();
+		}
+		this.attributeName = attributeName;
+		TreeSet<String> set = new TreeSet<String>(sessionIds);
+		this.sessionIds = set.toArray(new String[set.size()]);
+	}
+
+	/**
+	 * Returns the number of session IDs.
+	 */
+	public int getSessionIdCount() {
+		return sessionIds.length;
+	}
+
+	private ISessionIdPredicate getSessionIdPredicate() {
+		if (sessionIdPredicate == null && sessionIdPredicateClassName != null) {
+			try {
+				Class<?> clazz = Class.forName(sessionIdPredicateClassName);
+				sessionIdPredicate = (ISessionIdPredicate) clazz.newInstance();
+			} catch (Exception ex) {
+				throw new IllegalStateException(
+						"Unable to create the session ID predicate [" + sessionIdPredicateClassName + "]", ex);
+			}
+		}
+		return sessionIdPredicate;
+	}
+
+	@Override
+	public boolean apply(Map.Entry mapEntry) {
+		Object key = mapEntry.getKey();
+		String sessionId;
+		if (keyType == KeyType.CUSTOM) {
+			ISessionIdPredicate predicate = getSessionIdPredicate();
+			sessionId = predicate == null ? null : predicate.getSessionId(key);
+		} else {
+			sessionId = SessionMapUtil.getSessionId(keyType, key, keyProperty, delimiter, isPostfix);
+		}
+		return sessionId != null && Arrays.binarySearch(sessionIds, sessionId) >= 0;
+	}
+
+	@Override
+	public boolean isIndexed(QueryContext queryContext) {
+		return attributeName != null
+				&& queryContext.matchIndex(attributeName, QueryContext.IndexMatchHint.PREFER_UNORDERED) != null;
+	}
+
+	@Override
+	public Set<QueryableEntry> filter(QueryContext queryContext) {
+		Index index = queryContext.matchIndex(attributeName, QueryContext.IndexMatchHint.PREFER_UNORDERED);
+		if (index == null) {
+			return null;
+		}
+		return index.getRecords(Arrays.copyOf(sessionIds, sessionIds.length, Comparable[].class));
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeString(keyType.name());
+		out.writeString(keyProperty);
+		out.writeString(delimiter);
+		out.writeBoolean(isPostfix);
+		out.writeString(sessionIdPredicateClassName);
+		out.writeString(attributeName);
+		out.writeStringArray(sessionIds);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		keyType = KeyType.valueOf(in.readString());
+		keyProperty = in.readString();
+		delimiter = in.readString();
+		isPostfix = in.readBoolean();
+		sessionIdPredicateClassName = in.readString();
+		attributeName = in.readString();
+		sessionIds = in.readStringArray();
+	}
+
+	@Override
+	public int getFactoryId() {
+		return ExpirationDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getClassId() {
+		return ExpirationDataSerializableFactory.SESSION_ID_SET_PREDICATE;
+	}
+
+	@Override
+	public String toString() {
+		return "SessionIdSetPredicate[keyType=" + keyType + ", attributeName=" + attributeName + ", sessionIdCount="
+				+ sessionIds.length + "]";
+	}
+}
@@ -0,0 +1,619 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.hazelcast.addon.cluster.MapUtil;
+
+import com.hazelcast.cluster.Member;
+import com.hazelcast.core.DistributedObjectEvent;
+import com.hazelcast.core.DistributedObjectListener;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.logging.ILogger;
+import com.hazelcast.map.IMap;
+import com.hazelcast.map.impl.DataAwareEntryEvent;
+import com.hazelcast.map.impl.MapService;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryExpiredListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.partition.MigrationListener;
+import com.hazelcast.partition.MigrationState;
+import com.hazelcast.partition.Partition;
+import com.hazelcast.partition.PartitionService;
+import com.hazelcast.partition.ReplicaMigrationEvent;
+import com.hazelcast.query.Predicates;
+import com.hazelcast.spi.impl.SerializationServiceSupport;
+
+/**
+ * {@linkplain SessionIndex} is a member-local index that maps session IDs to
+ * the relevant map keys owned by the local member. It is maintained
+ * incrementally by local entry listeners registered on the indexed maps and it
+ * is reconciled with the partitions whose ownership changed whenever a
+ * migration completes. With the index, the relevant entries of an expired
+ * session are deleted directly without executing a query.
+ * <p>
+ * Keys are kept in the serialized form that the maps store, i.e., serialized
+ * with each map's partitioning strategy, so that they are routed to their
+ * partitions as they are. They are stored in flat per-session arrays along
+ * with the dictionary IDs of the maps that they belong to. The index is
+ * kept on the heap rather than off-heap. The open source edition of Hazelcast
+ * has no native memory manager, and the deletes and entry processors take the
+ * keys as {@linkplain Data}, so an off-heap layout would copy every key back
+ * onto the heap for each delete. The heap cost is bounded by the number of
+ * relevant entries owned by the member and is reported by
+ * {@linkplain #getMemorySize()} as an estimate.
+ *
+ * @author dpark
+ *
+ */
+@SuppressWarnings("rawtypes")
+public class SessionIndex {
+
+	// Estimated heap cost of a SessionKeys object, its initial arrays, and its
+	// ConcurrentHashMap node excluding the session ID string.
+	private final static int SESSION_OVERHEAD = 112;
+
+	// Estimated heap cost of a single index entry excluding the key data, i.e.,
+	// the map ID and the key reference.
+	private final static int ENTRY_OVERHEAD = 8;
+
+	// Delay of the reconciliation that follows each migration in case the local
+	// partition table had not been updated yet when the migration finished.
+	private final static long RECONCILE_DELAY_IN_MSEC = 1000;
+
+	private final HazelcastInstance hazelcastInstance;
+	private final SerializationService serializationService;
+	private final ILogger logger;
+	private final String logPrefix;
+
+	// <session ID, SessionKeys>
+	private final ConcurrentHashMap<String, SessionKeys> sessionMap = new ConcurrentHashMap<String, SessionKeys>(
+			1024);
+
+	// Map name dictionary. Map IDs are never reused.
+	private final ConcurrentHashMap<String, Integer> mapIdMap = new ConcurrentHashMap<String, Integer>(16);
+	// <map name, IndexedMap>
+	private final ConcurrentHashMap<String, IndexedMap> indexedMaps = new ConcurrentHashMap<String, IndexedMap>(16);
+
+	// Partitions whose entries are in the index. Accessed by the index thread
+	// only.
+	private final BitSet indexedPartitionIds = new BitSet();
+	private final AtomicBoolean isReconcileScheduled = new AtomicBoolean();
+
+	private final AtomicLong entryCount = new AtomicLong();
+	private final AtomicLong memorySize = new AtomicLong();
+
+	// Single thread for indexing new maps and reconciling migrated partitions.
+	// Keeps the Hazelcast event threads free.
+	private final ScheduledExecutorService indexExecutor;
+	private UUID distributedObjectListenerId;
+	private UUID migrationListenerId;
+
+	/**
+	 * Creates a session index for the specified member.
+	 *
+	 * @param hazelcastInstance Member instance
+	 * @param logger            Logger
+	 * @param logPrefix         Log message prefix
+	 */
+	public SessionIndex(HazelcastInstance hazelcastInstance, ILogger logger, String logPrefix) {
+		this.hazelcastInstance = hazelcastInstance;
+		this.serializationService = ((SerializationServiceSupport) hazelcastInstance).getSerializationService();
+		this.logger = logger;
+		this.logPrefix = logPrefix;
+		this.indexExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "padogrid." + SessionIndex.class.getSimpleName());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts listening on distributed object and migration events. Maps that are
+	 * accepted by the specified map filter are indexed as they are created.
+	 *
+	 * @param mapFilter Returns the session ID extractor for the specified map name
+	 *                  if the map is to be indexed, or null otherwise.
+	 */
+	public void start(final Function<String, Function<Object, String>> mapFilter) {
+		distributedObjectListenerId = hazelcastInstance.addDistributedObjectListener(new DistributedObjectListener() {
+			@Override
+			public void distributedObjectCreated(DistributedObjectEvent event) {
+				if (MapService.SERVICE_NAME.equals(event.getServiceName())) {
+					final String mapName = event.getObjectName().toString();
+					final Function<Object, String> extractor = mapFilter.apply(mapName);
+					if (extractor != null) {
+						indexExecutor.execute(() -> addMap(mapName, extractor));
+					}
+				}
+			}
+
+			@Override
+			public void distributedObjectDestroyed(DistributedObjectEvent event) {
+				if (MapService.SERVICE_NAME.equals(event.getServiceName())) {
+					final String mapName = event.getObjectName().toString();
+					indexExecutor.execute(() -> removeMap(mapName));
+				}
+			}
+		});
+		migrationListenerId = hazelcastInstance.getPartitionService().addMigrationListener(new MigrationListener() {
+			@Override
+			public void migrationStarted(MigrationState state) {
+			}
+
+			@Override
+			public void migrationFinished(MigrationState state) {
+				scheduleReconcile();
+				indexExecutor.schedule(() -> reconcile(), RECONCILE_DELAY_IN_MSEC, TimeUnit.MILLISECONDS);
+			}
+
+			// Replica events may be delivered after migrationFinished()
+			@Override
+			public void replicaMigrationCompleted(ReplicaMigrationEvent event) {
+				if (event.getReplicaIndex() == 0) {
+					scheduleReconcile();
+				}
+			}
+
+			@Override
+			public void replicaMigrationFailed(ReplicaMigrationEvent event) {
+			}
+		});
+
+		// Index the maps that already exist
+		indexExecutor.execute(() -> {
+			for (Object obj : hazelcastInstance.getDistributedObjects()) {
+				if (obj instanceof IMap) {
+					String mapName = ((IMap) obj).getName();
+					Function<Object, String> extractor = mapFilter.apply(mapName);
+					if (extractor != null) {
+						addMap(mapName, extractor);
+					}
+				}
+			}
+			reconcile();
+		});
+	}
+
+	/**
+	 * Stops the index thread and deregisters the listeners.
+	 */
+	public void shutdown() {
+		indexExecutor.shutdownNow();
+		try {
+			if (distributedObjectListenerId != null) {
+				hazelcastInstance.removeDistributedObjectListener(distributedObjectListenerId);
+			}
+			if (migrationListenerId != null) {
+				hazelcastInstance.getPartitionService().removeMigrationListener(migrationListenerId);
+			}
+			for (IndexedMap indexedMap : indexedMaps.values()) {
+				indexedMap.map.removeEntryListener(indexedMap.listenerId);
+			}
+		} catch (RuntimeException ex) {
+			// The member is shutting down
+		}
+	}
+
+	/**
+	 * Adds the specified map to the index. A local entry listener is registered
+	 * first and then the existing entries of the indexed partitions are indexed.
+	 *
+	 * @param mapName   Map name
+	 * @param extractor Session ID extractor that extracts the session ID from the
+	 *                  map keys.
+	 */
+	@SuppressWarnings("unchecked")
+	void addMap(String mapName, Function<Object, String> extractor) {
+		if (indexedMaps.containsKey(mapName)) {
+			return;
+		}
+		IMap map = hazelcastInstance.getMap(mapName);
+		IndexedMap indexedMap = new IndexedMap(getMapId(mapName), map, extractor);
+		indexedMap.listenerId = map.addLocalEntryListener(new IndexListener(indexedMap));
+		indexedMaps.put(mapName, indexedMap);
+		for (int id = indexedPartitionIds.nextSetBit(0); id >= 0; id = indexedPartitionIds.nextSetBit(id + 1)) {
+			indexPartitionEntries(indexedMap, id);
+		}
+		if (logger != null) {
+			logger.info(logPrefix + "Session index added: map=" + mapName + ", entryCount=" + entryCount.get());
+		}
+	}
+
+	/**
+	 * Removes the specified map and its entries from the index.
+	 *
+	 * @param mapName Map name
+	 */
+	void removeMap(String mapName) {
+		IndexedMap indexedMap = indexedMaps.remove(mapName);
+		if (indexedMap == null) {
+			return;
+		}
+		// The entry listener is deregistered by the map destroy. Invoking the
+		// destroyed proxy here would recreate the map.
+		for (String sessionId : sessionMap.keySet()) {
+			removeKeys(sessionId, indexedMap.mapId);
+		}
+	}
+
+	/**
+	 * Schedules a reconciliation unless one is already pending.
+	 */
+	private void scheduleReconcile() {
+		if (isReconcileScheduled.compareAndSet(false, true)) {
+			indexExecutor.execute(() -> {
+				isReconcileScheduled.set(false);
+				reconcile();
+			});
+		}
+	}
+
+	/**
+	 * Reconciles the index with the local partitions. The partitions owned by this
+	 * member are compared with the indexed partitions so that only the migrated
+	 * partitions are reconciled. Entries of the partitions no longer owned by this
+	 * member are dropped and the entries of the partitions newly owned by this
+	 * member are added. The other partitions are not queried.
+	 */
+	void reconcile() {
+		long startTime = System.currentTimeMillis();
+		final PartitionService partitionService = hazelcastInstance.getPartitionService();
+		final HashSet<Integer> droppedPartitionIds = new HashSet<Integer>();
+		ArrayList<Integer> addedPartitionIds = new ArrayList<Integer>();
+		for (Partition partition : partitionService.getPartitions()) {
+			int partitionId = partition.getPartitionId();
+			Member owner = partition.getOwner();
+			boolean isOwner = owner != null && owner.localMember();
+			if (isOwner && indexedPartitionIds.get(partitionId) == false) {
+				addedPartitionIds.add(partitionId);
+			} else if (isOwner == false && indexedPartitionIds.get(partitionId)) {
+				droppedPartitionIds.add(partitionId);
+			}
+		}
+		if (droppedPartitionIds.size() == 0 && addedPartitionIds.size() == 0) {
+			return;
+		}
+		if (droppedPartitionIds.size() > 0) {
+			for (String sessionId : sessionMap.keySet()) {
+				sessionMap.computeIfPresent(sessionId, (id, sessionKeys) -> {
+					for (int i = sessionKeys.size - 1; i >= 0; i--) {
+						Data keyData = sessionKeys.keys[i];
+						if (droppedPartitionIds.contains(partitionService.getPartition(keyData).getPartitionId())) {
+							sessionKeys.removeAt(i);
+							entryCount.decrementAndGet();
+							memorySize.addAndGet(-(ENTRY_OVERHEAD + keyData.getHeapCost()));
+						}
+					}
+					if (sessionKeys.size == 0) {
+						memorySize.addAndGet(-(SESSION_OVERHEAD + 2 * id.length()));
+						return null;
+					}
+					return sessionKeys;
+				});
+			}
+			for (Integer partitionId : droppedPartitionIds) {
+				indexedPartitionIds.clear(partitionId);
+			}
+		}
+		for (Integer partitionId : addedPartitionIds) {
+			for (IndexedMap indexedMap : indexedMaps.values()) {
+				indexPartitionEntries(indexedMap, partitionId);
+			}
+			indexedPartitionIds.set(partitionId);
+		}
+		if (logger != null) {
+			logger.info(logPrefix + "Session index reconciled: droppedPartitionCount=" + droppedPartitionIds.size()
+					+ ", addedPartitionCount=" + addedPartitionIds.size() + ", sessionCount=" + getSessionCount()
+					+ ", entryCount=" + entryCount.get() + ", memorySize=" + memorySize.get() + ", timeTook(msec)="
+					+ (System.currentTimeMillis() - startTime));
+		}
+	}
+
+	/**
+	 * Indexes all the entries of the specified partition of the specified map.
+	 */
+	private void indexPartitionEntries(IndexedMap indexedMap, int partitionId) {
+		Set keySet = MapUtil.queryPartitionKeySet(hazelcastInstance, indexedMap.map, partitionId,
+				Predicates.alwaysTrue());
+		for (Object key : keySet) {
+			String sessionId = indexedMap.extractor.apply(key);
+			if (sessionId != null) {
+				// Same form as the listener's key data
+				add(sessionId, indexedMap.mapId, MapUtil.toKeyData(indexedMap.map, key));
+			}
+		}
+	}
+
+	/**
+	 * Returns the map ID of the specified map name. A new ID is assigned if the map
+	 * name is not found.
+	 *
+	 * @param mapName Map name
+	 */
+	int getMapId(String mapName) {
+		Integer mapId = mapIdMap.get(mapName);
+		if (mapId == null) {
+			synchronized (mapIdMap) {
+				mapId = mapIdMap.get(mapName);
+				if (mapId == null) {
+					mapId = mapIdMap.size();
+					mapIdMap.put(mapName, mapId);
+				}
+			}
+		}
+		return mapId;
+	}
+
+	/**
+	 * Returns true if the specified map is indexed.
+	 *
+	 * @param mapName Map name
+	 */
+	public boolean isIndexed(String mapName) {
+		return indexedMaps.containsKey(mapName);
+	}
+
+	/**
+	 * Adds the specified key to the index.
+	 *
+	 * @param sessionId Session ID
+	 * @param mapId     Map ID
+	 * @param keyData   Serialized key
+	 */
+	void add(String sessionId, int mapId, Data keyData) {
+		sessionMap.compute(sessionId, (id, sessionKeys) -> {
+			if (sessionKeys == null) {
+				sessionKeys = new SessionKeys();
+				memorySize.addAndGet(SESSION_OVERHEAD + 2 * id.length());
+			}
+			if (sessionKeys.add(mapId, keyData)) {
+				entryCount.incrementAndGet();
+				memorySize.addAndGet(ENTRY_OVERHEAD + keyData.getHeapCost());
+			}
+			return sessionKeys;
+		});
+	}
+
+	/**
+	 * Removes the specified key from the index.
+	 *
+	 * @param sessionId Session ID
+	 * @param mapId     Map ID
+	 * @param keyData   Serialized key
+	 */
+	void remove(String sessionId, int mapId, Data keyData) {
+		sessionMap.computeIfPresent(sessionId, (id, sessionKeys) -> {
+			if (sessionKeys.remove(mapId, keyData)) {
+				entryCount.decrementAndGet();
+				memorySize.addAndGet(-(ENTRY_OVERHEAD + keyData.getHeapCost()));
+			}
+			if (sessionKeys.size == 0) {
+				memorySize.addAndGet(-(SESSION_OVERHEAD + 2 * id.length()));
+				return null;
+			}
+			return sessionKeys;
+		});
+	}
+
+	/**
+	 * Removes and returns all the keys of the specified session that belong to the
+	 * specified map.
+	 *
+	 * @param sessionId Session ID
+	 * @param mapName   Map name
+	 * @return Serialized keys. An empty list if the session or the map is not
+	 *         indexed.
+	 */
+	public List<Data> removeKeys(String sessionId, String mapName) {
+		Integer mapId = mapIdMap.get(mapName);
+		if (mapId == null) {
+			return Collections.emptyList();
+		}
+		return removeKeys(sessionId, mapId);
+	}
+
+	private List<Data> removeKeys(String sessionId, final int mapId) {
+		final ArrayList<Data> keyList = new ArrayList<Data>(4);
+		sessionMap.computeIfPresent(sessionId, (id, sessionKeys) -> {
+			sessionKeys.removeAll(mapId, keyList);
+			entryCount.addAndGet(-keyList.size());
+			for (Data keyData : keyList) {
+				memorySize.addAndGet(-(ENTRY_OVERHEAD + keyData.getHeapCost()));
+			}
+			if (sessionKeys.size == 0) {
+				memorySize.addAndGet(-(SESSION_OVERHEAD + 2 * id.length()));
+				return null;
+			}
+			return sessionKeys;
+		});
+		return keyList;
+	}
+
+	/**
+	 * Puts the specified keys of the specified map back into the index, e.g., the
+	 * keys returned by {@linkplain #removeKeys(String, String)} that failed to be
+	 * deleted. The keys of the partitions not owned by this member are ignored.
+	 *
+	 * @param mapName Map name
+	 * @param keys    Serialized keys returned by
+	 *                {@linkplain #removeKeys(String, String)}
+	 */
+	public void addKeys(String mapName, Collection<Data> keys) {
+		IndexedMap indexedMap = indexedMaps.get(mapName);
+		if (indexedMap == null) {
+			return;
+		}
+		PartitionService partitionService = hazelcastInstance.getPartitionService();
+		for (Data keyData : keys) {
+			Member owner = partitionService.getPartition(keyData).getOwner();
+			if (owner != null && owner.localMember()) {
+				String sessionId = indexedMap.extractor.apply(serializationService.toObject(keyData));
+				if (sessionId != null) {
+					add(sessionId, indexedMap.mapId, keyData);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of sessions in the index.
+	 */
+	public int getSessionCount() {
+		return sessionMap.size();
+	}
+
+	/**
+	 * Returns the number of keys in the index.
+	 */
+	public long getEntryCount() {
+		return entryCount.get();
+	}
+
+	/**
+	 * Returns the estimated heap cost of the index in bytes.
+	 */
+	public long getMemorySize() {
+		return memorySize.get();
+	}
+
+	/**
+	 * {@linkplain IndexedMap} holds an indexed map and its session ID extractor.
+	 */
+	static class IndexedMap {
+		IndexedMap(int mapId, IMap map, Function<Object, String> extractor) {
+			this.mapId = mapId;
+			this.map = map;
+			this.extractor = extractor;
+		}
+
+		final int mapId;
+		final IMap map;
+		final Function<Object, String> extractor;
+
+		// Local entry listener registration
+		UUID listenerId;
+	}
+
+	/**
+	 * {@linkplain IndexListener} keeps the index up to date with the local entries
+	 * of an indexed map.
+	 */
+	class IndexListener implements EntryAddedListener<Object, Object>, EntryRemovedListener<Object, Object>,
+			EntryExpiredListener<Object, Object>, EntryEvictedListener<Object, Object> {
+
+		private final IndexedMap indexedMap;
+
+		IndexListener(IndexedMap indexedMap) {
+			this.indexedMap = indexedMap;
+		}
+
+		private Data getKeyData(EntryEvent<Object, Object> event) {
+			if (event instanceof DataAwareEntryEvent) {
+				return ((DataAwareEntryEvent) event).getKeyData();
+			}
+			return MapUtil.toKeyData(indexedMap.map, event.getKey());
+		}
+
+		@Override
+		public void entryAdded(EntryEvent<Object, Object> event) {
+			String sessionId = indexedMap.extractor.apply(event.getKey());
+			if (sessionId != null) {
+				add(sessionId, indexedMap.mapId, getKeyData(event));
+			}
+		}
+
+		@Override
+		public void entryRemoved(EntryEvent<Object, Object> event) {
+			String sessionId = indexedMap.extractor.apply(event.getKey());
+			if (sessionId != null) {
+				remove(sessionId, indexedMap.mapId, getKeyData(event));
+			}
+		}
+
+		@Override
+		public void entryExpired(EntryEvent<Object, Object> event) {
+			entryRemoved(event);
+		}
+
+		@Override
+		public void entryEvicted(EntryEvent<Object, Object> event) {
+			entryRemoved(event);
+		}
+	}
+
+	/**
+	 * {@linkplain SessionKeys} holds the keys of a single session in flat growable
+	 * arrays. Access is serialized by the owning {@linkplain ConcurrentHashMap}
+	 * compute methods.
+	 */
+	static class SessionKeys {
+		int[] mapIds = new int[2];
+		Data[] keys = new Data[2];
+		int size;
+
+		boolean add(int mapId, Data keyData) {
+			for (int i = 0; i < size; i++) {
+				if (mapIds[i] == mapId && keys[i].equals(keyData)) {
+					return false;
+				}
+			}
+			if (size == keys.length) {
+				int newLength = keys.length << 1;
+				int[] newMapIds = new int[newLength];
+				Data[] newKeys = new Data[newLength];
+				System.arraycopy(mapIds, 0, newMapIds, 0, size);
+				System.arraycopy(keys, 0, newKeys, 0, size);
+				mapIds = newMapIds;
+				keys = newKeys;
+			}
+			mapIds[size] = mapId;
+			keys[size] = keyData;
+			size++;
+			return true;
+		}
+
+		boolean remove(int mapId, Data keyData) {
+			for (int i = 0; i < size; i++) {
+				if (mapIds[i] == mapId && keys[i].equals(keyData)) {
+					removeAt(i);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void removeAll(int mapId, List<Data> removedKeyList) {
+			for (int i = size - 1; i >= 0; i--) {
+				if (mapIds[i] == mapId) {
+					removedKeyList.add(keys[i]);
+					removeAt(i);
+				}
+			}
+		}
+
+		void removeAt(int index) {
+			size--;
+			mapIds[index] = mapIds[size];
+			keys[index] = keys[size];
+			keys[size] = null;
+		}
+	}
+}
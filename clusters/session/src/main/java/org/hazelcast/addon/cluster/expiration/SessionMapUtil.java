@@ -1,5 +1,13 @@
 package org.hazelcast.addon.cluster.expiration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import com.hazelcast.partition.PartitionAware;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
+
 public class SessionMapUtil {
 
 	/**
@@ -64,4 +72,176 @@ public class SessionMapUtil {
 		}
 		return tag;
 	}
+
+	/**
+	 * Returns the session ID extracted from the specified key based on the
+	 * specified key type. This method is the key-level counterpart of the
+	 * predicates built by {@linkplain SessionExpirationService}.
+	 * 
+	 * @param keyType          Key type. {@linkplain KeyType#CUSTOM} is not
+	 *                         supported and always returns null.
+	 * @param key              Key object containing the session ID.
+	 * @param keyProperty      Key property path that returns the session ID,
+	 *                         e.g., "sessionId" or "a.b.sessionId". Applies to
+	 *                         {@linkplain KeyType#OBJECT} only.
+	 * @param delimiter        Delimiter separating the session ID from the rest
+	 *                         of the key string. Applies to
+	 *                         {@linkplain KeyType#STRING} only.
+	 * @param isPostfix        true if the session ID is the last token of the key
+	 *                         string, false if it is the first token. Applies to
+	 *                         {@linkplain KeyType#STRING} only.
+	 * @return null if the session ID cannot be extracted.
+	 */
+	public static String getSessionId(KeyType keyType, Object key, String keyProperty, String delimiter,
+			boolean isPostfix) {
+		if (key == null) {
+			return null;
+		}
+		String sessionId = null;
+		switch (keyType) {
+		case INTERFACE:
+			if (key instanceof ISessionId) {
+				sessionId = ((ISessionId) key).getSessionId();
+			}
+			break;
+
+		case OBJECT:
+			KeyPropertyAccessor accessor = KeyPropertyAccessor.getAccessor(keyProperty);
+			if (accessor != null) {
+				try {
+					Object value = accessor.getValue(key);
+					if (value != null) {
+						sessionId = value.toString();
+					}
+				} catch (RuntimeException ex) {
+					// Not a session key
+				}
+			}
+			break;
+
+		case PARTITION_AWARE:
+			if (key instanceof PartitionAware) {
+				Object partitionKey = ((PartitionAware<?>) key).getPartitionKey();
+				if (partitionKey != null) {
+					sessionId = partitionKey.toString();
+				}
+			}
+			break;
+
+		case CUSTOM:
+			break;
+
+		case STRING:
+		default:
+			String keyStr = key.toString();
+			int index;
+			if (isPostfix) {
+				index = keyStr.lastIndexOf(delimiter);
+				sessionId = index == -1 ? keyStr : keyStr.substring(index + delimiter.length());
+			} else {
+				index = keyStr.indexOf(delimiter);
+				sessionId = index == -1 ? keyStr : keyStr.substring(0, index);
+			}
+			if (sessionId.length() == 0) {
+				sessionId = null;
+			}
+			break;
+		}
+		return sessionId;
+	}
+
+	/**
+	 * Returns the predicate that matches the relevant map entries of the specified
+	 * {@linkplain KeyType#STRING} primary map keys. The predicate depends on how
+	 * the session ID is extracted from the key strings:
+	 * <ul>
+	 * <li>Attribute: IN on the {@linkplain SessionIdExtractor} attribute.</li>
+	 * <li>Postfix: OR of "%&lt;delimiter&gt;&lt;session ID&gt;" LIKE predicates.</li>
+	 * <li>Range: {@linkplain PrefixRangePredicate} of the session ID
+	 * prefixes.</li>
+	 * <li>Otherwise: OR of "&lt;session ID&gt;&lt;delimiter&gt;%" LIKE
+	 * predicates.</li>
+	 * </ul>
+	 * It is shared by the expiration services that build the predicates per
+	 * batch.
+	 * 
+	 * @param elements             Elements holding the primary map keys, e.g.,
+	 *                             the queued session events
+	 * @param keyGetter            Returns the primary map key of an element
+	 * @param delimiter            Delimiter separating the session ID from the
+	 *                             rest of the key string
+	 * @param isPostfix            true if the session ID is the last token of the
+	 *                             key string, false if it is the first token
+	 * @param isStringKeyRange     true to use {@linkplain PrefixRangePredicate}.
+	 *                             Ignored if isPostfix is true.
+	 * @param isStringKeyAttribute true to use the {@linkplain SessionIdExtractor}
+	 *                             attribute. It takes precedence over the other
+	 *                             options.
+	 * @return null if no session ID can be extracted from the keys.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static <T> Predicate createStringKeyPredicate(List<T> elements, Function<? super T, Object> keyGetter,
+			String delimiter, boolean isPostfix, boolean isStringKeyRange, boolean isStringKeyAttribute) {
+		Predicate predicate = null;
+		if (isStringKeyAttribute) {
+			ArrayList<Comparable> sessionIdList = new ArrayList<Comparable>(elements.size());
+			for (T element : elements) {
+				String sessionId = getSessionId(KeyType.STRING, keyGetter.apply(element), null, delimiter, isPostfix);
+				if (sessionId != null) {
+					sessionIdList.add(sessionId);
+				}
+			}
+			if (sessionIdList.size() > 0) {
+				predicate = Predicates.in("__key." + SessionIdExtractor.ATTRIBUTE_NAME,
+						sessionIdList.toArray(new Comparable[sessionIdList.size()]));
+			}
+		} else if (isStringKeyRange && isPostfix == false) {
+			ArrayList<String> prefixList = new ArrayList<String>(elements.size());
+			for (T element : elements) {
+				String keyStr = keyGetter.apply(element).toString();
+				int index = keyStr.indexOf(delimiter);
+				String sessionIdWithDelimiter;
+				if (index == -1) {
+					sessionIdWithDelimiter = keyStr;
+				} else {
+					sessionIdWithDelimiter = keyStr.substring(0, index + delimiter.length());
+				}
+				if (sessionIdWithDelimiter.length() != 0) {
+					prefixList.add(sessionIdWithDelimiter);
+				}
+			}
+			if (prefixList.size() > 0) {
+				predicate = new PrefixRangePredicate("__key", prefixList);
+			}
+		} else {
+			for (T element : elements) {
+				/*
+				 * The session ID is the last (postfix) or first part of the key string
+				 * separated by the delimiter. If the key does not contain the delimiter, then
+				 * the entire key string is used as the session ID.
+				 */
+				String keyStr = keyGetter.apply(element).toString();
+				Predicate innerPredicate = null;
+				if (isPostfix) {
+					int index = keyStr.lastIndexOf(delimiter);
+					String sessionIdWithDelimiter = index == -1 ? keyStr : keyStr.substring(index);
+					if (sessionIdWithDelimiter.length() != 0) {
+						innerPredicate = Predicates.like("__key", "%" + sessionIdWithDelimiter);
+					}
+				} else {
+					int index = keyStr.indexOf(delimiter);
+					String sessionIdWithDelimiter = index == -1 ? keyStr : keyStr.substring(0, index + 1);
+					if (sessionIdWithDelimiter.length() != 0) {
+						innerPredicate = Predicates.like("__key", sessionIdWithDelimiter + "%");
+					}
+				}
+				if (predicate == null) {
+					predicate = innerPredicate;
+				} else if (innerPredicate != null) {
+					predicate = Predicates.or(predicate, innerPredicate);
+				}
+			}
+		}
+		return predicate;
+	}
 }
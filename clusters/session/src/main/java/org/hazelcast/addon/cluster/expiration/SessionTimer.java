@@ -0,0 +1,792 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.hazelcast.addon.cluster.MapUtil;
+
+import com.hazelcast.cluster.Member;
+import com.hazelcast.core.DistributedObjectEvent;
+import com.hazelcast.core.DistributedObjectListener;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.logging.ILogger;
+import com.hazelcast.map.IMap;
+import com.hazelcast.map.impl.DataAwareEntryEvent;
+import com.hazelcast.map.impl.MapService;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryExpiredListener;
+import com.hazelcast.map.listener.EntryMergedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+import com.hazelcast.partition.MigrationListener;
+import com.hazelcast.partition.MigrationState;
+import com.hazelcast.partition.PartitionService;
+import com.hazelcast.partition.ReplicaMigrationEvent;
+import com.hazelcast.query.Predicates;
+import com.hazelcast.spi.impl.SerializationServiceSupport;
+
+/**
+ * {@linkplain SessionTimer} is a member-local session timer engine that
+ * expires the primary map entries in place of the primary map's max idle time.
+ * Each member times the sessions of the partitions that it owns. The deadline
+ * of a session is re-armed by a local entry listener whenever its primary map
+ * entry is added, updated or merged. When a deadline fires, the primary map
+ * entry is removed and the session is broadcast to all members with
+ * {@linkplain ExpirationTask}. Each member passes it to its own expiration
+ * handler, i.e., {@linkplain SessionExpirationService}, which expires the
+ * relevant entries of the member's partitions. Unlike the primary map's max
+ * idle time, the removal fires no expired event on the other members, so they
+ * must be told explicitly.
+ * <p>
+ * The deadlines are kept in a hierarchical timing wheel of
+ * {@value #LEVELS} levels of {@value #WHEEL_SIZE} buckets each, plus an
+ * overflow bucket for the deadlines beyond the wheel's range. Re-arming and
+ * cancelling are O(1). Each tick fires a single level 0 bucket, and the
+ * higher level buckets are cascaded down as the wheel turns. The sessions are
+ * held in primitive arrays indexed by a handle, with the buckets linked
+ * through the handles. The handle of a session is looked up by its key
+ * serialized with the map's partitioning strategy, so the keys are never
+ * deserialized except for the expired sessions.
+ * <p>
+ * The timer is reconciled with the local partitions whenever a partition
+ * migration completes. The sessions of the partitions no longer owned by this
+ * member are dropped and the sessions of the partitions newly owned by this
+ * member are armed with a full timeout. The local entries of a primary map
+ * are also armed with a full timeout when the map is added.
+ *
+ * @author dpark
+ *
+ */
+public class SessionTimer {
+
+	final static int WHEEL_BITS = 6;
+	final static int WHEEL_SIZE = 1 << WHEEL_BITS;
+	final static int WHEEL_MASK = WHEEL_SIZE - 1;
+	final static int LEVELS = 4;
+
+	// Bucket index of the deadlines beyond the wheel's range
+	private final static int OVERFLOW_BUCKET = LEVELS * WHEEL_SIZE;
+
+	private final static int NONE = -1;
+
+	/**
+	 * Name of the executor service that broadcasts the expired sessions.
+	 */
+	public final static String EXECUTOR_NAME = "padogrid." + SessionTimer.class.getSimpleName();
+
+	// <member instance name, SessionTimer>. Looked up by ExpirationTask.
+	private final static ConcurrentHashMap<String, SessionTimer> timerMap = new ConcurrentHashMap<String, SessionTimer>(
+			4);
+
+	private final HazelcastInstance hazelcastInstance;
+	private final SerializationService serializationService;
+	private final ILogger logger;
+	private final String logPrefix;
+	private final long tickNanos;
+	private final boolean isValueTimeoutEnabled;
+
+	// <map name, TimedMap>
+	private final ConcurrentHashMap<String, TimedMap> timedMaps = new ConcurrentHashMap<String, TimedMap>(16);
+	// Indexed by map ID
+	private final ArrayList<TimedMap> timedMapList = new ArrayList<TimedMap>(16);
+
+	// Bucket heads. The last bucket is the overflow bucket.
+	private final int[] heads = new int[OVERFLOW_BUCKET + 1];
+
+	// Sessions indexed by handle
+	private long[] deadlines;
+	private int[] nexts;
+	private int[] prevs;
+	private int[] buckets;
+	private int[] mapIds;
+	private Data[] keys;
+	private int handleCount;
+	private int freeHandle = NONE;
+	private int sessionCount;
+
+	private final long startNanos;
+	private long currentTick;
+
+	private final AtomicLong expiredCount = new AtomicLong();
+
+	// Single thread for adding maps and reconciling migrated partitions. Keeps
+	// the Hazelcast event threads free.
+	private final ExecutorService timerExecutor;
+	private final Thread tickThread;
+	private volatile boolean shouldRun = true;
+	private BiConsumer<String, Object> expirationHandler;
+	private UUID distributedObjectListenerId;
+	private UUID migrationListenerId;
+
+	/**
+	 * Creates a session timer for the specified member.
+	 *
+	 * @param hazelcastInstance     Member instance
+	 * @param logger                Logger
+	 * @param logPrefix             Log message prefix
+	 * @param tickMillis            Timer resolution in milliseconds
+	 * @param isValueTimeoutEnabled true to honor {@linkplain ISessionTimeout}
+	 *                              implemented by the primary map values. The
+	 *                              values are deserialized by the local entry
+	 *                              listener if true.
+	 */
+	public SessionTimer(HazelcastInstance hazelcastInstance, ILogger logger, String logPrefix, long tickMillis,
+			boolean isValueTimeoutEnabled) {
+		this.hazelcastInstance = hazelcastInstance;
+		this.serializationService = ((SerializationServiceSupport) hazelcastInstance).getSerializationService();
+		this.logger = logger;
+		this.logPrefix = logPrefix;
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+		this.isValueTimeoutEnabled = isValueTimeoutEnabled;
+		Arrays.fill(heads, NONE);
+		allocate(1024);
+		this.startNanos = System.nanoTime();
+		this.timerExecutor = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "padogrid." + SessionTimer.class.getSimpleName() + "-admin");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.tickThread = new Thread("padogrid." + SessionTimer.class.getSimpleName()) {
+			public void run() {
+				tick();
+			}
+		};
+		this.tickThread.setDaemon(true);
+	}
+
+	/**
+	 * Starts listening on distributed object and migration events and starts the
+	 * timer thread. Maps that are accepted by the specified map filter are timed
+	 * as they are created.
+	 *
+	 * @param mapFilter         Returns the session timeout in milliseconds for the
+	 *                          specified primary map name if the map is to be
+	 *                          timed, or null otherwise.
+	 * @param expirationHandler Receives the primary map name and key of each
+	 *                          session expired by the timer of any member. It
+	 *                          is invoked by the {@value #EXECUTOR_NAME}
+	 *                          executor threads.
+	 */
+	public void start(final Function<String, Long> mapFilter, BiConsumer<String, Object> expirationHandler) {
+		this.expirationHandler = expirationHandler;
+		timerMap.put(hazelcastInstance.getName(), this);
+		distributedObjectListenerId = hazelcastInstance.addDistributedObjectListener(new DistributedObjectListener() {
+			@Override
+			public void distributedObjectCreated(DistributedObjectEvent event) {
+				if (MapService.SERVICE_NAME.equals(event.getServiceName())) {
+					final String mapName = event.getObjectName().toString();
+					final Long timeoutMillis = mapFilter.apply(mapName);
+					if (timeoutMillis != null) {
+						timerExecutor.execute(() -> addMap(mapName, timeoutMillis));
+					}
+				}
+			}
+
+			@Override
+			public void distributedObjectDestroyed(DistributedObjectEvent event) {
+				if (MapService.SERVICE_NAME.equals(event.getServiceName())) {
+					final String mapName = event.getObjectName().toString();
+					timerExecutor.execute(() -> removeMap(mapName));
+				}
+			}
+		});
+		migrationListenerId = hazelcastInstance.getPartitionService().addMigrationListener(new MigrationListener() {
+			@Override
+			public void migrationStarted(MigrationState state) {
+			}
+
+			@Override
+			public void migrationFinished(MigrationState state) {
+				timerExecutor.execute(() -> reconcile());
+			}
+
+			@Override
+			public void replicaMigrationCompleted(ReplicaMigrationEvent event) {
+			}
+
+			@Override
+			public void replicaMigrationFailed(ReplicaMigrationEvent event) {
+			}
+		});
+
+		// Time the maps that already exist
+		timerExecutor.execute(() -> {
+			for (Object obj : hazelcastInstance.getDistributedObjects()) {
+				if (obj instanceof IMap) {
+					String mapName = ((IMap<?, ?>) obj).getName();
+					Long timeoutMillis = mapFilter.apply(mapName);
+					if (timeoutMillis != null) {
+						addMap(mapName, timeoutMillis);
+					}
+				}
+			}
+		});
+		tickThread.start();
+	}
+
+	/**
+	 * Stops the timer threads. The armed sessions are discarded.
+	 */
+	public void shutdown() {
+		shouldRun = false;
+		LockSupport.unpark(tickThread);
+		timerExecutor.shutdownNow();
+		timerMap.remove(hazelcastInstance.getName(), this);
+		try {
+			if (distributedObjectListenerId != null) {
+				hazelcastInstance.removeDistributedObjectListener(distributedObjectListenerId);
+			}
+			if (migrationListenerId != null) {
+				hazelcastInstance.getPartitionService().removeMigrationListener(migrationListenerId);
+			}
+			for (TimedMap timedMap : timedMaps.values()) {
+				timedMap.map.removeEntryListener(timedMap.listenerId);
+			}
+		} catch (RuntimeException ex) {
+			// The member is shutting down
+		}
+	}
+
+	/**
+	 * Adds the specified primary map to the timer. A local entry listener is
+	 * registered first and then the existing local entries are armed.
+	 *
+	 * @param mapName       Primary map name
+	 * @param timeoutMillis Session timeout in milliseconds
+	 */
+	void addMap(String mapName, long timeoutMillis) {
+		if (timedMaps.containsKey(mapName)) {
+			return;
+		}
+		IMap<Object, Object> map = hazelcastInstance.getMap(mapName);
+		TimedMap timedMap;
+		synchronized (this) {
+			timedMap = new TimedMap(timedMapList.size(), map, timeoutMillis);
+			timedMapList.add(timedMap);
+		}
+		timedMap.listenerId = map.addLocalEntryListener(new TimerListener(timedMap), Predicates.alwaysTrue(),
+				isValueTimeoutEnabled);
+		timedMaps.put(mapName, timedMap);
+		armLocalEntries(timedMap);
+		if (logger != null) {
+			logger.info(logPrefix + "Session timer added: map=" + mapName + ", timeoutMillis=" + timeoutMillis
+					+ ", sessionCount=" + getSessionCount());
+		}
+	}
+
+	/**
+	 * Removes the specified map and its sessions from the timer.
+	 *
+	 * @param mapName Map name
+	 */
+	void removeMap(String mapName) {
+		TimedMap timedMap = timedMaps.remove(mapName);
+		if (timedMap == null) {
+			return;
+		}
+		// The entry listener is deregistered by the map destroy.
+		synchronized (this) {
+			for (Data keyData : timedMap.handleMap.keySet().toArray(new Data[timedMap.handleMap.size()])) {
+				cancel(timedMap, keyData);
+			}
+		}
+	}
+
+	/**
+	 * Reconciles the timer with the local partitions. Sessions of the partitions
+	 * no longer owned by this member are dropped and the sessions of the
+	 * partitions newly owned by this member are armed.
+	 */
+	void reconcile() {
+		long startTime = System.currentTimeMillis();
+		final PartitionService partitionService = hazelcastInstance.getPartitionService();
+		synchronized (this) {
+			for (int handle = 0; handle < handleCount; handle++) {
+				if (keys[handle] != null) {
+					Member owner = partitionService.getPartition(keys[handle]).getOwner();
+					if (owner == null || owner.localMember() == false) {
+						cancel(timedMapList.get(mapIds[handle]), keys[handle]);
+					}
+				}
+			}
+		}
+		for (TimedMap timedMap : timedMaps.values()) {
+			armLocalEntries(timedMap);
+		}
+		if (logger != null) {
+			logger.info(logPrefix + "Session timer reconciled after migration: sessionCount=" + getSessionCount()
+					+ ", timeTook(msec)=" + (System.currentTimeMillis() - startTime));
+		}
+	}
+
+	/**
+	 * Arms the local entries of the specified map that are not armed yet with
+	 * the map's timeout. The entries that are removed while the local key set is
+	 * being armed are skipped. Invoked by the timer executor only.
+	 */
+	private void armLocalEntries(TimedMap timedMap) {
+		synchronized (this) {
+			timedMap.disarmedKeySet = new HashSet<Data>();
+		}
+		try {
+			Set<Object> keySet = timedMap.map.localKeySet();
+			long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timedMap.timeoutMillis);
+			for (Object key : keySet) {
+				// Same form as the listener's key data
+				Data keyData = MapUtil.toKeyData(timedMap.map, key);
+				synchronized (this) {
+					if (timedMap.handleMap.containsKey(keyData) == false
+							&& timedMap.disarmedKeySet.contains(keyData) == false) {
+						schedule(timedMap, keyData, deadlineNanos);
+					}
+				}
+			}
+		} finally {
+			synchronized (this) {
+				timedMap.disarmedKeySet = null;
+			}
+		}
+	}
+
+	/**
+	 * Arms or re-arms the specified session.
+	 *
+	 * @param timedMap      Primary map
+	 * @param keyData       Serialized primary map key
+	 * @param timeoutMillis Session timeout in milliseconds
+	 */
+	void arm(TimedMap timedMap, Data keyData, long timeoutMillis) {
+		long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		synchronized (this) {
+			schedule(timedMap, keyData, deadlineNanos);
+		}
+	}
+
+	/**
+	 * Disarms the specified session. It has no effect if the session is not armed.
+	 *
+	 * @param timedMap Primary map
+	 * @param keyData  Serialized primary map key
+	 */
+	synchronized void disarm(TimedMap timedMap, Data keyData) {
+		cancel(timedMap, keyData);
+		if (timedMap.disarmedKeySet != null) {
+			timedMap.disarmedKeySet.add(keyData);
+		}
+	}
+
+	/**
+	 * Schedules the specified session. Must be invoked while holding this object's
+	 * lock.
+	 */
+	private void schedule(TimedMap timedMap, Data keyData, long deadlineNanos) {
+		// Round up so that a session never fires early
+		long deadline = (deadlineNanos - startNanos + tickNanos - 1) / tickNanos;
+		Integer handle = timedMap.handleMap.get(keyData);
+		int h;
+		if (handle == null) {
+			h = allocateHandle();
+			mapIds[h] = timedMap.mapId;
+			keys[h] = keyData;
+			timedMap.handleMap.put(keyData, h);
+			sessionCount++;
+		} else {
+			h = handle;
+			unlink(h);
+		}
+		deadlines[h] = deadline;
+		link(h, getBucket(deadline));
+	}
+
+	/**
+	 * Cancels the specified session. Must be invoked while holding this object's
+	 * lock.
+	 */
+	private void cancel(TimedMap timedMap, Data keyData) {
+		Integer handle = timedMap.handleMap.remove(keyData);
+		if (handle != null) {
+			unlink(handle);
+			freeHandle(handle);
+			sessionCount--;
+		}
+	}
+
+	/**
+	 * Returns the bucket of the specified deadline tick relative to the current
+	 * tick. A deadline is placed at the lowest level at which it shares the
+	 * higher order bits with the current tick.
+	 */
+	private int getBucket(long deadline) {
+		if (deadline <= currentTick) {
+			deadline = currentTick + 1;
+		}
+		for (int level = 0; level < LEVELS; level++) {
+			int shift = WHEEL_BITS * (level + 1);
+			if ((deadline >>> shift) == (currentTick >>> shift)) {
+				return level * WHEEL_SIZE + (int) ((deadline >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+			}
+		}
+		return OVERFLOW_BUCKET;
+	}
+
+	private void link(int h, int bucket) {
+		int head = heads[bucket];
+		nexts[h] = head;
+		prevs[h] = NONE;
+		if (head != NONE) {
+			prevs[head] = h;
+		}
+		heads[bucket] = h;
+		buckets[h] = bucket;
+	}
+
+	private void unlink(int h) {
+		int next = nexts[h];
+		int prev = prevs[h];
+		if (prev == NONE) {
+			heads[buckets[h]] = next;
+		} else {
+			nexts[prev] = next;
+		}
+		if (next != NONE) {
+			prevs[next] = prev;
+		}
+	}
+
+	private int allocateHandle() {
+		if (freeHandle != NONE) {
+			int h = freeHandle;
+			freeHandle = nexts[h];
+			return h;
+		}
+		if (handleCount == keys.length) {
+			allocate(handleCount * 2);
+		}
+		return handleCount++;
+	}
+
+	private void freeHandle(int h) {
+		keys[h] = null;
+		nexts[h] = freeHandle;
+		freeHandle = h;
+	}
+
+	private void allocate(int capacity) {
+		if (keys == null) {
+			deadlines = new long[capacity];
+			nexts = new int[capacity];
+			prevs = new int[capacity];
+			buckets = new int[capacity];
+			mapIds = new int[capacity];
+			keys = new Data[capacity];
+		} else {
+			deadlines = Arrays.copyOf(deadlines, capacity);
+			nexts = Arrays.copyOf(nexts, capacity);
+			prevs = Arrays.copyOf(prevs, capacity);
+			buckets = Arrays.copyOf(buckets, capacity);
+			mapIds = Arrays.copyOf(mapIds, capacity);
+			keys = Arrays.copyOf(keys, capacity);
+		}
+	}
+
+	/**
+	 * Advances the wheel to the specified tick and collects the expired sessions.
+	 * Must be invoked while holding this object's lock.
+	 *
+	 * @param tick        Tick to advance to
+	 * @param expiredList Expired sessions in pairs of map ID and serialized key
+	 */
+	private void advance(long tick, ArrayList<Object> expiredList) {
+		while (currentTick < tick) {
+			currentTick++;
+
+			// Cascade the higher level buckets down, starting from the highest level
+			// whose bucket has just come around.
+			int level = 0;
+			while (level < LEVELS && (currentTick & ((1L << (WHEEL_BITS * (level + 1))) - 1)) == 0) {
+				level++;
+			}
+			if (level == LEVELS) {
+				cascade(OVERFLOW_BUCKET);
+				level--;
+			}
+			for (; level > 0; level--) {
+				cascade(level * WHEEL_SIZE + (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK));
+			}
+
+			// Fire the level 0 bucket
+			int bucket = (int) (currentTick & WHEEL_MASK);
+			int h = heads[bucket];
+			heads[bucket] = NONE;
+			while (h != NONE) {
+				int next = nexts[h];
+				if (deadlines[h] <= currentTick) {
+					TimedMap timedMap = timedMapList.get(mapIds[h]);
+					expiredList.add(timedMap);
+					expiredList.add(keys[h]);
+					timedMap.handleMap.remove(keys[h]);
+					freeHandle(h);
+					sessionCount--;
+				} else {
+					link(h, getBucket(deadlines[h]));
+				}
+				h = next;
+			}
+		}
+	}
+
+	/**
+	 * Redistributes the sessions of the specified bucket to the lower levels.
+	 */
+	private void cascade(int bucket) {
+		int h = heads[bucket];
+		heads[bucket] = NONE;
+		while (h != NONE) {
+			int next = nexts[h];
+			link(h, getBucket(deadlines[h]));
+			h = next;
+		}
+	}
+
+	/**
+	 * Runs the timer until {@linkplain #shutdown()} is invoked. The expired
+	 * sessions are handled outside of the lock so that the listeners are never
+	 * blocked by the primary map removals.
+	 */
+	private void tick() {
+		ArrayList<Object> expiredList = new ArrayList<Object>();
+		PartitionService partitionService = hazelcastInstance.getPartitionService();
+		while (shouldRun) {
+			long tick = (System.nanoTime() - startNanos) / tickNanos;
+			synchronized (this) {
+				advance(tick, expiredList);
+			}
+			for (int i = 0; i < expiredList.size(); i += 2) {
+				TimedMap timedMap = (TimedMap) expiredList.get(i);
+				Data keyData = (Data) expiredList.get(i + 1);
+				try {
+					// Skip the sessions whose partitions have been migrated but not
+					// reconciled yet
+					Member owner = partitionService.getPartition(keyData).getOwner();
+					if (owner == null || owner.localMember() == false) {
+						continue;
+					}
+					// Skip the sessions that have been re-armed since
+					synchronized (this) {
+						if (timedMap.handleMap.containsKey(keyData)) {
+							continue;
+						}
+					}
+					Object key = serializationService.toObject(keyData);
+					timedMap.map.removeAsync(key);
+					expiredCount.incrementAndGet();
+					broadcast(timedMap.map.getName(), key);
+				} catch (RuntimeException ex) {
+					if (logger != null) {
+						logger.warning(logPrefix + "Session timer expiration error: map=" + timedMap.map.getName(), ex);
+					}
+				}
+			}
+			expiredList.clear();
+			long nextTickNanos = startNanos + (tick + 1) * tickNanos;
+			LockSupport.parkNanos(nextTickNanos - System.nanoTime());
+		}
+	}
+
+	/**
+	 * Broadcasts the specified expired session to all members including this
+	 * member. If the broadcast fails, then the session is expired on this member
+	 * only.
+	 */
+	private void broadcast(String mapName, Object key) {
+		try {
+			hazelcastInstance.getExecutorService(EXECUTOR_NAME).executeOnAllMembers(new ExpirationTask(mapName, key));
+		} catch (RuntimeException ex) {
+			if (logger != null) {
+				logger.warning(logPrefix + "Session timer broadcast failed. Expiring on this member only: map="
+						+ mapName, ex);
+			}
+			expirationHandler.accept(mapName, key);
+		}
+	}
+
+	/**
+	 * Returns true if the specified map is timed.
+	 *
+	 * @param mapName Map name
+	 */
+	public boolean isTimed(String mapName) {
+		return timedMaps.containsKey(mapName);
+	}
+
+	/**
+	 * Returns the number of armed sessions.
+	 */
+	public synchronized int getSessionCount() {
+		return sessionCount;
+	}
+
+	/**
+	 * Returns the number of sessions expired by the timer.
+	 */
+	public long getExpiredCount() {
+		return expiredCount.get();
+	}
+
+	/**
+	 * {@linkplain TimedMap} holds a timed primary map and the handles of its
+	 * sessions.
+	 */
+	static class TimedMap {
+		TimedMap(int mapId, IMap<Object, Object> map, long timeoutMillis) {
+			this.mapId = mapId;
+			this.map = map;
+			this.timeoutMillis = timeoutMillis;
+		}
+
+		final int mapId;
+		final IMap<Object, Object> map;
+		final long timeoutMillis;
+
+		// Local entry listener registration
+		UUID listenerId;
+
+		// <serialized key, handle>. Guarded by the SessionTimer lock.
+		final HashMap<Data, Integer> handleMap = new HashMap<Data, Integer>(1024);
+
+		// Keys disarmed while the local entries are being armed, null otherwise.
+		// Guarded by the SessionTimer lock.
+		HashSet<Data> disarmedKeySet;
+	}
+
+	/**
+	 * {@linkplain ExpirationTask} passes an expired session to the expiration
+	 * handler of the member that it runs on. It has no effect on the members
+	 * without a running session timer.
+	 */
+	public static class ExpirationTask implements Runnable, DataSerializable, HazelcastInstanceAware {
+
+		private String mapName;
+		private Object key;
+		private transient HazelcastInstance hazelcastInstance;
+
+		public ExpirationTask() {
+		}
+
+		ExpirationTask(String mapName, Object key) {
+			this.mapName = mapName;
+			this.key = key;
+		}
+
+		@Override
+		public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+			this.hazelcastInstance = hazelcastInstance;
+		}
+
+		@Override
+		public void run() {
+			SessionTimer timer = timerMap.get(hazelcastInstance.getName());
+			if (timer != null) {
+				timer.expirationHandler.accept(mapName, key);
+			}
+		}
+
+		@Override
+		public void writeData(ObjectDataOutput out) throws IOException {
+			out.writeString(mapName);
+			out.writeObject(key);
+		}
+
+		@Override
+		public void readData(ObjectDataInput in) throws IOException {
+			mapName = in.readString();
+			key = in.readObject();
+		}
+	}
+
+	/**
+	 * {@linkplain TimerListener} re-arms the sessions of a timed primary map upon
+	 * the local entry events.
+	 */
+	class TimerListener implements EntryAddedListener<Object, Object>, EntryUpdatedListener<Object, Object>,
+			EntryMergedListener<Object, Object>, EntryRemovedListener<Object, Object>,
+			EntryExpiredListener<Object, Object>, EntryEvictedListener<Object, Object> {
+
+		private final TimedMap timedMap;
+
+		TimerListener(TimedMap timedMap) {
+			this.timedMap = timedMap;
+		}
+
+		private Data getKeyData(EntryEvent<Object, Object> event) {
+			if (event instanceof DataAwareEntryEvent) {
+				return ((DataAwareEntryEvent) event).getKeyData();
+			}
+			return MapUtil.toKeyData(timedMap.map, event.getKey());
+		}
+
+		private long getTimeoutMillis(EntryEvent<Object, Object> event) {
+			if (isValueTimeoutEnabled) {
+				Object value = event.getValue();
+				if (value instanceof ISessionTimeout) {
+					long timeoutMillis = ((ISessionTimeout) value).getSessionTimeoutMillis();
+					if (timeoutMillis > 0) {
+						return timeoutMillis;
+					}
+				}
+			}
+			return timedMap.timeoutMillis;
+		}
+
+		@Override
+		public void entryAdded(EntryEvent<Object, Object> event) {
+			arm(timedMap, getKeyData(event), getTimeoutMillis(event));
+		}
+
+		@Override
+		public void entryUpdated(EntryEvent<Object, Object> event) {
+			arm(timedMap, getKeyData(event), getTimeoutMillis(event));
+		}
+
+		@Override
+		public void entryMerged(EntryEvent<Object, Object> event) {
+			arm(timedMap, getKeyData(event), getTimeoutMillis(event));
+		}
+
+		@Override
+		public void entryRemoved(EntryEvent<Object, Object> event) {
+			disarm(timedMap, getKeyData(event));
+		}
+
+		@Override
+		public void entryExpired(EntryEvent<Object, Object> event) {
+			disarm(timedMap, getKeyData(event));
+		}
+
+		@Override
+		public void entryEvicted(EntryEvent<Object, Object> event) {
+			disarm(timedMap, getKeyData(event));
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.io.IOException;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+
+/**
+ * {@linkplain SpillCodec} writes and reads the worker queue elements of an
+ * expiration service to and from its local overflow files. It is provided by
+ * the service to {@linkplain WorkerDispatcher} for the
+ * {@linkplain OverflowPolicy#SPILL} overflow policy. The streams are provided by
+ * the member's serialization service, so the keys and values can be written
+ * with {@linkplain ObjectDataOutput#writeObject(Object)}.
+ *
+ * @author dpark
+ *
+ * @param <E> Queue element type
+ */
+public interface SpillCodec<E> {
+
+	/**
+	 * Writes the specified element.
+	 */
+	void write(E element, ObjectDataOutput out) throws IOException;
+
+	/**
+	 * Reads an element written by {@linkplain #write(Object, ObjectDataOutput)}.
+	 */
+	E read(ObjectDataInput in) throws IOException;
+}
@@ -0,0 +1,251 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.nio.BufferObjectDataOutput;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.logging.ILogger;
+import com.hazelcast.spi.impl.SerializationServiceSupport;
+
+/**
+ * {@linkplain SpillFile} is the local overflow file of a single
+ * {@linkplain WorkerQueue} with the {@linkplain OverflowPolicy#SPILL} overflow
+ * policy. Elements are appended as length prefixed records serialized by the
+ * service's {@linkplain SpillCodec} and read back in the same order. The file
+ * is truncated whenever it has been drained, and it is deleted when the queue
+ * is closed. Files are named
+ * &lt;dir&gt;/&lt;instance&gt;-&lt;tag&gt;-&lt;queue index&gt;.spill. An
+ * existing file, e.g., of a member that crashed, is discarded since its events
+ * belong to the sessions of the previous member.
+ *
+ * @author dpark
+ *
+ * @param <E> Queue element type
+ */
+class SpillFile<E> {
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final SpillCodec<E> codec;
+	private final InternalSerializationService serializationService;
+	private final long maxSize;
+	private final ILogger logger;
+	private final String logPrefix;
+
+	private final byte[] header = new byte[4];
+	private long readPosition;
+	private long writePosition;
+	private boolean isClosed;
+	private boolean isFailed;
+	private volatile boolean isSerializationWarned;
+	private volatile int size;
+	private volatile long spilledCount;
+
+	private SpillFile(File file, SpillCodec<E> codec, InternalSerializationService serializationService,
+			long maxSize, ILogger logger, String logPrefix) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "rw");
+		this.raf.setLength(0);
+		this.codec = codec;
+		this.serializationService = serializationService;
+		this.maxSize = maxSize;
+		this.logger = logger;
+		this.logPrefix = logPrefix;
+	}
+
+	/**
+	 * Returns a new overflow file, or null if it cannot be created, in which case
+	 * the error is logged.
+	 *
+	 * @param hazelcastInstance Member instance that serializes the elements
+	 * @param dir               Overflow file directory
+	 * @param tag               Service tag
+	 * @param queueIndex        Worker queue index
+	 * @param maxSizeMb         Maximum file size in megabytes
+	 * @param codec             Element codec
+	 * @param logger            Logger. If null, errors are not logged.
+	 * @param logPrefix         Log message prefix
+	 */
+	static <E> SpillFile<E> create(HazelcastInstance hazelcastInstance, String dir, String tag, int queueIndex,
+			int maxSizeMb, SpillCodec<E> codec, ILogger logger, String logPrefix) {
+		File file = new File(dir, hazelcastInstance.getName() + "-" + tag + "-" + queueIndex + ".spill");
+		try {
+			File parent = file.getAbsoluteFile().getParentFile();
+			if (parent.exists() == false && parent.mkdirs() == false) {
+				throw new IOException("Unable to create directory " + parent.getAbsolutePath());
+			}
+			InternalSerializationService serializationService = (InternalSerializationService) ((SerializationServiceSupport) hazelcastInstance)
+					.getSerializationService();
+			return new SpillFile<E>(file, codec, serializationService, maxSizeMb * 1024L * 1024L, logger,
+					logPrefix);
+		} catch (Exception ex) {
+			if (logger != null) {
+				logger.warning(logPrefix + SpillFile.class.getSimpleName() + " error [" + file.getAbsolutePath()
+						+ "]. Queue " + queueIndex + " blocks instead of spilling.", ex);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Appends the specified element.
+	 *
+	 * @return false if the file has reached its maximum size, is closed or has
+	 *         failed.
+	 */
+	boolean write(E element) {
+		return append(element, false);
+	}
+
+	/**
+	 * Appends the specified element only if the file has unread elements so that
+	 * the elements that arrive while the file is being drained stay behind the
+	 * spilled elements.
+	 *
+	 * @return false if the file is empty or the element could not be appended.
+	 */
+	boolean writeIfPending(E element) {
+		if (size == 0) {
+			return false;
+		}
+		return append(element, true);
+	}
+
+	private boolean append(E element, boolean ifPending) {
+		byte[] bytes;
+		try {
+			BufferObjectDataOutput out = serializationService.createObjectDataOutput();
+			out.writeInt(0);
+			codec.write(element, out);
+			bytes = out.toByteArray();
+			out.close();
+		} catch (Exception ex) {
+			if (isSerializationWarned == false) {
+				isSerializationWarned = true;
+				if (logger != null) {
+					logger.warning(logPrefix + "Unable to spill an event. The queue blocks instead of spilling.", ex);
+				}
+			}
+			return false;
+		}
+		int length = bytes.length - 4;
+		bytes[0] = (byte) (length >>> 24);
+		bytes[1] = (byte) (length >>> 16);
+		bytes[2] = (byte) (length >>> 8);
+		bytes[3] = (byte) length;
+		synchronized (this) {
+			if (isClosed || isFailed || (ifPending && size == 0) || writePosition + bytes.length > maxSize) {
+				return false;
+			}
+			try {
+				raf.seek(writePosition);
+				raf.write(bytes);
+			} catch (IOException ex) {
+				failed("write", ex);
+				return false;
+			}
+			writePosition += bytes.length;
+			size++;
+			spilledCount++;
+			return true;
+		}
+	}
+
+	/**
+	 * Removes and returns the oldest element.
+	 *
+	 * @return null if the file is empty.
+	 */
+	E read() {
+		if (size == 0) {
+			return null;
+		}
+		byte[] bytes;
+		synchronized (this) {
+			if (size == 0 || isClosed) {
+				return null;
+			}
+			try {
+				raf.seek(readPosition);
+				raf.readFully(header);
+				int length = ((header[0] & 0xff) << 24) | ((header[1] & 0xff) << 16) | ((header[2] & 0xff) << 8)
+						| (header[3] & 0xff);
+				bytes = new byte[length];
+				raf.readFully(bytes);
+				readPosition += 4 + length;
+				size--;
+				if (size == 0) {
+					readPosition = 0;
+					writePosition = 0;
+					raf.setLength(0);
+				}
+			} catch (IOException ex) {
+				failed("read", ex);
+				return null;
+			}
+		}
+		try {
+			return codec.read(serializationService.createObjectDataInput(bytes));
+		} catch (Exception ex) {
+			if (logger != null) {
+				logger.warning(logPrefix + "Discarded a spilled event that could not be deserialized", ex);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Discards the unread elements and stops spilling after an I/O error.
+	 */
+	private synchronized void failed(String operation, Exception ex) {
+		if (isFailed) {
+			return;
+		}
+		isFailed = true;
+		if (logger != null) {
+			logger.warning(logPrefix + SpillFile.class.getSimpleName() + " " + operation + " error ["
+					+ file.getAbsolutePath() + "]. Discarded " + size
+					+ " spilled events. The queue blocks instead of spilling.", ex);
+		}
+		size = 0;
+	}
+
+	/**
+	 * Returns the number of unread elements.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the total number of elements written.
+	 */
+	long getSpilledCount() {
+		return spilledCount;
+	}
+
+	/**
+	 * Discards the unread elements and deletes the file.
+	 */
+	synchronized void close() {
+		if (isClosed) {
+			return;
+		}
+		isClosed = true;
+		size = 0;
+		try {
+			raf.close();
+		} catch (IOException ex) {
+			// ignore
+		}
+		file.delete();
+	}
+
+	@Override
+	public String toString() {
+		return file.getPath();
+	}
+}
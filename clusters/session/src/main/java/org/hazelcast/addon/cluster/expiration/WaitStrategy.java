@@ -0,0 +1,33 @@
+package org.hazelcast.addon.cluster.expiration;
+
+/**
+ * {@linkplain WaitStrategy} determines how a worker thread waits on an empty
+ * {@linkplain QueueType#RING_BUFFER} queue and how a producer waits on a full
+ * queue with {@linkplain OverflowPolicy#BLOCK}. It is configured with the
+ * following property.
+ *
+ * <pre>
+ * hazelcast.addon.cluster.expiration.queue.wait-strategy
+ * </pre>
+ *
+ * @author dpark
+ *
+ */
+public enum WaitStrategy {
+	/**
+	 * Parks the waiting thread. The worker thread is unparked by the producers.
+	 * This is the default strategy.
+	 */
+	PARK,
+
+	/**
+	 * Yields the waiting thread. Lower latency than PARK at the cost of CPU.
+	 */
+	YIELD,
+
+	/**
+	 * Spins the waiting thread. Lowest latency but occupies a CPU core per worker
+	 * thread. Use only on members with dedicated cores.
+	 */
+	BUSY_SPIN
+}
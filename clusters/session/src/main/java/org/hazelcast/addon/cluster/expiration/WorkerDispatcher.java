@@ -0,0 +1,485 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.logging.ILogger;
+import com.hazelcast.partition.PartitionService;
+
+/**
+ * {@linkplain WorkerDispatcher} owns the worker queues of an expiration
+ * service and dispatches events to them according to the configured
+ * {@linkplain DispatchMode}. For {@linkplain DispatchMode#SESSION} and
+ * {@linkplain DispatchMode#PARTITION}, an idle worker steals a batch from the
+ * largest queue if that queue has reached the steal threshold and no other
+ * worker is processing a batch drained from it. A queue is claimed by the
+ * worker that drains it until that worker drains again, so the batches of a
+ * queue are processed one at a time in queue order and the events of the same
+ * session or partition are never processed concurrently or out of order.
+ * Stealing thus moves a backed up queue to an idle worker while its owner is
+ * busy processing a batch stolen from another queue.
+ * <p>
+ * The dispatcher enters the high watermark state when any bounded queue
+ * reaches {@linkplain WorkerQueueConfig#getHighWatermark()} of its capacity or
+ * any events are spilled, and leaves it when all queues are below half of the
+ * watermark and no spilled events are left. The state is evaluated by the
+ * workers each time they drain, not by the event threads that enqueue. An event
+ * that finds its queue full, however, enters the state immediately so that a
+ * burst is detected even if the workers are stuck in a long batch. It is logged
+ * and exposed via JMX and metrics so that a slow member can be detected.
+ *
+ * @author dpark
+ *
+ * @param <E> Queue element type
+ */
+public class WorkerDispatcher<E> {
+
+	/**
+	 * Time in milliseconds an idle worker waits on its own queue before
+	 * attempting to steal.
+	 */
+	private final static long STEAL_POLL_INTERVAL_IN_MSEC = 100;
+
+	/**
+	 * Time in milliseconds a worker waits before returning an empty batch if its
+	 * own queue is claimed by another worker and there is nothing to steal.
+	 */
+	private final static long CLAIM_WAIT_IN_MSEC = 1;
+
+	private final WorkerQueue<E> queues[];
+
+	/**
+	 * Worker index + 1 of the worker that claimed each queue, or 0 if unclaimed.
+	 */
+	private final AtomicIntegerArray claims;
+
+	/**
+	 * Index of the queue claimed by each worker, or -1. Each element is accessed
+	 * by its worker only.
+	 */
+	private final int[] claimedIndexes;
+	private final DispatchMode dispatchMode;
+	private final PartitionService partitionService;
+	private final int stealThreshold;
+	private final double highWatermark;
+	private final ILogger logger;
+	private final String logPrefix;
+	private final AtomicBoolean isHighWatermark = new AtomicBoolean();
+	private final AtomicLong highWatermarkCount = new AtomicLong();
+
+	/**
+	 * Constructs a new dispatcher.
+	 *
+	 * @param hazelcastInstance Hazelcast instance used for determining partition
+	 *                          IDs. If null, then {@linkplain DispatchMode#PARTITION}
+	 *                          falls back to hashing the key.
+	 * @param dispatchMode      Dispatch mode
+	 * @param queueCount        Number of worker queues
+	 * @param stealThreshold    Minimum size of a queue to steal from. A value less
+	 *                          than or equal to 0 disables work stealing.
+	 * @param queueConfig       Worker queue configuration
+	 */
+	public WorkerDispatcher(HazelcastInstance hazelcastInstance, DispatchMode dispatchMode, int queueCount,
+			int stealThreshold, WorkerQueueConfig queueConfig) {
+		this(hazelcastInstance, dispatchMode, queueCount, stealThreshold, queueConfig, null, null, null, "");
+	}
+
+	/**
+	 * Constructs a new dispatcher that spills the events that do not fit in the
+	 * queues if the overflow policy is {@linkplain OverflowPolicy#SPILL}.
+	 *
+	 * @param hazelcastInstance Hazelcast instance used for determining partition
+	 *                          IDs and serializing spilled events. If null, then
+	 *                          {@linkplain DispatchMode#PARTITION} falls back to
+	 *                          hashing the key and SPILL behaves as BLOCK.
+	 * @param dispatchMode      Dispatch mode
+	 * @param queueCount        Number of worker queues
+	 * @param stealThreshold    Minimum size of a queue to steal from. A value less
+	 *                          than or equal to 0 disables work stealing.
+	 * @param queueConfig       Worker queue configuration
+	 * @param tag               Service tag used for naming the overflow files
+	 * @param spillCodec        Codec of the spilled events. If null, SPILL
+	 *                          behaves as BLOCK.
+	 * @param logger            Logger. If null, the high watermark state and
+	 *                          errors are not logged.
+	 * @param logPrefix         Log message prefix
+	 */
+	public WorkerDispatcher(HazelcastInstance hazelcastInstance, DispatchMode dispatchMode, int queueCount,
+			int stealThreshold, WorkerQueueConfig queueConfig, String tag, SpillCodec<E> spillCodec, ILogger logger,
+			String logPrefix) {
+		this.dispatchMode = dispatchMode;
+		this.partitionService = hazelcastInstance == null ? null : hazelcastInstance.getPartitionService();
+		this.stealThreshold = dispatchMode == DispatchMode.LEAST_LOADED ? 0 : stealThreshold;
+		this.highWatermark = queueConfig.getHighWatermark();
+		this.logger = logger;
+		this.logPrefix = logPrefix;
+		this.queues = newQueueArray(queueCount);
+		this.claims = new AtomicIntegerArray(queueCount);
+		this.claimedIndexes = new int[queueCount];
+		for (int i = 0; i < queueCount; i++) {
+			claimedIndexes[i] = -1;
+		}
+		boolean isSpill = queueConfig.getOverflowPolicy() == OverflowPolicy.SPILL;
+		if (isSpill && (hazelcastInstance == null || spillCodec == null) && logger != null) {
+			logger.warning(logPrefix + "Overflow policy " + OverflowPolicy.SPILL
+					+ " is not supported without a member instance. Blocking instead.");
+		}
+		for (int i = 0; i < queueCount; i++) {
+			SpillFile<E> spillFile = null;
+			if (isSpill && hazelcastInstance != null && spillCodec != null) {
+				spillFile = SpillFile.create(hazelcastInstance, queueConfig.getSpillDir(), tag, i,
+						queueConfig.getSpillMaxMb(), spillCodec, logger, logPrefix);
+			}
+			queues[i] = queueConfig.createQueue(spillFile);
+			// A full queue is above any watermark. Rare, so the queues are not scanned.
+			queues[i].setOverflowListener(this::enterHighWatermark);
+		}
+	}
+
+	/**
+	 * Returns a new array of the specified length. Generic arrays cannot be
+	 * created directly.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E> WorkerQueue<E>[] newQueueArray(int length) {
+		return (WorkerQueue<E>[]) new WorkerQueue<?>[length];
+	}
+
+	/**
+	 * Returns the dispatch mode.
+	 */
+	public DispatchMode getDispatchMode() {
+		return dispatchMode;
+	}
+
+	/**
+	 * Returns true if work stealing is enabled.
+	 */
+	public boolean isStealEnabled() {
+		return stealThreshold > 0 && queues.length > 1;
+	}
+
+	/**
+	 * Returns the index of the queue that the specified dispatch key maps to.
+	 *
+	 * @param dispatchKey Session ID for {@linkplain DispatchMode#SESSION} or
+	 *                    primary map key for {@linkplain DispatchMode#PARTITION}.
+	 *                    If null, then the least loaded queue is returned.
+	 */
+	public int getQueueIndex(Object dispatchKey) {
+		if (queues.length == 1) {
+			return 0;
+		}
+		if (dispatchKey == null) {
+			return getMinQueueIndex();
+		}
+		switch (dispatchMode) {
+		case SESSION:
+			return hashIndex(dispatchKey.hashCode());
+		case PARTITION:
+			if (partitionService != null) {
+				return partitionService.getPartition(dispatchKey).getPartitionId() % queues.length;
+			}
+			return hashIndex(dispatchKey.hashCode());
+		case LEAST_LOADED:
+		default:
+			return getMinQueueIndex();
+		}
+	}
+
+	private int hashIndex(int hash) {
+		hash ^= (hash >>> 16);
+		return (hash & 0x7fffffff) % queues.length;
+	}
+
+	/**
+	 * Returns the index of the queue that has the smallest size.
+	 */
+	private int getMinQueueIndex() {
+		int minIndex = 0;
+		int minSize = queues[0].size();
+		for (int i = 1; i < queues.length && minSize > 0; i++) {
+			int size = queues[i].size();
+			if (size < minSize) {
+				minIndex = i;
+				minSize = size;
+			}
+		}
+		return minIndex;
+	}
+
+	/**
+	 * Enqueues the specified element into the specified queue.
+	 */
+	public boolean offer(int queueIndex, E element) {
+		return queues[queueIndex].offer(element);
+	}
+
+	/**
+	 * Drains up to the specified number of elements into the specified batch
+	 * list after updating the high watermark state. If work stealing is
+	 * disabled, then this method blocks until the worker's own queue has at least
+	 * one element. Otherwise, it first releases the queue claimed by the previous
+	 * call and claims its own queue. It then
+	 * waits up to {@value #STEAL_POLL_INTERVAL_IN_MSEC} msec on its own queue and
+	 * steals from the largest unclaimed queue, returning with an empty batch if
+	 * there is nothing to steal so that the caller can check its state. The
+	 * caller must finish processing the returned batch before invoking this
+	 * method again.
+	 *
+	 * @param queueIndex Worker's own queue index
+	 * @param batch      List to add the drained elements to
+	 * @param maxSize    Maximum number of elements to drain
+	 * @return Number of elements drained
+	 * @throws InterruptedException Thrown if interrupted while waiting
+	 */
+	public int drain(int queueIndex, List<E> batch, int maxSize) throws InterruptedException {
+		checkHighWatermark();
+		WorkerQueue<E> queue = queues[queueIndex];
+		if (isStealEnabled() == false) {
+			batch.add(queue.take());
+			return 1 + queue.drainTo(batch, maxSize - 1);
+		}
+		release(queueIndex);
+		if (claim(queueIndex, queueIndex)) {
+			E first = queue.poll(STEAL_POLL_INTERVAL_IN_MSEC, TimeUnit.MILLISECONDS);
+			if (first != null) {
+				batch.add(first);
+				return 1 + queue.drainTo(batch, maxSize - 1);
+			}
+			release(queueIndex);
+			return steal(queueIndex, batch, maxSize);
+		}
+
+		// Own queue is being processed by another worker
+		int count = steal(queueIndex, batch, maxSize);
+		if (count == 0) {
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(CLAIM_WAIT_IN_MSEC));
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Claims and steals a batch from the largest unclaimed queue if it has
+	 * reached the steal threshold.
+	 */
+	private int steal(int queueIndex, List<E> batch, int maxSize) {
+		int victimIndex = -1;
+		int victimSize = stealThreshold - 1;
+		for (int i = 0; i < queues.length; i++) {
+			if (i != queueIndex && claims.get(i) == 0) {
+				int size = queues[i].size();
+				if (size > victimSize) {
+					victimIndex = i;
+					victimSize = size;
+				}
+			}
+		}
+		if (victimIndex == -1 || claim(queueIndex, victimIndex) == false) {
+			return 0;
+		}
+		int count = queues[victimIndex].drainTo(batch, maxSize);
+		if (count == 0) {
+			release(queueIndex);
+		}
+		return count;
+	}
+
+	/**
+	 * Claims the specified queue for the specified worker.
+	 *
+	 * @return false if the queue is claimed by another worker
+	 */
+	private boolean claim(int workerIndex, int queueIndex) {
+		if (claims.compareAndSet(queueIndex, 0, workerIndex + 1)) {
+			claimedIndexes[workerIndex] = queueIndex;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Releases the queue claimed by the specified worker, if any.
+	 */
+	private void release(int workerIndex) {
+		int queueIndex = claimedIndexes[workerIndex];
+		if (queueIndex != -1) {
+			claimedIndexes[workerIndex] = -1;
+			claims.set(queueIndex, 0);
+		}
+	}
+
+	/**
+	 * Releases the queue claimed by the specified worker and clears its own
+	 * queue. It is invoked by the worker when it stops.
+	 */
+	public void clear(int queueIndex) {
+		if (isStealEnabled()) {
+			release(queueIndex);
+		}
+		queues[queueIndex].clear();
+	}
+
+	/**
+	 * Discards the spilled events and deletes the overflow files. The queues must
+	 * not be used afterwards.
+	 */
+	public void close() {
+		for (int i = 0; i < queues.length; i++) {
+			queues[i].close();
+		}
+	}
+
+	/**
+	 * Returns the number of elements in the specified queue including its
+	 * spilled elements.
+	 */
+	public int size(int queueIndex) {
+		return queues[queueIndex].size() + queues[queueIndex].getSpillSize();
+	}
+
+	/**
+	 * Returns the total number of elements in all queues including the spilled
+	 * elements.
+	 */
+	public int size() {
+		int totalSize = 0;
+		for (int i = 0; i < queues.length; i++) {
+			totalSize += queues[i].size() + queues[i].getSpillSize();
+		}
+		return totalSize;
+	}
+
+	/**
+	 * Returns the total number of spilled events that have not been consumed yet.
+	 */
+	public int getSpillSize() {
+		int totalSize = 0;
+		for (int i = 0; i < queues.length; i++) {
+			totalSize += queues[i].getSpillSize();
+		}
+		return totalSize;
+	}
+
+	/**
+	 * Returns the total number of events spilled by all queues.
+	 */
+	public long getSpilledCount() {
+		long count = 0;
+		for (int i = 0; i < queues.length; i++) {
+			count += queues[i].getSpilledCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Updates and returns the high watermark state. The state changes are logged.
+	 * It is invoked by {@linkplain #drain(int, List, int)} so that the queues are
+	 * not scanned on every enqueue. The state is also entered by the events that
+	 * find their queue full.
+	 *
+	 * @return true if the dispatcher is in the high watermark state
+	 */
+	public boolean checkHighWatermark() {
+		boolean isHigh = false;
+		boolean isLow = true;
+		for (int i = 0; i < queues.length && isHigh == false; i++) {
+			WorkerQueue<E> queue = queues[i];
+			double size = queue.size();
+			double watermark = queue.getCapacity() * highWatermark;
+			if (queue.getSpillSize() > 0 || size >= watermark) {
+				isHigh = true;
+			} else if (size >= watermark / 2) {
+				isLow = false;
+			}
+		}
+		if (isHigh) {
+			enterHighWatermark();
+		} else if (isLow && isHighWatermark.compareAndSet(true, false)) {
+			if (logger != null) {
+				logger.info(logPrefix + "Worker queues dropped below the high watermark: size=" + size()
+						+ ", rejectedCount=" + getRejectedCount() + ", spilledCount=" + getSpilledCount());
+			}
+		}
+		return isHighWatermark.get();
+	}
+
+	/**
+	 * Enters the high watermark state if not already in it and logs the change.
+	 */
+	private void enterHighWatermark() {
+		if (isHighWatermark.compareAndSet(false, true)) {
+			highWatermarkCount.incrementAndGet();
+			if (logger != null) {
+				logger.warning(logPrefix + "Worker queues reached the high watermark: size=" + size()
+						+ ", spillSize=" + getSpillSize() + ", rejectedCount=" + getRejectedCount()
+						+ ", spilledCount=" + getSpilledCount()
+						+ ". Events are arriving faster than they are processed.");
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the dispatcher is in the high watermark state as of the
+	 * last {@linkplain #checkHighWatermark()} call or full queue.
+	 */
+	public boolean isHighWatermark() {
+		return isHighWatermark.get();
+	}
+
+	/**
+	 * Returns the number of times the dispatcher entered the high watermark
+	 * state.
+	 */
+	public long getHighWatermarkCount() {
+		return highWatermarkCount.get();
+	}
+
+	/**
+	 * Returns the total number of events rejected by all queues.
+	 */
+	public long getRejectedCount() {
+		long count = 0;
+		for (int i = 0; i < queues.length; i++) {
+			count += queues[i].getRejectedCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the total number of events coalesced by all queues.
+	 */
+	public long getCoalescedCount() {
+		long count = 0;
+		for (int i = 0; i < queues.length; i++) {
+			count += queues[i].getCoalescedCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the total number of offers that blocked on full queues.
+	 */
+	public long getBlockedCount() {
+		long count = 0;
+		for (int i = 0; i < queues.length; i++) {
+			count += queues[i].getBlockedCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of queues.
+	 */
+	public int getQueueCount() {
+		return queues.length;
+	}
+}
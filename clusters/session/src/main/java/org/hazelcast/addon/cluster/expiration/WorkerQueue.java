@@ -0,0 +1,416 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@linkplain WorkerQueue} is the queue layer between the expiration listeners
+ * (producers) and the worker threads (consumers). The implementations provide
+ * the non-blocking {@linkplain #tryOffer(Object)} and {@linkplain #tryPoll()}
+ * methods. This class applies the {@linkplain OverflowPolicy} and the
+ * {@linkplain WaitStrategy} on top of them and keeps the overflow counts.
+ * For {@linkplain OverflowPolicy#SPILL}, the elements that do not fit are
+ * written to a {@linkplain SpillFile} and the consumers read them once the
+ * queue has been drained. While the file has unread elements, new elements are
+ * also written to it so that the order is preserved.
+ * <p>
+ * A queue is drained by its own worker thread and, if work stealing is
+ * enabled, by other worker threads via {@linkplain #drainTo(Collection, int)}.
+ * Only the owning worker thread blocks on the queue.
+ *
+ * @author dpark
+ *
+ * @param <E> Element type
+ */
+public abstract class WorkerQueue<E> {
+
+	/**
+	 * Maximum time in nanoseconds the worker thread parks before rechecking the
+	 * queue. The producers unpark it as soon as an element is added.
+	 */
+	private final static long CONSUMER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	/**
+	 * Time in nanoseconds a blocked producer parks before retrying.
+	 */
+	private final static long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	protected final int capacity;
+	protected final WaitStrategy waitStrategy;
+	protected final OverflowPolicy overflowPolicy;
+	protected final long blockTimeoutNanos;
+	protected final SpillFile<E> spillFile;
+
+	// Elements currently in the queue. Maintained for COALESCE only.
+	private final Set<E> pendingSet;
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong coalescedCount = new AtomicLong();
+	private final AtomicLong blockedCount = new AtomicLong();
+
+	// Worker thread parked on the empty queue
+	private volatile Thread waiter;
+
+	// Notified each time an element finds the queue full
+	private volatile Runnable overflowListener;
+
+	protected WorkerQueue(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+		this(capacity, waitStrategy, overflowPolicy, 0, null);
+	}
+
+	protected WorkerQueue(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy,
+			long blockTimeoutMillis, SpillFile<E> spillFile) {
+		this.capacity = capacity;
+		this.waitStrategy = waitStrategy;
+		this.overflowPolicy = overflowPolicy;
+		this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, blockTimeoutMillis));
+		this.spillFile = overflowPolicy == OverflowPolicy.SPILL ? spillFile : null;
+		if (overflowPolicy == OverflowPolicy.COALESCE) {
+			pendingSet = ConcurrentHashMap.newKeySet();
+		} else {
+			pendingSet = null;
+		}
+	}
+
+	/**
+	 * Creates a new queue.
+	 *
+	 * @param queueType      Queue type
+	 * @param capacity       Queue capacity. For {@linkplain QueueType#LINKED}, a
+	 *                       value less than or equal to 0 creates an unbounded
+	 *                       queue. For {@linkplain QueueType#RING_BUFFER}, it is
+	 *                       rounded up to the next power of two.
+	 * @param waitStrategy   Wait strategy
+	 * @param overflowPolicy Overflow policy
+	 */
+	public static <E> WorkerQueue<E> create(QueueType queueType, int capacity, WaitStrategy waitStrategy,
+			OverflowPolicy overflowPolicy) {
+		return create(queueType, capacity, waitStrategy, overflowPolicy, 0, null);
+	}
+
+	/**
+	 * Creates a new queue.
+	 *
+	 * @param queueType          Queue type
+	 * @param capacity           Queue capacity
+	 * @param waitStrategy       Wait strategy
+	 * @param overflowPolicy     Overflow policy
+	 * @param blockTimeoutMillis Maximum time in milliseconds an element waits on
+	 *                           the full queue before it is rejected or, for
+	 *                           {@linkplain OverflowPolicy#SPILL}, spilled. 0 or
+	 *                           less waits indefinitely or spills immediately.
+	 * @param spillFile          Overflow file for {@linkplain OverflowPolicy#SPILL}.
+	 *                           If null, SPILL behaves as BLOCK.
+	 */
+	static <E> WorkerQueue<E> create(QueueType queueType, int capacity, WaitStrategy waitStrategy,
+			OverflowPolicy overflowPolicy, long blockTimeoutMillis, SpillFile<E> spillFile) {
+		switch (queueType) {
+		case RING_BUFFER:
+			return new RingBufferWorkerQueue<E>(capacity, waitStrategy, overflowPolicy, blockTimeoutMillis,
+					spillFile);
+		case LINKED:
+		default:
+			return new LinkedWorkerQueue<E>(capacity, waitStrategy, overflowPolicy, blockTimeoutMillis, spillFile);
+		}
+	}
+
+	/**
+	 * Inserts the specified element if space is available.
+	 *
+	 * @return false if the queue is full.
+	 */
+	protected abstract boolean tryOffer(E element);
+
+	/**
+	 * Removes and returns the head element.
+	 *
+	 * @return null if the queue is empty.
+	 */
+	protected abstract E tryPoll();
+
+	/**
+	 * Returns the number of elements in the queue.
+	 */
+	public abstract int size();
+
+	/**
+	 * Offers the specified element according to the overflow policy.
+	 *
+	 * @param element Element to enqueue
+	 * @return false if the element is rejected. Coalesced and spilled elements
+	 *         return true.
+	 */
+	public boolean offer(E element) {
+		if (pendingSet != null && pendingSet.add(element) == false) {
+			coalescedCount.incrementAndGet();
+			return true;
+		}
+		if ((spillFile == null || spillFile.writeIfPending(element) == false) && tryOffer(element) == false
+				&& overflow(element) == false) {
+			if (pendingSet != null) {
+				pendingSet.remove(element);
+			}
+			return false;
+		}
+		Thread thread = waiter;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+		return true;
+	}
+
+	/**
+	 * Handles the specified element that found the queue full.
+	 *
+	 * @return false if the element is rejected.
+	 */
+	private boolean overflow(E element) {
+		Runnable listener = overflowListener;
+		if (listener != null) {
+			listener.run();
+		}
+		if (overflowPolicy == OverflowPolicy.REJECT) {
+			rejectedCount.incrementAndGet();
+			return false;
+		}
+		if (spillFile != null && blockTimeoutNanos == 0 && spillFile.write(element)) {
+			return true;
+		}
+		blockedCount.incrementAndGet();
+		long deadline = System.nanoTime() + blockTimeoutNanos;
+		int idleCount = 0;
+		while (tryOffer(element) == false) {
+			if (blockTimeoutNanos > 0 && deadline - System.nanoTime() <= 0) {
+				if (spillFile == null) {
+					rejectedCount.incrementAndGet();
+					return false;
+				}
+				// Keep blocking if the overflow file is full. Spilled events are never
+				// dropped.
+				if (spillFile.write(element)) {
+					return true;
+				}
+			}
+			idleProducer(idleCount++);
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the listener that is notified by the producer thread each time an
+	 * element finds the queue full, before the overflow policy is applied.
+	 *
+	 * @param overflowListener Overflow listener. If null, no listener is notified.
+	 */
+	void setOverflowListener(Runnable overflowListener) {
+		this.overflowListener = overflowListener;
+	}
+
+	/**
+	 * Removes and returns the head element, or the oldest spilled element if the
+	 * queue is empty.
+	 *
+	 * @return null if both the queue and the overflow file are empty.
+	 */
+	private E pollNext() {
+		E element = tryPoll();
+		if (element == null && spillFile != null) {
+			element = spillFile.read();
+		}
+		return element;
+	}
+
+	/**
+	 * Retrieves and removes the head element, waiting if necessary until an
+	 * element becomes available.
+	 *
+	 * @throws InterruptedException Thrown if interrupted while waiting
+	 */
+	public E take() throws InterruptedException {
+		E element;
+		int idleCount = 0;
+		while ((element = pollNext()) == null) {
+			idleConsumer(idleCount++, CONSUMER_PARK_NANOS);
+		}
+		return consumed(element);
+	}
+
+	/**
+	 * Retrieves and removes the head element, waiting up to the specified time if
+	 * necessary for an element to become available.
+	 *
+	 * @return null if the specified waiting time elapses before an element is
+	 *         available.
+	 * @throws InterruptedException Thrown if interrupted while waiting
+	 */
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E element = pollNext();
+		if (element != null) {
+			return consumed(element);
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int idleCount = 0;
+		while ((element = pollNext()) == null) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return null;
+			}
+			idleConsumer(idleCount++, Math.min(remaining, CONSUMER_PARK_NANOS));
+		}
+		return consumed(element);
+	}
+
+	/**
+	 * Removes at most the specified number of elements and adds them to the
+	 * specified collection without waiting.
+	 *
+	 * @return Number of elements transferred
+	 */
+	public int drainTo(Collection<? super E> collection, int maxElements) {
+		int count = 0;
+		E element;
+		while (count < maxElements && (element = pollNext()) != null) {
+			collection.add(consumed(element));
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Removes all elements including the spilled elements.
+	 */
+	public void clear() {
+		while (pollNext() != null)
+			;
+		if (pendingSet != null) {
+			pendingSet.clear();
+		}
+	}
+
+	/**
+	 * Discards the spilled elements and deletes the overflow file, if any.
+	 */
+	public void close() {
+		if (spillFile != null) {
+			spillFile.close();
+		}
+	}
+
+	/**
+	 * Returns the queue capacity. Unbounded queues return
+	 * {@linkplain Integer#MAX_VALUE}.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns true if the elements that do not fit are written to an overflow
+	 * file.
+	 */
+	public boolean isSpillEnabled() {
+		return spillFile != null;
+	}
+
+	/**
+	 * Returns the number of spilled elements that have not been consumed yet.
+	 */
+	public int getSpillSize() {
+		return spillFile == null ? 0 : spillFile.size();
+	}
+
+	/**
+	 * Returns the total number of elements written to the overflow file by
+	 * {@linkplain OverflowPolicy#SPILL}.
+	 */
+	public long getSpilledCount() {
+		return spillFile == null ? 0 : spillFile.getSpilledCount();
+	}
+
+	/**
+	 * Returns the number of elements rejected by {@linkplain OverflowPolicy#REJECT}
+	 * or after the block timeout.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * Returns the number of duplicate elements dropped by
+	 * {@linkplain OverflowPolicy#COALESCE}.
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	/**
+	 * Returns the number of offers that found the queue full and blocked, i.e.,
+	 * were not rejected or spilled immediately.
+	 */
+	public long getBlockedCount() {
+		return blockedCount.get();
+	}
+
+	protected E consumed(E element) {
+		if (pendingSet != null) {
+			pendingSet.remove(element);
+		}
+		return element;
+	}
+
+	/**
+	 * Waits on the empty queue according to the wait strategy. Only PARK
+	 * registers the calling thread to be unparked by the producers.
+	 */
+	protected void idleConsumer(int idleCount, long parkNanos) throws InterruptedException {
+		switch (waitStrategy) {
+		case BUSY_SPIN:
+			break;
+		case YIELD:
+			Thread.yield();
+			break;
+		case PARK:
+		default:
+			if (idleCount < 10) {
+				Thread.yield();
+			} else {
+				waiter = Thread.currentThread();
+				if (size() == 0 && getSpillSize() == 0) {
+					LockSupport.parkNanos(this, parkNanos);
+				}
+				waiter = null;
+			}
+			break;
+		}
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * Waits on the full queue according to the wait strategy.
+	 */
+	protected void idleProducer(int idleCount) {
+		switch (waitStrategy) {
+		case BUSY_SPIN:
+			break;
+		case YIELD:
+			Thread.yield();
+			break;
+		case PARK:
+		default:
+			LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+			break;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[capacity=" + capacity + ", waitStrategy=" + waitStrategy
+				+ ", overflowPolicy=" + overflowPolicy + ", spillFile=" + spillFile + "]";
+	}
+}
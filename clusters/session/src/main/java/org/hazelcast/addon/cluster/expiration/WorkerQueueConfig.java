@@ -0,0 +1,207 @@
+package org.hazelcast.addon.cluster.expiration;
+
+import java.util.Properties;
+
+import com.hazelcast.logging.ILogger;
+
+/**
+ * {@linkplain WorkerQueueConfig} holds the worker queue properties read from
+ * the expiration service properties and creates the worker queues.
+ *
+ * @author dpark
+ *
+ */
+public class WorkerQueueConfig implements SessionExpirationServiceConfiguration {
+
+	private QueueType queueType = QueueType.LINKED;
+	private int capacity = 0;
+	private WaitStrategy waitStrategy = WaitStrategy.PARK;
+	private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+	private long blockTimeoutMillis = 0;
+	private String spillDir = DEFAULT_QUEUE_SPILL_DIR;
+	private int spillMaxMb = DEFAULT_QUEUE_SPILL_MAX_MB;
+	private double highWatermark = DEFAULT_QUEUE_HIGH_WATERMARK;
+
+	/**
+	 * Creates the default configuration, i.e., an unbounded
+	 * {@linkplain QueueType#LINKED} queue.
+	 */
+	public WorkerQueueConfig() {
+	}
+
+	/**
+	 * Creates a configuration from the specified properties. Invalid values are
+	 * logged and replaced with the defaults.
+	 *
+	 * @param properties Expiration service properties
+	 * @param logger     Logger. If null, invalid values are not logged.
+	 * @param logPrefix  Log message prefix
+	 */
+	public WorkerQueueConfig(Properties properties, ILogger logger, String logPrefix) {
+		this(properties, false, logger, logPrefix);
+	}
+
+	/**
+	 * Creates a configuration from the specified properties. The queue capacity
+	 * and overflow policy of the expiration or reset services override the shared
+	 * values if defined. Invalid values are logged and replaced with the
+	 * defaults.
+	 *
+	 * @param properties Expiration service properties
+	 * @param isReset    true for the services that queue idle timeout resets,
+	 *                   false for the services that queue expiration events
+	 * @param logger     Logger. If null, invalid values are not logged.
+	 * @param logPrefix  Log message prefix
+	 */
+	public WorkerQueueConfig(Properties properties, boolean isReset, ILogger logger, String logPrefix) {
+		String value = properties.getProperty(PROPERTY_QUEUE_TYPE);
+		if (value != null) {
+			try {
+				queueType = QueueType.valueOf(value.trim().toUpperCase());
+			} catch (Exception ex) {
+				warning(logger, logPrefix, PROPERTY_QUEUE_TYPE, value, queueType);
+			}
+		}
+		value = properties.getProperty(PROPERTY_QUEUE_CAPACITY);
+		if (value != null) {
+			try {
+				capacity = Integer.parseInt(value.trim());
+			} catch (Exception ex) {
+				warning(logger, logPrefix, PROPERTY_QUEUE_CAPACITY, value, capacity);
+			}
+		}
+		value = properties.getProperty(PROPERTY_QUEUE_WAIT_STRATEGY);
+		if (value != null) {
+			try {
+				waitStrategy = WaitStrategy.valueOf(value.trim().toUpperCase());
+			} catch (Exception ex) {
+				warning(logger, logPrefix, PROPERTY_QUEUE_WAIT_STRATEGY, value, waitStrategy);
+			}
+		}
+		value = properties.getProperty(PROPERTY_QUEUE_OVERFLOW_POLICY);
+		if (value != null) {
+			try {
+				overflowPolicy = OverflowPolicy.valueOf(value.trim().toUpperCase());
+			} catch (Exception ex) {
+				warning(logger, logPrefix, PROPERTY_QUEUE_OVERFLOW_POLICY, value, overflowPolicy);
+			}
+		}
+		String property = isReset ? PROPERTY_QUEUE_RESET_CAPACITY : PROPERTY_QUEUE_EXPIRATION_CAPACITY;
+		value = properties.getProperty(property);
+		if (value != null) {
+			try {
+				capacity = Integer.parseInt(value.trim());
+			} catch (Exception ex) {
+				warning(logger, logPrefix, property, value, capacity);
+			}
+		}
+		property = isReset ? PROPERTY_QUEUE_RESET_OVERFLOW_POLICY : PROPERTY_QUEUE_EXPIRATION_OVERFLOW_POLICY;
+		value = properties.getProperty(property);
+		if (value != null) {
+			try {
+				overflowPolicy = OverflowPolicy.valueOf(value.trim().toUpperCase());
+			} catch (Exception ex) {
+				warning(logger, logPrefix, property, value, overflowPolicy);
+			}
+		}
+		value = properties.getProperty(PROPERTY_QUEUE_BLOCK_TIMEOUT_MILLIS);
+		if (value != null) {
+			try {
+				blockTimeoutMillis = Long.parseLong(value.trim());
+			} catch (Exception ex) {
+				warning(logger, logPrefix, PROPERTY_QUEUE_BLOCK_TIMEOUT_MILLIS, value, blockTimeoutMillis);
+			}
+		}
+		value = properties.getProperty(PROPERTY_QUEUE_SPILL_DIR);
+		if (value != null && value.trim().length() > 0) {
+			spillDir = value.trim();
+		}
+		value = properties.getProperty(PROPERTY_QUEUE_SPILL_MAX_MB);
+		if (value != null) {
+			try {
+				int intValue = Integer.parseInt(value.trim());
+				if (intValue <= 0) {
+					throw new IllegalArgumentException();
+				}
+				spillMaxMb = intValue;
+			} catch (Exception ex) {
+				warning(logger, logPrefix, PROPERTY_QUEUE_SPILL_MAX_MB, value, spillMaxMb);
+			}
+		}
+		value = properties.getProperty(PROPERTY_QUEUE_HIGH_WATERMARK);
+		if (value != null) {
+			try {
+				double doubleValue = Double.parseDouble(value.trim());
+				if (doubleValue <= 0 || doubleValue > 1) {
+					throw new IllegalArgumentException();
+				}
+				highWatermark = doubleValue;
+			} catch (Exception ex) {
+				warning(logger, logPrefix, PROPERTY_QUEUE_HIGH_WATERMARK, value, highWatermark);
+			}
+		}
+	}
+
+	private static void warning(ILogger logger, String logPrefix, String property, String value,
+			Object defaultValue) {
+		if (logger != null) {
+			logger.warning(logPrefix + "Invalid value [" + property + "=" + value + "]. Using the default value of "
+					+ defaultValue + " instead.");
+		}
+	}
+
+	/**
+	 * Creates a new worker queue.
+	 */
+	public <E> WorkerQueue<E> createQueue() {
+		return createQueue(null);
+	}
+
+	/**
+	 * Creates a new worker queue that spills to the specified file if the
+	 * overflow policy is {@linkplain OverflowPolicy#SPILL}.
+	 */
+	<E> WorkerQueue<E> createQueue(SpillFile<E> spillFile) {
+		return WorkerQueue.create(queueType, capacity, waitStrategy, overflowPolicy, blockTimeoutMillis, spillFile);
+	}
+
+	public QueueType getQueueType() {
+		return queueType;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	public long getBlockTimeoutMillis() {
+		return blockTimeoutMillis;
+	}
+
+	public String getSpillDir() {
+		return spillDir;
+	}
+
+	public int getSpillMaxMb() {
+		return spillMaxMb;
+	}
+
+	public double getHighWatermark() {
+		return highWatermark;
+	}
+
+	@Override
+	public String toString() {
+		return "[queueType=" + queueType + ", capacity=" + capacity + ", waitStrategy=" + waitStrategy
+				+ ", overflowPolicy=" + overflowPolicy + ", blockTimeoutMillis=" + blockTimeoutMillis
+				+ (overflowPolicy == OverflowPolicy.SPILL ? ", spillDir=" + spillDir + ", spillMaxMb=" + spillMaxMb : "")
+				+ ", highWatermark=" + highWatermark + "]";
+	}
+}
@@ -0,0 +1,246 @@
+package org.hazelcast.addon.cluster.expiration.metadata;
+
+import java.io.IOException;
+
+import org.hazelcast.addon.cluster.MapUtil;
+
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.internal.serialization.impl.HeapData;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.HazelcastSerializationException;
+import com.hazelcast.spi.impl.SerializationServiceSupport;
+
+/**
+ * {@linkplain CompactSessionMetadata} is a {@linkplain SessionMetadata} that
+ * is written in a compact, versioned binary format. The map names are replaced
+ * with their {@linkplain MapNameDictionary} IDs, and the keys are written as
+ * pre-serialized blobs with variable-length sizes. The keys are grouped by
+ * map, and a key that is equal to a preceding key, e.g., the same key in
+ * another map, is written as a reference to it. The keys that are read
+ * remain in the serialized form, so the session metadata services pass them to
+ * the relevant maps without deserializing them. For the same reason, an object
+ * that has been read equals only the objects read in the same format.
+ * <p>
+ * The keys are serialized without the relevant maps' partitioning strategies,
+ * which are not known to the clients. The key of a map with a partitioning
+ * strategy is therefore re-serialized with the strategy by {@linkplain MapUtil}
+ * on the member before it is routed to its partition.
+ * <p>
+ * The format is registered with a separate class ID in
+ * {@linkplain ExpirationDataSerializableFactory}. Members that predate it
+ * cannot read it, but all members read both formats. Switch the clients to
+ * {@linkplain CompactSessionMetadata} after the members have been upgraded.
+ * <p>
+ * Format version 1:
+ *
+ * <pre>
+ * byte   format version
+ * int    dictionary fingerprint
+ * varint relevant map count
+ * per relevant map:
+ *    varint map name ID + 1, or 0 followed by the map name string
+ *    varint key count
+ *    per key:
+ *       varint key header followed by the key bytes, if any
+ *          0                  null key
+ *          (index &lt;&lt; 2) | 1   same key as the preceding key at index
+ *          (size &lt;&lt; 2) | 2    key bytes without the partition hash
+ *          (size &lt;&lt; 2) | 3    key bytes including the partition hash
+ * </pre>
+ *
+ * @author dpark
+ *
+ */
+public class CompactSessionMetadata extends SessionMetadata {
+
+	public final static byte FORMAT_VERSION = 1;
+
+	// Key header types
+	private final static int KEY_NULL = 0;
+	private final static int KEY_REFERENCE = 1;
+	private final static int KEY_WITHOUT_PARTITION_HASH = 2;
+	private final static int KEY_WITH_PARTITION_HASH = 3;
+
+	// Set when read. Used to deserialize the keys on demand.
+	private transient SerializationService serializationService;
+
+	public CompactSessionMetadata() {
+		super();
+	}
+
+	/**
+	 * Constructs an empty session metadata object.
+	 *
+	 * @param capacity Initial number of relevant maps
+	 */
+	public CompactSessionMetadata(int capacity) {
+		super(capacity);
+	}
+
+	/**
+	 * Returns the relevant key at the specified index. If the key is in the
+	 * serialized form, then it is deserialized.
+	 */
+	@Override
+	public Object getRelevantKey(int index) {
+		Object key = keys[index];
+		if (key instanceof Data && serializationService != null) {
+			return serializationService.toObject(key);
+		}
+		return key;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		MapNameDictionary dictionary = MapNameDictionary.getDictionary();
+		out.writeByte(FORMAT_VERSION);
+		out.writeInt(dictionary.getFingerprint());
+		writeVarInt(out, mapCount);
+
+		// Keys in the written order for back references
+		Object[] writtenKeys = new Object[size];
+		int writtenCount = 0;
+		for (int mapIndex = 0; mapIndex < mapCount; mapIndex++) {
+			int id = dictionary.getId(mapNames[mapIndex]);
+			writeVarInt(out, id + 1);
+			if (id < 0) {
+				out.writeString(mapNames[mapIndex]);
+			}
+			int keyCount = 0;
+			for (int i = 0; i < size; i++) {
+				if (mapIndexes[i] == mapIndex) {
+					keyCount++;
+				}
+			}
+			writeVarInt(out, keyCount);
+			for (int i = 0; i < size; i++) {
+				if (mapIndexes[i] == mapIndex) {
+					writeKey(out, keys[i], writtenKeys, writtenCount);
+					writtenKeys[writtenCount++] = keys[i];
+				}
+			}
+		}
+	}
+
+	private void writeKey(ObjectDataOutput out, Object key, Object[] writtenKeys, int writtenCount)
+			throws IOException {
+		if (key == null) {
+			writeVarInt(out, KEY_NULL);
+			return;
+		}
+		for (int i = 0; i < writtenCount; i++) {
+			if (key.equals(writtenKeys[i])) {
+				writeVarInt(out, (i << 2) | KEY_REFERENCE);
+				return;
+			}
+		}
+		Data data = toData(out, key);
+		byte[] bytes = data.toByteArray();
+		if (data.hasPartitionHash()) {
+			writeVarInt(out, (bytes.length << 2) | KEY_WITH_PARTITION_HASH);
+			out.write(bytes);
+		} else {
+			// Omit the partition hash, which is always 0 if not set
+			int length = bytes.length - HeapData.TYPE_OFFSET;
+			writeVarInt(out, (length << 2) | KEY_WITHOUT_PARTITION_HASH);
+			out.write(bytes, HeapData.TYPE_OFFSET, length);
+		}
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		byte version = in.readByte();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported " + getClass().getSimpleName() + " format version [" + version + "]");
+		}
+		if (in instanceof SerializationServiceSupport) {
+			serializationService = ((SerializationServiceSupport) in).getSerializationService();
+		}
+		MapNameDictionary dictionary = MapNameDictionary.getDictionary();
+		int fingerprint = in.readInt();
+		int count = readVarInt(in);
+		mapNames = new String[count];
+		mapCount = 0;
+		keys = new Object[count];
+		mapIndexes = new int[count];
+		size = 0;
+		for (int mapIndex = 0; mapIndex < count; mapIndex++) {
+			String mapName;
+			int ref = readVarInt(in);
+			if (ref == 0) {
+				mapName = in.readString();
+			} else {
+				mapName = dictionary.getMapName(ref - 1, fingerprint);
+				if (mapName == null) {
+					throw new IOException("Map name ID [" + (ref - 1) + "] not found in " + dictionary
+							+ ". The map names must be configured identically in all clients and members.");
+				}
+			}
+			addMap(mapName);
+			int keyCount = readVarInt(in);
+			for (int i = 0; i < keyCount; i++) {
+				addKey(mapIndex, readKey(in));
+			}
+		}
+	}
+
+	private Object readKey(ObjectDataInput in) throws IOException {
+		int header = readVarInt(in);
+		int length = header >>> 2;
+		switch (header & 0x3) {
+		case KEY_REFERENCE:
+			if (length >= size) {
+				throw new IOException("Invalid key reference [" + length + "]");
+			}
+			return keys[length];
+		case KEY_WITHOUT_PARTITION_HASH:
+			byte[] bytes = new byte[HeapData.TYPE_OFFSET + length];
+			in.readFully(bytes, HeapData.TYPE_OFFSET, length);
+			return new HeapData(bytes);
+		case KEY_WITH_PARTITION_HASH:
+			bytes = new byte[length];
+			in.readFully(bytes);
+			return new HeapData(bytes);
+		default:
+			return null;
+		}
+	}
+
+	private static Data toData(ObjectDataOutput out, Object key) {
+		if (key == null || key instanceof Data) {
+			return (Data) key;
+		}
+		if (out instanceof SerializationServiceSupport == false) {
+			throw new HazelcastSerializationException(
+					"Unable to serialize the relevant key. Serialization service not available.");
+		}
+		return ((SerializationServiceSupport) out).getSerializationService().toData(key);
+	}
+
+	private static void writeVarInt(ObjectDataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(ObjectDataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable-length integer");
+	}
+
+	@Override
+	public int getClassId() {
+		return ExpirationDataSerializableFactory.COMPACT_SESSION_METADATA;
+	}
+}
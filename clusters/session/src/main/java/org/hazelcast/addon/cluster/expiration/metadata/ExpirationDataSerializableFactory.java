@@ -1,5 +1,8 @@
 package org.hazelcast.addon.cluster.expiration.metadata;
 
+import org.hazelcast.addon.cluster.PartitionKeysOperationFactory;
+import org.hazelcast.addon.cluster.expiration.SessionIdSetPredicate;
+
 import com.hazelcast.nio.serialization.DataSerializableFactory;
 import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
@@ -9,12 +12,27 @@ public class ExpirationDataSerializableFactory implements DataSerializableFactor
 
 	public static final int SESSION_METADATA = 1010;
 
+	public static final int SESSION_ID_SET_PREDICATE = 1011;
+
+	public static final int PARTITION_KEYS_OPERATION_FACTORY = 1012;
+
+	public static final int COMPACT_SESSION_METADATA = 1013;
+
 	@Override
 	public IdentifiedDataSerializable create(int typeId) {
 		switch (typeId) {
 		case SESSION_METADATA:
 			return new SessionMetadata();
-			
+
+		case SESSION_ID_SET_PREDICATE:
+			return new SessionIdSetPredicate();
+
+		case PARTITION_KEYS_OPERATION_FACTORY:
+			return new PartitionKeysOperationFactory();
+
+		case COMPACT_SESSION_METADATA:
+			return new CompactSessionMetadata();
+
 		default:
 			return null;
 		}
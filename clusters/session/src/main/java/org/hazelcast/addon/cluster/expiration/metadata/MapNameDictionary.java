@@ -0,0 +1,138 @@
+package org.hazelcast.addon.cluster.expiration.metadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.hazelcast.addon.cluster.expiration.SessionExpirationServiceConfiguration;
+
+/**
+ * {@linkplain MapNameDictionary} assigns a small integer ID to each relevant
+ * map name so that {@linkplain CompactSessionMetadata} can write the ID
+ * instead of the full map name. The IDs are the positions of the map names in
+ * the configured list, so the clients and the members must configure the same
+ * list in the same order. The list is configured with the following property,
+ * which is read from the system properties when the dictionary is first used
+ * and from the Hazelcast configuration properties when the session metadata
+ * services are initialized.
+ *
+ * <pre>
+ * hazelcast.addon.cluster.expiration.metadata.map-names=mkm1_EN01,mkm2_EN01
+ * </pre>
+ *
+ * Map names that are not in the dictionary are written in full. A fingerprint
+ * of the list is written with each object so that a mismatched list is
+ * detected when reading.
+ *
+ * @author dpark
+ *
+ */
+public final class MapNameDictionary {
+
+	private final static MapNameDictionary dictionary = new MapNameDictionary();
+
+	private volatile Entries entries;
+
+	private MapNameDictionary() {
+		setMapNames(System.getProperty(SessionExpirationServiceConfiguration.PROPERTY_METADATA_MAP_NAMES));
+	}
+
+	/**
+	 * Returns the dictionary shared by all the session metadata objects in the
+	 * JVM.
+	 */
+	public final static MapNameDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Replaces the map names with the specified comma separated list.
+	 *
+	 * @param mapNames Comma separated map names. If null or empty, then the
+	 *                 dictionary is cleared.
+	 */
+	public void setMapNames(String mapNames) {
+		ArrayList<String> list = new ArrayList<String>();
+		if (mapNames != null) {
+			for (String mapName : mapNames.split(",")) {
+				mapName = mapName.trim();
+				if (mapName.length() > 0) {
+					list.add(mapName);
+				}
+			}
+		}
+		setMapNames(list.toArray(new String[list.size()]));
+	}
+
+	/**
+	 * Replaces the map names. The ID of each map name is its index.
+	 *
+	 * @param mapNames Map names
+	 */
+	public void setMapNames(String[] mapNames) {
+		entries = new Entries(mapNames);
+	}
+
+	/**
+	 * Returns the map names in the ID order.
+	 */
+	public String[] getMapNames() {
+		return entries.mapNames.clone();
+	}
+
+	/**
+	 * Returns the fingerprint of the map name list.
+	 */
+	public int getFingerprint() {
+		return entries.fingerprint;
+	}
+
+	/**
+	 * Returns the ID of the specified map name, or -1 if it is not in the
+	 * dictionary.
+	 */
+	public int getId(String mapName) {
+		Integer id = entries.idMap.get(mapName);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the map name of the specified ID, or null if the ID is not in the
+	 * dictionary.
+	 *
+	 * @param id          Map name ID
+	 * @param fingerprint Fingerprint of the writer's dictionary. The ID is
+	 *                    resolved only if it matches this dictionary's
+	 *                    fingerprint.
+	 */
+	String getMapName(int id, int fingerprint) {
+		Entries entries = this.entries;
+		if (fingerprint != entries.fingerprint || id < 0 || id >= entries.mapNames.length) {
+			return null;
+		}
+		return entries.mapNames[id];
+	}
+
+	@Override
+	public String toString() {
+		return "MapNameDictionary" + Arrays.toString(entries.mapNames);
+	}
+
+	/**
+	 * {@linkplain Entries} is an immutable snapshot of the map names.
+	 */
+	private static class Entries {
+		final String[] mapNames;
+		final HashMap<String, Integer> idMap;
+		final int fingerprint;
+
+		Entries(String[] mapNames) {
+			this.mapNames = mapNames.clone();
+			idMap = new HashMap<String, Integer>(mapNames.length * 4 / 3 + 1);
+			for (int i = 0; i < mapNames.length; i++) {
+				idMap.put(mapNames[i], i);
+			}
+			fingerprint = Arrays.hashCode(mapNames);
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package org.hazelcast.addon.cluster.expiration.metadata;
 
+import org.hazelcast.addon.cluster.expiration.CaptureJournal;
+
 import com.hazelcast.core.EntryEvent;
 import com.hazelcast.map.listener.EntryExpiredListener;
 
@@ -7,7 +9,8 @@ import com.hazelcast.map.listener.EntryExpiredListener;
  * {@linkplain SessionExpirationListener_SessionMetadata_Delete} traps the expiration
  * events and invokes
  * {@linkplain SessionExpirationService#expire(String, Object)} to expire all
- * the session relevant entries from the configured maps.
+ * the session relevant entries from the configured maps. The events are
+ * captured first if {@linkplain CaptureJournal} is enabled.
  * 
  * @author dpark
  *
@@ -16,7 +19,13 @@ public class SessionExpirationListener_SessionMetadata_Delete implements EntryEx
 
 	@Override
 	public void entryExpired(EntryEvent<String, SessionMetadata> event) {
+		SessionExpirationService_SessionMetadata_Delete expirationService = SessionExpirationService_SessionMetadata_Delete
+				.getExpirationService();
+		CaptureJournal captureJournal = expirationService.getCaptureJournal();
+		if (captureJournal != null) {
+			captureJournal.capture(CaptureJournal.SOURCE_METADATA_DELETE, event);
+		}
 		SessionMetadata sm = event.getOldValue();
-		SessionExpirationService_SessionMetadata_Delete.getExpirationService().expire(event.getName(), sm);
+		expirationService.expire(event.getName(), event.getKey(), sm);
 	}
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package org.hazelcast.addon.cluster.expiration.metadata;
 
-import org.hazelcast.addon.cluster.expiration.SessionExpirationService_Get;
+import org.hazelcast.addon.cluster.expiration.CaptureJournal;
 
 import com.hazelcast.core.EntryEvent;
 import com.hazelcast.map.listener.EntryAddedListener;
@@ -10,9 +10,11 @@ import com.hazelcast.map.listener.EntryUpdatedListener;
 /**
  * {@linkplain SessionExpirationListener_SessionMetadata_Get} traps the 'added',
  * 'updated', and 'merged' events and invokes
- * {@linkplain SessionExpirationService_Get#resetIdleTimeout(String, Object)}
+ * {@linkplain SessionExpirationService_SessionMetadata_Get#reset(String, Object, SessionMetadata)}
  * to reset the idle timeout on all the session relevant entries from the
- * configured maps.
+ * configured maps. The events of the same session, e.g., the 'merged' events
+ * that follow a split-brain heal, are coalesced. The events are captured first
+ * if {@linkplain CaptureJournal} is enabled.
  * 
  * @author dpark
  *
@@ -22,8 +24,13 @@ public class SessionExpirationListener_SessionMetadata_Get implements EntryAdded
 
 	@Override
 	public void entryUpdated(EntryEvent<Object, SessionMetadata> event) {
-		SessionExpirationService_SessionMetadata_Get.getExpirationService()
-				.reset(event.getValue());
+		SessionExpirationService_SessionMetadata_Get expirationService = SessionExpirationService_SessionMetadata_Get
+				.getExpirationService();
+		CaptureJournal captureJournal = expirationService.getCaptureJournal();
+		if (captureJournal != null) {
+			captureJournal.capture(CaptureJournal.SOURCE_METADATA_GET, event);
+		}
+		expirationService.reset(event.getName(), event.getKey(), event.getValue());
 	}
 
 	@Override
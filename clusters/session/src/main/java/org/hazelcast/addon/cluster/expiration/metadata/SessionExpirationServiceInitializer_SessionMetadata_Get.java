@@ -117,6 +117,22 @@ import com.hazelcast.core.LifecycleListener;
  * <td>false</td>
  * </tr>
  * <tr>
+ * <td>hazelcast.addon.cluster.expiration.metadata.map-names</td>
+ * <td>Comma separated relevant map names that
+ * {@linkplain CompactSessionMetadata} writes as IDs. The clients and the
+ * members must list the same map names in the same order.</td>
+ * <td>N/A</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.reset.coalesce.window-fraction</td>
+ * <td>Fraction of the primary map's max idle time within which
+ * SessionExpirationService_Get and SessionExpirationService_SessionMetadata_Get
+ * reset the idle timeout of a session at most once. The events within the
+ * window are coalesced into a single trailing reset. A value less than or equal
+ * to 0 resets for every event.</td>
+ * <td>0.1</td>
+ * </tr>
+ * <tr>
  * <td>hazelcast.addon.cluster.expiration.session.</td>
  * <td>Property prefix for specifying a session map and the relevant maps.</td>
  * <td>N/A</td>
@@ -147,6 +163,30 @@ import com.hazelcast.core.LifecycleListener;
  * <td>Predicate class name. Applies to the CUSTOM key type only.</td>
  * <td>N/A</td>
  * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.metrics.enabled</td>
+ * <td>If true, the service metrics are published through the Hazelcast metrics
+ * system with the "sessionExpiration" prefix.</td>
+ * <td>true</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.capture.dir</td>
+ * <td>Directory in which the listener events are captured in memory-mapped
+ * journal files for replaying with bin_sh/replay_capture. Capture is disabled
+ * if undefined.</td>
+ * <td>N/A</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.capture.segment-size-mb</td>
+ * <td>Journal file size in MB.</td>
+ * <td>64</td>
+ * </tr>
+ * <tr>
+ * <td>hazelcast.addon.cluster.expiration.capture.max-segments</td>
+ * <td>Maximum number of journal files. The events are dropped once the last
+ * file is full.</td>
+ * <td>16</td>
+ * </tr>
  * </table>
  * <p>
  * <b>Notes:</b> %TAG% is a special replacement annotation that makes an exact
@@ -1,12 +1,18 @@
 package org.hazelcast.addon.cluster.expiration.metadata;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanRegistrationException;
@@ -15,21 +21,42 @@ import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
 
+import org.hazelcast.addon.cluster.EntryTouchProcessor;
+import org.hazelcast.addon.cluster.MapUtil;
+import org.hazelcast.addon.cluster.expiration.CaptureJournal;
+import org.hazelcast.addon.cluster.expiration.DispatchMode;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.Stage;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetrics.WorkerMetrics;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetricsMBean;
+import org.hazelcast.addon.cluster.expiration.ExpirationMetricsProvider;
 import org.hazelcast.addon.cluster.expiration.ISessionIdPredicate;
 import org.hazelcast.addon.cluster.expiration.KeyType;
+import org.hazelcast.addon.cluster.expiration.ResetCoalescer;
 import org.hazelcast.addon.cluster.expiration.SessionExpirationServiceConfiguration;
 import org.hazelcast.addon.cluster.expiration.SessionExpirationServiceStatus;
 import org.hazelcast.addon.cluster.expiration.SessionExpirationServiceStatusMBean;
+import org.hazelcast.addon.cluster.expiration.SpillCodec;
+import org.hazelcast.addon.cluster.expiration.WorkerDispatcher;
+import org.hazelcast.addon.cluster.expiration.WorkerQueueConfig;
 
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.metrics.ProbeUnit;
 import com.hazelcast.logging.ILogger;
 import com.hazelcast.map.IMap;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
 
 /**
  * {@linkplain SessionExpirationService_SessionMetadata_Get} is a singleton
  * class that resets the max idle time of all the specified session relevant
  * entries from the pattern matching maps by reading (getting) entries.
+ * <p>
+ * The relevant keys of each drained batch of {@linkplain SessionMetadata}
+ * objects are grouped by map and touched with a single operation per map and
+ * owner member, which applies {@linkplain EntryTouchProcessor} to the keys of
+ * each of the member's partitions. The values are not read.
  * 
  * @author dpark
  *
@@ -42,21 +69,54 @@ public class SessionExpirationService_SessionMetadata_Get implements SessionExpi
 
 	private ThreadGroup workerThreadGroup;
 	private WorkerThread workerThreads[];
-	private LinkedBlockingQueue<SessionMetadata> workerQueues[];
+	private WorkerDispatcher<SessionMetadata> dispatcher;
 	private HazelcastInstance hazelcastInstance;
 
 	private String tag;
 	private String logPrefix;
 	private boolean isJmxEnabled;
 	private SessionExpirationServiceStatus status;
+
+	// Publishes the metrics through the Hazelcast metrics system. null if disabled.
+	private ExpirationMetricsProvider metricsProvider;
+
+	// Per stage latencies and counters. The session metadata carries the relevant
+	// keys only, so the touch of the keys is the only recorded stage and the sessions
+	// and entries are not attributed to primary maps.
+	private ExpirationMetrics metrics;
+
+	// Captures the listener events for replaying. null if disabled.
+	private CaptureJournal captureJournal;
 	private boolean isJmxUseHazelcastObjectName;
 
 	// worker thread pool size
 	private int threadPoolSize = DEFAULT_EXPIRATION_THREAD_POOL_SIZE;
 
+	// worker thread dispatch mode
+	private DispatchMode dispatchMode = DispatchMode.LEAST_LOADED;
+
+	// minimum queue size to steal from
+	private int stealThreshold = DEFAULT_EXPIRATION_THREAD_STEAL_THRESHOLD;
+
+	// worker queue type, capacity, wait strategy and overflow policy
+	private WorkerQueueConfig queueConfig = new WorkerQueueConfig();
+
 	// queue drain size
 	private int queueDrainSize = DEFAULT_EXPIRATION_QUEUE_DRAIN_SIZE;
 
+	// Fraction of the max idle time within which a session is reset at most once
+	private double resetWindowFraction = DEFAULT_RESET_COALESCE_WINDOW_FRACTION;
+
+	// null if resetWindowFraction <= 0
+	private ResetCoalescer<Map.Entry<String, Object>, SessionMetadata> resetCoalescer;
+
+	// <session metadata map name, coalescing window in nanoseconds>
+	private ConcurrentHashMap<String, Long> resetWindowMap = new ConcurrentHashMap<String, Long>(10);
+
+	// maximum number of member operations in flight
+	private int asyncMaxInFlight = DEFAULT_EXPIRATION_ASYNC_MAX_IN_FLIGHT;
+	private Semaphore inFlightPermits;
+
 	// Session ID as prefix or postfix. Default: prefix (for performance)
 	private boolean isPostfix = false;
 
@@ -88,6 +148,9 @@ public class SessionExpirationService_SessionMetadata_Get implements SessionExpi
 		tag = properties.getProperty(PROPERTY_TAG, this.getClass().getSimpleName());
 		logPrefix = tag + ": ";
 
+		// worker queues
+		queueConfig = new WorkerQueueConfig(properties, true, logger, logPrefix);
+
 		// queueDrainSize
 		String sizeStr = properties.getProperty(PROPERTY_EXPIRATION_QUEUE_DRAIN_SIZE);
 		if (sizeStr != null) {
@@ -99,6 +162,26 @@ public class SessionExpirationService_SessionMetadata_Get implements SessionExpi
 			}
 		}
 
+		// asyncMaxInFlight
+		String asyncMaxInFlightStr = properties.getProperty(PROPERTY_EXPIRATION_ASYNC_MAX_IN_FLIGHT);
+		if (asyncMaxInFlightStr != null) {
+			try {
+				asyncMaxInFlight = Integer.parseInt(asyncMaxInFlightStr);
+			} catch (Exception ex) {
+				logger.warning(logPrefix + ex.getMessage() + "[" + PROPERTY_EXPIRATION_ASYNC_MAX_IN_FLIGHT + "="
+						+ asyncMaxInFlightStr + "]. Using the default value of " + asyncMaxInFlight + " instead.");
+			}
+		}
+		if (asyncMaxInFlight > 0) {
+			inFlightPermits = new Semaphore(asyncMaxInFlight);
+		}
+
+		// Map name dictionary for CompactSessionMetadata
+		String mapNames = properties.getProperty(PROPERTY_METADATA_MAP_NAMES);
+		if (mapNames != null) {
+			MapNameDictionary.getDictionary().setMapNames(mapNames);
+		}
+
 		String bool = properties.getProperty(PROPERTY_STRING_KEY_SESSION_POSTFIX_ENABLED, "false");
 		isPostfix = bool.equalsIgnoreCase("true");
 
@@ -115,25 +198,89 @@ public class SessionExpirationService_SessionMetadata_Get implements SessionExpi
 						+ threadPoolSizeStr + "]. Using the default value of " + threadPoolSize + " instead.");
 			}
 		}
+		String dispatchStr = properties.getProperty(PROPERTY_EXPIRATION_THREAD_DISPATCH);
+		if (dispatchStr != null) {
+			try {
+				dispatchMode = DispatchMode.valueOf(dispatchStr.trim().toUpperCase());
+			} catch (Exception ex) {
+				logger.warning(logPrefix + "Invalid dispatch mode [" + PROPERTY_EXPIRATION_THREAD_DISPATCH + "="
+						+ dispatchStr + "]. Using the default value of " + dispatchMode + " instead.");
+			}
+		}
+		String stealThresholdStr = properties.getProperty(PROPERTY_EXPIRATION_THREAD_STEAL_THRESHOLD);
+		if (stealThresholdStr != null) {
+			try {
+				stealThreshold = Integer.parseInt(stealThresholdStr);
+			} catch (Exception ex) {
+				logger.warning(logPrefix + ex.getMessage() + "[" + PROPERTY_EXPIRATION_THREAD_STEAL_THRESHOLD + "="
+						+ stealThresholdStr + "]. Using the default value of " + stealThreshold + " instead.");
+			}
+		}
+		String fractionStr = properties.getProperty(PROPERTY_RESET_COALESCE_WINDOW_FRACTION);
+		if (fractionStr != null) {
+			try {
+				resetWindowFraction = Double.parseDouble(fractionStr);
+			} catch (Exception ex) {
+				logger.warning(logPrefix + ex.getMessage() + "[" + PROPERTY_RESET_COALESCE_WINDOW_FRACTION + "="
+						+ fractionStr + "]. Using the default value of " + resetWindowFraction + " instead.");
+			}
+		}
 		String threadGroupName = this.getClass().getSimpleName();
 		workerThreadGroup = new ThreadGroup(threadGroupName);
 		workerThreadGroup.setDaemon(true);
 		workerThreads = new WorkerThread[threadPoolSize];
-		workerQueues = new LinkedBlockingQueue[threadPoolSize];
+		metrics = new ExpirationMetrics(threadPoolSize, Stage.REMOVE);
+		dispatcher = new WorkerDispatcher<SessionMetadata>(hazelcastInstance, dispatchMode, threadPoolSize, stealThreshold,
+				queueConfig, tag, new SessionMetadataCodec(), logger, logPrefix);
 		for (int i = 0; i < threadPoolSize; i++) {
-			workerQueues[i] = new LinkedBlockingQueue<SessionMetadata>();
 			WorkerThread workerThread = new WorkerThread(workerThreadGroup,
-					"padogrid." + threadGroupName + "-" + (i + 1) /* thread name */, workerQueues[i]);
+					"padogrid." + threadGroupName + "-" + (i + 1) /* thread name */, i);
 			workerThread.start();
 			workerThreads[i] = workerThread;
 		}
+		if (resetWindowFraction > 0) {
+			resetCoalescer = new ResetCoalescer<Map.Entry<String, Object>, SessionMetadata>(workerThreadGroup,
+					"padogrid." + threadGroupName + "-coalescer", (coalesceKey, sm) -> enqueue(coalesceKey.getValue(), sm));
+		}
 
 		if (logger != null) {
 			logger.info(logPrefix + this.getClass().getCanonicalName() + " started: " + ", threadPoolSize="
-					+ threadPoolSize + ", queueDrainSize=" + queueDrainSize + ", isPostfix=" + isPostfix
+					+ threadPoolSize + ", dispatchMode=" + dispatchMode + ", stealThreshold=" + stealThreshold
+					+ ", queue=" + queueConfig + ", queueDrainSize=" + queueDrainSize + ", resetWindowFraction=" + resetWindowFraction
+					+ ", asyncMaxInFlight=" + asyncMaxInFlight + ", mapNameDictionary="
+					+ MapNameDictionary.getDictionary() + ", isPostfix=" + isPostfix
 					+ ", isJmxUseHazelcastObjectName=" + isJmxUseHazelcastObjectName);
 		}
 
+		// Event capture
+		captureJournal = CaptureJournal.create(properties, hazelcastInstance, logger, logPrefix);
+
+		// Hazelcast metrics
+		String metricsEnabled = properties.getProperty(PROPERTY_METRICS_ENABLED, "true");
+		if (metricsEnabled.equalsIgnoreCase("true") && hazelcastInstance != null) {
+			try {
+				metricsProvider = new ExpirationMetricsProvider(this.getClass().getSimpleName(), tag, threadPoolSize);
+				metricsProvider.addDispatcherGauges(dispatcher);
+				if (resetCoalescer != null) {
+					metricsProvider.addGauge("resetSuppressedCount", ProbeUnit.COUNT,
+							() -> resetCoalescer.getSuppressedCount());
+					metricsProvider.addGauge("resetCoalescedCount", ProbeUnit.COUNT,
+							() -> resetCoalescer.getCoalescedCount());
+				}
+				metricsProvider.setMetrics(metrics);
+				if (metricsProvider.register(hazelcastInstance)) {
+					logger.info(logPrefix + ExpirationMetricsProvider.class.getSimpleName() + " registered: prefix="
+							+ ExpirationMetricsProvider.PREFIX + ", tag=" + tag);
+				} else {
+					metricsProvider = null;
+				}
+			} catch (Exception ex) {
+				metricsProvider = null;
+				logger.warning(logPrefix + ExpirationMetricsProvider.class.getSimpleName()
+						+ " registration error: tag=" + tag, ex);
+			}
+		}
+
 		if (hazelcastInstance != null) {
 			String jmxEnabled = hazelcastInstance.getConfig().getProperty("hazelcast.jmx");
 			isJmxEnabled = jmxEnabled != null && jmxEnabled.equalsIgnoreCase("true");
@@ -164,11 +311,15 @@ public class SessionExpirationService_SessionMetadata_Get implements SessionExpi
 					header = "org.hazelcast.addon";
 					type = this.getClass().getSimpleName();
 				}
-				objectName = new ObjectName(header + ":name=SessionExpirationService"
-						+ ",instance=" + instanceName + ",type=" + type + ",tag=" + tag);
+				String name = header + ":name=SessionExpirationService" + ",instance=" + instanceName + ",type="
+						+ type + ",tag=" + tag;
+				objectName = new ObjectName(name);
 				platformMBeanServer.registerMBean(status, objectName);
 				logger.info(logPrefix + SessionExpirationServiceStatusMBean.class.getSimpleName()
 						+ " registered: objectName=" + objectName.toString() + ", tag=" + tag);
+
+				// Metrics MBeans per service, worker and primary map
+				ExpirationMetricsMBean.registerAll(platformMBeanServer, name, metrics, logger, logPrefix);
 			} catch (MalformedObjectNameException | InstanceAlreadyExistsException | MBeanRegistrationException
 					| NotCompliantMBeanException ex) {
 				logger.warning(logPrefix + SessionExpirationServiceStatusMBean.class.getSimpleName()
@@ -178,17 +329,11 @@ public class SessionExpirationService_SessionMetadata_Get implements SessionExpi
 	}
 
 	/**
-	 * Returns the array index of the worker thread that has the smallest queue.
+	 * Returns the capture journal of the listener events, or null if capture is
+	 * disabled.
 	 */
-	private int getMinWorkerQueueIndex() {
-		int minIndex = 0;
-		LinkedBlockingQueue<SessionMetadata> minQueue = workerQueues[minIndex];
-		for (int i = 1; i < workerQueues.length; i++) {
-			if (minQueue.size() > workerQueues[i].size()) {
-				minIndex = i;
-			}
-		}
-		return minIndex;
+	public CaptureJournal getCaptureJournal() {
+		return captureJournal;
 	}
 
 	/**
@@ -199,25 +344,96 @@ public class SessionExpirationService_SessionMetadata_Get implements SessionExpi
 	}
 	
 	/**
-	 * Resets max-idle-time-seconds of all the entries from the configured maps that have
-	 * the matching session.
+	 * Resets max-idle-time-seconds of all the relevant entries recorded in the
+	 * specified session metadata. The event is dispatched to the least loaded
+	 * worker thread.
 	 * 
-	 * @param sessionMapName The expiration originated map.
-	 * @param key            Key object containing the session ID.
+	 * @param sm Session metadata containing the relevant keys.
 	 */
 	public void reset(SessionMetadata sm) {
+		reset(null, sm);
+	}
+
+	/**
+	 * Resets max-idle-time-seconds of all the relevant entries recorded in the
+	 * specified session metadata. The event is dispatched to the worker thread
+	 * determined by the specified session metadata key.
+	 * 
+	 * @param key Session metadata key, i.e., session ID.
+	 * @param sm  Session metadata containing the relevant keys.
+	 */
+	public void reset(Object key, SessionMetadata sm) {
+		if (sm == null) {
+			return;
+		}
+		metrics.recordEvent(null);
+		enqueue(key, sm);
+	}
+
+	/**
+	 * Resets max-idle-time-seconds of all the relevant entries recorded in the
+	 * specified session metadata. The resets of the same session are coalesced
+	 * within the configured fraction of the session metadata map's max idle time.
+	 * The relevant keys of the latest session metadata object are reset.
+	 * 
+	 * @param sessionMapName Session metadata map name.
+	 * @param key            Session metadata key, i.e., session ID.
+	 * @param sm             Session metadata containing the relevant keys.
+	 */
+	public void reset(String sessionMapName, Object key, SessionMetadata sm) {
 		if (sm == null) {
 			return;
 		}
-//		int index = Math.abs(key.hashCode()) % workerThreads.length;
-		int index = getMinWorkerQueueIndex();
+		metrics.recordEvent(sessionMapName);
+		long windowNanos = resetCoalescer == null || key == null ? 0 : getResetWindowNanos(sessionMapName);
+		if (windowNanos > 0) {
+			resetCoalescer.offer(new AbstractMap.SimpleImmutableEntry<String, Object>(sessionMapName, key), sm,
+					windowNanos);
+			updateMBean();
+		} else {
+			enqueue(key, sm);
+		}
+	}
+
+	/**
+	 * Returns the coalescing window of the specified session metadata map in
+	 * nanoseconds. It is the configured fraction of the map's max idle time.
+	 * Returns 0 if the map has no max idle time.
+	 */
+	private long getResetWindowNanos(String sessionMapName) {
+		Long windowNanos = resetWindowMap.get(sessionMapName);
+		if (windowNanos == null) {
+			windowNanos = 0L;
+			if (hazelcastInstance != null) {
+				int maxIdleSeconds = hazelcastInstance.getConfig().findMapConfig(sessionMapName).getMaxIdleSeconds();
+				windowNanos = (long) (TimeUnit.SECONDS.toNanos(maxIdleSeconds) * resetWindowFraction);
+			}
+			resetWindowMap.put(sessionMapName, windowNanos);
+		}
+		return windowNanos;
+	}
+
+	/**
+	 * Enqueues the specified session metadata in the worker queue determined by
+	 * the specified key.
+	 */
+	private void enqueue(Object key, SessionMetadata sm) {
+		int index = dispatcher.getQueueIndex(key);
 		if (workerThreads[index].isAlive() == false) {
 			return;
 		}
-		workerQueues[index].offer(sm);
+		dispatcher.offer(index, sm);
 		updateMBean();
 	}
 
+	/**
+	 * Returns the per stage latencies and counters. They are recorded whether or
+	 * not JMX is enabled.
+	 */
+	public ExpirationMetrics getMetrics() {
+		return metrics;
+	}
+
 	/**
 	 * Terminates the service thread. Note that it will not terminate if the
 	 * underlying expiration event queue is empty. It will block until queue has at
@@ -227,6 +443,16 @@ public class SessionExpirationService_SessionMetadata_Get implements SessionExpi
 		for (int i = 0; i < workerThreads.length; i++) {
 			workerThreads[i].terminate();
 		}
+		dispatcher.close();
+		if (metricsProvider != null) {
+			metricsProvider.deregister();
+		}
+		if (captureJournal != null) {
+			captureJournal.close();
+		}
+		if (resetCoalescer != null) {
+			resetCoalescer.terminate();
+		}
 	}
 
 	/**
@@ -235,12 +461,7 @@ public class SessionExpirationService_SessionMetadata_Get implements SessionExpi
 	 * @return
 	 */
 	public int getQueueSize() {
-		int totalSize = 0;
-		for (int i = 0; i < workerQueues.length; i++) {
-			totalSize += workerQueues[i].size();
-
-		}
-		return totalSize;
+		return dispatcher.size();
 	}
 
 	/**
@@ -265,6 +486,17 @@ public class SessionExpirationService_SessionMetadata_Get implements SessionExpi
 		if (isJmxEnabled) {
 			// Update MBean
 			status.setQueueSize(getQueueSize());
+			status.setQueueRejectedCount(dispatcher.getRejectedCount());
+			status.setQueueCoalescedCount(dispatcher.getCoalescedCount());
+			status.setQueueBlockedCount(dispatcher.getBlockedCount());
+			status.setQueueSpilledCount(dispatcher.getSpilledCount());
+			status.setQueueSpillSize(dispatcher.getSpillSize());
+			status.setQueueHighWatermark(dispatcher.isHighWatermark());
+			status.setQueueHighWatermarkCount(dispatcher.getHighWatermarkCount());
+			if (resetCoalescer != null) {
+				status.setResetSuppressedCount(resetCoalescer.getSuppressedCount());
+				status.setResetCoalescedCount(resetCoalescer.getCoalescedCount());
+			}
 		}
 	}
 
@@ -277,49 +509,128 @@ public class SessionExpirationService_SessionMetadata_Get implements SessionExpi
 	 */
 	class WorkerThread extends Thread {
 
-		protected BlockingQueue<SessionMetadata> queue = null;
+		private final int queueIndex;
+		private final WorkerMetrics workerMetrics;
 		private boolean shouldRun = true;
 		private boolean isTerminated = false;
 
-		public WorkerThread(ThreadGroup threadGroup, String threadName, BlockingQueue<SessionMetadata> queue) {
+		private final EntryTouchProcessor entryProcessor = new EntryTouchProcessor();
+
+		// <map name, IMap>
+		private final HashMap<String, IMap<Object, Object>> mapCache = new HashMap<String, IMap<Object, Object>>();
+
+		public WorkerThread(ThreadGroup threadGroup, String threadName, int queueIndex) {
 			super(threadGroup, threadName);
-			this.queue = queue;
+			this.queueIndex = queueIndex;
+			this.workerMetrics = metrics.getWorkerMetrics(queueIndex);
 		}
 
-		public WorkerThread(BlockingQueue<SessionMetadata> queue) {
-			this.queue = queue;
+		public WorkerThread(int queueIndex) {
+			this.queueIndex = queueIndex;
+			this.workerMetrics = metrics.getWorkerMetrics(queueIndex);
 		}
 
 		public void run() {
 			while (shouldRun) {
 				String sessionMapName = null;
 				try {
-					SessionMetadata firstSessionInfo = queue.take();
 					ArrayList<SessionMetadata> smList = new ArrayList<SessionMetadata>();
-					queue.drainTo(smList, queueDrainSize);
-					smList.add(firstSessionInfo);
+					if (dispatcher.drain(queueIndex, smList, queueDrainSize + 1) == 0) {
+						continue;
+					}
 					updateMBean();
+					workerMetrics.recordBatch(smList.size());
 
-					// Invoke get() to reset the idle timeout.
-					for (SessionMetadata sm : smList) {
-						Set<Map.Entry<String, Object>> set = sm.getEntrySet();
-						for (Map.Entry<String, Object> entry : set) {
-							String mapName = entry.getKey();
-							Object key = entry.getValue();
-							IMap<?, ?> map = hazelcastInstance.getMap(mapName);
-							map.get(key);
-						}
-					}
+					process(smList);
+					workerMetrics.recordSessions(smList.size());
 				} catch (Throwable ex) {
 					logger.warning(logPrefix + "Exception occurred while applying predicate to expire relevant maps ["
 							+ sessionMapName + "]", ex);
 				}
 			}
 			isTerminated = true;
-			queue.clear();
+			dispatcher.clear(queueIndex);
 			updateMBean();
 		}
 
+		/**
+		 * Groups the relevant keys of the specified session metadata by map and
+		 * touches them with a single operation per map and owner member. The
+		 * keys that failed are retried one at a time.
+		 * 
+		 * @param smList Drained session metadata
+		 */
+		private void process(List<SessionMetadata> smList) {
+			// <map name, relevant keys>
+			HashMap<String, List<Object>> mapKeyMap = new HashMap<String, List<Object>>();
+			for (SessionMetadata sm : smList) {
+				for (int i = 0; i < sm.size(); i++) {
+					String mapName = sm.getMapName(i);
+					List<Object> keyList = mapKeyMap.get(mapName);
+					if (keyList == null) {
+						keyList = new ArrayList<Object>();
+						mapKeyMap.put(mapName, keyList);
+					}
+					// The key may be in the serialized form
+					keyList.add(sm.getRawRelevantKey(i));
+				}
+			}
+
+			if (inFlightPermits == null) {
+				for (Map.Entry<String, List<Object>> entry : mapKeyMap.entrySet()) {
+					long startNanos = System.nanoTime();
+					MapUtil.executeOnPartitionKeys(getMap(entry.getKey()), entry.getValue(), entryProcessor);
+					workerMetrics.record(Stage.REMOVE, System.nanoTime() - startNanos);
+					workerMetrics.recordEntries(entry.getValue().size());
+				}
+				return;
+			}
+
+			// Issue all maps before waiting for any of them
+			long startNanos = System.nanoTime();
+			HashMap<String, CompletableFuture<List<Object>>> futureMap = new HashMap<String, CompletableFuture<List<Object>>>();
+			for (Map.Entry<String, List<Object>> entry : mapKeyMap.entrySet()) {
+				futureMap.put(entry.getKey(), MapUtil.executeOnKeysAsync(getMap(entry.getKey()), entry.getValue(),
+						entryProcessor, inFlightPermits));
+			}
+			for (Map.Entry<String, CompletableFuture<List<Object>>> entry : futureMap.entrySet()) {
+				List<Object> failedKeys = entry.getValue().join();
+				int keyCount = mapKeyMap.get(entry.getKey()).size();
+				if (failedKeys.size() == 0) {
+					workerMetrics.record(Stage.REMOVE, System.nanoTime() - startNanos);
+					workerMetrics.recordEntries(keyCount);
+					continue;
+				}
+				IMap<Object, Object> map = getMap(entry.getKey());
+				int failedCount = 0;
+				for (Object key : failedKeys) {
+					try {
+						map.get(key);
+					} catch (Exception ex) {
+						failedCount++;
+					}
+				}
+				workerMetrics.record(Stage.REMOVE, System.nanoTime() - startNanos);
+				workerMetrics.recordEntries(keyCount - failedCount);
+				if (failedCount > 0) {
+					logger.warning(logPrefix + "Unable to reset the idle timeout of " + failedCount + " relevant entries [" + entry.getKey()
+							+ "]");
+				}
+			}
+		}
+
+		/**
+		 * Returns the cached proxy of the specified map.
+		 */
+		private IMap<Object, Object> getMap(String mapName) {
+			IMap<Object, Object> map = mapCache.get(mapName);
+			if (map == null) {
+				map = hazelcastInstance.getMap(mapName);
+				mapCache.put(mapName, map);
+			}
+			return map;
+		}
+
 		/**
 		 * Returns true if the {@linkplain #terminate()} method is invoked but it is
 		 * still in termination state. It will terminate only when the current session
@@ -368,6 +679,22 @@ public class SessionExpirationService_SessionMetadata_Get implements SessionExpi
 		Object key;
 	}
 
+	/**
+	 * {@linkplain SessionMetadataCodec} writes and reads the
+	 * {@linkplain SessionMetadata} objects spilled by the SPILL overflow policy.
+	 */
+	class SessionMetadataCodec implements SpillCodec<SessionMetadata> {
+		@Override
+		public void write(SessionMetadata sessionMetadata, ObjectDataOutput out) throws IOException {
+			out.writeObject(sessionMetadata);
+		}
+
+		@Override
+		public SessionMetadata read(ObjectDataInput in) throws IOException {
+			return in.readObject();
+		}
+	}
+
 	/**
 	 * {@linkplain SessionData} holds the tagged primary map name and its applicable
 	 * data configured and determined during the
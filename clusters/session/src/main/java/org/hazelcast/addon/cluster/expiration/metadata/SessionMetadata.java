@@ -1,7 +1,12 @@
 package org.hazelcast.addon.cluster.expiration.metadata;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -9,40 +14,226 @@ import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
+/**
+ * {@linkplain SessionMetadata} holds a set of relevant keys per relevant map.
+ * The keys are held in a flat array in the order they were added, each with the
+ * index of its map name in a primitive array, so no objects are created per
+ * key. Entry indexes, i.e., 0 to {@linkplain #size()} - 1, refer to the keys
+ * of all of the relevant maps.
+ * <p>
+ * {@linkplain SessionMetadata} writes the original format that every release
+ * can read. Releases that hold a single key per map keep only the last key of
+ * each map. Use {@linkplain CompactSessionMetadata} to write the compact
+ * format once all of the clients and members have been upgraded.
+ *
+ * @author dpark
+ *
+ */
 public class SessionMetadata implements IdentifiedDataSerializable {
-	
-	private HashMap<String, Object> map = new HashMap<String, Object>(10, 1f);
-	
+
+	// Distinct relevant map names
+	protected String[] mapNames;
+	protected int mapCount;
+
+	// Parallel arrays of relevant keys and their map name indexes
+	protected Object[] keys;
+	protected int[] mapIndexes;
+	protected int size;
+
 	public SessionMetadata() {
-		
+		this(4);
 	}
-	
+
+	/**
+	 * Constructs an empty session metadata object.
+	 *
+	 * @param capacity Initial number of relevant keys
+	 */
+	public SessionMetadata(int capacity) {
+		mapNames = new String[Math.min(capacity, 4)];
+		keys = new Object[capacity];
+		mapIndexes = new int[capacity];
+	}
+
+	/**
+	 * Adds the specified relevant key to the specified map's key set. It has no
+	 * effect if the map already has the key.
+	 *
+	 * @param mapName Relevant map name
+	 * @param key     Relevant key
+	 */
 	public void addRelevantKey(String mapName, Object key) {
-		map.put(mapName, key);
+		int mapIndex = indexOfMap(mapName);
+		if (mapIndex < 0) {
+			mapIndex = addMap(mapName);
+		} else if (indexOfKey(mapIndex, key) >= 0) {
+			return;
+		}
+		addKey(mapIndex, key);
 	}
-	
+
+	/**
+	 * Adds all of the specified relevant keys to the specified map's key set.
+	 *
+	 * @param mapName Relevant map name
+	 * @param keys    Relevant keys
+	 */
+	public void addRelevantKeys(String mapName, Collection<?> keys) {
+		for (Object key : keys) {
+			addRelevantKey(mapName, key);
+		}
+	}
+
+	/**
+	 * Returns the first relevant key of the specified map, or null if the map is
+	 * not found.
+	 */
 	public Object getRelevantKey(String mapName) {
-		return map.get(mapName);
+		int mapIndex = indexOfMap(mapName);
+		if (mapIndex >= 0) {
+			for (int i = 0; i < size; i++) {
+				if (mapIndexes[i] == mapIndex) {
+					return getRelevantKey(i);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns all of the relevant keys of the specified map in the order they
+	 * were added. Returns an empty list if the map is not found.
+	 */
+	public List<Object> getRelevantKeys(String mapName) {
+		ArrayList<Object> list = new ArrayList<Object>();
+		int mapIndex = indexOfMap(mapName);
+		if (mapIndex >= 0) {
+			for (int i = 0; i < size; i++) {
+				if (mapIndexes[i] == mapIndex) {
+					list.add(getRelevantKey(i));
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the total number of relevant keys of all of the relevant maps.
+	 */
+	public int size() {
+		return size;
 	}
-	
+
+	/**
+	 * Returns the number of relevant maps.
+	 */
+	public int getMapCount() {
+		return mapCount;
+	}
+
+	/**
+	 * Returns the relevant map name of the entry at the specified index.
+	 */
+	public String getMapName(int index) {
+		return mapNames[mapIndexes[index]];
+	}
+
+	/**
+	 * Returns the relevant key of the entry at the specified index.
+	 */
+	public Object getRelevantKey(int index) {
+		return keys[index];
+	}
+
+	/**
+	 * Returns the relevant key of the entry at the specified index in the form it
+	 * is held. The key may be in the serialized form, i.e., <code>Data</code>,
+	 * which can be passed to IMap methods as is.
+	 */
+	public Object getRawRelevantKey(int index) {
+		return keys[index];
+	}
+
 	public Set<String> getMapNameSet() {
-		return map.keySet();
+		LinkedHashSet<String> set = new LinkedHashSet<String>(mapCount * 4 / 3 + 1);
+		for (int i = 0; i < mapCount; i++) {
+			set.add(mapNames[i]);
+		}
+		return set;
 	}
-	
+
+	/**
+	 * Returns a copy of the (map name, relevant key) entries. Use
+	 * {@linkplain #size()}, {@linkplain #getMapName(int)} and
+	 * {@linkplain #getRelevantKey(int)} to avoid creating the entries.
+	 */
 	public Set<Map.Entry<String, Object>> getEntrySet() {
-		return map.entrySet();
+		LinkedHashSet<Map.Entry<String, Object>> set = new LinkedHashSet<Map.Entry<String, Object>>(
+				size * 4 / 3 + 1);
+		for (int i = 0; i < size; i++) {
+			set.add(new AbstractMap.SimpleImmutableEntry<String, Object>(getMapName(i), getRelevantKey(i)));
+		}
+		return set;
+	}
+
+	/**
+	 * Returns the index of the specified map name, or -1 if not found.
+	 */
+	protected int indexOfMap(String mapName) {
+		for (int i = 0; i < mapCount; i++) {
+			if (mapNames[i].equals(mapName)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the entry index of the specified key of the specified map, or -1 if
+	 * not found.
+	 */
+	private int indexOfKey(int mapIndex, Object key) {
+		for (int i = 0; i < size; i++) {
+			if (mapIndexes[i] == mapIndex && (key == null ? keys[i] == null : key.equals(keys[i]))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Appends the specified map name without checking duplicates and returns its
+	 * index.
+	 */
+	protected int addMap(String mapName) {
+		if (mapCount == mapNames.length) {
+			mapNames = Arrays.copyOf(mapNames, Math.max(4, mapCount * 2));
+		}
+		mapNames[mapCount] = mapName;
+		return mapCount++;
+	}
+
+	/**
+	 * Appends the specified key without checking duplicates.
+	 */
+	protected void addKey(int mapIndex, Object key) {
+		if (size == keys.length) {
+			int capacity = Math.max(4, size * 2);
+			keys = Arrays.copyOf(keys, capacity);
+			mapIndexes = Arrays.copyOf(mapIndexes, capacity);
+		}
+		keys[size] = key;
+		mapIndexes[size] = mapIndex;
+		size++;
 	}
 
 	@Override
 	public void writeData(ObjectDataOutput out) throws IOException {
-		Set<Map.Entry<String, Object>> set = map.entrySet();
-		String[] keys = new String[set.size()];
-		Object[] values = new Object[set.size()];
-		int i = 0;
-		for (Map.Entry<String, Object> entry : set) {
-			keys[i] = entry.getKey();
-			values[i]=entry.getValue();
-			i++;
+		String[] keys = new String[size];
+		Object[] values = new Object[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = getMapName(i);
+			values[i] = getRelevantKey(i);
 		}
 		out.writeStringArray(keys);
 		out.writeObject(values);
@@ -51,10 +242,51 @@ public class SessionMetadata implements IdentifiedDataSerializable {
 	@Override
 	public void readData(ObjectDataInput in) throws IOException {
 		String[] keys = in.readStringArray();
-		Object[] values = (Object[])in.readObject();
-		for (int i = 0; i < keys.length; i ++) {
-			map.put(keys[i], values[i]);
+		Object[] values = (Object[]) in.readObject();
+		mapNames = new String[Math.min(keys.length, 4)];
+		mapCount = 0;
+		this.keys = new Object[keys.length];
+		mapIndexes = new int[keys.length];
+		size = 0;
+		for (int i = 0; i < keys.length; i++) {
+			addRelevantKey(keys[i], values[i]);
+		}
+	}
+
+	/**
+	 * Returns the hash code of the relevant keys. Two session metadata objects
+	 * with the same relevant keys are equal regardless of their order so that
+	 * duplicate events can be coalesced.
+	 */
+	@Override
+	public int hashCode() {
+		int hashCode = 0;
+		for (int i = 0; i < size; i++) {
+			Object key = getRawRelevantKey(i);
+			hashCode += getMapName(i).hashCode() ^ (key == null ? 0 : key.hashCode());
+		}
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj instanceof SessionMetadata == false) {
+			return false;
+		}
+		SessionMetadata other = (SessionMetadata) obj;
+		if (size != other.size || mapCount != other.mapCount) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			int mapIndex = other.indexOfMap(getMapName(i));
+			if (mapIndex < 0 || other.indexOfKey(mapIndex, getRawRelevantKey(i)) < 0) {
+				return false;
+			}
 		}
+		return true;
 	}
 
 	@Override
@@ -0,0 +1,539 @@
+package org.hazelcast.addon.cluster.expiration.test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.hazelcast.addon.cluster.expiration.CaptureJournal;
+import org.hazelcast.addon.cluster.expiration.CaptureJournalReader;
+import org.hazelcast.addon.cluster.expiration.SessionExpirationService;
+import org.hazelcast.addon.cluster.expiration.SessionExpirationServiceConfiguration;
+import org.hazelcast.addon.cluster.expiration.SessionExpirationService_Get;
+import org.hazelcast.addon.cluster.expiration.SessionMapUtil;
+import org.hazelcast.addon.cluster.expiration.metadata.SessionExpirationService_SessionMetadata_Delete;
+import org.hazelcast.addon.cluster.expiration.metadata.SessionExpirationService_SessionMetadata_Get;
+import org.hazelcast.addon.cluster.expiration.metadata.SessionMetadata;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryXmlConfig;
+import com.hazelcast.config.InMemoryYamlConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.internal.serialization.impl.HeapData;
+import com.hazelcast.map.IMap;
+import com.hazelcast.spi.impl.SerializationServiceSupport;
+
+/**
+ * {@linkplain CaptureJournalReplayer} replays the events captured by
+ * {@linkplain CaptureJournal} into the expiration service of an embedded
+ * member at the captured pace, or faster, so that a real expiration storm can
+ * be reproduced with different configurations, e.g., thread.pool-size,
+ * queue.drain-size or engine. The events are fed to the service that matches
+ * the listener that captured them, exactly as the listener would have.
+ * <p>
+ * By default, the relevant map entries of the captured sessions are written
+ * before the replay so that the service has entries to remove or touch. For the
+ * SessionMetadata plugins, they are the keys listed in the captured
+ * SessionMetadata values. For the others, the captured primary key is written
+ * to each relevant map configured for the primary map, which matches the key
+ * type conventions of the test clients. Relevant map names with regular
+ * expressions are not populated.
+ * <p>
+ * The replay reports the pace, the queue size and the relevant map sizes every
+ * second, followed by the time it took the service to drain after the last
+ * event.
+ *
+ * @author dpark
+ *
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class CaptureJournalReplayer {
+
+	public final static String PROPERTY_executableName = "executable.name";
+
+	private final static String[] SOURCE_NAMES = { "SessionExpirationService", "SessionExpirationService_Get",
+			"SessionExpirationService_SessionMetadata_Delete", "SessionExpirationService_SessionMetadata_Get" };
+	private final static String[] SOURCE_CONFIG_FILES = { "hazelcast.yaml", "hazelcast-get.yaml",
+			"hazelcast-session-metadata-delete.yaml", "hazelcast-session-metadata-get.yaml" };
+	private final static int POPULATE_BATCH_SIZE = 1000;
+
+	final List<File> files;
+	final HazelcastInstance hz;
+	final SerializationService serializationService;
+	final byte source;
+	final Properties properties;
+	final LinkedHashMap<String, IMap> relevantMapMap = new LinkedHashMap<String, IMap>();
+
+	// Replay progress written by the replay thread and sampled by the reporter
+	volatile long eventCount;
+	volatile long behindNanos;
+
+	// Written by the reporter only
+	volatile long maxBehindNanos;
+	volatile int maxQueueSize;
+
+	CaptureJournalReplayer(List<File> files, byte source, HazelcastInstance hz) {
+		this.files = files;
+		this.source = source;
+		this.hz = hz;
+		this.serializationService = ((SerializationServiceSupport) hz).getSerializationService();
+		this.properties = hz.getConfig().getProperties();
+	}
+
+	/**
+	 * Returns the source of the first event in the specified files, or -1 if there
+	 * are no events.
+	 */
+	static byte readSource(List<File> files) throws Exception {
+		try (CaptureJournalReader reader = new CaptureJournalReader(files)) {
+			return reader.next() ? reader.getSource() : -1;
+		}
+	}
+
+	private Object toObject(byte[] bytes) {
+		return bytes == null ? null : serializationService.toObject(new HeapData(bytes));
+	}
+
+	/**
+	 * Returns the relevant map names configured for the specified primary map, or
+	 * an empty list if none.
+	 */
+	private List<String> getRelevantMapNames(String primaryMapName) {
+		ArrayList<String> list = new ArrayList<String>();
+		String prefix = SessionExpirationServiceConfiguration.PROPERTY_SESSION_PREFIX;
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(prefix) == false || key.indexOf('.', prefix.length()) != -1) {
+				continue;
+			}
+			String taggedPrimaryMapName = key.substring(prefix.length());
+			String tag = SessionMapUtil.getTag(primaryMapName, taggedPrimaryMapName);
+			if (tag == null) {
+				continue;
+			}
+			for (String name : properties.getProperty(key).split(",")) {
+				name = name.trim().replace(SessionExpirationServiceConfiguration.NAME_TAG, tag);
+				if (name.matches("[A-Za-z0-9_\\-]+")) {
+					list.add(name);
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Writes the relevant entries of the captured sessions and returns the number
+	 * of entries written.
+	 */
+	long populate() throws Exception {
+		byte[] blob = new byte[100];
+		HashMap<String, List<String>> relevantNamesMap = new HashMap<String, List<String>>();
+		HashMap<String, Map<Object, Object>> batchMap = new HashMap<String, Map<Object, Object>>();
+		HashSet<Object> primaryKeySet = new HashSet<Object>();
+		long count = 0;
+		try (CaptureJournalReader reader = new CaptureJournalReader(files)) {
+			while (reader.next()) {
+				Object key = toObject(reader.getKey());
+				if (primaryKeySet.add(key) == false) {
+					continue;
+				}
+				Object value = toObject(reader.getValue());
+				if (value instanceof SessionMetadata) {
+					SessionMetadata sm = (SessionMetadata) value;
+					for (int i = 0; i < sm.size(); i++) {
+						add(batchMap, sm.getMapName(i), sm.getRelevantKey(i), blob);
+						count++;
+					}
+				} else {
+					List<String> relevantNames = relevantNamesMap.computeIfAbsent(reader.getMapName(),
+							name -> getRelevantMapNames(name));
+					for (String relevantName : relevantNames) {
+						add(batchMap, relevantName, key, blob);
+						count++;
+					}
+				}
+			}
+		}
+		for (Map.Entry<String, Map<Object, Object>> entry : batchMap.entrySet()) {
+			relevantMapMap.get(entry.getKey()).putAll(entry.getValue());
+		}
+		return count;
+	}
+
+	private void add(HashMap<String, Map<Object, Object>> batchMap, String mapName, Object key, Object value) {
+		Map<Object, Object> batch = batchMap.computeIfAbsent(mapName, name -> new HashMap<Object, Object>());
+		relevantMapMap.computeIfAbsent(mapName, name -> hz.getMap(name));
+		batch.put(key, value);
+		if (batch.size() >= POPULATE_BATCH_SIZE) {
+			relevantMapMap.get(mapName).putAll(batch);
+			batch.clear();
+		}
+	}
+
+	private long getRelevantSize() {
+		long size = 0;
+		for (IMap map : relevantMapMap.values()) {
+			size += map.size();
+		}
+		return size;
+	}
+
+	private int getQueueSize() {
+		switch (source) {
+		case CaptureJournal.SOURCE_GET:
+			return SessionExpirationService_Get.getExpirationService().getQueueSize();
+		case CaptureJournal.SOURCE_METADATA_DELETE:
+			return SessionExpirationService_SessionMetadata_Delete.getExpirationService().getQueueSize();
+		case CaptureJournal.SOURCE_METADATA_GET:
+			return SessionExpirationService_SessionMetadata_Get.getExpirationService().getQueueSize();
+		case CaptureJournal.SOURCE_EXPIRATION:
+		default:
+			return SessionExpirationService.getExpirationService().getQueueSize();
+		}
+	}
+
+	/**
+	 * Feeds the specified event to the service as its listener would have.
+	 */
+	private void feed(byte eventSource, String mapName, Object key, Object value) {
+		switch (eventSource) {
+		case CaptureJournal.SOURCE_GET:
+			SessionExpirationService_Get.getExpirationService().resetIdleTimeout(mapName, key);
+			break;
+		case CaptureJournal.SOURCE_METADATA_DELETE:
+			SessionExpirationService_SessionMetadata_Delete.getExpirationService().expire(mapName, key,
+					(SessionMetadata) value);
+			break;
+		case CaptureJournal.SOURCE_METADATA_GET:
+			SessionExpirationService_SessionMetadata_Get.getExpirationService().reset(mapName, key,
+					(SessionMetadata) value);
+			break;
+		case CaptureJournal.SOURCE_EXPIRATION:
+		default:
+			SessionExpirationService.getExpirationService().expire(mapName, key);
+			break;
+		}
+	}
+
+	/**
+	 * Replays the events at the specified speed and waits for the service to
+	 * drain.
+	 *
+	 * @param speed          Replay speed factor, e.g., 1 for the captured pace and
+	 *                       10 for 10 times faster. 0 replays as fast as
+	 *                       possible.
+	 * @param timeoutSeconds Maximum time to wait for the service to drain after
+	 *                       the last event
+	 */
+	void replay(double speed, int timeoutSeconds) throws Exception {
+		long startNanos = System.nanoTime();
+
+		// Report from a separate thread so that the replay is not held up by the
+		// map size operations, which queue behind the service's operations.
+		Thread reporter = new Thread(() -> report(startNanos), "replay-reporter");
+		reporter.setDaemon(true);
+		reporter.start();
+
+		long captureSpanNanos = 0;
+		try (CaptureJournalReader reader = new CaptureJournalReader(files)) {
+			while (reader.next()) {
+				captureSpanNanos = reader.getTimeNanos();
+				if (speed > 0) {
+					long scheduledNanos = startNanos + (long) (captureSpanNanos / speed);
+					long delay = scheduledNanos - System.nanoTime();
+					if (delay > 0) {
+						LockSupport.parkNanos(delay);
+					} else {
+						behindNanos = -delay;
+					}
+				}
+				feed(reader.getSource(), reader.getMapName(), toObject(reader.getKey()), toObject(reader.getValue()));
+				eventCount++;
+			}
+		}
+		long feedEndNanos = System.nanoTime();
+
+		// Drained if the queue is empty and, for the expiration sources, the
+		// relevant maps are empty or have stopped shrinking for a second.
+		boolean isExpiration = source == CaptureJournal.SOURCE_EXPIRATION
+				|| source == CaptureJournal.SOURCE_METADATA_DELETE;
+		long deadlineNanos = feedEndNanos + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+		long drainedNanos = -1;
+		long prevRelevantSize = -1;
+		long stableSinceNanos = feedEndNanos;
+		while (System.nanoTime() < deadlineNanos) {
+			int queueSize = getQueueSize();
+			long relevantSize = isExpiration ? getRelevantSize() : 0;
+			long now = System.nanoTime();
+			if (relevantSize != prevRelevantSize || queueSize > 0) {
+				stableSinceNanos = now;
+				prevRelevantSize = relevantSize;
+			}
+			if (queueSize == 0 && relevantSize == 0) {
+				drainedNanos = now;
+				break;
+			}
+			if (queueSize == 0 && now - stableSinceNanos >= TimeUnit.SECONDS.toNanos(1)) {
+				drainedNanos = stableSinceNanos;
+				break;
+			}
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+		}
+		reporter.interrupt();
+		reporter.join();
+
+		writeLine();
+		writeLine("Replay summary [" + SOURCE_NAMES[source] + "]:");
+		writeLine("   Events:              " + eventCount);
+		writeLine(String.format("   Capture span:        %.3f s", captureSpanNanos / 1e9d));
+		writeLine(String.format("   Replay time:         %.3f s (speed=%s)", (feedEndNanos - startNanos) / 1e9d,
+				speed > 0 ? speed + "x" : "max"));
+		writeLine(String.format("   Max behind:          %.1f ms", maxBehindNanos / 1e6d));
+		writeLine("   Max queue size:      " + maxQueueSize);
+		if (drainedNanos >= 0) {
+			writeLine(String.format("   Drain time:          %.3f s after the last event",
+					Math.max(0, drainedNanos - feedEndNanos) / 1e9d));
+		} else {
+			writeLine("   Drain time:          not drained within " + timeoutSeconds + " s");
+		}
+		writeLine("   Relevant entries:    " + getRelevantSize() + " remaining");
+	}
+
+	/**
+	 * Writes the replay progress every second until interrupted.
+	 */
+	private void report(long startNanos) {
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1);
+		long nextReportNanos = startNanos + intervalNanos;
+		long prevEventCount = 0;
+		writeLine(String.format("%8s %12s %10s %10s %10s %12s", "Time (s)", "Events", "Events/s", "Behind(ms)",
+				"Queue", "Relevant"));
+		while (Thread.currentThread().isInterrupted() == false) {
+			LockSupport.parkNanos(nextReportNanos - System.nanoTime());
+			if (Thread.currentThread().isInterrupted()) {
+				break;
+			}
+			long count = eventCount;
+			long behind = behindNanos;
+			maxBehindNanos = Math.max(maxBehindNanos, behind);
+			int queueSize = getQueueSize();
+			maxQueueSize = Math.max(maxQueueSize, queueSize);
+			long relevantSize = getRelevantSize();
+			long now = System.nanoTime();
+			writeLine(String.format("%8.1f %12d %10.0f %10.1f %10d %12d", (now - startNanos) / 1e9d, count,
+					(count - prevEventCount) * 1e9d / (now - nextReportNanos + intervalNanos), behind / 1e6d,
+					queueSize, relevantSize));
+			prevEventCount = count;
+			nextReportNanos = Math.max(nextReportNanos + intervalNanos, now);
+		}
+	}
+
+	private static void usage() {
+		String executableName = System.getProperty(PROPERTY_executableName, CaptureJournalReplayer.class.getName());
+		writeLine();
+		writeLine("NAME");
+		writeLine("   " + executableName
+				+ " - Replay captured expiration listener events into the expiration service of an embedded member");
+		writeLine();
+		writeLine("SYNOPSIS");
+		writeLine("   " + executableName + " -journal file_or_dir [-prefix file_name_prefix] [-config member_config]");
+		writeLine("               [-property name=value]... [-speed factor] [-populate true|false]");
+		writeLine("               [-timeout seconds] [-port port] [-etc etc_dir] [-?]");
+		writeLine();
+		writeLine("DESCRIPTION");
+		writeLine("   Replays the events captured by the expiration listeners with the");
+		writeLine("   '" + SessionExpirationServiceConfiguration.PROPERTY_CAPTURE_DIR + "' property into");
+		writeLine("   the matching expiration service of an embedded member, at the captured pace or faster. Unless");
+		writeLine("   '-populate false' is specified, the relevant entries of the captured sessions are written");
+		writeLine("   first so that the service has entries to remove or touch. Run it with different '-property'");
+		writeLine("   values to compare configurations against the same event stream.");
+		writeLine();
+		writeLine("OPTIONS");
+		writeLine("   -journal file_or_dir");
+		writeLine("             Journal file or the directory containing the journal files of a single capture.");
+		writeLine();
+		writeLine("   -prefix file_name_prefix");
+		writeLine("             Replays the files in the directory whose names start with the specified prefix,");
+		writeLine("             e.g., 'hz1-20240315-070000', if the directory has more than one capture.");
+		writeLine();
+		writeLine("   -config member_config");
+		writeLine("             Member YAML or XML configuration file. Default: the file in the etc directory of the");
+		writeLine("             plugin that captured the events, e.g., hazelcast-get.yaml for");
+		writeLine("             SessionExpirationService_Get.");
+		writeLine();
+		writeLine("   -property name=value");
+		writeLine("             Overrides the specified member configuration property. Repeat as needed.");
+		writeLine();
+		writeLine("   -speed factor");
+		writeLine("             Replay speed. 1 replays at the captured pace, 10 ten times faster and 0 as fast as");
+		writeLine("             possible. Default: 1");
+		writeLine();
+		writeLine("   -populate true|false");
+		writeLine("             If true, writes the relevant entries of the captured sessions before the replay.");
+		writeLine("             Default: true");
+		writeLine();
+		writeLine("   -timeout seconds");
+		writeLine("             Maximum time to wait for the service to drain after the last event. Default: 60");
+		writeLine();
+		writeLine("   -port port");
+		writeLine("             Embedded member port. Default: 15701");
+		writeLine();
+		writeLine("   -etc etc_dir");
+		writeLine("             Directory of the default member configuration files. Default: etc");
+		writeLine();
+		writeLine("EXAMPLES");
+		writeLine("   # Replay a capture at 10x with 1 and then 8 worker threads");
+		writeLine("   ./" + executableName + " -journal capture -speed 10 \\");
+		writeLine("      -property hazelcast.addon.cluster.expiration.thread.pool-size=1");
+		writeLine("   ./" + executableName + " -journal capture -speed 10 \\");
+		writeLine("      -property hazelcast.addon.cluster.expiration.thread.pool-size=8");
+		writeLine();
+		writeLine("NOTES");
+		writeLine("   - The listeners configured in the member configuration files are not local. Each member");
+		writeLine("     therefore receives and captures all the events of the cluster, and a single member's");
+		writeLine("     capture is the complete event stream.");
+		writeLine();
+	}
+
+	private static void writeLine() {
+		System.out.println();
+	}
+
+	private static void writeLine(String line) {
+		System.out.println(line);
+	}
+
+	public static void main(String[] args) throws Exception {
+		String journal = null;
+		String prefix = null;
+		String configFile = null;
+		String etcDir = "etc";
+		Properties overrides = new Properties();
+		double speed = 1;
+		boolean isPopulate = true;
+		int timeoutSeconds = 60;
+		int port = 15701;
+		String arg;
+		for (int i = 0; i < args.length; i++) {
+			arg = args[i];
+			if (arg.equalsIgnoreCase("-?")) {
+				usage();
+				System.exit(0);
+			} else if (arg.equals("-journal") && i < args.length - 1) {
+				journal = args[++i].trim();
+			} else if (arg.equals("-prefix") && i < args.length - 1) {
+				prefix = args[++i].trim();
+			} else if (arg.equals("-config") && i < args.length - 1) {
+				configFile = args[++i].trim();
+			} else if (arg.equals("-etc") && i < args.length - 1) {
+				etcDir = args[++i].trim();
+			} else if (arg.equals("-property") && i < args.length - 1) {
+				String property = args[++i].trim();
+				int index = property.indexOf('=');
+				if (index <= 0) {
+					System.err.println("ERROR: Invalid property [" + property + "]. Must be name=value. Command aborted.");
+					System.exit(1);
+				}
+				overrides.setProperty(property.substring(0, index), property.substring(index + 1));
+			} else if (arg.equals("-speed") && i < args.length - 1) {
+				String value = args[++i].trim();
+				try {
+					speed = Double.parseDouble(value);
+				} catch (Exception ex) {
+					System.err.println("ERROR: Invalid speed [" + value + "]. Command aborted.");
+					System.exit(1);
+				}
+			} else if (arg.equals("-populate") && i < args.length - 1) {
+				isPopulate = args[++i].trim().equalsIgnoreCase("true");
+			} else if (arg.equals("-timeout") && i < args.length - 1) {
+				timeoutSeconds = parseInt("timeout", args[++i].trim());
+			} else if (arg.equals("-port") && i < args.length - 1) {
+				port = parseInt("port", args[++i].trim());
+			}
+		}
+		if (journal == null) {
+			System.err.println("ERROR: Journal not specified. Use '-journal' to specify the journal. Command aborted.");
+			System.exit(1);
+		}
+		List<File> files = CaptureJournalReader.listFiles(new File(journal), prefix);
+		byte source = files.isEmpty() ? -1 : readSource(files);
+		if (source < 0 || source >= SOURCE_NAMES.length) {
+			System.err.println("ERROR: No events found in [" + journal + "]. Command aborted.");
+			System.exit(2);
+		}
+		if (configFile == null) {
+			configFile = new File(etcDir, SOURCE_CONFIG_FILES[source]).getPath();
+		}
+
+		Properties variables = new Properties();
+		variables.setProperty("hazelcast-addon.tcp.port", Integer.toString(port));
+		variables.setProperty("hazelcast-addon.tcp.members", "127.0.0.1:" + port);
+		String configText = new String(Files.readAllBytes(Paths.get(configFile)), "UTF-8");
+		Config config = configFile.endsWith(".xml") ? new InMemoryXmlConfig(configText, variables)
+				: new InMemoryYamlConfig(configText, variables);
+		config.setClusterName("replay-" + port);
+		config.setProperty("hazelcast.wait.seconds.before.join", "0");
+		for (String name : overrides.stringPropertyNames()) {
+			config.setProperty(name, overrides.getProperty(name));
+		}
+
+		writeLine("Journal: " + files.size() + " file(s) " + files);
+		writeLine("Source:  " + SOURCE_NAMES[source]);
+		writeLine("Config:  " + configFile + (overrides.isEmpty() ? "" : " " + overrides));
+		HazelcastInstance hz = Hazelcast.newHazelcastInstance(config);
+		try {
+			CaptureJournalReplayer replayer = new CaptureJournalReplayer(files, source, hz);
+			if (isPopulate) {
+				long startTime = System.currentTimeMillis();
+				long count = replayer.populate();
+				writeLine("Populated " + count + " relevant entries in " + replayer.relevantMapMap.keySet() + " ("
+						+ (System.currentTimeMillis() - startTime) + " ms)");
+			}
+			writeLine();
+			replayer.replay(speed, timeoutSeconds);
+		} finally {
+			terminate(source);
+			Hazelcast.shutdownAll();
+		}
+
+		// The terminated expiration service threads may still be blocked
+		System.exit(0);
+	}
+
+	private static void terminate(byte source) {
+		switch (source) {
+		case CaptureJournal.SOURCE_GET:
+			SessionExpirationService_Get.getExpirationService().terminate();
+			break;
+		case CaptureJournal.SOURCE_METADATA_DELETE:
+			SessionExpirationService_SessionMetadata_Delete.getExpirationService().terminate();
+			break;
+		case CaptureJournal.SOURCE_METADATA_GET:
+			SessionExpirationService_SessionMetadata_Get.getExpirationService().terminate();
+			break;
+		case CaptureJournal.SOURCE_EXPIRATION:
+		default:
+			SessionExpirationService.getExpirationService().terminate();
+			break;
+		}
+	}
+
+	private static int parseInt(String name, String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (Exception ex) {
+			System.err.println("ERROR: Invalid " + name + " [" + value + "]. Command aborted.");
+			System.exit(1);
+			return 0;
+		}
+	}
+}
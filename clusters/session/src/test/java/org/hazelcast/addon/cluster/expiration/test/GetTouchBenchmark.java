@@ -0,0 +1,233 @@
+package org.hazelcast.addon.cluster.expiration.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.hazelcast.addon.cluster.EntryTouchProcessor;
+import org.hazelcast.addon.cluster.expiration.ExpirationEngine;
+import org.hazelcast.addon.cluster.expiration.SessionExpirationListener_Get;
+import org.hazelcast.addon.cluster.expiration.SessionExpirationServiceInitializer_Get;
+import org.hazelcast.addon.cluster.expiration.SessionExpirationService_Get;
+import org.hazelcast.addon.cluster.expiration.SessionIdExtractor;
+
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.config.AttributeConfig;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.EntryListenerConfig;
+import com.hazelcast.config.IndexConfig;
+import com.hazelcast.config.IndexType;
+import com.hazelcast.config.ListenerConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+
+/**
+ * {@linkplain GetTouchBenchmark} measures the latency of client
+ * <code>set()</code> calls on a primary map while
+ * {@linkplain SessionExpirationService_Get} resets the idle timeout of the
+ * relevant map entries. It starts a single embedded member, ingests large
+ * values into the relevant map and times the primary map updates of random
+ * sessions from a client. The relevant map keys are matched by the HASH
+ * indexed session ID attribute extracted by {@linkplain SessionIdExtractor} so
+ * that the query cost does not dominate. The
+ * {@linkplain ExpirationEngine#KEY_SET} engine gets every matching entry,
+ * whereas {@linkplain ExpirationEngine#ENTRY_PROCESSOR} touches them in place
+ * with {@linkplain EntryTouchProcessor}. The backlog of idle timeout resets
+ * left in the service queue after the last set is drained and reported
+ * separately.
+ * <p>
+ * {@linkplain SessionExpirationService_Get} is a singleton, so each run
+ * benchmarks a single engine. Run it once per engine, e.g.,
+ *
+ * <pre>
+ * GetTouchBenchmark -engine KEY_SET
+ * GetTouchBenchmark -engine ENTRY_PROCESSOR
+ * </pre>
+ *
+ * The default 1,000 sessions of 5 keys of 20 KB require a heap of at least 1
+ * GB.
+ *
+ * @author dpark
+ *
+ */
+public class GetTouchBenchmark {
+
+	public final static String PROPERTY_executableName = "executable.name";
+
+	private final static String PRIMARY_MAP_NAME = "smkg_benchmark";
+	private final static String RELEVANT_MAP_NAME = "mkg_benchmark";
+
+	private static void writeLine() {
+		System.out.println();
+	}
+
+	private static void writeLine(String line) {
+		System.out.println(line);
+	}
+
+	private static void usage() {
+		String executableName = System.getProperty(PROPERTY_executableName, GetTouchBenchmark.class.getName());
+		writeLine();
+		writeLine("NAME");
+		writeLine("   " + executableName
+				+ " - Benchmark client set() latencies on a primary map while resetting relevant map idle timeouts");
+		writeLine();
+		writeLine("SYNOPSIS");
+		writeLine("   " + executableName + " [-engine KEY_SET|ENTRY_PROCESSOR] [-sessions sessions]");
+		writeLine("               [-keys keys_per_session] [-size value_size] [-sets sets] [-rate rate] [-?]");
+		writeLine();
+		writeLine("OPTIONS");
+		writeLine("   -engine KEY_SET|ENTRY_PROCESSOR");
+		writeLine("             Engine that resets the idle timeout. Default: ENTRY_PROCESSOR");
+		writeLine();
+		writeLine("   -sessions sessions");
+		writeLine("             Number of sessions. Default: 1000");
+		writeLine();
+		writeLine("   -keys keys_per_session");
+		writeLine("             Number of relevant map keys per session. Default: 5");
+		writeLine();
+		writeLine("   -size value_size");
+		writeLine("             Relevant map value size in bytes. Default: 20480");
+		writeLine();
+		writeLine("   -sets sets");
+		writeLine("             Number of timed primary map set() calls. Default: 20000");
+		writeLine();
+		writeLine("   -rate rate");
+		writeLine("             Maximum number of set() calls per second. Set it below the rate that both");
+		writeLine("             engines can keep up with to compare the latencies for the same work. If 0,");
+		writeLine("             the set() calls are not throttled. Default: 0");
+		writeLine();
+	}
+
+	private static int parseInt(String name, String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (Exception ex) {
+			System.err.println("ERROR: Invalid " + name + " [" + value + "]. Command aborted.");
+			System.exit(1);
+			return 0;
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		ExpirationEngine engine = ExpirationEngine.ENTRY_PROCESSOR;
+		int sessionCount = 1000;
+		int keysPerSession = 5;
+		int valueSize = 20 * 1024;
+		int setCount = 20000;
+		int rate = 0;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equalsIgnoreCase("-?")) {
+				usage();
+				System.exit(0);
+			} else if (arg.equals("-engine") && i < args.length - 1) {
+				String engineStr = args[++i].trim();
+				try {
+					engine = ExpirationEngine.valueOf(engineStr.toUpperCase());
+				} catch (Exception ex) {
+					System.err.println("ERROR: Invalid engine [" + engineStr + "]. Command aborted.");
+					System.exit(1);
+				}
+			} else if (arg.equals("-sessions") && i < args.length - 1) {
+				sessionCount = parseInt("sessions", args[++i].trim());
+			} else if (arg.equals("-keys") && i < args.length - 1) {
+				keysPerSession = parseInt("keys", args[++i].trim());
+			} else if (arg.equals("-size") && i < args.length - 1) {
+				valueSize = parseInt("size", args[++i].trim());
+			} else if (arg.equals("-sets") && i < args.length - 1) {
+				setCount = parseInt("sets", args[++i].trim());
+			} else if (arg.equals("-rate") && i < args.length - 1) {
+				rate = parseInt("rate", args[++i].trim());
+			}
+		}
+
+		Config config = new Config();
+		config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+		config.setProperty("hazelcast.addon.cluster.expiration.session.smkg_%TAG%", "mkg_%TAG%");
+		config.setProperty("hazelcast.addon.cluster.expiration.session.smkg_%TAG%.engine", engine.name());
+		config.addListenerConfig(new ListenerConfig(SessionExpirationServiceInitializer_Get.class.getName()));
+		config.getMapConfig("smkg_*").setMaxIdleSeconds(3600).addEntryListenerConfig(
+				new EntryListenerConfig(SessionExpirationListener_Get.class.getName(), false, false));
+		config.setProperty("hazelcast.addon.cluster.expiration.string-key.attribute.enabled", "true");
+		config.getMapConfig("mkg_*").setMaxIdleSeconds(3600)
+				.addAttributeConfig(new AttributeConfig(SessionIdExtractor.ATTRIBUTE_NAME,
+						SessionIdExtractor.class.getName()))
+				.addIndexConfig(new IndexConfig(IndexType.HASH, "__key." + SessionIdExtractor.ATTRIBUTE_NAME));
+		HazelcastInstance hz = Hazelcast.newHazelcastInstance(config);
+		HazelcastInstance client = null;
+		try {
+			IMap<String, byte[]> relevantMap = hz.getMap(RELEVANT_MAP_NAME);
+			byte[] value = new byte[valueSize];
+			for (int i = 0; i < sessionCount; i++) {
+				for (int j = 0; j < keysPerSession; j++) {
+					relevantMap.set("s" + i + "@a" + j, value);
+				}
+			}
+			writeLine("Ingested " + sessionCount * keysPerSession + " relevant map entries of " + valueSize
+					+ " bytes.");
+
+			ClientConfig clientConfig = new ClientConfig();
+			clientConfig.getNetworkConfig()
+					.addAddress("127.0.0.1:" + hz.getCluster().getLocalMember().getAddress().getPort());
+			client = HazelcastClient.newHazelcastClient(clientConfig);
+			IMap<String, String> primaryMap = client.getMap(PRIMARY_MAP_NAME);
+
+			// Warm up
+			Random random = new Random(1);
+			for (int i = 0; i < setCount / 10; i++) {
+				primaryMap.set("s" + random.nextInt(sessionCount) + "@p", "v");
+			}
+
+			long[] latencies = new long[setCount];
+			long intervalInNsec = rate > 0 ? 1_000_000_000L / rate : 0;
+			long startTime = System.nanoTime();
+			for (int i = 0; i < setCount; i++) {
+				String key = "s" + random.nextInt(sessionCount) + "@p";
+				if (intervalInNsec > 0) {
+					long waitTime = startTime + i * intervalInNsec - System.nanoTime();
+					if (waitTime > 0) {
+						Thread.sleep(waitTime / 1_000_000, (int) (waitTime % 1_000_000));
+					}
+				}
+				long time = System.nanoTime();
+				primaryMap.set(key, "v");
+				latencies[i] = System.nanoTime() - time;
+			}
+			long totalTime = System.nanoTime() - startTime;
+
+			// The idle timeout resets lag behind the sets if the engine cannot keep up.
+			// Wait for the backlog to drain so that both engines are measured for the
+			// same amount of work.
+			SessionExpirationService_Get expirationService = SessionExpirationService_Get.getExpirationService();
+			int backlog = expirationService.getQueueSize();
+			long drainStartTime = System.nanoTime();
+			while (expirationService.getQueueSize() > 0) {
+				Thread.sleep(10);
+			}
+			long drainTime = System.nanoTime() - drainStartTime;
+			Arrays.sort(latencies);
+			long sum = 0;
+			for (long latency : latencies) {
+				sum += latency;
+			}
+
+			writeLine();
+			writeLine("engine=" + engine + ", sessions=" + sessionCount + ", keys=" + keysPerSession + ", size="
+					+ valueSize + ", sets=" + setCount + ", rate=" + rate);
+			writeLine(String.format("set() avg(usec)=%.1f, p50(usec)=%.1f, p99(usec)=%.1f, max(usec)=%.1f",
+					sum / 1000d / setCount, latencies[setCount / 2] / 1000d, latencies[setCount * 99 / 100] / 1000d,
+					latencies[setCount - 1] / 1000d));
+			writeLine(String.format("throughput(sets/sec)=%.0f", setCount / (totalTime / 1_000_000_000d)));
+			writeLine(String.format("backlog=%d, drain(msec)=%.0f, resets(sessions/sec)=%.0f", backlog,
+					drainTime / 1_000_000d, setCount / ((totalTime + drainTime) / 1_000_000_000d)));
+		} finally {
+			if (client != null) {
+				client.shutdown();
+			}
+			hz.shutdown();
+		}
+		System.exit(0);
+	}
+}
@@ -0,0 +1,73 @@
+package org.hazelcast.addon.cluster.expiration.test;
+
+import java.util.Properties;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryYamlConfig;
+import com.hazelcast.core.DistributedObject;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+
+/**
+ * {@linkplain HarnessMember} starts and stops an embedded member for
+ * {@linkplain PluginComparisonHarness}. It is loaded by a separate class
+ * loader per member so that each member has its own instances of the
+ * singleton expiration services, as in a real cluster. Its methods are
+ * invoked reflectively and therefore take and return JDK types only.
+ *
+ * @author dpark
+ *
+ */
+public class HarnessMember {
+
+	/**
+	 * Starts a member with the specified YAML configuration.
+	 *
+	 * @param yaml         Member configuration, e.g., the contents of
+	 *                     etc/hazelcast.yaml
+	 * @param variables    Values of the ${...} variables in the configuration
+	 * @param clusterName  Cluster name that replaces the configured name
+	 * @param instanceName Member instance name
+	 * @return HazelcastInstance
+	 */
+	public static Object start(String yaml, Properties variables, String clusterName, String instanceName) {
+		Config config = new InMemoryYamlConfig(yaml, variables);
+		config.setClusterName(clusterName);
+		config.setInstanceName(instanceName);
+		config.setClassLoader(HarnessMember.class.getClassLoader());
+		config.setProperty("hazelcast.wait.seconds.before.join", "0");
+		config.setProperty("hazelcast.shutdownhook.enabled", "false");
+		return Hazelcast.newHazelcastInstance(config);
+	}
+
+	/**
+	 * Returns the sum of the heap costs of the member's local map entries in
+	 * bytes.
+	 *
+	 * @param hz HazelcastInstance returned by
+	 *           {@linkplain #start(String, Properties, String, String)}
+	 */
+	public static long getMapHeapCost(Object hz) {
+		long heapCost = 0;
+		for (DistributedObject object : ((HazelcastInstance) hz).getDistributedObjects()) {
+			if (object instanceof IMap) {
+				heapCost += ((IMap<?, ?>) object).getLocalMapStats().getHeapCost();
+			}
+		}
+		return heapCost;
+	}
+
+	/**
+	 * Terminates the specified expiration service and the member.
+	 *
+	 * @param hz               HazelcastInstance returned by
+	 *                         {@linkplain #start(String, Properties, String, String)}
+	 * @param serviceClassName Expiration service class name
+	 */
+	public static void stop(Object hz, String serviceClassName) throws Exception {
+		Object service = Class.forName(serviceClassName).getMethod("getExpirationService").invoke(null);
+		service.getClass().getMethod("terminate").invoke(service);
+		((HazelcastInstance) hz).getLifecycleService().terminate();
+	}
+}
@@ -0,0 +1,123 @@
+package org.hazelcast.addon.cluster.expiration.test;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.hazelcast.internal.json.Json;
+import com.hazelcast.internal.json.JsonObject;
+import com.hazelcast.internal.json.JsonValue;
+
+/**
+ * {@linkplain JmhResultComparator} compares two JMH JSON result files written
+ * by the "jmh" Maven profile, e.g., of two builds, and prints the score change
+ * of each benchmark and parameter combination found in both. A change is
+ * flagged as better or worse only if it exceeds the sum of the two score
+ * errors.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.result=target/jmh-before.json
+ * (apply changes)
+ * mvn -Pjmh test-compile exec:exec -Djmh.result=target/jmh-after.json
+ * java -cp target/test-classes:target/classes:hazelcast.jar \
+ *    org.hazelcast.addon.cluster.expiration.test.JmhResultComparator target/jmh-before.json target/jmh-after.json
+ * </pre>
+ *
+ * @author dpark
+ *
+ */
+public class JmhResultComparator {
+
+	public final static String PROPERTY_executableName = "executable.name";
+
+	private static void writeLine() {
+		System.out.println();
+	}
+
+	private static void writeLine(String line) {
+		System.out.println(line);
+	}
+
+	private static void usage() {
+		String executableName = System.getProperty(PROPERTY_executableName, JmhResultComparator.class.getName());
+		writeLine();
+		writeLine("NAME");
+		writeLine("   " + executableName + " - Compare two JMH JSON result files");
+		writeLine();
+		writeLine("SYNOPSIS");
+		writeLine("   " + executableName + " base_result.json new_result.json [-?]");
+		writeLine();
+	}
+
+	/**
+	 * Reads the specified JMH JSON result file and returns &lt;benchmark and
+	 * parameters, result&gt; entries.
+	 */
+	private static Map<String, JsonObject> read(String fileName) throws IOException {
+		LinkedHashMap<String, JsonObject> map = new LinkedHashMap<String, JsonObject>();
+		try (Reader reader = new FileReader(fileName)) {
+			for (JsonValue value : Json.parse(reader).asArray()) {
+				JsonObject result = value.asObject();
+				StringBuilder buffer = new StringBuilder(result.getString("benchmark", ""));
+				JsonValue params = result.get("params");
+				if (params != null && params.isObject()) {
+					buffer.append(" {");
+					int i = 0;
+					for (JsonObject.Member member : params.asObject()) {
+						if (i++ > 0) {
+							buffer.append(", ");
+						}
+						buffer.append(member.getName()).append('=').append(member.getValue().asString());
+					}
+					buffer.append('}');
+				}
+				map.put(buffer.toString(), result);
+			}
+		}
+		return map;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2 || args[0].equals("-?")) {
+			usage();
+			System.exit(args.length == 1 && args[0].equals("-?") ? 0 : 1);
+		}
+		Map<String, JsonObject> baseMap = read(args[0]);
+		Map<String, JsonObject> newMap = read(args[1]);
+		writeLine(String.format("%-80s %14s %14s %-10s %9s", "Benchmark", "Base", "New", "Unit", "Change"));
+		for (Map.Entry<String, JsonObject> entry : newMap.entrySet()) {
+			JsonObject baseResult = baseMap.get(entry.getKey());
+			if (baseResult == null) {
+				continue;
+			}
+			JsonObject baseMetric = baseResult.get("primaryMetric").asObject();
+			JsonObject newMetric = entry.getValue().get("primaryMetric").asObject();
+			double baseScore = baseMetric.getDouble("score", 0);
+			double newScore = newMetric.getDouble("score", 0);
+			double error = getError(baseMetric) + getError(newMetric);
+			double change = baseScore == 0 ? 0 : (newScore - baseScore) * 100 / baseScore;
+
+			// Lower is better for the time modes, higher for throughput
+			boolean isHigherBetter = "thrpt".equals(entry.getValue().getString("mode", ""));
+			String verdict = "";
+			if (Math.abs(newScore - baseScore) > error) {
+				verdict = (newScore > baseScore) == isHigherBetter ? " better" : " worse";
+			}
+			writeLine(String.format("%-80s %14.3f %14.3f %-10s %+8.1f%%%s", entry.getKey(), baseScore, newScore,
+					newMetric.getString("scoreUnit", ""), change, verdict));
+		}
+	}
+
+	/**
+	 * Returns the score error of the specified metric. JMH writes "NaN" as a string
+	 * if there are too few measurement iterations to compute the error.
+	 */
+	private static double getError(JsonObject metric) {
+		JsonValue error = metric.get("scoreError");
+		return error != null && error.isNumber() ? error.asDouble() : 0;
+	}
+}
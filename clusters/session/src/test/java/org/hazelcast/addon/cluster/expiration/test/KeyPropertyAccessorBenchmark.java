@@ -0,0 +1,127 @@
+package org.hazelcast.addon.cluster.expiration.test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.hazelcast.addon.cluster.expiration.KeyPropertyAccessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@linkplain KeyPropertyAccessorBenchmark} compares the reflection path that
+ * was used to extract the session ID from OBJECT keys, i.e.,
+ * <code>getClass().getMethod()</code> followed by <code>Method.invoke()</code>
+ * per key, against {@linkplain KeyPropertyAccessor}.
+ * Each benchmark extracts the session IDs of a batch of keys of two classes to
+ * keep the call sites polymorphic.
+ * <p>
+ * Run with
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="KeyPropertyAccessorBenchmark"
+ * </pre>
+ *
+ * @author dpark
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyPropertyAccessorBenchmark {
+
+	private final static int BATCH_SIZE = 100;
+
+	public static class SessionKey {
+		private final String sessionId;
+		private final SessionKey parent;
+
+		public SessionKey(String sessionId, SessionKey parent) {
+			this.sessionId = sessionId;
+			this.parent = parent;
+		}
+
+		public String getSessionId() {
+			return sessionId;
+		}
+
+		public SessionKey getParent() {
+			return parent;
+		}
+	}
+
+	public static class UserSessionKey extends SessionKey {
+		public UserSessionKey(String sessionId, SessionKey parent) {
+			super(sessionId, parent);
+		}
+	}
+
+	private Object[] keys;
+	private KeyPropertyAccessor accessor;
+	private KeyPropertyAccessor nestedAccessor;
+
+	@Setup
+	public void setup() {
+		keys = new Object[BATCH_SIZE];
+		for (int i = 0; i < keys.length; i++) {
+			SessionKey parent = new SessionKey("s" + i, null);
+			keys[i] = i % 2 == 0 ? new SessionKey("s" + i, parent) : new UserSessionKey("s" + i, parent);
+		}
+		accessor = KeyPropertyAccessor.getAccessor("sessionId");
+		nestedAccessor = KeyPropertyAccessor.getAccessor("parent.sessionId");
+	}
+
+	@Benchmark
+	public int reflection() throws Exception {
+		int hash = 0;
+		for (Object key : keys) {
+			Method method = key.getClass().getMethod("getSessionId");
+			Object sessionId = method.invoke(key);
+			hash += sessionId.toString().hashCode();
+		}
+		return hash;
+	}
+
+	@Benchmark
+	public int accessor() {
+		int hash = 0;
+		for (Object key : keys) {
+			Object sessionId = accessor.getValue(key);
+			hash += sessionId.toString().hashCode();
+		}
+		return hash;
+	}
+
+	@Benchmark
+	public int reflectionNested() throws Exception {
+		int hash = 0;
+		for (Object key : keys) {
+			Method method = key.getClass().getMethod("getParent");
+			Object parent = method.invoke(key);
+			method = parent.getClass().getMethod("getSessionId");
+			Object sessionId = method.invoke(parent);
+			hash += sessionId.toString().hashCode();
+		}
+		return hash;
+	}
+
+	@Benchmark
+	public int accessorNested() {
+		int hash = 0;
+		for (Object key : keys) {
+			Object sessionId = nestedAccessor.getValue(key);
+			hash += sessionId.toString().hashCode();
+		}
+		return hash;
+	}
+}
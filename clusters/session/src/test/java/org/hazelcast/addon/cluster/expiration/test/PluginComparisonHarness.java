@@ -0,0 +1,792 @@
+package org.hazelcast.addon.cluster.expiration.test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.hazelcast.addon.cluster.expiration.KeyType;
+import org.hazelcast.addon.cluster.expiration.LatencyHistogram;
+import org.hazelcast.addon.cluster.expiration.SessionMapUtil;
+import org.hazelcast.addon.cluster.expiration.metadata.ExpirationDataSerializableFactory;
+import org.hazelcast.addon.cluster.expiration.metadata.SessionMetadata;
+
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.map.listener.EntryExpiredListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+
+/**
+ * {@linkplain PluginComparisonHarness} compares the expiration plugins head to
+ * head. For each plugin in turn, it starts the specified number of embedded
+ * members with the plugin's member configuration file in the etc directory,
+ * drives a session workload through a client and reports the following.
+ * <ul>
+ * <li>Client put latency percentiles and throughput.</li>
+ * <li>Cleanup lag, i.e., the time from a session's primary map expiration
+ * event to the removal or expiration of its last relevant map entry, as
+ * observed by client listeners.</li>
+ * <li>Orphans, i.e., the relevant map entries of the expired sessions that
+ * have not been removed when the maps have emptied or the timeout has
+ * elapsed.</li>
+ * <li>CPU time of each member's threads and the heap cost of each member's map
+ * entries. The members share the JVM heap, so the peak JVM heap usage is
+ * reported for the whole process.</li>
+ * </ul>
+ * Each member is loaded by its own class loader so that it has its own
+ * instances of the singleton expiration services as in a real cluster. The
+ * plugin of the previous run is terminated before the next plugin starts.
+ * <p>
+ * The <code>SessionExpirationService_Predicate_In</code> plugin uses
+ * etc/hazelcast.yaml with its initializer and listener classes substituted.
+ *
+ * @author dpark
+ *
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class PluginComparisonHarness {
+
+	public final static String PROPERTY_executableName = "executable.name";
+
+	private final static String PACKAGE_NAME = "org.hazelcast.addon.cluster.expiration.";
+	private final static String TAG = "EN01";
+	private final static String PRIMARY_KEY_ATTRIBUTE = "session";
+	private final static long SAMPLE_INTERVAL_MSEC = 500;
+
+	// Strong references keep the log levels from being garbage collected
+	private final static Logger hazelcastLogger = Logger.getLogger("com.hazelcast");
+	private final static Logger addonLogger = Logger.getLogger("org.hazelcast");
+
+	/**
+	 * Expiration plugins and their member configuration files.
+	 */
+	enum Plugin {
+		DEFAULT("SessionExpirationService", "hazelcast.yaml", false),
+		PREDICATE_IN("SessionExpirationService_Predicate_In", "hazelcast.yaml", false),
+		GET("SessionExpirationService_Get", "hazelcast-get.yaml", false),
+		METADATA_DELETE("metadata.SessionExpirationService_SessionMetadata_Delete",
+				"hazelcast-session-metadata-delete.yaml", true),
+		METADATA_GET("metadata.SessionExpirationService_SessionMetadata_Get", "hazelcast-session-metadata-get.yaml",
+				true);
+
+		final String serviceClassName;
+		final String configFileName;
+		final boolean isMetadata;
+
+		Plugin(String serviceClassName, String configFileName, boolean isMetadata) {
+			this.serviceClassName = PACKAGE_NAME + serviceClassName;
+			this.configFileName = configFileName;
+			this.isMetadata = isMetadata;
+		}
+
+		String getServiceName() {
+			return serviceClassName.substring(serviceClassName.lastIndexOf('.') + 1);
+		}
+
+		static Plugin getPlugin(String name) {
+			for (Plugin plugin : values()) {
+				if (plugin.name().equalsIgnoreCase(name) || plugin.getServiceName().equalsIgnoreCase(name)) {
+					return plugin;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Results of a single plugin run.
+	 */
+	static class Result {
+		Plugin plugin;
+		long[] putSnapshot = new long[LatencyHistogram.BUCKET_COUNT];
+		long putCount;
+		long ingestMsec;
+		long[] lagSnapshot = new long[LatencyHistogram.BUCKET_COUNT];
+		int expiredCount;
+		int cleanedCount;
+		int orphanCount;
+		int remainingCount;
+		long drainMsec = -1;
+		long elapsedNanos;
+		long[] cpuNanos;
+		long[] mapHeapPeak;
+		long jvmHeapPeak;
+		String error;
+	}
+
+	private int memberCount = 3;
+	private List<Plugin> pluginList = new ArrayList<Plugin>();
+	private KeyType keyType = KeyType.OBJECT;
+	private int sessionCount = 10000;
+	private int keysPerMap = 1;
+	private int touchCount = 1;
+	private int threadCount = 4;
+	private int timeoutSec = 120;
+	private int basePort = 15701;
+	private String etcDir = "etc";
+
+	private URL[] classpath;
+
+	private static void writeLine() {
+		System.out.println();
+	}
+
+	private static void writeLine(String line) {
+		System.out.println(line);
+	}
+
+	private static void usage() {
+		String executableName = System.getProperty(PROPERTY_executableName, PluginComparisonHarness.class.getName());
+		writeLine();
+		writeLine("NAME");
+		writeLine("   " + executableName + " - Compare the session expiration plugins head to head on embedded members");
+		writeLine();
+		writeLine("SYNOPSIS");
+		writeLine("   " + executableName + " [-members count] [-plugins plugin_names]");
+		writeLine("               [-type INTERFACE|OBJECT|PARTITION_AWARE|STRING] [-sessions count] [-keys count]");
+		writeLine("               [-touches count] [-threads count] [-timeout seconds] [-port port] [-etc etc_dir] [-?]");
+		writeLine();
+		writeLine("DESCRIPTION");
+		writeLine("   Starts the specified number of embedded members per plugin with the plugin's member");
+		writeLine("   configuration file, drives the session workload through a client, and reports the put");
+		writeLine("   latency, the cleanup lag from session expiration to the removal of the last relevant");
+		writeLine("   entry, the orphaned relevant entries, and the member CPU time and map heap cost.");
+		writeLine();
+		writeLine("OPTIONS");
+		writeLine("   -members count");
+		writeLine("             Number of embedded members. Default: 3");
+		writeLine();
+		writeLine("   -plugins plugin_names");
+		writeLine("             Comma separated plugins to run in the specified order. Default: all");
+		writeLine("                DEFAULT         SessionExpirationService (etc/hazelcast.yaml)");
+		writeLine("                PREDICATE_IN    SessionExpirationService_Predicate_In (etc/hazelcast.yaml)");
+		writeLine("                GET             SessionExpirationService_Get (etc/hazelcast-get.yaml)");
+		writeLine("                METADATA_DELETE SessionExpirationService_SessionMetadata_Delete");
+		writeLine("                                (etc/hazelcast-session-metadata-delete.yaml)");
+		writeLine("                METADATA_GET    SessionExpirationService_SessionMetadata_Get");
+		writeLine("                                (etc/hazelcast-session-metadata-get.yaml)");
+		writeLine();
+		writeLine("   -type INTERFACE|OBJECT|PARTITION_AWARE|STRING");
+		writeLine("             Key type. The smk<t>_" + TAG + " primary map and the mk<t>1_" + TAG + " and mk<t>2_"
+				+ TAG + " relevant maps");
+		writeLine("             configured for the key type are used. Default: OBJECT");
+		writeLine();
+		writeLine("   -sessions count");
+		writeLine("             Number of sessions. Default: 10000");
+		writeLine();
+		writeLine("   -keys count");
+		writeLine("             Number of keys per relevant map per session. Default: 1");
+		writeLine();
+		writeLine("   -touches count");
+		writeLine("             Number of times each session's primary entry is written again after ingestion,");
+		writeLine("             i.e., idle timeout resets. Default: 1");
+		writeLine();
+		writeLine("   -threads count");
+		writeLine("             Number of client threads. Default: 4");
+		writeLine();
+		writeLine("   -timeout seconds");
+		writeLine("             Maximum time to wait for the maps to empty after the last write. Default: 120");
+		writeLine();
+		writeLine("   -port port");
+		writeLine("             First member port. The members listen on consecutive ports. Default: 15701");
+		writeLine();
+		writeLine("   -etc etc_dir");
+		writeLine("             Directory of the member configuration files. Default: etc");
+		writeLine();
+		writeLine("NOTES");
+		writeLine("   - Hazelcast expires idle entries in the background a few partitions at a time. The time");
+		writeLine("     from the last write until all the sessions have expired is therefore dominated by the");
+		writeLine("     expiration task for small session counts. The cleanup lag is measured from each session's");
+		writeLine("     expiration event and does not include it. The task can be sped up with the following");
+		writeLine("     system properties, which apply to all the members.");
+		writeLine("        -Dhazelcast.internal.map.expiration.task.period.seconds=1");
+		writeLine("        -Dhazelcast.internal.map.expiration.cleanup.operation.count=271");
+		writeLine("   - The members share the JVM heap. Use -Xmx to size it for all of them.");
+		writeLine();
+	}
+
+	private static int parseInt(String name, String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (Exception ex) {
+			System.err.println("ERROR: Invalid " + name + " [" + value + "]. Command aborted.");
+			System.exit(1);
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns the primary map name prefix letter of the specified key type.
+	 */
+	private static String getTypeLetter(KeyType keyType) {
+		switch (keyType) {
+		case INTERFACE:
+			return "i";
+		case PARTITION_AWARE:
+			return "p";
+		case STRING:
+			return "s";
+		case OBJECT:
+		default:
+			return "o";
+		}
+	}
+
+	private Object createKey(String sessionId, String attribute) {
+		switch (keyType) {
+		case INTERFACE:
+			return new InterfaceKey(sessionId, attribute);
+		case PARTITION_AWARE:
+			return new PartitionAwareKey(sessionId, attribute);
+		case STRING:
+			return sessionId + "@" + attribute;
+		case OBJECT:
+		default:
+			return new ObjectKey(sessionId, attribute);
+		}
+	}
+
+	/**
+	 * Returns the primary map value of the specified session for the
+	 * SessionMetadata plugins.
+	 */
+	private SessionMetadata createSessionMetadata(String sessionId, IMap[] relevantMaps) {
+		SessionMetadata metadata = new SessionMetadata(relevantMaps.length);
+		for (IMap relevantMap : relevantMaps) {
+			for (int k = 0; k < keysPerMap; k++) {
+				metadata.addRelevantKey(relevantMap.getName(), createKey(sessionId, "a" + k));
+			}
+		}
+		return metadata;
+	}
+
+	/**
+	 * Returns the session index of the specified key, or -1 if the key is not a
+	 * harness key. Session IDs are of the form "s&lt;index&gt;".
+	 */
+	private int getSessionIndex(Object key) {
+		String sessionId = SessionMapUtil.getSessionId(keyType, key, "sessionId", "@", false);
+		if (sessionId == null || sessionId.length() < 2) {
+			return -1;
+		}
+		try {
+			int index = Integer.parseInt(sessionId.substring(1));
+			return index < sessionCount ? index : -1;
+		} catch (NumberFormatException ex) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the member configuration of the specified plugin.
+	 */
+	private String readConfig(Plugin plugin) throws Exception {
+		String yaml = new String(Files.readAllBytes(Paths.get(etcDir, plugin.configFileName)), StandardCharsets.UTF_8);
+		if (plugin == Plugin.PREDICATE_IN) {
+			yaml = yaml.replaceAll("\\.SessionExpirationServiceInitializer\\b",
+					".SessionExpirationServiceInitializer_Predicate_In");
+			yaml = yaml.replaceAll("\\.SessionExpirationListener\\b", ".SessionExpirationListener_Predicate_In");
+		}
+		return yaml;
+	}
+
+	/**
+	 * Returns all the live threads.
+	 */
+	private static Thread[] getAllThreads() {
+		ThreadGroup group = Thread.currentThread().getThreadGroup();
+		while (group.getParent() != null) {
+			group = group.getParent();
+		}
+		Thread[] threads = new Thread[group.activeCount() * 2 + 16];
+		int count = group.enumerate(threads, true);
+		Thread[] result = new Thread[count];
+		System.arraycopy(threads, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * {@linkplain MemberSampler} periodically samples the CPU time of each
+	 * member's threads, the map heap cost of each member and the JVM heap usage. A
+	 * thread belongs to the member whose class loader is its context class loader.
+	 * The CPU time of the threads that existed at the baseline is measured from the
+	 * baseline.
+	 */
+	class MemberSampler implements Runnable {
+		final ClassLoader[] loaders;
+		final Object[] members;
+		final Method[] heapCostMethods;
+		final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		final List<HashMap<Long, long[]>> cpuMapList = new ArrayList<HashMap<Long, long[]>>();
+		final long[] mapHeapPeak;
+		long jvmHeapPeak;
+		boolean isBaseline = true;
+
+		MemberSampler(ClassLoader[] loaders, Object[] members, Method[] heapCostMethods) {
+			this.loaders = loaders;
+			this.members = members;
+			this.heapCostMethods = heapCostMethods;
+			this.mapHeapPeak = new long[members.length];
+			for (int i = 0; i < members.length; i++) {
+				cpuMapList.add(new HashMap<Long, long[]>());
+			}
+		}
+
+		@Override
+		public synchronized void run() {
+			for (Thread thread : getAllThreads()) {
+				ClassLoader loader = thread.getContextClassLoader();
+				for (int i = 0; i < loaders.length; i++) {
+					if (loader == loaders[i]) {
+						long cpuTime = threadBean.getThreadCpuTime(thread.getId());
+						if (cpuTime >= 0) {
+							long[] times = cpuMapList.get(i).get(thread.getId());
+							if (times == null) {
+								times = new long[] { isBaseline ? cpuTime : 0, cpuTime };
+								cpuMapList.get(i).put(thread.getId(), times);
+							}
+							times[1] = cpuTime;
+						}
+						break;
+					}
+				}
+			}
+			isBaseline = false;
+			for (int i = 0; i < members.length; i++) {
+				try {
+					mapHeapPeak[i] = Math.max(mapHeapPeak[i], (Long) heapCostMethods[i].invoke(null, members[i]));
+				} catch (Exception ex) {
+					// Member not running
+				}
+			}
+			jvmHeapPeak = Math.max(jvmHeapPeak, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+		}
+
+		synchronized long[] getCpuNanos() {
+			long[] cpuNanos = new long[loaders.length];
+			for (int i = 0; i < loaders.length; i++) {
+				for (long[] times : cpuMapList.get(i).values()) {
+					cpuNanos[i] += times[1] - times[0];
+				}
+			}
+			return cpuNanos;
+		}
+	}
+
+	/**
+	 * Runs the workload through the specified plugin and returns the results.
+	 */
+	private Result run(Plugin plugin) throws Exception {
+		Result result = new Result();
+		result.plugin = plugin;
+		String yaml = readConfig(plugin);
+		String clusterName = "harness-" + plugin.name().toLowerCase();
+		StringBuilder addresses = new StringBuilder();
+		for (int i = 0; i < memberCount; i++) {
+			if (i > 0) {
+				addresses.append(',');
+			}
+			addresses.append("127.0.0.1:").append(basePort + i);
+		}
+
+		writeLine();
+		writeLine("=== " + plugin.getServiceName() + " (" + plugin.configFileName + ")");
+		writeLine("Starting " + memberCount + " member(s)...");
+		URLClassLoader[] loaders = new URLClassLoader[memberCount];
+		Object[] members = new Object[memberCount];
+		Method[] heapCostMethods = new Method[memberCount];
+		Method[] stopMethods = new Method[memberCount];
+		ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		HazelcastInstance client = null;
+		ScheduledExecutorService samplerExecutor = null;
+		try {
+			for (int i = 0; i < memberCount; i++) {
+				loaders[i] = new URLClassLoader(classpath, ClassLoader.getSystemClassLoader().getParent());
+				Class memberClass = loaders[i].loadClass(HarnessMember.class.getName());
+				Method startMethod = memberClass.getMethod("start", String.class, Properties.class, String.class,
+						String.class);
+				heapCostMethods[i] = memberClass.getMethod("getMapHeapCost", Object.class);
+				stopMethods[i] = memberClass.getMethod("stop", Object.class, String.class);
+				Properties variables = new Properties();
+				variables.setProperty("hazelcast-addon.tcp.port", Integer.toString(basePort + i));
+				variables.setProperty("hazelcast-addon.tcp.members", addresses.toString());
+				Thread.currentThread().setContextClassLoader(loaders[i]);
+				try {
+					members[i] = startMethod.invoke(null, yaml, variables, clusterName, clusterName + "-" + (i + 1));
+				} finally {
+					Thread.currentThread().setContextClassLoader(contextClassLoader);
+				}
+			}
+
+			ClientConfig clientConfig = new ClientConfig();
+			clientConfig.setClusterName(clusterName);
+			clientConfig.getNetworkConfig().addAddress(addresses.toString().split(","));
+			clientConfig.getSerializationConfig().addDataSerializableFactory(ExpirationDataSerializableFactory.FACTORY_ID,
+					new ExpirationDataSerializableFactory());
+			client = HazelcastClient.newHazelcastClient(clientConfig);
+
+			String letter = getTypeLetter(keyType);
+			IMap primaryMap = client.getMap("smk" + letter + "_" + TAG);
+			IMap[] relevantMaps = new IMap[] { client.getMap("mk" + letter + "1_" + TAG),
+					client.getMap("mk" + letter + "2_" + TAG) };
+			int relevantKeyCount = relevantMaps.length * keysPerMap;
+
+			// Session expiration and relevant entry removal times observed by the client
+			AtomicLongArray expiredNanos = new AtomicLongArray(sessionCount);
+			AtomicLongArray lastRemovedNanos = new AtomicLongArray(sessionCount);
+			AtomicIntegerArray removedCounts = new AtomicIntegerArray(sessionCount);
+			primaryMap.addEntryListener(new EntryExpiredListener() {
+				@Override
+				public void entryExpired(EntryEvent event) {
+					int index = getSessionIndex(event.getKey());
+					if (index >= 0) {
+						expiredNanos.compareAndSet(index, 0, System.nanoTime());
+					}
+				}
+			}, false);
+			RelevantListener relevantListener = new RelevantListener(lastRemovedNanos, removedCounts);
+			for (IMap relevantMap : relevantMaps) {
+				relevantMap.addEntryListener(relevantListener, false);
+			}
+
+			MemberSampler sampler = new MemberSampler(loaders, members, heapCostMethods);
+			sampler.run();
+			samplerExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "harness-sampler");
+				thread.setDaemon(true);
+				return thread;
+			});
+			samplerExecutor.scheduleAtFixedRate(sampler, SAMPLE_INTERVAL_MSEC, SAMPLE_INTERVAL_MSEC,
+					TimeUnit.MILLISECONDS);
+			long startNanos = System.nanoTime();
+
+			writeLine("Ingesting " + sessionCount + " session(s), " + relevantKeyCount
+					+ " relevant key(s) per session, " + touchCount + " touch(es) per session...");
+			byte[] blob = new byte[100];
+			for (byte i = 0; i < blob.length; i++) {
+				blob[i] = i;
+			}
+			ExecutorService clientPool = Executors.newFixedThreadPool(threadCount);
+			List<Future<LatencyHistogram>> futureList = new ArrayList<Future<LatencyHistogram>>(threadCount);
+			for (int t = 0; t < threadCount; t++) {
+				int first = t;
+				futureList.add(clientPool.submit(() -> {
+					LatencyHistogram histogram = new LatencyHistogram();
+					for (int i = first; i < sessionCount; i += threadCount) {
+						String sessionId = "s" + i;
+						Object primaryKey = createKey(sessionId, PRIMARY_KEY_ATTRIBUTE);
+						Object[] relevantKeys = new Object[keysPerMap];
+						for (int k = 0; k < keysPerMap; k++) {
+							relevantKeys[k] = createKey(sessionId, "a" + k);
+						}
+						for (IMap relevantMap : relevantMaps) {
+							for (Object relevantKey : relevantKeys) {
+								long time = System.nanoTime();
+								relevantMap.set(relevantKey, blob);
+								histogram.record(System.nanoTime() - time);
+							}
+						}
+						Object value = plugin.isMetadata ? createSessionMetadata(sessionId, relevantMaps) : blob;
+						long time = System.nanoTime();
+						primaryMap.set(primaryKey, value);
+						histogram.record(System.nanoTime() - time);
+					}
+					for (int r = 0; r < touchCount; r++) {
+						for (int i = first; i < sessionCount; i += threadCount) {
+							String sessionId = "s" + i;
+							Object primaryKey = createKey(sessionId, PRIMARY_KEY_ATTRIBUTE);
+							Object value = plugin.isMetadata ? createSessionMetadata(sessionId, relevantMaps) : blob;
+							long time = System.nanoTime();
+							primaryMap.set(primaryKey, value);
+							histogram.record(System.nanoTime() - time);
+						}
+					}
+					return histogram;
+				}));
+			}
+			for (Future<LatencyHistogram> future : futureList) {
+				future.get().addTo(result.putSnapshot);
+			}
+			result.putCount = LatencyHistogram.getCount(result.putSnapshot);
+			clientPool.shutdown();
+			long ingestEndNanos = System.nanoTime();
+			result.ingestMsec = TimeUnit.NANOSECONDS.toMillis(ingestEndNanos - startNanos);
+
+			writeLine("Waiting for the sessions to expire and the relevant entries to be removed...");
+			long deadline = ingestEndNanos + TimeUnit.SECONDS.toNanos(timeoutSec);
+			int relevantSize = 0;
+			while (System.nanoTime() < deadline) {
+				Thread.sleep(SAMPLE_INTERVAL_MSEC);
+				int primarySize = primaryMap.size();
+				relevantSize = 0;
+				for (IMap relevantMap : relevantMaps) {
+					relevantSize += relevantMap.size();
+				}
+				if (primarySize == 0 && relevantSize == 0) {
+					result.drainMsec = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ingestEndNanos);
+					break;
+				}
+			}
+			samplerExecutor.shutdownNow();
+			sampler.run();
+			result.elapsedNanos = System.nanoTime() - startNanos;
+			result.cpuNanos = sampler.getCpuNanos();
+			result.mapHeapPeak = sampler.mapHeapPeak;
+			result.jvmHeapPeak = sampler.jvmHeapPeak;
+			result.remainingCount = relevantSize;
+
+			LatencyHistogram lagHistogram = new LatencyHistogram();
+			for (int i = 0; i < sessionCount; i++) {
+				long expired = expiredNanos.get(i);
+				if (expired != 0) {
+					result.expiredCount++;
+					int removedCount = removedCounts.get(i);
+					if (removedCount >= relevantKeyCount) {
+						result.cleanedCount++;
+						lagHistogram.record(lastRemovedNanos.get(i) - expired);
+					} else {
+						result.orphanCount += relevantKeyCount - removedCount;
+					}
+				}
+			}
+			lagHistogram.snapshot(result.lagSnapshot);
+		} catch (Exception ex) {
+			result.error = ex.getCause() != null ? ex.getCause().toString() : ex.toString();
+			System.err.println("ERROR: " + plugin.getServiceName() + ": " + result.error);
+		} finally {
+			if (samplerExecutor != null) {
+				samplerExecutor.shutdownNow();
+			}
+			if (client != null) {
+				client.shutdown();
+			}
+			for (int i = 0; i < memberCount; i++) {
+				if (members[i] != null) {
+					try {
+						stopMethods[i].invoke(null, members[i], plugin.serviceClassName);
+					} catch (Exception ex) {
+						System.err.println("ERROR: Member stop failed: " + ex.getCause());
+					}
+				}
+			}
+		}
+		print(result);
+		return result;
+	}
+
+	/**
+	 * {@linkplain RelevantListener} records the number of removed or expired
+	 * relevant entries and the time of the last one per session.
+	 */
+	class RelevantListener implements EntryRemovedListener, EntryExpiredListener {
+		final AtomicLongArray lastRemovedNanos;
+		final AtomicIntegerArray removedCounts;
+
+		RelevantListener(AtomicLongArray lastRemovedNanos, AtomicIntegerArray removedCounts) {
+			this.lastRemovedNanos = lastRemovedNanos;
+			this.removedCounts = removedCounts;
+		}
+
+		private void removed(EntryEvent event) {
+			int index = getSessionIndex(event.getKey());
+			if (index >= 0) {
+				long now = System.nanoTime();
+				long last;
+				while ((last = lastRemovedNanos.get(index)) < now
+						&& lastRemovedNanos.compareAndSet(index, last, now) == false) {
+				}
+				removedCounts.incrementAndGet(index);
+			}
+		}
+
+		@Override
+		public void entryRemoved(EntryEvent event) {
+			removed(event);
+		}
+
+		@Override
+		public void entryExpired(EntryEvent event) {
+			removed(event);
+		}
+	}
+
+	private static double toMicros(long nanos) {
+		return nanos / 1000d;
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / 1_000_000d;
+	}
+
+	private static double toMB(long bytes) {
+		return bytes / (1024d * 1024d);
+	}
+
+	private static long max(long[] values) {
+		long max = 0;
+		for (long value : values) {
+			max = Math.max(max, value);
+		}
+		return max;
+	}
+
+	private static long sum(long[] values) {
+		long sum = 0;
+		for (long value : values) {
+			sum += value;
+		}
+		return sum;
+	}
+
+	private void print(Result result) {
+		if (result.error != null) {
+			return;
+		}
+		long[] put = result.putSnapshot;
+		long[] lag = result.lagSnapshot;
+		writeLine(String.format("Put:      count=%d, time(msec)=%d, rate(/sec)=%.0f", result.putCount,
+				result.ingestMsec, result.putCount * 1000d / Math.max(1, result.ingestMsec)));
+		writeLine(String.format("          p50=%.1fus, p90=%.1fus, p99=%.1fus, p99.9=%.1fus, max=%.1fus",
+				toMicros(LatencyHistogram.getValueAtPercentile(put, 50)),
+				toMicros(LatencyHistogram.getValueAtPercentile(put, 90)),
+				toMicros(LatencyHistogram.getValueAtPercentile(put, 99)),
+				toMicros(LatencyHistogram.getValueAtPercentile(put, 99.9)), toMicros(LatencyHistogram.getMax(put))));
+		writeLine(String.format("Cleanup:  expired=%d, cleaned=%d, orphans=%d, remaining=%d, drain(msec)=%s",
+				result.expiredCount, result.cleanedCount, result.orphanCount, result.remainingCount,
+				result.drainMsec < 0 ? "timeout" : Long.toString(result.drainMsec)));
+		writeLine(String.format("          lag p50=%.1fms, p90=%.1fms, p99=%.1fms, max=%.1fms",
+				toMillis(LatencyHistogram.getValueAtPercentile(lag, 50)),
+				toMillis(LatencyHistogram.getValueAtPercentile(lag, 90)),
+				toMillis(LatencyHistogram.getValueAtPercentile(lag, 99)), toMillis(LatencyHistogram.getMax(lag))));
+		for (int i = 0; i < result.cpuNanos.length; i++) {
+			writeLine(String.format("Member %d: cpu(sec)=%.2f, cpu(%%)=%.1f, mapHeapPeak(MB)=%.1f", i + 1,
+					result.cpuNanos[i] / 1e9d, result.cpuNanos[i] * 100d / result.elapsedNanos,
+					toMB(result.mapHeapPeak[i])));
+		}
+		writeLine(String.format("JVM:      heapPeak(MB)=%.1f", toMB(result.jvmHeapPeak)));
+	}
+
+	private void printSummary(List<Result> resultList) {
+		writeLine();
+		writeLine("=== Summary: members=" + memberCount + ", type=" + keyType + ", sessions=" + sessionCount
+				+ ", keys=" + keysPerMap + ", touches=" + touchCount + ", threads=" + threadCount);
+		writeLine(String.format("%-48s %9s %9s %9s %9s %9s %9s %8s %8s %9s %9s", "Plugin", "PutP50us", "PutP99us",
+				"Put/s", "LagP50ms", "LagP99ms", "LagMaxms", "Cleaned", "Orphans", "CPU%", "MapHeapMB"));
+		for (Result result : resultList) {
+			if (result.error != null) {
+				writeLine(String.format("%-48s %s", result.plugin.getServiceName(), result.error));
+				continue;
+			}
+			writeLine(String.format("%-48s %9.1f %9.1f %9.0f %9.1f %9.1f %9.1f %8d %8d %9.1f %9.1f",
+					result.plugin.getServiceName(),
+					toMicros(LatencyHistogram.getValueAtPercentile(result.putSnapshot, 50)),
+					toMicros(LatencyHistogram.getValueAtPercentile(result.putSnapshot, 99)),
+					result.putCount * 1000d / Math.max(1, result.ingestMsec),
+					toMillis(LatencyHistogram.getValueAtPercentile(result.lagSnapshot, 50)),
+					toMillis(LatencyHistogram.getValueAtPercentile(result.lagSnapshot, 99)),
+					toMillis(LatencyHistogram.getMax(result.lagSnapshot)), result.cleanedCount, result.orphanCount,
+					sum(result.cpuNanos) * 100d / result.elapsedNanos, toMB(max(result.mapHeapPeak))));
+		}
+		writeLine();
+		writeLine("CPU% is the total of all members in percent of one core. MapHeapMB is the peak of a single member.");
+	}
+
+	public static void main(String[] args) throws Exception {
+		PluginComparisonHarness harness = new PluginComparisonHarness();
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equalsIgnoreCase("-?")) {
+				usage();
+				System.exit(0);
+			} else if (arg.equals("-members") && i < args.length - 1) {
+				harness.memberCount = parseInt("members", args[++i].trim());
+			} else if (arg.equals("-plugins") && i < args.length - 1) {
+				for (String name : args[++i].split(",")) {
+					Plugin plugin = Plugin.getPlugin(name.trim());
+					if (plugin == null) {
+						System.err.println("ERROR: Invalid plugin [" + name + "]. Command aborted.");
+						System.exit(1);
+					}
+					harness.pluginList.add(plugin);
+				}
+			} else if (arg.equals("-type") && i < args.length - 1) {
+				String keyTypeStr = args[++i].trim();
+				try {
+					harness.keyType = KeyType.valueOf(keyTypeStr.toUpperCase());
+				} catch (Exception ex) {
+					harness.keyType = null;
+				}
+				if (harness.keyType == null || harness.keyType == KeyType.CUSTOM) {
+					System.err.println("ERROR: Invalid key type [" + keyTypeStr + "]. Command aborted.");
+					System.exit(1);
+				}
+			} else if (arg.equals("-sessions") && i < args.length - 1) {
+				harness.sessionCount = parseInt("sessions", args[++i].trim());
+			} else if (arg.equals("-keys") && i < args.length - 1) {
+				harness.keysPerMap = parseInt("keys", args[++i].trim());
+			} else if (arg.equals("-touches") && i < args.length - 1) {
+				harness.touchCount = parseInt("touches", args[++i].trim());
+			} else if (arg.equals("-threads") && i < args.length - 1) {
+				harness.threadCount = parseInt("threads", args[++i].trim());
+			} else if (arg.equals("-timeout") && i < args.length - 1) {
+				harness.timeoutSec = parseInt("timeout", args[++i].trim());
+			} else if (arg.equals("-port") && i < args.length - 1) {
+				harness.basePort = parseInt("port", args[++i].trim());
+			} else if (arg.equals("-etc") && i < args.length - 1) {
+				harness.etcDir = args[++i].trim();
+			}
+		}
+		if (harness.memberCount <= 0 || harness.sessionCount <= 0 || harness.keysPerMap <= 0
+				|| harness.threadCount <= 0 || harness.touchCount < 0) {
+			System.err.println("ERROR: Counts must be greater than 0. Command aborted.");
+			System.exit(1);
+		}
+		if (harness.pluginList.isEmpty()) {
+			for (Plugin plugin : Plugin.values()) {
+				harness.pluginList.add(plugin);
+			}
+		}
+
+		String[] paths = System.getProperty("java.class.path").split(File.pathSeparator);
+		harness.classpath = new URL[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			harness.classpath[i] = new File(paths[i]).toURI().toURL();
+		}
+		String loggingType = System.getProperty("hazelcast.logging.type");
+		if (loggingType == null || loggingType.equals("jdk")) {
+			hazelcastLogger.setLevel(Level.WARNING);
+			addonLogger.setLevel(Level.WARNING);
+		}
+
+		ArrayList<Result> resultList = new ArrayList<Result>();
+		for (Plugin plugin : harness.pluginList) {
+			resultList.add(harness.run(plugin));
+			System.gc();
+		}
+		harness.printSummary(resultList);
+
+		// The terminated expiration service threads may still be blocked
+		System.exit(0);
+	}
+}
@@ -0,0 +1,161 @@
+package org.hazelcast.addon.cluster.expiration.test;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.hazelcast.addon.cluster.expiration.ISessionId;
+import org.hazelcast.addon.cluster.expiration.KeyPropertyAccessor;
+import org.hazelcast.addon.cluster.expiration.KeyType;
+import org.hazelcast.addon.cluster.expiration.SessionIdSetPredicate;
+import org.hazelcast.addon.cluster.expiration.SessionMapUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hazelcast.partition.PartitionAware;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
+
+/**
+ * {@linkplain PredicateBuildBenchmark} times the construction of the predicate
+ * that matches a drained batch of expired sessions, per {@linkplain KeyType}
+ * and drain size. It compares the ORed per session predicates built with
+ * <code>predicate.legacy.enabled=true</code>, a Hazelcast IN predicate on the
+ * session ID attribute and {@linkplain SessionIdSetPredicate}. The session IDs
+ * are extracted from the keys in each invocation as the worker threads do.
+ * <p>
+ * Run with
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="PredicateBuildBenchmark"
+ * </pre>
+ *
+ * @author dpark
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredicateBuildBenchmark {
+
+	private final static String DELIMITER = "@";
+	private final static String KEY_PROPERTY = "sessionId";
+
+	@Param({ "INTERFACE", "OBJECT", "PARTITION_AWARE", "STRING" })
+	private KeyType keyType;
+
+	@Param({ "1", "10", "100", "1000", "10000" })
+	private int drainSize;
+
+	private Object[] keys;
+	private KeyPropertyAccessor accessor;
+	private String attributeName;
+
+	@Setup
+	public void setup() {
+		keys = new Object[drainSize];
+		for (int i = 0; i < keys.length; i++) {
+			String sessionId = "session-" + i;
+			switch (keyType) {
+			case INTERFACE:
+				keys[i] = new InterfaceKey(sessionId, "a" + i);
+				break;
+			case OBJECT:
+				keys[i] = new ObjectKey(sessionId, "a" + i);
+				break;
+			case PARTITION_AWARE:
+				keys[i] = new PartitionAwareKey(sessionId, "a" + i);
+				break;
+			case STRING:
+			default:
+				keys[i] = sessionId + DELIMITER + "a" + i;
+				break;
+			}
+		}
+		accessor = KeyPropertyAccessor.getAccessor(KEY_PROPERTY);
+		switch (keyType) {
+		case PARTITION_AWARE:
+			attributeName = "__key.partitionKey";
+			break;
+		case STRING:
+			attributeName = null;
+			break;
+		default:
+			attributeName = "__key." + KEY_PROPERTY;
+			break;
+		}
+	}
+
+	/**
+	 * ORs a predicate per session as <code>predicate.legacy.enabled=true</code>
+	 * does. STRING keys are matched with LIKE.
+	 */
+	@Benchmark
+	@SuppressWarnings("rawtypes")
+	public Predicate or() {
+		Predicate predicate = null;
+		for (Object key : keys) {
+			Predicate innerPredicate;
+			switch (keyType) {
+			case INTERFACE:
+				innerPredicate = Predicates.equal(attributeName, ((ISessionId) key).getSessionId());
+				break;
+			case OBJECT:
+				innerPredicate = Predicates.equal(attributeName, accessor.getValue(key).toString());
+				break;
+			case PARTITION_AWARE:
+				innerPredicate = Predicates.equal(attributeName, ((PartitionAware) key).getPartitionKey().toString());
+				break;
+			case STRING:
+			default:
+				String keyStr = key.toString();
+				int index = keyStr.indexOf(DELIMITER);
+				innerPredicate = Predicates.like("__key", keyStr.substring(0, index + 1) + "%");
+				break;
+			}
+			predicate = predicate == null ? innerPredicate : Predicates.or(predicate, innerPredicate);
+		}
+		return predicate;
+	}
+
+	/**
+	 * Builds a Hazelcast IN predicate on the session ID attribute. STRING keys use
+	 * the {@linkplain org.hazelcast.addon.cluster.expiration.SessionIdExtractor}
+	 * attribute.
+	 */
+	@Benchmark
+	@SuppressWarnings("rawtypes")
+	public Predicate in() {
+		Comparable[] sessionIds = new Comparable[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			sessionIds[i] = SessionMapUtil.getSessionId(keyType, keys[i], KEY_PROPERTY, DELIMITER, false);
+		}
+		return Predicates.in(attributeName == null ? "__key.sessionId" : attributeName, sessionIds);
+	}
+
+	/**
+	 * Builds the {@linkplain SessionIdSetPredicate} that
+	 * {@linkplain org.hazelcast.addon.cluster.expiration.SessionExpirationService}
+	 * uses by default.
+	 */
+	@Benchmark
+	@SuppressWarnings("rawtypes")
+	public Predicate sessionIdSet() {
+		ArrayList<String> sessionIdList = new ArrayList<String>(keys.length);
+		for (Object key : keys) {
+			sessionIdList.add(SessionMapUtil.getSessionId(keyType, key, KEY_PROPERTY, DELIMITER, false));
+		}
+		return new SessionIdSetPredicate(keyType, KEY_PROPERTY, DELIMITER, false, null, attributeName, sessionIdList);
+	}
+}
@@ -1,15 +1,41 @@
 package org.hazelcast.addon.cluster.expiration.test;
 
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 import org.hazelcast.addon.cluster.expiration.KeyType;
+import org.hazelcast.addon.cluster.expiration.LatencyHistogram;
+import org.hazelcast.addon.cluster.expiration.SessionEntryCountAggregator;
 import org.hazelcast.addon.cluster.expiration.SessionExpirationService;
+import org.hazelcast.addon.cluster.expiration.SessionMapUtil;
+import org.hazelcast.addon.cluster.expiration.metadata.CompactSessionMetadata;
 import org.hazelcast.addon.cluster.expiration.metadata.SessionMetadata;
 
 import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.core.EntryView;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.map.IMap;
+import com.hazelcast.map.listener.EntryExpiredListener;
+import com.hazelcast.nio.serialization.HazelcastSerializationException;
+import com.hazelcast.partition.PartitionService;
 
 /**
  * {@linkplain SessionExpirationTestClient} is a client driver for ingesting
@@ -25,7 +51,7 @@ public class SessionExpirationTestClient {
 	public final static String PROPERTY_executableName = "executable.name";
 
 	enum EntryType {
-		INGEST, PUT, RESET, GET, METADATA
+		INGEST, PUT, RESET, GET, METADATA, PROBE
 	}
 
 	KeyType keyType;
@@ -35,8 +61,22 @@ public class SessionExpirationTestClient {
 	EntryType entryType;
 	String sessionId;
 	String attribute;
+	boolean isCompactMetadata;
 	HazelcastInstance hzInstance;
 
+	// Pipelined ingestion options. The defaults ingest synchronously on the
+	// calling thread.
+	int threadCount = 1;
+	int pipelineDepth = 1;
+	int batchSize = 1;
+	int rate = 0;
+
+	// Probe options. maxIdleSec less than 0 reads the max idle time from the
+	// primary map.
+	int probeIntervalMsec = 500;
+	int probeTimeoutSec = 60;
+	int maxIdleSec = -1;
+
 	SessionExpirationTestClient(KeyType keyType, int count, String primaryMapName, String[] relevantMapNames,
 			EntryType entryType, String sessionId, String attribute) {
 		this.keyType = keyType;
@@ -70,6 +110,11 @@ public class SessionExpirationTestClient {
 			}
 		}
 
+		if (entryType == EntryType.PROBE) {
+			probe(primaryMap, relevantMaps, blob, isPostfix);
+			return;
+		}
+
 		if (isMetadata) {
 			switch (entryType) {
 			case GET:
@@ -184,6 +229,10 @@ public class SessionExpirationTestClient {
 		case INGEST:
 		default:
 			writeLine("Ingesting data [" + keyType + "]...");
+			if (isPipelined()) {
+				ingestPipelined(primaryMap, relevantMaps, blob, isPostfix);
+				break;
+			}
 			long startTime = System.currentTimeMillis();
 			switch (keyType) {
 			case INTERFACE:
@@ -282,7 +331,8 @@ public class SessionExpirationTestClient {
 	}
 	
 	SessionMetadata createSessionMetadata(IMap[] relevantMaps, Object key) {
-		SessionMetadata sm = new SessionMetadata();
+		SessionMetadata sm = isCompactMetadata ? new CompactSessionMetadata(relevantMaps.length)
+				: new SessionMetadata(relevantMaps.length);
 		for (IMap rmap : relevantMaps) {
 			sm.addRelevantKey(rmap.getName(), key);
 		}
@@ -396,6 +446,523 @@ public class SessionExpirationTestClient {
 		}
 	}
 
+	/**
+	 * Returns true if any of the pipelined ingestion options is set.
+	 */
+	boolean isPipelined() {
+		return threadCount > 1 || pipelineDepth > 1 || batchSize > 1 || rate > 0;
+	}
+
+	Object createKey(String sessionId, String attribute, boolean isPostfix) {
+		switch (keyType) {
+		case INTERFACE:
+			return new InterfaceKey(sessionId, attribute);
+		case OBJECT:
+			return new ObjectKey(sessionId, attribute);
+		case CUSTOM:
+			return new CustomKey(sessionId, attribute);
+		case PARTITION_AWARE:
+			return new PartitionAwareKey(sessionId, attribute);
+		case STRING:
+		default:
+			return isPostfix ? attribute + "@" + sessionId : sessionId + "@" + attribute;
+		}
+	}
+
+	/**
+	 * Ingests the sessions with the specified number of threads. Each thread
+	 * keeps up to {@linkplain #pipelineDepth} asynchronous operations in flight.
+	 * If {@linkplain #batchSize} is greater than 1, then the entries are grouped by
+	 * partition and written with a single putAll operation per partition and
+	 * batch. If {@linkplain #rate} is greater than 0, then the operations are
+	 * issued on a fixed schedule regardless of the completions, and each latency
+	 * is measured from the operation's scheduled time to correct for coordinated
+	 * omission.
+	 */
+	void ingestPipelined(IMap primaryMap, IMap[] relevantMaps, byte[] blob, boolean isPostfix) {
+		writeLine("threads=" + threadCount + ", pipeline-depth=" + pipelineDepth + ", batch=" + batchSize
+				+ ", rate(ops/sec)=" + (rate > 0 ? Integer.toString(rate) : "unlimited"));
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		List<Future<IngestWorker>> futureList = new ArrayList<Future<IngestWorker>>(threadCount);
+		long startNanos = System.nanoTime();
+		for (int i = 0; i < threadCount; i++) {
+			futureList.add(executor.submit(
+					new IngestWorker(i, primaryMap, relevantMaps, blob, isPostfix, startNanos)));
+		}
+		long[][] serviceSnapshots = new long[OP_NAMES.length][LatencyHistogram.BUCKET_COUNT];
+		long[][] responseSnapshots = new long[OP_NAMES.length][LatencyHistogram.BUCKET_COUNT];
+		long operationCount = 0;
+		long entryCount = 0;
+		long failedCount = 0;
+		try {
+			for (Future<IngestWorker> future : futureList) {
+				IngestWorker worker = future.get();
+				for (int op = 0; op < OP_NAMES.length; op++) {
+					worker.serviceHistograms[op].addTo(serviceSnapshots[op]);
+					worker.responseHistograms[op].addTo(responseSnapshots[op]);
+				}
+				operationCount += worker.operationCount;
+				entryCount += worker.entryCount;
+				failedCount += worker.failedCount;
+			}
+		} catch (Exception ex) {
+			System.err.println("ERROR: Ingestion failed: " + ex.getMessage());
+			return;
+		} finally {
+			executor.shutdown();
+		}
+		long timeTook = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+		NumberFormat nf = NumberFormat.getInstance();
+		nf.setMaximumFractionDigits(2);
+		double seconds = Math.max(1, timeTook) / 1000d;
+		writeLine("        Sessions: " + count);
+		writeLine("         Entries: " + entryCount);
+		writeLine("      Operations: " + operationCount + " (failed: " + failedCount + ")");
+		writeLine("Time took (msec): " + timeTook);
+		writeLine(" Time took (sec): " + nf.format(seconds));
+		writeLine("     Entries/sec: " + nf.format(entryCount / seconds));
+		writeLine("  Operations/sec: " + nf.format(operationCount / seconds));
+		writeLine();
+		if (rate > 0) {
+			writeLine("Response time (usec), measured from the scheduled time (coordinated omission corrected):");
+			writeLatencies(responseSnapshots);
+			writeLine();
+			writeLine("Service time (usec), measured from the time the operation was issued:");
+		} else {
+			writeLine("Service time (usec). Use '-rate' to measure the response time corrected for coordinated omission:");
+		}
+		writeLatencies(serviceSnapshots);
+	}
+
+	private static void writeLatencies(long[][] snapshots) {
+		writeLine(String.format("   %-9s %10s %10s %10s %10s %10s %10s", "Operation", "Count", "p50", "p90", "p99",
+				"p99.9", "Max"));
+		for (int op = 0; op < OP_NAMES.length; op++) {
+			long[] snapshot = snapshots[op];
+			if (LatencyHistogram.getCount(snapshot) == 0) {
+				continue;
+			}
+			writeLine(String.format("   %-9s %10d %10.1f %10.1f %10.1f %10.1f %10.1f", OP_NAMES[op],
+					LatencyHistogram.getCount(snapshot), LatencyHistogram.getValueAtPercentile(snapshot, 50) / 1000d,
+					LatencyHistogram.getValueAtPercentile(snapshot, 90) / 1000d,
+					LatencyHistogram.getValueAtPercentile(snapshot, 99) / 1000d,
+					LatencyHistogram.getValueAtPercentile(snapshot, 99.9) / 1000d,
+					LatencyHistogram.getMax(snapshot) / 1000d));
+		}
+	}
+
+	final static int OP_SET = 0;
+	final static int OP_PUT_ALL = 1;
+	final static String[] OP_NAMES = { "set", "putAll" };
+
+	/**
+	 * {@linkplain IngestWorker} ingests every {@linkplain #threadCount}th session
+	 * starting from its index. It records the latencies of its own operations,
+	 * which it collects from the oldest in-flight slot before reusing it, so that
+	 * each histogram has a single writer.
+	 */
+	class IngestWorker implements Callable<IngestWorker> {
+		final int index;
+		final IMap primaryMap;
+		final IMap[] relevantMaps;
+		final byte[] blob;
+		final boolean isPostfix;
+		final long startNanos;
+		final long intervalNanos;
+		final PartitionService partitionService;
+
+		final LatencyHistogram[] serviceHistograms = new LatencyHistogram[OP_NAMES.length];
+		final LatencyHistogram[] responseHistograms = new LatencyHistogram[OP_NAMES.length];
+
+		// In-flight operation slots
+		final CompletableFuture[] futures = new CompletableFuture[pipelineDepth];
+		final int[] ops = new int[pipelineDepth];
+		final long[] scheduledNanos = new long[pipelineDepth];
+		final long[] issuedNanos = new long[pipelineDepth];
+		final long[] completedNanos = new long[pipelineDepth];
+		int slot;
+
+		// <map, <partition ID, batch>> for batching
+		final HashMap<IMap, HashMap<Integer, HashMap<Object, Object>>> batchMap = new HashMap<IMap, HashMap<Integer, HashMap<Object, Object>>>();
+
+		long operationCount;
+		long entryCount;
+		long failedCount;
+
+		IngestWorker(int index, IMap primaryMap, IMap[] relevantMaps, byte[] blob, boolean isPostfix,
+				long startNanos) {
+			this.index = index;
+			this.primaryMap = primaryMap;
+			this.relevantMaps = relevantMaps;
+			this.blob = blob;
+			this.isPostfix = isPostfix;
+			this.startNanos = startNanos;
+			this.intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(threadCount) / rate : 0;
+			this.partitionService = hzInstance.getPartitionService();
+			for (int op = 0; op < OP_NAMES.length; op++) {
+				serviceHistograms[op] = new LatencyHistogram();
+				responseHistograms[op] = new LatencyHistogram();
+			}
+		}
+
+		@Override
+		public IngestWorker call() {
+			for (int i = index; i < count; i += threadCount) {
+				String sessionId = UUID.randomUUID().toString();
+				Object key = createKey(sessionId, "attr" + i, isPostfix);
+				write(primaryMap, key, createSessionMetadata(relevantMaps, key));
+				for (IMap rmap : relevantMaps) {
+					write(rmap, key, blob);
+				}
+			}
+			for (IMap map : batchMap.keySet()) {
+				for (HashMap<Object, Object> batch : batchMap.get(map).values()) {
+					if (batch.isEmpty() == false) {
+						putAll(map, batch);
+					}
+				}
+			}
+			for (int i = 0; i < pipelineDepth; i++) {
+				collect(i);
+			}
+			return this;
+		}
+
+		private void write(IMap map, Object key, Object value) {
+			if (batchSize <= 1) {
+				issue(OP_SET, 1, () -> map.setAsync(key, value));
+				return;
+			}
+			HashMap<Integer, HashMap<Object, Object>> partitionMap = batchMap.get(map);
+			if (partitionMap == null) {
+				partitionMap = new HashMap<Integer, HashMap<Object, Object>>();
+				batchMap.put(map, partitionMap);
+			}
+			int partitionId = partitionService.getPartition(key).getPartitionId();
+			HashMap<Object, Object> batch = partitionMap.get(partitionId);
+			if (batch == null) {
+				batch = new HashMap<Object, Object>(batchSize * 2);
+				partitionMap.put(partitionId, batch);
+			}
+			batch.put(key, value);
+			if (batch.size() >= batchSize) {
+				partitionMap.remove(partitionId);
+				putAll(map, batch);
+			}
+		}
+
+		private void putAll(IMap map, HashMap<Object, Object> batch) {
+			issue(OP_PUT_ALL, batch.size(), () -> map.putAllAsync(batch));
+		}
+
+		/**
+		 * Issues an asynchronous operation into the next slot after waiting for the
+		 * slot's previous operation and, if a rate is set, the operation's scheduled
+		 * time.
+		 */
+		private void issue(int op, int entries, Supplier<CompletionStage> operation) {
+			collect(slot);
+			long scheduled = System.nanoTime();
+			if (intervalNanos > 0) {
+				scheduled = startNanos + operationCount * intervalNanos;
+				long now;
+				while ((now = System.nanoTime()) < scheduled) {
+					LockSupport.parkNanos(scheduled - now);
+				}
+			}
+			int s = slot;
+			ops[s] = op;
+			scheduledNanos[s] = scheduled;
+			issuedNanos[s] = System.nanoTime();
+			futures[s] = operation.get().toCompletableFuture()
+					.whenComplete((v, t) -> completedNanos[s] = System.nanoTime());
+			operationCount++;
+			entryCount += entries;
+			slot = (slot + 1) % pipelineDepth;
+		}
+
+		/**
+		 * Waits for the operation in the specified slot, if any, and records its
+		 * latencies.
+		 */
+		private void collect(int s) {
+			CompletableFuture future = futures[s];
+			if (future == null) {
+				return;
+			}
+			futures[s] = null;
+			try {
+				future.join();
+			} catch (CompletionException ex) {
+				failedCount++;
+			}
+			serviceHistograms[ops[s]].record(completedNanos[s] - issuedNanos[s]);
+			responseHistograms[ops[s]].record(completedNanos[s] - scheduledNanos[s]);
+		}
+	}
+
+	final static int PROBE_BATCH_SIZE = 100;
+
+	/**
+	 * Ingests {@linkplain #count} tagged sessions and then waits until the
+	 * entries of all of the sessions have been removed or
+	 * {@linkplain #probeTimeoutSec} elapses after the last idle deadline. Each
+	 * session has an entry in the primary map and in each relevant map, and its
+	 * idle deadline is the time its primary entry was written plus the primary
+	 * map's max idle time. The 'expired' events of the primary map are received
+	 * by a listener, and the relevant maps are polled with
+	 * {@linkplain SessionEntryCountAggregator}, which returns only the entry
+	 * counts of the sessions that remain and does not reset their idle timeouts.
+	 * Reports the distributions of the time from the idle deadline to the
+	 * 'expired' event and to the removal of the last relevant entry, and the
+	 * sessions that never fully expired.
+	 * <p>
+	 * The primary map is not polled because queries skip the entries that have
+	 * expired but have not yet been removed by Hazelcast, which is when the
+	 * 'expired' event fires and the cleanup begins.
+	 */
+	void probe(IMap primaryMap, IMap[] relevantMaps, byte[] blob, boolean isPostfix) {
+		String runId = UUID.randomUUID().toString().substring(0, 8);
+		String[] sessionIds = new String[count];
+		Object[] keys = new Object[count];
+		long[] writtenNanos = new long[count];
+
+		// <session ID, index> of the sessions whose relevant entries have not been
+		// removed
+		HashMap<String, Integer> pendingMap = new HashMap<String, Integer>(count * 2);
+		ConcurrentHashMap<String, Integer> indexMap = new ConcurrentHashMap<String, Integer>(count * 2);
+		for (int i = 0; i < count; i++) {
+			sessionIds[i] = "probe-" + runId + "-" + i;
+			keys[i] = createKey(sessionIds[i], "attr", isPostfix);
+			pendingMap.put(sessionIds[i], i);
+			indexMap.put(sessionIds[i], i);
+		}
+
+		// Long.MIN_VALUE if not completed
+		AtomicLongArray expiredNanos = new AtomicLongArray(count);
+		long[] cleanupNanos = new long[count];
+		for (int i = 0; i < count; i++) {
+			expiredNanos.set(i, Long.MIN_VALUE);
+			cleanupNanos[i] = Long.MIN_VALUE;
+		}
+		AtomicInteger expiredCount = new AtomicInteger();
+		UUID listenerId = primaryMap.addEntryListener((EntryExpiredListener) event -> {
+			String sessionId = SessionMapUtil.getSessionId(getSessionKeyType(), event.getKey(),
+					getSessionKeyProperty(), "@", isPostfix);
+			Integer index = sessionId == null ? null : indexMap.get(sessionId);
+			if (index != null && expiredNanos.compareAndSet(index, Long.MIN_VALUE, System.nanoTime())) {
+				expiredCount.incrementAndGet();
+			}
+		}, false);
+
+		writeLine("Ingesting probe sessions [" + keyType + ", count=" + count + ", tag=probe-" + runId + "]...");
+		long startNanos = System.nanoTime();
+		List<CompletableFuture> futureList = new ArrayList<CompletableFuture>(PROBE_BATCH_SIZE * relevantMaps.length);
+		for (int from = 0; from < count; from += PROBE_BATCH_SIZE) {
+			int to = Math.min(count, from + PROBE_BATCH_SIZE);
+			// The relevant entries are written first so that the idle deadline is
+			// measured from the last write of each session.
+			for (int i = from; i < to; i++) {
+				for (IMap rmap : relevantMaps) {
+					futureList.add(rmap.setAsync(keys[i], blob).toCompletableFuture());
+				}
+			}
+			joinAll(futureList);
+			for (int i = from; i < to; i++) {
+				int index = i;
+				futureList.add(primaryMap.setAsync(keys[i], createSessionMetadata(relevantMaps, keys[i]))
+						.toCompletableFuture().whenComplete((v, t) -> writtenNanos[index] = System.nanoTime()));
+			}
+			joinAll(futureList);
+		}
+		long ingestionNanos = System.nanoTime() - startNanos;
+
+		long maxIdleMsec = getMaxIdleMsec(primaryMap, keys[0]);
+		if (maxIdleMsec < 0) {
+			primaryMap.removeEntryListener(listenerId);
+			return;
+		} else if (maxIdleMsec == 0) {
+			System.err.println("ERROR: The primary map [" + primaryMap.getName()
+					+ "] has neither max idle time nor time-to-live. Use '-max-idle' to specify the idle timeout. Command aborted.");
+			primaryMap.removeEntryListener(listenerId);
+			return;
+		}
+		long maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleMsec);
+		writeLine("Ingestion time (msec): " + TimeUnit.NANOSECONDS.toMillis(ingestionNanos));
+		writeLine("  Idle timeout (msec): " + maxIdleMsec);
+		if (ingestionNanos > maxIdleNanos / 2) {
+			writeLine("WARNING: Ingestion took more than half of the idle timeout. Use a smaller '-count' for accurate results.");
+		}
+
+		long lastDeadlineNanos = 0;
+		for (int i = 0; i < count; i++) {
+			lastDeadlineNanos = Math.max(lastDeadlineNanos, writtenNanos[i] + maxIdleNanos);
+		}
+		long endNanos = lastDeadlineNanos + TimeUnit.SECONDS.toNanos(probeTimeoutSec);
+		long intervalNanos = TimeUnit.MILLISECONDS.toNanos(probeIntervalMsec);
+		long remainingEntryCount = 0;
+
+		writeLine("Polling every " + probeIntervalMsec + " msec...");
+		writeLine(String.format("   %8s %10s %10s %10s", "Time", "Primary", "Sessions", "Entries"));
+		long nextPollNanos = System.nanoTime();
+		long nextReportNanos = nextPollNanos;
+		while (pendingMap.isEmpty() == false || expiredCount.get() < count) {
+			long now;
+			while ((now = System.nanoTime()) < nextPollNanos) {
+				LockSupport.parkNanos(nextPollNanos - now);
+			}
+			nextPollNanos = Math.max(nextPollNanos + intervalNanos, now);
+
+			if (pendingMap.isEmpty() == false) {
+				HashMap<String, Long> totalCountMap = new HashMap<String, Long>();
+				remainingEntryCount = 0;
+				for (IMap rmap : relevantMaps) {
+					Map<String, Long> countMap = (Map<String, Long>) rmap.aggregate(new SessionEntryCountAggregator(
+							getSessionKeyType(), getSessionKeyProperty(), "@", isPostfix, pendingMap.keySet()));
+					for (Map.Entry<String, Long> entry : countMap.entrySet()) {
+						totalCountMap.merge(entry.getKey(), entry.getValue(), Long::sum);
+						remainingEntryCount += entry.getValue();
+					}
+				}
+				// Sessions not in the results have no entries left.
+				long pollNanos = now;
+				pendingMap.entrySet().removeIf(entry -> {
+					if (totalCountMap.containsKey(entry.getKey())) {
+						return false;
+					}
+					cleanupNanos[entry.getValue()] = pollNanos;
+					return true;
+				});
+			}
+
+			now = System.nanoTime();
+			boolean isDone = pendingMap.isEmpty() && expiredCount.get() == count;
+			if (now >= nextReportNanos || isDone || now >= endNanos) {
+				nextReportNanos = Math.max(nextReportNanos + TimeUnit.SECONDS.toNanos(1), now);
+				writeLine(String.format("   %8.1f %10d %10d %10d", (now - startNanos) / 1e9,
+						count - expiredCount.get(), pendingMap.size(), remainingEntryCount));
+			}
+			if (now >= endNanos) {
+				break;
+			}
+		}
+		primaryMap.removeEntryListener(listenerId);
+
+		long[] deadlineNanos = new long[count];
+		long[] expiredNanosArray = new long[count];
+		for (int i = 0; i < count; i++) {
+			deadlineNanos[i] = writtenNanos[i] + maxIdleNanos;
+			expiredNanosArray[i] = expiredNanos.get(i);
+		}
+		writeLine();
+		writeLine("         Probe sessions: " + count);
+		writeLine("    Idle timeout (msec): " + maxIdleMsec);
+		writeLine("   Poll interval (msec): " + probeIntervalMsec);
+		writeLine();
+		writeLine("Time from the idle deadline to the 'expired' event and to the cleanup completion, and from");
+		writeLine("the 'expired' event to the cleanup completion (msec). The cleanup resolution is the poll interval:");
+		writeLine(String.format("   %-9s %10s %10s %10s %10s %10s %10s", "Stage", "Count", "Min", "p50", "p90", "p99",
+				"Max"));
+		writeLags("expired", expiredNanosArray, deadlineNanos);
+		writeLags("cleanup", cleanupNanos, deadlineNanos);
+		writeLags("plugin", cleanupNanos, expiredNanosArray);
+		writeLine();
+		writeLine("  Primary never expired: " + (count - expiredCount.get()));
+		writeLine("Cleanup never completed: " + pendingMap.size() + " (relevant entries remaining: "
+				+ remainingEntryCount + ")");
+		if (pendingMap.isEmpty() == false) {
+			ArrayList<String> list = new ArrayList<String>(pendingMap.keySet());
+			list.sort(null);
+			writeLine("   " + list.subList(0, Math.min(10, list.size())) + (list.size() > 10 ? " ..." : ""));
+		}
+	}
+
+	/**
+	 * Returns the max idle time of the specified primary map entry in
+	 * milliseconds, or its time-to-live if it has no max idle time. Returns
+	 * {@linkplain #maxIdleSec} instead if it is set. Returns 0 if the entry
+	 * expires neither way and -1 if the entry cannot be read. Getting the entry
+	 * view does not reset the idle timeout.
+	 */
+	private long getMaxIdleMsec(IMap primaryMap, Object key) {
+		if (maxIdleSec >= 0) {
+			return TimeUnit.SECONDS.toMillis(maxIdleSec);
+		}
+		EntryView entryView;
+		try {
+			entryView = primaryMap.getEntryView(key);
+		} catch (HazelcastSerializationException ex) {
+			// The entry view carries the SessionMetadata value.
+			System.err.println("ERROR: Unable to read the primary map entry: " + ex.getMessage());
+			System.err.println("       Register ExpirationDataSerializableFactory in the client configuration"
+					+ " or use '-max-idle'. Command aborted.");
+			return -1;
+		}
+		if (entryView == null) {
+			return 0;
+		}
+		if (entryView.getMaxIdle() > 0 && entryView.getMaxIdle() < Long.MAX_VALUE) {
+			return entryView.getMaxIdle();
+		}
+		if (entryView.getTtl() > 0 && entryView.getTtl() < Long.MAX_VALUE) {
+			return entryView.getTtl();
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the key type from which the session IDs of the keys created by
+	 * {@linkplain #createKey(String, String, boolean)} are extracted. The session
+	 * IDs of {@linkplain KeyType#CUSTOM} keys are read as
+	 * {@linkplain KeyType#OBJECT} properties.
+	 */
+	private KeyType getSessionKeyType() {
+		return keyType == KeyType.CUSTOM ? KeyType.OBJECT : keyType;
+	}
+
+	/**
+	 * Returns the key property that returns the session ID if the session key
+	 * type is {@linkplain KeyType#OBJECT}.
+	 */
+	private String getSessionKeyProperty() {
+		return getSessionKeyType() == KeyType.OBJECT ? "sessionId" : null;
+	}
+
+	/**
+	 * Writes the distribution of the completion times relative to the start
+	 * times. Negative values are completions before the start times, e.g., the
+	 * idle deadlines. Long.MIN_VALUE in either array excludes the session.
+	 */
+	private static void writeLags(String stage, long[] completedNanos, long[] startNanos) {
+		long[] lags = new long[completedNanos.length];
+		int n = 0;
+		for (int i = 0; i < completedNanos.length; i++) {
+			if (completedNanos[i] != Long.MIN_VALUE && startNanos[i] != Long.MIN_VALUE) {
+				lags[n++] = completedNanos[i] - startNanos[i];
+			}
+		}
+		if (n == 0) {
+			writeLine(String.format("   %-9s %10d", stage, 0));
+			return;
+		}
+		Arrays.sort(lags, 0, n);
+		writeLine(String.format("   %-9s %10d %10.1f %10.1f %10.1f %10.1f %10.1f", stage, n, lags[0] / 1e6,
+				lags[percentileIndex(n, 50)] / 1e6, lags[percentileIndex(n, 90)] / 1e6,
+				lags[percentileIndex(n, 99)] / 1e6, lags[n - 1] / 1e6));
+	}
+
+	private static int percentileIndex(int n, double percentile) {
+		return Math.min(n - 1, (int) Math.ceil(n * percentile / 100d) - 1);
+	}
+
+	private static void joinAll(List<CompletableFuture> futureList) {
+		for (CompletableFuture future : futureList) {
+			future.join();
+		}
+		futureList.clear();
+	}
+
 	void shutdown() {
 		hzInstance.shutdown();
 	}
@@ -411,7 +978,10 @@ public class SessionExpirationTestClient {
 		writeLine();
 		writeLine("SYNOPSIS");
 		writeLine("   " + executableName + " -primary primary_map_name -relevant relevant_map_names");
-		writeLine("               [-type CUSTOM|INTERFACE|OBJECT|PARTITION_AWARE|STRING] [-count count] [-?]");
+		writeLine("               [-type CUSTOM|INTERFACE|OBJECT|PARTITION_AWARE|STRING] [-count count]");
+		writeLine("               [-threads count] [-pipeline-depth depth] [-batch size] [-rate ops_per_sec]");
+		writeLine("               [-entry INGEST|PUT|RESET|GET|PROBE] [-probe-interval msec] [-probe-timeout seconds]");
+		writeLine("               [-max-idle seconds] [-?]");
 		writeLine();
 		writeLine("DESCRIPTION");
 		writeLine("   Ingests mock data into the specified maps for testing the session expiration plugin, ");
@@ -435,10 +1005,56 @@ public class SessionExpirationTestClient {
 		writeLine("   -count count");
 		writeLine("             Number of entries to ingest. If not specified, defaults to 100");
 		writeLine();
+		writeLine("   -threads count");
+		writeLine("             Number of ingestion threads. Applies to INGEST only. Default: 1");
+		writeLine();
+		writeLine("   -pipeline-depth depth");
+		writeLine("             Maximum number of asynchronous operations in flight per ingestion thread. If 1,");
+		writeLine("             then each thread waits for an operation to complete before issuing the next one.");
+		writeLine("             Applies to INGEST only. Default: 1");
+		writeLine();
+		writeLine("   -batch size");
+		writeLine("             Number of entries per putAll operation. The entries of each map are grouped by");
+		writeLine("             partition so that each putAll operation targets a single partition. If 1, then");
+		writeLine("             each entry is written with a set operation. Applies to INGEST only. Default: 1");
+		writeLine();
+		writeLine("   -rate ops_per_sec");
+		writeLine("             Total number of operations per second of all threads. The operations are issued on");
+		writeLine("             a fixed schedule regardless of how long the previous operations take, and the");
+		writeLine("             response time of each operation is measured from its scheduled time, which corrects");
+		writeLine("             for coordinated omission. If 0, then the operations are issued as fast as the");
+		writeLine("             pipeline allows and only the service time is reported. Applies to INGEST only.");
+		writeLine("             Default: 0");
+		writeLine();
+		writeLine("             If any of -threads, -pipeline-depth, -batch and -rate is specified, then INGEST");
+		writeLine("             reports the latency percentiles of each operation type.");
+		writeLine();
 		writeLine("   -entry entry_type");
 		writeLine("             Entry type. INGEST for ingesting data, PUT for entering a single entry,");
 		writeLine("             RESET for resetting idle timeout for a single entry. PUT and RESET require");
 		writeLine("             session ID and attribute. Use '-session' and '-attribute' to sepcify them.");
+		writeLine("             PROBE ingests '-count' tagged sessions, each with an entry in the primary map and in");
+		writeLine("             each relevant map, and leaves them to expire. It then listens to the primary map's");
+		writeLine("             'expired' events and polls the relevant maps with a member-side count of the");
+		writeLine("             entries remaining per session until all of the entries have been removed. It");
+		writeLine("             reports the distributions of the time from each session's idle deadline, i.e.,");
+		writeLine("             its last write plus the primary map's max idle time, to its 'expired' event and to");
+		writeLine("             the removal of its last relevant entry, and the number of sessions that never");
+		writeLine("             fully expired.");
+		writeLine("");
+		writeLine("   -probe-interval msec");
+		writeLine("             Poll interval in milliseconds, which is the resolution of the PROBE results.");
+		writeLine("             Default: 500");
+		writeLine("");
+		writeLine("   -probe-timeout seconds");
+		writeLine("             Number of seconds after the last idle deadline that PROBE waits for the entries to");
+		writeLine("             be removed. The sessions whose entries remain are reported as never expired.");
+		writeLine("             Default: 60");
+		writeLine("");
+		writeLine("   -max-idle seconds");
+		writeLine("             Idle timeout from which PROBE computes the idle deadlines, e.g., the session timeout");
+		writeLine("             of SessionTimer. If not specified, the max idle time, or if not set, the");
+		writeLine("             time-to-live of the primary map entries is used.");
 		writeLine("");
 		writeLine("   -session session_ID");
 		writeLine("             Session ID that is part of the composite key");
@@ -455,9 +1071,12 @@ public class SessionExpirationTestClient {
 		writeLine("                hazelcast.addon.cluster.expiration.string-key.postfix.enabled");
 		writeLine("             Default: false");
 		writeLine("");
-		writeLine("   -metadata true|false");
-		writeLine("             If true SessionMetadata is used. Any other value is false. This option requires");
-		writeLine("             the entry type of PUT, RESET, or GET. Default: false");
+		writeLine("   -metadata true|false|compact");
+		writeLine("             If true SessionMetadata is used. If compact CompactSessionMetadata is used, which");
+		writeLine("             requires the same map name list in the following system property and in the");
+		writeLine("             member configuration file. Any other value is false. This option requires the");
+		writeLine("             entry type of PUT, RESET, or GET. Default: false");
+		writeLine("                hazelcast.addon.cluster.expiration.metadata.map-names");
 		writeLine();
 		writeLine("EXAMPLES");
 		writeLine("   # [1] INTERFACE: Ingest InterfaceKey that implements ISessionId into");
@@ -527,11 +1146,38 @@ public class SessionExpirationTestClient {
 		writeLine("   ./" + executableName
 				+ " -type INTERFACE -primary smki_EN01 -relevant mki1_EN01,mki2_EN01 -entry GET -session s1 -attribute a1 -metadata true");
 		writeLine();
+		writeLine("   # [14] STRING INGEST at 20,000 operations per second with 8 threads, 16 operations in flight");
+		writeLine("   #      per thread, and 100 entries per putAll operation");
+		writeLine("   ./" + executableName
+				+ " -type STRING -primary smks_EN01 -relevant mks1_EN01,mks2_EN01 -count 1000000 -threads 8 -pipeline-depth 16 -batch 100 -rate 20000");
+		writeLine();
+		writeLine("   # [15] PROBE: Measure the time it takes to remove the relevant entries of 1000 sessions");
+		writeLine("   #      after they become idle");
+		writeLine("   ./" + executableName
+				+ " -type STRING -primary smks_EN01 -relevant mks1_EN01,mks2_EN01 -entry PROBE -count 1000");
+		writeLine();
 		writeLine("NOTES");
 		writeLine("   - To test session metadata run [11] and repeatedly run [12].");
+		writeLine("   - To compare the listener overhead, run [14] against the smkn_EN01 maps, which have no plugin,");
+		writeLine("     and then against the plugin maps at the same rate.");
+		writeLine("   - PROBE measures the deadlines and the removals with the client clock. The cleanup time");
+		writeLine("     includes the delay until Hazelcast removes the idle primary entries and fires the");
+		writeLine("     'expired' events, which is reported separately as 'expired'. Hazelcast removes idle");
+		writeLine("     entries that are not accessed in the background, a sample of each partition at a time,");
+		writeLine("     so the delay can be much longer than the max idle time on lightly loaded maps.");
 		writeLine();
 	}
 
+	private static int parseInt(String name, String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (Exception ex) {
+			System.err.println("ERROR: Invalid " + name + " [" + value + "]. Command aborted.");
+			System.exit(1);
+			return 0;
+		}
+	}
+
 	private static void writeLine() {
 		System.out.println();
 	}
@@ -549,8 +1195,16 @@ public class SessionExpirationTestClient {
 		String entry = null;
 		EntryType entryType = EntryType.INGEST;
 		boolean isMetadata = false;
+		boolean isCompactMetadata = false;
 		boolean isPostfix = false;
 		int count = 100;
+		int threadCount = 1;
+		int pipelineDepth = 1;
+		int batchSize = 1;
+		int rate = 0;
+		int probeIntervalMsec = 500;
+		int probeTimeoutSec = 60;
+		int maxIdleSec = -1;
 		String arg;
 		for (int i = 0; i < args.length; i++) {
 			arg = args[i];
@@ -578,9 +1232,11 @@ public class SessionExpirationTestClient {
 						entryType = EntryType.RESET;
 					} else if (entry.equalsIgnoreCase("get")) {
 						entryType = EntryType.GET;
+					} else if (entry.equalsIgnoreCase("probe")) {
+						entryType = EntryType.PROBE;
 					} else {
 						System.err.println("ERROR: Invalid entry type [" + entry
-								+ "]. Valid values are [put, reset, get]. Command aborted.");
+								+ "]. Valid values are [put, reset, get, probe]. Command aborted.");
 						System.exit(1);
 					}
 				}
@@ -600,8 +1256,23 @@ public class SessionExpirationTestClient {
 			} else if (arg.startsWith("-metadata")) {
 				if (i < args.length - 1) {
 					String metadata = args[++i].trim();
-					isMetadata = metadata.equalsIgnoreCase("true");
+					isCompactMetadata = metadata.equalsIgnoreCase("compact");
+					isMetadata = metadata.equalsIgnoreCase("true") || isCompactMetadata;
 				}
+			} else if (arg.equals("-threads") && i < args.length - 1) {
+				threadCount = parseInt("threads", args[++i].trim());
+			} else if (arg.equals("-pipeline-depth") && i < args.length - 1) {
+				pipelineDepth = parseInt("pipeline depth", args[++i].trim());
+			} else if (arg.equals("-batch") && i < args.length - 1) {
+				batchSize = parseInt("batch size", args[++i].trim());
+			} else if (arg.equals("-rate") && i < args.length - 1) {
+				rate = parseInt("rate", args[++i].trim());
+			} else if (arg.equals("-probe-interval") && i < args.length - 1) {
+				probeIntervalMsec = parseInt("probe interval", args[++i].trim());
+			} else if (arg.equals("-probe-timeout") && i < args.length - 1) {
+				probeTimeoutSec = parseInt("probe timeout", args[++i].trim());
+			} else if (arg.equals("-max-idle") && i < args.length - 1) {
+				maxIdleSec = parseInt("max idle", args[++i].trim());
 			} else if (arg.startsWith("-count")) {
 				if (i < args.length - 1) {
 					String countStr = args[++i].trim();
@@ -633,6 +1304,16 @@ public class SessionExpirationTestClient {
 			System.err.println("ERROR: Invalid count [" + count + "]. Must be greater than 0. Command aborted.");
 			System.exit(4);
 		}
+		if (threadCount <= 0 || pipelineDepth <= 0 || batchSize <= 0 || rate < 0) {
+			System.err.println(
+					"ERROR: -threads, -pipeline-depth and -batch must be greater than 0 and -rate must not be negative. Command aborted.");
+			System.exit(4);
+		}
+		if (probeIntervalMsec <= 0 || probeTimeoutSec < 0) {
+			System.err.println(
+					"ERROR: -probe-interval must be greater than 0 and -probe-timeout must not be negative. Command aborted.");
+			System.exit(4);
+		}
 
 		switch (entryType) {
 		case PUT:
@@ -656,6 +1337,14 @@ public class SessionExpirationTestClient {
 		String[] relevantMapNameArray = relevantMapNames.split(",");
 		SessionExpirationTestClient client = new SessionExpirationTestClient(keyType, count, primaryMapName,
 				relevantMapNameArray, entryType, sessionId, attribute);
+		client.isCompactMetadata = isCompactMetadata;
+		client.threadCount = threadCount;
+		client.pipelineDepth = pipelineDepth;
+		client.batchSize = batchSize;
+		client.rate = rate;
+		client.probeIntervalMsec = probeIntervalMsec;
+		client.probeTimeoutSec = probeTimeoutSec;
+		client.maxIdleSec = maxIdleSec;
 		client.ingestData(isMetadata, isPostfix);
 		client.shutdown();
 	}
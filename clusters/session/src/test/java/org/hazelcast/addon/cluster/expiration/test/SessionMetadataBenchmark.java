@@ -0,0 +1,103 @@
+package org.hazelcast.addon.cluster.expiration.test;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hazelcast.addon.cluster.expiration.metadata.CompactSessionMetadata;
+import org.hazelcast.addon.cluster.expiration.metadata.ExpirationDataSerializableFactory;
+import org.hazelcast.addon.cluster.expiration.metadata.MapNameDictionary;
+import org.hazelcast.addon.cluster.expiration.metadata.SessionMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+
+/**
+ * {@linkplain SessionMetadataBenchmark} times the serialization round trips of
+ * {@linkplain SessionMetadata} and {@linkplain CompactSessionMetadata}, i.e.,
+ * serializing to {@linkplain Data}, deserializing and reading all the relevant
+ * keys, with a standalone serialization service. The metadata holds the
+ * specified number of ObjectKey keys for each of three relevant maps, which
+ * are registered in {@linkplain MapNameDictionary}.
+ * <p>
+ * Run with
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="SessionMetadataBenchmark"
+ * </pre>
+ *
+ * @author dpark
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionMetadataBenchmark {
+
+	private final static String[] MAP_NAMES = { "mmd1_EN01", "mmd2_EN01", "mmd3_EN01" };
+
+	@Param({ "SessionMetadata", "CompactSessionMetadata" })
+	private String format;
+
+	@Param({ "1", "10" })
+	private int keysPerMap;
+
+	private InternalSerializationService serializationService;
+	private SessionMetadata metadata;
+	private Data data;
+
+	@Setup
+	public void setup() {
+		MapNameDictionary.getDictionary().setMapNames(MAP_NAMES);
+		serializationService = new DefaultSerializationServiceBuilder()
+				.addDataSerializableFactory(ExpirationDataSerializableFactory.FACTORY_ID,
+						new ExpirationDataSerializableFactory())
+				.build();
+		metadata = format.equals("CompactSessionMetadata") ? new CompactSessionMetadata(MAP_NAMES.length)
+				: new SessionMetadata(MAP_NAMES.length);
+		for (String mapName : MAP_NAMES) {
+			for (int i = 0; i < keysPerMap; i++) {
+				metadata.addRelevantKey(mapName, new ObjectKey("session-1", mapName + "-" + i));
+			}
+		}
+		data = serializationService.toData(metadata);
+	}
+
+	@Benchmark
+	public Data serialize() {
+		return serializationService.toData(metadata);
+	}
+
+	@Benchmark
+	public int deserialize() {
+		SessionMetadata sm = serializationService.toObject(data);
+		int hash = 0;
+		for (int i = 0; i < sm.size(); i++) {
+			hash += sm.getRelevantKey(i).hashCode();
+		}
+		return hash;
+	}
+
+	@Benchmark
+	public int roundTrip() {
+		SessionMetadata sm = serializationService.toObject(serializationService.toData(metadata));
+		int hash = 0;
+		for (int i = 0; i < sm.size(); i++) {
+			hash += sm.getRelevantKey(i).hashCode();
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,339 @@
+package org.hazelcast.addon.cluster.expiration.test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.hazelcast.addon.cluster.expiration.KeyType;
+
+import com.hazelcast.internal.yaml.YamlLoader;
+import com.hazelcast.internal.yaml.YamlMapping;
+import com.hazelcast.internal.yaml.YamlNode;
+import com.hazelcast.internal.yaml.YamlScalar;
+import com.hazelcast.internal.yaml.YamlSequence;
+
+/**
+ * {@linkplain SessionWorkload} is the session workload model run by
+ * {@linkplain SessionWorkloadGenerator}. It is loaded from a YAML file. See
+ * etc/session-workload.yaml for an example with all the settings.
+ * <p>
+ * Sessions arrive as a Poisson process at the configured rate. Each session is
+ * assigned a key type by weight and writes a primary map entry and a number of
+ * entries per relevant map drawn from a distribution. It is then touched a
+ * number of times drawn from a distribution, typically Zipfian, so that most
+ * sessions are short and a few are long and chatty, with think times drawn from
+ * another distribution. Each touch is a primary map set, a primary map get or
+ * a relevant map write chosen by weight. After the last touch, the session is
+ * left to expire.
+ *
+ * @author dpark
+ *
+ */
+public class SessionWorkload {
+
+	/**
+	 * Touch operations.
+	 */
+	enum TouchOp {
+		/**
+		 * Writes the primary map entry, which resets its idle timeout and fires an
+		 * 'updated' event.
+		 */
+		SET,
+
+		/**
+		 * Reads the primary map entry, which resets its idle timeout without an
+		 * event.
+		 */
+		GET,
+
+		/**
+		 * Writes one of the session's relevant map entries.
+		 */
+		ATTRIBUTE
+	}
+
+	/**
+	 * {@linkplain Distribution} draws long values. The supported types are
+	 * "constant" (value), "uniform" (min, max), "exponential" (mean, max) and
+	 * "zipf" (min, max, exponent). Zipf values are between min and max inclusive,
+	 * with min the most frequent.
+	 */
+	static abstract class Distribution {
+		abstract long sample(Random random);
+
+		static Distribution load(YamlMapping mapping, String name, Distribution defaultDistribution) {
+			YamlMapping node = mapping == null ? null : mapping.childAsMapping(name);
+			if (node == null) {
+				return defaultDistribution;
+			}
+			String type = getString(node, "distribution", "constant");
+			switch (type.toLowerCase()) {
+			case "constant":
+				return constant(getLong(node, "value", 0));
+			case "uniform":
+				return uniform(getLong(node, "min", 0), getLong(node, "max", 0));
+			case "exponential":
+				return exponential(getDouble(node, "mean", 1), getLong(node, "max", Long.MAX_VALUE));
+			case "zipf":
+				return zipf(getLong(node, "min", 1), getLong(node, "max", 1), getDouble(node, "exponent", 1));
+			default:
+				throw new IllegalArgumentException(
+						"Invalid distribution [" + name + ".distribution=" + type + "]. Must be constant, uniform, exponential or zipf.");
+			}
+		}
+
+		static Distribution constant(long value) {
+			return new Distribution() {
+				@Override
+				long sample(Random random) {
+					return value;
+				}
+
+				@Override
+				public String toString() {
+					return "constant(" + value + ")";
+				}
+			};
+		}
+
+		static Distribution uniform(long min, long max) {
+			if (max < min) {
+				throw new IllegalArgumentException("Invalid uniform distribution [min=" + min + ", max=" + max + "].");
+			}
+			return new Distribution() {
+				@Override
+				long sample(Random random) {
+					return min + (long) (random.nextDouble() * (max - min + 1));
+				}
+
+				@Override
+				public String toString() {
+					return "uniform(" + min + ".." + max + ")";
+				}
+			};
+		}
+
+		static Distribution exponential(double mean, long max) {
+			return new Distribution() {
+				@Override
+				long sample(Random random) {
+					return Math.min(max, (long) (-mean * Math.log(1 - random.nextDouble())));
+				}
+
+				@Override
+				public String toString() {
+					return "exponential(mean=" + mean + (max == Long.MAX_VALUE ? "" : ", max=" + max) + ")";
+				}
+			};
+		}
+
+		/**
+		 * Returns a Zipf distribution over [min, max], which draws a value by binary
+		 * search of a precomputed cumulative distribution.
+		 */
+		static Distribution zipf(long min, long max, double exponent) {
+			long n = max - min + 1;
+			if (n <= 0 || n > 10_000_000) {
+				throw new IllegalArgumentException(
+						"Invalid zipf distribution [min=" + min + ", max=" + max + "]. Must have 1 to 10,000,000 values.");
+			}
+			double[] cdf = new double[(int) n];
+			double sum = 0;
+			for (int i = 0; i < n; i++) {
+				sum += 1 / Math.pow(i + 1, exponent);
+				cdf[i] = sum;
+			}
+			double total = sum;
+			return new Distribution() {
+				@Override
+				long sample(Random random) {
+					double u = random.nextDouble() * total;
+					int low = 0;
+					int high = cdf.length - 1;
+					while (low < high) {
+						int mid = (low + high) >>> 1;
+						if (cdf[mid] < u) {
+							low = mid + 1;
+						} else {
+							high = mid;
+						}
+					}
+					return min + low;
+				}
+
+				@Override
+				public String toString() {
+					return "zipf(" + min + ".." + max + ", exponent=" + exponent + ")";
+				}
+			};
+		}
+	}
+
+	/**
+	 * {@linkplain KeyTypeMix} is a key type and its maps with its share of the
+	 * sessions.
+	 */
+	static class KeyTypeMix {
+		KeyType keyType;
+		int weight;
+		String primaryMapName;
+		String[] relevantMapNames;
+		boolean isPostfix;
+	}
+
+	long durationSec = 600;
+	double arrivalRate = 100;
+	int maxActiveSessions = 100_000;
+	int threadCount = 8;
+	int reportIntervalSec = 10;
+	int drainSec = 60;
+	String metadata = "false";
+	Distribution touches = Distribution.zipf(0, 1000, 1.2);
+	Distribution touchIntervalMsec = Distribution.exponential(2000, 60_000);
+	Distribution entriesPerMap = Distribution.zipf(1, 20, 1.5);
+	Distribution valueSize = Distribution.uniform(100, 2000);
+	int[] touchOpWeights = { 80, 15, 5 };
+	List<KeyTypeMix> keyTypeMixList = new ArrayList<KeyTypeMix>();
+
+	private int totalKeyTypeWeight;
+	private int totalTouchOpWeight;
+
+	/**
+	 * Loads the workload from the specified YAML file. The settings are under
+	 * the top-level "workload" node.
+	 */
+	static SessionWorkload load(String fileName) throws IOException {
+		try (InputStream is = new FileInputStream(fileName)) {
+			YamlNode root = YamlLoader.load(is);
+			if (root instanceof YamlMapping == false || ((YamlMapping) root).childAsMapping("workload") == null) {
+				throw new IllegalArgumentException("The top-level 'workload' node not found in " + fileName);
+			}
+			YamlMapping node = ((YamlMapping) root).childAsMapping("workload");
+			SessionWorkload workload = new SessionWorkload();
+			workload.durationSec = getLong(node, "duration-seconds", workload.durationSec);
+			workload.arrivalRate = getDouble(node, "arrival-rate", workload.arrivalRate);
+			workload.maxActiveSessions = (int) getLong(node, "max-active-sessions", workload.maxActiveSessions);
+			workload.threadCount = (int) getLong(node, "threads", workload.threadCount);
+			workload.reportIntervalSec = (int) getLong(node, "report-interval-seconds", workload.reportIntervalSec);
+			workload.drainSec = (int) getLong(node, "drain-seconds", workload.drainSec);
+			workload.metadata = getString(node, "metadata", workload.metadata);
+			workload.touches = Distribution.load(node, "touches", workload.touches);
+			workload.touchIntervalMsec = Distribution.load(node, "touch-interval-millis", workload.touchIntervalMsec);
+			workload.entriesPerMap = Distribution.load(node, "entries-per-map", workload.entriesPerMap);
+			workload.valueSize = Distribution.load(node, "value-size", workload.valueSize);
+			YamlMapping touchOps = node.childAsMapping("touch-ops");
+			if (touchOps != null) {
+				for (TouchOp op : TouchOp.values()) {
+					workload.touchOpWeights[op.ordinal()] = (int) getLong(touchOps, op.name().toLowerCase(), 0);
+				}
+			}
+			YamlSequence keyTypes = node.childAsSequence("key-types");
+			if (keyTypes != null) {
+				for (YamlNode child : keyTypes.children()) {
+					YamlMapping mapping = (YamlMapping) child;
+					KeyTypeMix mix = new KeyTypeMix();
+					mix.keyType = KeyType.valueOf(getString(mapping, "type", "STRING").toUpperCase());
+					mix.weight = (int) getLong(mapping, "weight", 1);
+					mix.primaryMapName = getString(mapping, "primary", null);
+					String relevant = getString(mapping, "relevant", null);
+					if (mix.primaryMapName == null || relevant == null) {
+						throw new IllegalArgumentException("key-types: 'primary' and 'relevant' are required.");
+					}
+					mix.relevantMapNames = relevant.split(",");
+					mix.isPostfix = Boolean.parseBoolean(getString(mapping, "postfix", "false"));
+					workload.keyTypeMixList.add(mix);
+				}
+			}
+			workload.validate();
+			return workload;
+		}
+	}
+
+	private void validate() {
+		if (keyTypeMixList.isEmpty()) {
+			throw new IllegalArgumentException("key-types: At least one key type is required.");
+		}
+		for (KeyTypeMix mix : keyTypeMixList) {
+			totalKeyTypeWeight += mix.weight;
+		}
+		for (int weight : touchOpWeights) {
+			totalTouchOpWeight += weight;
+		}
+		if (totalKeyTypeWeight <= 0 || totalTouchOpWeight <= 0) {
+			throw new IllegalArgumentException("The key type and touch operation weights must add up to more than 0.");
+		}
+		if (arrivalRate <= 0 || threadCount <= 0 || maxActiveSessions <= 0) {
+			throw new IllegalArgumentException("arrival-rate, threads and max-active-sessions must be greater than 0.");
+		}
+	}
+
+	KeyTypeMix nextKeyTypeMix(Random random) {
+		int value = random.nextInt(totalKeyTypeWeight);
+		for (KeyTypeMix mix : keyTypeMixList) {
+			value -= mix.weight;
+			if (value < 0) {
+				return mix;
+			}
+		}
+		return keyTypeMixList.get(keyTypeMixList.size() - 1);
+	}
+
+	TouchOp nextTouchOp(Random random) {
+		int value = random.nextInt(totalTouchOpWeight);
+		for (TouchOp op : TouchOp.values()) {
+			value -= touchOpWeights[op.ordinal()];
+			if (value < 0) {
+				return op;
+			}
+		}
+		return TouchOp.SET;
+	}
+
+	/**
+	 * Returns the next Poisson inter-arrival time in nanoseconds.
+	 */
+	long nextArrivalNanos(Random random) {
+		return (long) (-Math.log(1 - random.nextDouble()) * 1_000_000_000d / arrivalRate);
+	}
+
+	private static String getString(YamlMapping mapping, String name, String defaultValue) {
+		YamlScalar scalar = mapping.childAsScalar(name);
+		if (scalar == null || scalar.nodeValue() == null) {
+			return defaultValue;
+		}
+		return scalar.nodeValue().toString();
+	}
+
+	private static long getLong(YamlMapping mapping, String name, long defaultValue) {
+		String value = getString(mapping, name, null);
+		return value == null ? defaultValue : Long.parseLong(value);
+	}
+
+	private static double getDouble(YamlMapping mapping, String name, double defaultValue) {
+		String value = getString(mapping, name, null);
+		return value == null ? defaultValue : Double.parseDouble(value);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buffer = new StringBuilder();
+		buffer.append("duration-seconds=").append(durationSec).append(", arrival-rate=").append(arrivalRate)
+				.append(", max-active-sessions=").append(maxActiveSessions).append(", threads=").append(threadCount)
+				.append(", drain-seconds=").append(drainSec)
+				.append(", metadata=").append(metadata);
+		buffer.append("\n   touches=").append(touches).append(", touch-interval-millis=").append(touchIntervalMsec);
+		buffer.append("\n   entries-per-map=").append(entriesPerMap).append(", value-size=").append(valueSize);
+		buffer.append("\n   touch-ops: set=").append(touchOpWeights[0]).append(", get=").append(touchOpWeights[1])
+				.append(", attribute=").append(touchOpWeights[2]);
+		for (KeyTypeMix mix : keyTypeMixList) {
+			buffer.append("\n   key-type: ").append(mix.keyType).append(", weight=").append(mix.weight)
+					.append(", primary=").append(mix.primaryMapName).append(", relevant=")
+					.append(String.join(",", mix.relevantMapNames));
+		}
+		return buffer.toString();
+	}
+}
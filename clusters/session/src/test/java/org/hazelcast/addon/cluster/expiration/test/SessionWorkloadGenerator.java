@@ -0,0 +1,519 @@
+package org.hazelcast.addon.cluster.expiration.test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.hazelcast.addon.cluster.expiration.LatencyHistogram;
+import org.hazelcast.addon.cluster.expiration.metadata.CompactSessionMetadata;
+import org.hazelcast.addon.cluster.expiration.metadata.SessionMetadata;
+import org.hazelcast.addon.cluster.expiration.test.SessionWorkload.KeyTypeMix;
+import org.hazelcast.addon.cluster.expiration.test.SessionWorkload.TouchOp;
+
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+
+/**
+ * {@linkplain SessionWorkloadGenerator} runs a {@linkplain SessionWorkload}
+ * against a cluster for soak testing the expiration plugins. Sessions are
+ * created and touched on an open-loop schedule, i.e., independent of how fast
+ * the cluster responds, and each operation's response time is measured from
+ * its scheduled time. A report line is written every reporting interval with
+ * the active sessions, the operation rate, the schedule lag, the response time
+ * and the primary and relevant map sizes. After the load stops, the map sizes
+ * are reported until the relevant maps are empty or the drain time elapses so
+ * that an expiration backlog, e.g., of the _Get plugin, shows as relevant
+ * entries outliving their primary entries.
+ *
+ * @author dpark
+ *
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class SessionWorkloadGenerator {
+
+	public final static String PROPERTY_executableName = "executable.name";
+
+	private final static int OP_CREATE = TouchOp.values().length;
+	private final static String[] OP_NAMES = { "set", "get", "attribute", "create" };
+
+	final SessionWorkload workload;
+	final HazelcastInstance hzInstance;
+	final DelayQueue<Session> sessionQueue = new DelayQueue<Session>();
+	final AtomicLong activeCount = new AtomicLong();
+	final AtomicLong createdCount = new AtomicLong();
+	final AtomicLong endedCount = new AtomicLong();
+	final AtomicLong rejectedCount = new AtomicLong();
+	final AtomicLong missedCount = new AtomicLong();
+	final AtomicLong errorCount = new AtomicLong();
+	Worker[] workers;
+	volatile boolean isRunning = true;
+
+	SessionWorkloadGenerator(SessionWorkload workload) {
+		this.workload = workload;
+		this.hzInstance = HazelcastClient.newHazelcastClient();
+	}
+
+	/**
+	 * {@linkplain Session} is a session scheduled for its next operation.
+	 */
+	static class Session implements Delayed {
+		final String sessionId;
+		final KeyTypeMix mix;
+		Object primaryKey;
+		Object[][] relevantKeys;
+		Object primaryValue;
+		long remainingTouches;
+		long scheduledNanos;
+
+		Session(String sessionId, KeyTypeMix mix, long scheduledNanos) {
+			this.sessionId = sessionId;
+			this.mix = mix;
+			this.scheduledNanos = scheduledNanos;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(scheduledNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			return Long.compare(scheduledNanos, ((Session) o).scheduledNanos);
+		}
+	}
+
+	/**
+	 * {@linkplain Worker} takes the sessions that are due from the shared queue
+	 * and runs their operations. It records the latencies of its own operations
+	 * so that each histogram has a single writer.
+	 */
+	class Worker extends Thread {
+		final Random random;
+		final LatencyHistogram lagHistogram = new LatencyHistogram();
+		final LatencyHistogram[] responseHistograms = new LatencyHistogram[OP_NAMES.length];
+
+		Worker(int index, Random random) {
+			super("workload-worker-" + (index + 1));
+			setDaemon(true);
+			this.random = random;
+			for (int i = 0; i < responseHistograms.length; i++) {
+				responseHistograms[i] = new LatencyHistogram();
+			}
+		}
+
+		@Override
+		public void run() {
+			while (isRunning) {
+				Session session;
+				try {
+					session = sessionQueue.take();
+				} catch (InterruptedException ex) {
+					break;
+				}
+				lagHistogram.record(System.nanoTime() - session.scheduledNanos);
+				int op;
+				try {
+					if (session.primaryKey == null) {
+						op = OP_CREATE;
+						create(session);
+					} else {
+						op = touch(session);
+					}
+				} catch (Exception ex) {
+					if (isRunning == false) {
+						break;
+					}
+					errorCount.incrementAndGet();
+					op = -1;
+				}
+				if (op >= 0) {
+					responseHistograms[op].record(System.nanoTime() - session.scheduledNanos);
+				}
+				if (session.remainingTouches-- > 0) {
+					session.scheduledNanos += TimeUnit.MILLISECONDS
+							.toNanos(workload.touchIntervalMsec.sample(random));
+					sessionQueue.offer(session);
+				} else {
+					// Left to expire
+					activeCount.decrementAndGet();
+					endedCount.incrementAndGet();
+				}
+			}
+		}
+
+		/**
+		 * Writes the session's relevant entries and then its primary entry. The
+		 * session is created again at its next scheduled time if this fails.
+		 */
+		void create(Session session) {
+			KeyTypeMix mix = session.mix;
+			Object primaryKey = createKey(mix, session.sessionId, "session");
+			session.relevantKeys = new Object[mix.relevantMapNames.length][];
+			for (int m = 0; m < mix.relevantMapNames.length; m++) {
+				int entryCount = (int) Math.max(1, workload.entriesPerMap.sample(random));
+				session.relevantKeys[m] = new Object[entryCount];
+				IMap relevantMap = hzInstance.getMap(mix.relevantMapNames[m]);
+				for (int k = 0; k < entryCount; k++) {
+					session.relevantKeys[m][k] = createKey(mix, session.sessionId, "attr" + k);
+					relevantMap.set(session.relevantKeys[m][k], createValue());
+				}
+			}
+			if (workload.metadata.equalsIgnoreCase("true") || workload.metadata.equalsIgnoreCase("compact")) {
+				SessionMetadata metadata = workload.metadata.equalsIgnoreCase("compact")
+						? new CompactSessionMetadata(mix.relevantMapNames.length)
+						: new SessionMetadata(mix.relevantMapNames.length);
+				for (int m = 0; m < mix.relevantMapNames.length; m++) {
+					for (Object key : session.relevantKeys[m]) {
+						metadata.addRelevantKey(mix.relevantMapNames[m], key);
+					}
+				}
+				session.primaryValue = metadata;
+			} else {
+				session.primaryValue = createValue();
+			}
+			hzInstance.getMap(mix.primaryMapName).set(primaryKey, session.primaryValue);
+			session.primaryKey = primaryKey;
+		}
+
+		/**
+		 * Runs the next touch operation of the specified session and returns its
+		 * index.
+		 */
+		int touch(Session session) {
+			TouchOp op = workload.nextTouchOp(random);
+			IMap primaryMap = hzInstance.getMap(session.mix.primaryMapName);
+			switch (op) {
+			case GET:
+				if (primaryMap.get(session.primaryKey) == null) {
+					// Expired before the session ended, i.e., the think time exceeded the
+					// max idle time.
+					missedCount.incrementAndGet();
+				}
+				break;
+			case ATTRIBUTE:
+				int m = random.nextInt(session.relevantKeys.length);
+				Object[] keys = session.relevantKeys[m];
+				hzInstance.getMap(session.mix.relevantMapNames[m]).set(keys[random.nextInt(keys.length)],
+						createValue());
+				break;
+			case SET:
+			default:
+				primaryMap.set(session.primaryKey, session.primaryValue);
+				break;
+			}
+			return op.ordinal();
+		}
+
+		byte[] createValue() {
+			byte[] value = new byte[(int) Math.max(0, workload.valueSize.sample(random))];
+			random.nextBytes(value);
+			return value;
+		}
+	}
+
+	Object createKey(KeyTypeMix mix, String sessionId, String attribute) {
+		switch (mix.keyType) {
+		case INTERFACE:
+			return new InterfaceKey(sessionId, attribute);
+		case OBJECT:
+			return new ObjectKey(sessionId, attribute);
+		case CUSTOM:
+			return new CustomKey(sessionId, attribute);
+		case PARTITION_AWARE:
+			return new PartitionAwareKey(sessionId, attribute);
+		case STRING:
+		default:
+			return mix.isPostfix ? attribute + "@" + sessionId : sessionId + "@" + attribute;
+		}
+	}
+
+	/**
+	 * Schedules new sessions at Poisson arrival times until the load stops. A
+	 * session is rejected if the maximum number of active sessions is reached.
+	 */
+	void arrive(Random random) {
+		long nextNanos = System.nanoTime();
+		while (isRunning) {
+			nextNanos += workload.nextArrivalNanos(random);
+			long delay = nextNanos - System.nanoTime();
+			if (delay > 0) {
+				LockSupport.parkNanos(delay);
+			}
+			if (activeCount.get() >= workload.maxActiveSessions) {
+				rejectedCount.incrementAndGet();
+				continue;
+			}
+			Session session = new Session(UUID.randomUUID().toString(), workload.nextKeyTypeMix(random), nextNanos);
+			session.remainingTouches = Math.max(0, workload.touches.sample(random));
+			activeCount.incrementAndGet();
+			createdCount.incrementAndGet();
+			sessionQueue.offer(session);
+		}
+	}
+
+	/**
+	 * Returns the sum of the snapshots of the specified operation's response
+	 * histograms, or of the schedule lag histograms if op is -1.
+	 */
+	long[] snapshot(int op) {
+		long[] snapshot = new long[LatencyHistogram.BUCKET_COUNT];
+		for (Worker worker : workers) {
+			(op < 0 ? worker.lagHistogram : worker.responseHistograms[op]).addTo(snapshot);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Returns the total size of the primary maps and the total size of the
+	 * relevant maps.
+	 */
+	long[] getMapSizes() {
+		LinkedHashMap<String, Boolean> mapNames = new LinkedHashMap<String, Boolean>();
+		for (KeyTypeMix mix : workload.keyTypeMixList) {
+			mapNames.put(mix.primaryMapName, true);
+			for (String relevantMapName : mix.relevantMapNames) {
+				mapNames.put(relevantMapName, false);
+			}
+		}
+		long[] sizes = new long[2];
+		for (Map.Entry<String, Boolean> entry : mapNames.entrySet()) {
+			sizes[entry.getValue() ? 0 : 1] += hzInstance.getMap(entry.getKey()).size();
+		}
+		return sizes;
+	}
+
+	void run(long seed) {
+		Random seedRandom = seed == 0 ? new Random() : new Random(seed);
+		workers = new Worker[workload.threadCount];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(i, new Random(seedRandom.nextLong()));
+			workers[i].start();
+		}
+		Random arrivalRandom = new Random(seedRandom.nextLong());
+		Thread arrivalThread = new Thread(() -> arrive(arrivalRandom), "workload-arrival");
+		arrivalThread.setDaemon(true);
+		arrivalThread.start();
+
+		writeLine(String.format("%-8s %8s %9s %9s %8s %7s %9s %10s %10s %10s %12s", "Time", "Active", "Created",
+				"Ended", "Rejected", "Missed", "Ops/s", "Lag p99", "Resp p99", "Primary", "Relevant"));
+		writeLine(String.format("%-8s %8s %9s %9s %8s %7s %9s %10s %10s %10s %12s", "", "", "", "", "", "", "",
+				"(msec)", "(msec)", "", ""));
+		SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+		long intervalNanos = TimeUnit.SECONDS.toNanos(workload.reportIntervalSec);
+		long startNanos = System.nanoTime();
+		long endNanos = startNanos + TimeUnit.SECONDS.toNanos(workload.durationSec);
+		long[] prevLag = new long[LatencyHistogram.BUCKET_COUNT];
+		long[] prevResponse = new long[LatencyHistogram.BUCKET_COUNT];
+		long nextReportNanos = startNanos;
+		while (System.nanoTime() < endNanos) {
+			nextReportNanos += intervalNanos;
+			LockSupport.parkNanos(Math.min(nextReportNanos, endNanos) - System.nanoTime());
+
+			// Interval percentiles from the difference of the cumulative snapshots
+			long[] lag = snapshot(-1);
+			long[] response = new long[LatencyHistogram.BUCKET_COUNT];
+			for (int op = 0; op < OP_NAMES.length; op++) {
+				for (Worker worker : workers) {
+					worker.responseHistograms[op].addTo(response);
+				}
+			}
+			long[] intervalLag = subtract(lag, prevLag);
+			long[] intervalResponse = subtract(response, prevResponse);
+			prevLag = lag;
+			prevResponse = response;
+			long[] sizes = getMapSizes();
+			writeLine(String.format("%-8s %8d %9d %9d %8d %7d %9.0f %10.1f %10.1f %10d %12d",
+					timeFormat.format(new Date()), activeCount.get(), createdCount.get(), endedCount.get(),
+					rejectedCount.get(), missedCount.get(),
+					LatencyHistogram.getCount(intervalResponse) * 1e9d / intervalNanos,
+					LatencyHistogram.getValueAtPercentile(intervalLag, 99) / 1e6d,
+					LatencyHistogram.getValueAtPercentile(intervalResponse, 99) / 1e6d, sizes[0], sizes[1]));
+		}
+		isRunning = false;
+		arrivalThread.interrupt();
+		for (Worker worker : workers) {
+			worker.interrupt();
+		}
+
+		writeLine();
+		writeLine("Response time (msec), measured from the scheduled time:");
+		writeLine(String.format("   %-9s %10s %10s %10s %10s %10s %10s", "Operation", "Count", "p50", "p90", "p99",
+				"p99.9", "Max"));
+		for (int op = -1; op < OP_NAMES.length; op++) {
+			long[] snapshot = snapshot(op);
+			if (LatencyHistogram.getCount(snapshot) == 0) {
+				continue;
+			}
+			writeLine(String.format("   %-9s %10d %10.2f %10.2f %10.2f %10.2f %10.2f", op < 0 ? "(lag)" : OP_NAMES[op],
+					LatencyHistogram.getCount(snapshot), LatencyHistogram.getValueAtPercentile(snapshot, 50) / 1e6d,
+					LatencyHistogram.getValueAtPercentile(snapshot, 90) / 1e6d,
+					LatencyHistogram.getValueAtPercentile(snapshot, 99) / 1e6d,
+					LatencyHistogram.getValueAtPercentile(snapshot, 99.9) / 1e6d,
+					LatencyHistogram.getMax(snapshot) / 1e6d));
+		}
+		writeLine("   Sessions created: " + createdCount.get() + ", rejected: " + rejectedCount.get()
+				+ ", missed gets: " + missedCount.get() + ", errors: " + errorCount.get());
+
+		// Expiration drain
+		if (workload.drainSec > 0) {
+			writeLine();
+			writeLine("Load stopped. Draining expirations for up to " + workload.drainSec + " sec...");
+			writeLine(String.format("%-8s %10s %12s", "Time", "Primary", "Relevant"));
+			long drainEndNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(workload.drainSec);
+			while (true) {
+				long[] sizes = getMapSizes();
+				writeLine(String.format("%-8s %10d %12d", timeFormat.format(new Date()), sizes[0], sizes[1]));
+				if (sizes[0] + sizes[1] == 0 || System.nanoTime() >= drainEndNanos) {
+					break;
+				}
+				LockSupport.parkNanos(Math.min(intervalNanos, drainEndNanos - System.nanoTime()));
+			}
+		}
+	}
+
+	private static long[] subtract(long[] snapshot, long[] prevSnapshot) {
+		long[] diff = new long[snapshot.length];
+		for (int i = 0; i < snapshot.length; i++) {
+			diff[i] = snapshot[i] - prevSnapshot[i];
+		}
+		return diff;
+	}
+
+	void shutdown() {
+		hzInstance.shutdown();
+	}
+
+	private static void usage() {
+		String executableName = System.getProperty(PROPERTY_executableName,
+				SessionWorkloadGenerator.class.getName());
+		writeLine();
+		writeLine("NAME");
+		writeLine("   " + executableName
+				+ " - Run a session workload with Zipfian activity and lifetime distributions for soak testing the session expiration plugins");
+		writeLine();
+		writeLine("SYNOPSIS");
+		writeLine("   " + executableName + " [-workload workload_file] [-duration seconds] [-rate sessions_per_sec]");
+		writeLine("               [-threads count] [-seed seed] [-?]");
+		writeLine();
+		writeLine("DESCRIPTION");
+		writeLine("   Creates sessions at Poisson arrival times and touches each session a number of times");
+		writeLine("   drawn from the configured distribution, typically Zipfian, so that most sessions are short");
+		writeLine("   and a few are long and chatty. A touch is a primary map set, which resets the idle timeout");
+		writeLine("   and fires an 'updated' event, a primary map get or a relevant map write. After its last touch,");
+		writeLine("   a session is left to expire. The operations are run on an open-loop schedule and their");
+		writeLine("   response times are measured from the scheduled time.");
+		writeLine();
+		writeLine("   A report line is written every reporting interval. 'Missed' is the number of gets that");
+		writeLine("   found the session expired while it was still active, i.e., its think time exceeded the");
+		writeLine("   primary map's max idle time. After the load stops, the map sizes are reported until the");
+		writeLine("   maps are empty or the drain time elapses. Relevant entries that outlive their primary");
+		writeLine("   entries by more than the max idle time are the expiration service's backlog.");
+		writeLine();
+		writeLine("OPTIONS");
+		writeLine("   -workload workload_file");
+		writeLine("             Workload YAML file. See etc/session-workload.yaml for all the settings.");
+		writeLine("             Default: etc/session-workload.yaml");
+		writeLine();
+		writeLine("   -duration seconds");
+		writeLine("             Overrides the workload's 'duration-seconds'.");
+		writeLine();
+		writeLine("   -rate sessions_per_sec");
+		writeLine("             Overrides the workload's 'arrival-rate'.");
+		writeLine();
+		writeLine("   -threads count");
+		writeLine("             Overrides the workload's 'threads'.");
+		writeLine();
+		writeLine("   -seed seed");
+		writeLine("             Random seed for a repeatable sequence of sessions and operations. Default: random");
+		writeLine();
+		writeLine("EXAMPLES");
+		writeLine("   # Run the workload in etc/session-workload.yaml");
+		writeLine("   ./" + executableName);
+		writeLine();
+		writeLine("   # Run it for an hour at 500 sessions per second");
+		writeLine("   ./" + executableName + " -duration 3600 -rate 500");
+		writeLine();
+		writeLine("NOTES");
+		writeLine("   - Merge events are fired by a split-brain heal, which a client cannot cause. To exercise");
+		writeLine("     merges, run the workload while partitioning and healing the cluster.");
+		writeLine();
+	}
+
+	private static void writeLine() {
+		System.out.println();
+	}
+
+	private static void writeLine(String line) {
+		System.out.println(line);
+	}
+
+	private static long parseLong(String name, String value) {
+		try {
+			return Long.parseLong(value);
+		} catch (Exception ex) {
+			System.err.println("ERROR: Invalid " + name + " [" + value + "]. Command aborted.");
+			System.exit(1);
+			return 0;
+		}
+	}
+
+	public static void main(String[] args) {
+		String workloadFile = "etc/session-workload.yaml";
+		long durationSec = -1;
+		long rate = -1;
+		long threadCount = -1;
+		long seed = 0;
+		String arg;
+		for (int i = 0; i < args.length; i++) {
+			arg = args[i];
+			if (arg.equalsIgnoreCase("-?")) {
+				usage();
+				System.exit(0);
+			} else if (arg.equals("-workload") && i < args.length - 1) {
+				workloadFile = args[++i].trim();
+			} else if (arg.equals("-duration") && i < args.length - 1) {
+				durationSec = parseLong("duration", args[++i].trim());
+			} else if (arg.equals("-rate") && i < args.length - 1) {
+				rate = parseLong("rate", args[++i].trim());
+			} else if (arg.equals("-threads") && i < args.length - 1) {
+				threadCount = parseLong("threads", args[++i].trim());
+			} else if (arg.equals("-seed") && i < args.length - 1) {
+				seed = parseLong("seed", args[++i].trim());
+			}
+		}
+
+		SessionWorkload workload = null;
+		try {
+			workload = SessionWorkload.load(workloadFile);
+			if (durationSec > 0) {
+				workload.durationSec = durationSec;
+			}
+			if (rate > 0) {
+				workload.arrivalRate = rate;
+			}
+			if (threadCount > 0) {
+				workload.threadCount = (int) threadCount;
+			}
+		} catch (Exception ex) {
+			System.err.println("ERROR: Invalid workload file [" + workloadFile + "]. " + ex.getMessage()
+					+ " Command aborted.");
+			System.exit(2);
+		}
+		writeLine("Workload: " + workloadFile);
+		writeLine("   " + workload);
+		writeLine();
+
+		SessionWorkloadGenerator generator = new SessionWorkloadGenerator(workload);
+		generator.run(seed);
+		generator.shutdown();
+	}
+}
@@ -0,0 +1,160 @@
+package org.hazelcast.addon.cluster.expiration.test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.Set;
+
+import org.hazelcast.addon.cluster.expiration.PrefixRangePredicate;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.IndexConfig;
+import com.hazelcast.config.IndexType;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
+
+/**
+ * {@linkplain StringKeyRangeBenchmark} compares the ORed LIKE predicates built
+ * for session ID prefixed STRING keys against {@linkplain PrefixRangePredicate}
+ * evaluated with a SORTED index on "__key". It starts a single embedded member,
+ * ingests the keys into two maps, one without and one with the index, and
+ * times the local key set queries for random session batches.
+ * <p>
+ * The default 10,000,000 keys require a large heap, e.g., -Xmx8g.
+ *
+ * @author dpark
+ *
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class StringKeyRangeBenchmark {
+
+	public final static String PROPERTY_executableName = "executable.name";
+
+	private static void writeLine() {
+		System.out.println();
+	}
+
+	private static void writeLine(String line) {
+		System.out.println(line);
+	}
+
+	private static void usage() {
+		String executableName = System.getProperty(PROPERTY_executableName, StringKeyRangeBenchmark.class.getName());
+		writeLine();
+		writeLine("NAME");
+		writeLine("   " + executableName
+				+ " - Benchmark LIKE predicates against SORTED index range predicates for STRING keys");
+		writeLine();
+		writeLine("SYNOPSIS");
+		writeLine("   " + executableName + " [-count count] [-keys keys_per_session] [-batch batch_size]");
+		writeLine("               [-iterations iterations] [-?]");
+		writeLine();
+		writeLine("OPTIONS");
+		writeLine("   -count count");
+		writeLine("             Total number of keys per map. Default: 10000000");
+		writeLine();
+		writeLine("   -keys keys_per_session");
+		writeLine("             Number of keys per session. Default: 10");
+		writeLine();
+		writeLine("   -batch batch_size");
+		writeLine("             Number of sessions per predicate, i.e., queue drain size. Default: 100");
+		writeLine();
+		writeLine("   -iterations iterations");
+		writeLine("             Number of timed queries per predicate type. Default: 20");
+		writeLine();
+	}
+
+	private static int parseInt(String name, String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (Exception ex) {
+			System.err.println("ERROR: Invalid " + name + " [" + value + "]. Command aborted.");
+			System.exit(1);
+			return 0;
+		}
+	}
+
+	public static void main(String[] args) {
+		int count = 10_000_000;
+		int keysPerSession = 10;
+		int batchSize = 100;
+		int iterations = 20;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equalsIgnoreCase("-?")) {
+				usage();
+				System.exit(0);
+			} else if (arg.equals("-count") && i < args.length - 1) {
+				count = parseInt("count", args[++i].trim());
+			} else if (arg.equals("-keys") && i < args.length - 1) {
+				keysPerSession = parseInt("keys", args[++i].trim());
+			} else if (arg.equals("-batch") && i < args.length - 1) {
+				batchSize = parseInt("batch", args[++i].trim());
+			} else if (arg.equals("-iterations") && i < args.length - 1) {
+				iterations = parseInt("iterations", args[++i].trim());
+			}
+		}
+
+		Config config = new Config();
+		config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+		config.getMapConfig("benchmark_range").addIndexConfig(new IndexConfig(IndexType.SORTED, "__key"));
+		HazelcastInstance hz = Hazelcast.newHazelcastInstance(config);
+		try {
+			IMap<String, byte[]> likeMap = hz.getMap("benchmark_like");
+			IMap<String, byte[]> rangeMap = hz.getMap("benchmark_range");
+			int sessionCount = Math.max(1, count / keysPerSession);
+			byte[] value = new byte[16];
+			long startTime = System.currentTimeMillis();
+			for (int i = 0; i < count; i++) {
+				String key = "s" + (i % sessionCount) + "@a" + (i / sessionCount);
+				likeMap.set(key, value);
+				rangeMap.set(key, value);
+				if ((i + 1) % 1_000_000 == 0) {
+					writeLine("Ingested " + (i + 1) + " keys...");
+				}
+			}
+			writeLine("Ingested " + count + " keys into 2 maps: " + sessionCount + " sessions, timeTook(msec)="
+					+ (System.currentTimeMillis() - startTime));
+
+			Random random = new Random(1);
+			long likeTime = 0;
+			long rangeTime = 0;
+			int likeHits = 0;
+			int rangeHits = 0;
+			for (int i = 0; i < iterations; i++) {
+				ArrayList<String> prefixList = new ArrayList<String>(batchSize);
+				Predicate likePredicate = null;
+				for (int j = 0; j < batchSize; j++) {
+					String prefix = "s" + random.nextInt(sessionCount) + "@";
+					prefixList.add(prefix);
+					Predicate innerPredicate = Predicates.like("__key", prefix + "%");
+					likePredicate = likePredicate == null ? innerPredicate : Predicates.or(likePredicate, innerPredicate);
+				}
+				Predicate rangePredicate = new PrefixRangePredicate("__key", prefixList);
+
+				long time = System.nanoTime();
+				Set likeKeys = likeMap.localKeySet(likePredicate);
+				likeTime += System.nanoTime() - time;
+				likeHits += likeKeys.size();
+
+				time = System.nanoTime();
+				Set rangeKeys = rangeMap.localKeySet(rangePredicate);
+				rangeTime += System.nanoTime() - time;
+				rangeHits += rangeKeys.size();
+
+				if (likeKeys.equals(rangeKeys) == false) {
+					System.err.println("ERROR: Result mismatch: like=" + likeKeys.size() + ", range=" + rangeKeys.size());
+				}
+			}
+			writeLine();
+			writeLine("count=" + count + ", keysPerSession=" + keysPerSession + ", batch=" + batchSize
+					+ ", iterations=" + iterations);
+			writeLine(String.format("LIKE:  avg(msec)=%.3f, keys=%d", likeTime / 1_000_000d / iterations, likeHits));
+			writeLine(String.format("RANGE: avg(msec)=%.3f, keys=%d", rangeTime / 1_000_000d / iterations, rangeHits));
+		} finally {
+			hz.shutdown();
+		}
+	}
+}
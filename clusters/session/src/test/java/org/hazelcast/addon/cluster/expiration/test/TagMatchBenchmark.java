@@ -0,0 +1,105 @@
+package org.hazelcast.addon.cluster.expiration.test;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hazelcast.addon.cluster.expiration.SessionExpirationServiceConfiguration;
+import org.hazelcast.addon.cluster.expiration.SessionMapUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@linkplain TagMatchBenchmark} times the lookup of a primary map name in the
+ * configured tagged primary map names with
+ * {@linkplain SessionMapUtil#getTag(String, String)}, as done for each map name
+ * that has not been seen before, e.g., on the first expiration event of a map.
+ * The tagged map names are of the form "smk&lt;n&gt;_%TAG%". The map name matches
+ * the last one or none, i.e., the worst cases. The tokenized variant,
+ * {@linkplain SessionMapUtil#getTag(String, String[])}, splits the tagged map
+ * names once.
+ * <p>
+ * Run with
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="TagMatchBenchmark"
+ * </pre>
+ *
+ * @author dpark
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagMatchBenchmark {
+
+	@Param({ "100", "10000" })
+	private int tagCount;
+
+	private String[] taggedMapNames;
+	private String[][] taggedMapNameTokens;
+	private String lastMapName;
+	private String missMapName;
+
+	@Setup
+	public void setup() {
+		taggedMapNames = new String[tagCount];
+		taggedMapNameTokens = new String[tagCount][];
+		for (int i = 0; i < tagCount; i++) {
+			taggedMapNames[i] = "smk" + i + "_" + SessionExpirationServiceConfiguration.NAME_TAG;
+			taggedMapNameTokens[i] = taggedMapNames[i].split(SessionExpirationServiceConfiguration.NAME_TAG);
+		}
+		lastMapName = "smk" + (tagCount - 1) + "_EN01";
+		missMapName = "mkx_EN01";
+	}
+
+	private String find(String mapName) {
+		for (String taggedMapName : taggedMapNames) {
+			String tag = SessionMapUtil.getTag(mapName, taggedMapName);
+			if (tag != null) {
+				return tag;
+			}
+		}
+		return null;
+	}
+
+	private String findTokens(String mapName) {
+		for (String[] tokens : taggedMapNameTokens) {
+			String tag = SessionMapUtil.getTag(mapName, tokens);
+			if (tag != null) {
+				return tag;
+			}
+		}
+		return null;
+	}
+
+	@Benchmark
+	public String getTagLast() {
+		return find(lastMapName);
+	}
+
+	@Benchmark
+	public String getTagMiss() {
+		return find(missMapName);
+	}
+
+	@Benchmark
+	public String getTagTokensLast() {
+		return findTokens(lastMapName);
+	}
+
+	@Benchmark
+	public String getTagTokensMiss() {
+		return findTokens(missMapName);
+	}
+}
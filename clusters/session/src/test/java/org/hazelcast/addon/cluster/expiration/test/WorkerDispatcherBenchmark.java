@@ -0,0 +1,141 @@
+package org.hazelcast.addon.cluster.expiration.test;
+
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hazelcast.addon.cluster.expiration.DispatchMode;
+import org.hazelcast.addon.cluster.expiration.SessionExpirationServiceConfiguration;
+import org.hazelcast.addon.cluster.expiration.WorkerDispatcher;
+import org.hazelcast.addon.cluster.expiration.WorkerQueueConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@linkplain WorkerDispatcherBenchmark} measures the throughput of handing
+ * expiration events from the Hazelcast event threads to the worker threads
+ * through {@linkplain WorkerDispatcher}. Each invocation offers
+ * {@value #EVENT_COUNT} events from the specified number of producer threads,
+ * which stand in for the event threads, and waits until
+ * {@value #WORKER_COUNT} worker threads have drained all of them in batches of
+ * {@value #DRAIN_SIZE}. The score is in events per second.
+ * <p>
+ * Run with
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="WorkerDispatcherBenchmark"
+ * </pre>
+ *
+ * @author dpark
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkerDispatcherBenchmark {
+
+	private final static int EVENT_COUNT = 65536;
+	private final static int WORKER_COUNT = 4;
+	private final static int DRAIN_SIZE = 100;
+
+	@Param({ "1", "4", "16", "64" })
+	private int producerCount;
+
+	@Param({ "LINKED", "RING_BUFFER" })
+	private String queueType;
+
+	@Param({ "LEAST_LOADED", "SESSION" })
+	private DispatchMode dispatchMode;
+
+	private WorkerDispatcher<String> dispatcher;
+	private String[] sessionIds;
+	private ExecutorService producerPool;
+	private Thread[] workers;
+	private final AtomicLong drainedCount = new AtomicLong();
+
+	@Setup
+	public void setup() {
+		Properties properties = new Properties();
+		properties.setProperty(SessionExpirationServiceConfiguration.PROPERTY_QUEUE_TYPE, queueType);
+		properties.setProperty(SessionExpirationServiceConfiguration.PROPERTY_QUEUE_CAPACITY,
+				Integer.toString(EVENT_COUNT));
+		dispatcher = new WorkerDispatcher<String>(null, dispatchMode, WORKER_COUNT,
+				SessionExpirationServiceConfiguration.DEFAULT_EXPIRATION_THREAD_STEAL_THRESHOLD,
+				new WorkerQueueConfig(properties, null, ""));
+		sessionIds = new String[EVENT_COUNT];
+		for (int i = 0; i < sessionIds.length; i++) {
+			sessionIds[i] = "session-" + i;
+		}
+		producerPool = Executors.newFixedThreadPool(producerCount);
+		workers = new Thread[WORKER_COUNT];
+		for (int i = 0; i < workers.length; i++) {
+			int queueIndex = i;
+			workers[i] = new Thread(() -> {
+				ArrayList<String> batch = new ArrayList<String>(DRAIN_SIZE);
+				try {
+					while (true) {
+						int count = dispatcher.drain(queueIndex, batch, DRAIN_SIZE);
+						batch.clear();
+						drainedCount.addAndGet(count);
+					}
+				} catch (InterruptedException ex) {
+					// Terminated
+				}
+			}, "worker-" + (i + 1));
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		producerPool.shutdownNow();
+		for (Thread worker : workers) {
+			worker.interrupt();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(EVENT_COUNT)
+	public long handoff() throws Exception {
+		long target = drainedCount.get() + EVENT_COUNT;
+		int eventsPerProducer = EVENT_COUNT / producerCount;
+		ArrayList<Future<?>> futureList = new ArrayList<Future<?>>(producerCount);
+		for (int p = 0; p < producerCount; p++) {
+			int start = p * eventsPerProducer;
+			int end = p == producerCount - 1 ? EVENT_COUNT : start + eventsPerProducer;
+			futureList.add(producerPool.submit(() -> {
+				for (int i = start; i < end; i++) {
+					String sessionId = sessionIds[i];
+					dispatcher.offer(dispatcher.getQueueIndex(sessionId), sessionId);
+				}
+			}));
+		}
+		for (Future<?> future : futureList) {
+			future.get();
+		}
+		long count;
+		while ((count = drainedCount.get()) < target) {
+			Thread.yield();
+		}
+		return count;
+	}
+}
@@ -0,0 +1,222 @@
+package org.hazelcast.addon.cluster.expiration.test.junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.hazelcast.addon.cluster.expiration.metadata.CompactSessionMetadata;
+import org.hazelcast.addon.cluster.expiration.metadata.ExpirationDataSerializableFactory;
+import org.hazelcast.addon.cluster.expiration.metadata.MapNameDictionary;
+import org.hazelcast.addon.cluster.expiration.metadata.SessionMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hazelcast.internal.nio.BufferObjectDataOutput;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.partition.PartitionAwareKey;
+import com.hazelcast.partition.strategy.DefaultPartitioningStrategy;
+
+public class CompactSessionMetadataTest {
+
+	private InternalSerializationService ss;
+
+	@Before
+	public void setUp() {
+		ss = new DefaultSerializationServiceBuilder()
+				.addDataSerializableFactory(ExpirationDataSerializableFactory.FACTORY_ID,
+						new ExpirationDataSerializableFactory())
+				.setPartitioningStrategy(new DefaultPartitioningStrategy()).build();
+		MapNameDictionary.getDictionary().setMapNames(new String[0]);
+	}
+
+	@After
+	public void tearDown() {
+		MapNameDictionary.getDictionary().setMapNames(new String[0]);
+		ss.dispose();
+	}
+
+	/**
+	 * Writes the specified object with its writeData() method and returns the
+	 * bytes.
+	 */
+	private byte[] write(SessionMetadata sm) throws IOException {
+		BufferObjectDataOutput out = ss.createObjectDataOutput();
+		sm.writeData(out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads the specified bytes with the readData() method of the specified
+	 * object and returns the object.
+	 */
+	private <T extends SessionMetadata> T read(T sm, byte[] bytes) throws IOException {
+		ObjectDataInput in = ss.createObjectDataInput(bytes);
+		sm.readData(in);
+		return sm;
+	}
+
+	/**
+	 * An empty object must read back empty.
+	 */
+	@Test
+	public void testEmpty() throws IOException {
+		CompactSessionMetadata sm = read(new CompactSessionMetadata(), write(new CompactSessionMetadata()));
+		assertEquals(0, sm.size());
+		assertEquals(0, sm.getMapCount());
+		assertEquals(new CompactSessionMetadata(), sm);
+	}
+
+	/**
+	 * A single key must read back with its map name. The key remains in the
+	 * serialized form and is deserialized on demand.
+	 */
+	@Test
+	public void testOneKey() throws IOException {
+		CompactSessionMetadata sm = new CompactSessionMetadata();
+		sm.addRelevantKey("mkm1_EN01", "session1@key1");
+
+		CompactSessionMetadata sm2 = read(new CompactSessionMetadata(), write(sm));
+		assertEquals(1, sm2.size());
+		assertEquals("mkm1_EN01", sm2.getMapName(0));
+		assertEquals("session1@key1", sm2.getRelevantKey(0));
+		assertTrue(sm2.getRawRelevantKey(0) instanceof Data);
+		assertEquals(ss.toData("session1@key1"), sm2.getRawRelevantKey(0));
+	}
+
+	/**
+	 * A key that is repeated in another map is written as a reference to the
+	 * first occurrence and must read back in both maps.
+	 */
+	@Test
+	public void testRepeatedKeys() throws IOException {
+		CompactSessionMetadata sm = new CompactSessionMetadata();
+		sm.addRelevantKey("mkm1_EN01", "session1@key1");
+		sm.addRelevantKey("mkm2_EN01", "session1@key1");
+		sm.addRelevantKey("mkm3_EN01", "session1@key1");
+		sm.addRelevantKey("mkm3_EN01", "session1@key2");
+
+		CompactSessionMetadata unique = new CompactSessionMetadata();
+		unique.addRelevantKey("mkm1_EN01", "session1@key1");
+		unique.addRelevantKey("mkm2_EN01", "session1@key2");
+		unique.addRelevantKey("mkm3_EN01", "session1@key3");
+		unique.addRelevantKey("mkm3_EN01", "session1@key4");
+		assertTrue(write(sm).length < write(unique).length);
+
+		CompactSessionMetadata sm2 = read(new CompactSessionMetadata(), write(sm));
+		assertEquals(4, sm2.size());
+		assertEquals(3, sm2.getMapCount());
+		assertEquals(Arrays.asList("session1@key1"), sm2.getRelevantKeys("mkm1_EN01"));
+		assertEquals(Arrays.asList("session1@key1"), sm2.getRelevantKeys("mkm2_EN01"));
+		assertEquals(new HashSet<Object>(Arrays.asList("session1@key1", "session1@key2")),
+				new HashSet<Object>(sm2.getRelevantKeys("mkm3_EN01")));
+	}
+
+	/**
+	 * Keys with and without a partition hash must read back to the same
+	 * serialized form, i.e., the partition hash is kept only if it was set.
+	 */
+	@Test
+	public void testPartitionHash() throws IOException {
+		PartitionAwareKey<String, String> partitionAwareKey = new PartitionAwareKey<String, String>("session1@key1",
+				"session1");
+		assertTrue(ss.toData(partitionAwareKey).hasPartitionHash());
+		assertFalse(ss.toData("session1@key2").hasPartitionHash());
+
+		CompactSessionMetadata sm = new CompactSessionMetadata();
+		sm.addRelevantKey("mkm1_EN01", partitionAwareKey);
+		sm.addRelevantKey("mkm1_EN01", "session1@key2");
+
+		CompactSessionMetadata sm2 = read(new CompactSessionMetadata(), write(sm));
+		assertEquals(2, sm2.size());
+		Data data1 = (Data) sm2.getRawRelevantKey(0);
+		Data data2 = (Data) sm2.getRawRelevantKey(1);
+		assertTrue(data1.hasPartitionHash());
+		assertFalse(data2.hasPartitionHash());
+		assertEquals(ss.toData(partitionAwareKey).getPartitionHash(), data1.getPartitionHash());
+		assertEquals(ss.toData(partitionAwareKey), data1);
+		assertEquals(ss.toData("session1@key2"), data2);
+		assertEquals(partitionAwareKey, sm2.getRelevantKey(0));
+		assertEquals("session1@key2", sm2.getRelevantKey(1));
+	}
+
+	/**
+	 * Map names in the dictionary are written as IDs and the others are written
+	 * inline. Both must read back, and the IDs must make the object smaller.
+	 */
+	@Test
+	public void testDictionaryIdsAndInlineNames() throws IOException {
+		CompactSessionMetadata sm = new CompactSessionMetadata();
+		sm.addRelevantKey("mkm1_EN01", "session1@key1");
+		sm.addRelevantKey("mkm2_EN01", "session1@key2");
+		sm.addRelevantKey("other_EN01", "session1@key3");
+		byte[] inlineBytes = write(sm);
+
+		MapNameDictionary.getDictionary().setMapNames("mkm1_EN01, mkm2_EN01");
+		byte[] idBytes = write(sm);
+		assertTrue(idBytes.length < inlineBytes.length);
+
+		for (byte[] bytes : new byte[][] { idBytes, inlineBytes }) {
+			CompactSessionMetadata sm2 = read(new CompactSessionMetadata(), bytes);
+			assertEquals(3, sm2.getMapCount());
+			assertEquals(new HashSet<String>(Arrays.asList("mkm1_EN01", "mkm2_EN01", "other_EN01")),
+					sm2.getMapNameSet());
+			assertEquals("session1@key1", sm2.getRelevantKey("mkm1_EN01"));
+			assertEquals("session1@key2", sm2.getRelevantKey("mkm2_EN01"));
+			assertEquals("session1@key3", sm2.getRelevantKey("other_EN01"));
+		}
+	}
+
+	/**
+	 * Map name IDs written with a different dictionary must not be resolved.
+	 */
+	@Test
+	public void testFingerprintMismatch() throws IOException {
+		MapNameDictionary.getDictionary().setMapNames("mkm1_EN01,mkm2_EN01");
+		CompactSessionMetadata sm = new CompactSessionMetadata();
+		sm.addRelevantKey("mkm1_EN01", "session1@key1");
+		byte[] bytes = write(sm);
+
+		MapNameDictionary.getDictionary().setMapNames("mkm2_EN01,mkm1_EN01");
+		try {
+			read(new CompactSessionMetadata(), bytes);
+			fail("IOException expected");
+		} catch (IOException ex) {
+			// expected
+		}
+	}
+
+	/**
+	 * Both formats must round trip through the serialization service with their
+	 * own class IDs.
+	 */
+	@Test
+	public void testSerializationService() {
+		MapNameDictionary.getDictionary().setMapNames("mkm1_EN01");
+		SessionMetadata sm = new SessionMetadata();
+		sm.addRelevantKey("mkm1_EN01", "session1@key1");
+		sm.addRelevantKey("mkm2_EN01", "session1@key2");
+		CompactSessionMetadata csm = new CompactSessionMetadata();
+		csm.addRelevantKey("mkm1_EN01", "session1@key1");
+		csm.addRelevantKey("mkm2_EN01", "session1@key2");
+
+		Object sm2 = ss.toObject(ss.toData(sm));
+		assertEquals(SessionMetadata.class, sm2.getClass());
+		assertEquals(sm, sm2);
+
+		Object csm2 = ss.toObject(ss.toData(csm));
+		assertEquals(CompactSessionMetadata.class, csm2.getClass());
+		CompactSessionMetadata csm3 = (CompactSessionMetadata) csm2;
+		assertEquals("session1@key1", csm3.getRelevantKey("mkm1_EN01"));
+		assertEquals("session1@key2", csm3.getRelevantKey("mkm2_EN01"));
+		assertEquals(csm3, ss.toObject(ss.toData(csm3)));
+	}
+}
@@ -0,0 +1,63 @@
+package org.hazelcast.addon.cluster.expiration.test.junit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.hazelcast.addon.cluster.expiration.metadata.MapNameDictionary;
+import org.junit.After;
+import org.junit.Test;
+
+public class MapNameDictionaryTest {
+
+	private final MapNameDictionary dictionary = MapNameDictionary.getDictionary();
+
+	@After
+	public void tearDown() {
+		dictionary.setMapNames(new String[0]);
+	}
+
+	/**
+	 * The comma separated list is trimmed, empty names are skipped and the ID of
+	 * each name is its position.
+	 */
+	@Test
+	public void testSetMapNames() {
+		dictionary.setMapNames(" mkm1_EN01, ,mkm2_EN01,, mkm3_EN01 ");
+		assertArrayEquals(new String[] { "mkm1_EN01", "mkm2_EN01", "mkm3_EN01" }, dictionary.getMapNames());
+		assertEquals(0, dictionary.getId("mkm1_EN01"));
+		assertEquals(1, dictionary.getId("mkm2_EN01"));
+		assertEquals(2, dictionary.getId("mkm3_EN01"));
+		assertEquals(-1, dictionary.getId("other_EN01"));
+	}
+
+	/**
+	 * A null or empty list clears the dictionary.
+	 */
+	@Test
+	public void testClear() {
+		dictionary.setMapNames("mkm1_EN01");
+		dictionary.setMapNames((String) null);
+		assertEquals(0, dictionary.getMapNames().length);
+		assertEquals(-1, dictionary.getId("mkm1_EN01"));
+
+		dictionary.setMapNames("mkm1_EN01");
+		dictionary.setMapNames("");
+		assertEquals(0, dictionary.getMapNames().length);
+	}
+
+	/**
+	 * The fingerprint depends on the names and their order only.
+	 */
+	@Test
+	public void testFingerprint() {
+		dictionary.setMapNames("mkm1_EN01,mkm2_EN01");
+		int fingerprint = dictionary.getFingerprint();
+		dictionary.setMapNames(new String[] { "mkm1_EN01", "mkm2_EN01" });
+		assertEquals(fingerprint, dictionary.getFingerprint());
+		dictionary.setMapNames("mkm2_EN01,mkm1_EN01");
+		assertNotEquals(fingerprint, dictionary.getFingerprint());
+		dictionary.setMapNames("mkm1_EN01,mkm2_EN01,mkm3_EN01");
+		assertNotEquals(fingerprint, dictionary.getFingerprint());
+	}
+}
@@ -0,0 +1,127 @@
+package org.hazelcast.addon.cluster.expiration.test.junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import org.hazelcast.addon.cluster.EntryRemoveProcessor;
+import org.hazelcast.addon.cluster.MapUtil;
+import org.hazelcast.addon.cluster.expiration.metadata.CompactSessionMetadata;
+import org.hazelcast.addon.cluster.expiration.metadata.ExpirationDataSerializableFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.PartitioningStrategyConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.map.IMap;
+import com.hazelcast.partition.strategy.StringAndPartitionAwarePartitioningStrategy;
+import com.hazelcast.spi.impl.SerializationServiceSupport;
+
+/**
+ * {@linkplain MapUtilTest} tests that the {@linkplain MapUtil} methods route
+ * the keys of {@linkplain CompactSessionMetadata}, which are serialized without
+ * a partitioning strategy, to the partitions of a map with a partitioning
+ * strategy.
+ */
+public class MapUtilTest {
+
+	private final static int SESSION_COUNT = 10;
+	private final static int ATTR_COUNT = 3;
+
+	private static HazelcastInstance hz;
+
+	@BeforeClass
+	public static void setUpClass() {
+		Config config = new Config();
+		config.setClusterName("MapUtilTest");
+		config.setProperty("hazelcast.phone.home.enabled", "false");
+		config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+		config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(false);
+		config.getSerializationConfig().addDataSerializableFactory(ExpirationDataSerializableFactory.FACTORY_ID,
+				new ExpirationDataSerializableFactory());
+		// Co-locates the relevant entries of each session
+		config.getMapConfig("mksp_*").setPartitioningStrategyConfig(
+				new PartitioningStrategyConfig(StringAndPartitionAwarePartitioningStrategy.class.getName()));
+		hz = Hazelcast.newHazelcastInstance(config);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (hz != null) {
+			hz.shutdown();
+		}
+	}
+
+	/**
+	 * Puts the relevant entries of all the sessions into the specified map and
+	 * returns their keys as read from {@linkplain CompactSessionMetadata}, i.e.,
+	 * in the serialized form without the partition hash.
+	 */
+	private static List<Object> putCompactKeys(IMap<String, String> map) {
+		CompactSessionMetadata sm = new CompactSessionMetadata();
+		for (int i = 0; i < SESSION_COUNT; i++) {
+			for (int j = 0; j < ATTR_COUNT; j++) {
+				String key = "attr" + j + "@session" + i;
+				map.set(key, "value");
+				sm.addRelevantKey(map.getName(), key);
+			}
+		}
+		SerializationService ss = ((SerializationServiceSupport) hz).getSerializationService();
+		CompactSessionMetadata sm2 = ss.toObject(ss.toData(sm));
+		List<Object> keyList = new ArrayList<Object>();
+		for (int i = 0; i < sm2.size(); i++) {
+			Object key = sm2.getRawRelevantKey(i);
+			assertTrue(key instanceof Data);
+			assertFalse(((Data) key).hasPartitionHash());
+			keyList.add(key);
+		}
+		return keyList;
+	}
+
+	/**
+	 * The compact keys are re-serialized with the map's partitioning strategy and
+	 * deleted from their partitions.
+	 */
+	@Test
+	public void testExecuteOnPartitionKeys() {
+		IMap<String, String> map = hz.getMap("mksp_testExecuteOnPartitionKeys");
+		List<Object> keyList = putCompactKeys(map);
+		MapUtil.executeOnPartitionKeys(map, keyList, new EntryRemoveProcessor());
+		assertEquals(0, map.size());
+	}
+
+	/**
+	 * Same as {@linkplain #testExecuteOnPartitionKeys()} but asynchronously.
+	 */
+	@Test
+	public void testExecuteOnKeysAsync() {
+		IMap<String, String> map = hz.getMap("mksp_testExecuteOnKeysAsync");
+		List<Object> keyList = putCompactKeys(map);
+		List<Object> failedKeys = MapUtil
+				.executeOnKeysAsync(map, keyList, new EntryRemoveProcessor(), new Semaphore(2)).join();
+		assertEquals(0, failedKeys.size());
+		assertEquals(0, map.size());
+	}
+
+	/**
+	 * Each compact key is deleted from its partition.
+	 */
+	@Test
+	public void testDeleteAsync() {
+		IMap<String, String> map = hz.getMap("mksp_testDeleteAsync");
+		List<Object> keyList = putCompactKeys(map);
+		for (Object key : keyList) {
+			MapUtil.deleteAsync(map, key).toCompletableFuture().join();
+		}
+		assertEquals(0, map.size());
+	}
+}
@@ -0,0 +1,126 @@
+package org.hazelcast.addon.cluster.expiration.test.junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.hazelcast.addon.cluster.expiration.ResetCoalescer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResetCoalescerTest {
+
+	private final static long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(300);
+	private final static long TIMEOUT_MILLIS = 5000;
+
+	private BlockingQueue<String> sinkQueue;
+	private ResetCoalescer<String, String> coalescer;
+
+	@Before
+	public void setUp() {
+		sinkQueue = new LinkedBlockingQueue<String>();
+		coalescer = new ResetCoalescer<String, String>(null, "ResetCoalescerTest",
+				(key, element) -> sinkQueue.add(key + ":" + element));
+	}
+
+	@After
+	public void tearDown() {
+		coalescer.terminate();
+	}
+
+	/**
+	 * Waits until the coalescer has discarded the state of all the sessions.
+	 */
+	private void waitForEmpty() throws InterruptedException {
+		long timeout = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (coalescer.size() > 0 && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, coalescer.size());
+	}
+
+	/**
+	 * The first reset of a window is passed immediately and the resets that
+	 * follow within the window are passed as a single trailing reset with the
+	 * latest element when the window ends.
+	 */
+	@Test
+	public void testLeadingAndTrailing() throws InterruptedException {
+		long startNanos = System.nanoTime();
+		coalescer.offer("session1", "e1", WINDOW_NANOS);
+		assertEquals("session1:e1", sinkQueue.poll());
+
+		coalescer.offer("session1", "e2", WINDOW_NANOS);
+		coalescer.offer("session1", "e3", WINDOW_NANOS);
+		coalescer.offer("session1", "e4", WINDOW_NANOS);
+		assertNull(sinkQueue.poll());
+		assertEquals(1, coalescer.getSuppressedCount());
+		assertEquals(2, coalescer.getCoalescedCount());
+
+		assertEquals("session1:e4", sinkQueue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		assertTrue(System.nanoTime() - startNanos >= WINDOW_NANOS);
+
+		// The trailing reset starts a new window. It ends without events.
+		waitForEmpty();
+		assertNull(sinkQueue.poll());
+	}
+
+	/**
+	 * A window without any further events ends with no trailing reset.
+	 */
+	@Test
+	public void testLeadingOnly() throws InterruptedException {
+		coalescer.offer("session1", "e1", WINDOW_NANOS);
+		assertEquals("session1:e1", sinkQueue.poll());
+		assertEquals(1, coalescer.size());
+
+		waitForEmpty();
+		assertNull(sinkQueue.poll());
+		assertEquals(0, coalescer.getSuppressedCount());
+		assertEquals(0, coalescer.getCoalescedCount());
+	}
+
+	/**
+	 * A session is readmitted immediately after its window has ended.
+	 */
+	@Test
+	public void testReadmission() throws InterruptedException {
+		coalescer.offer("session1", "e1", WINDOW_NANOS);
+		assertEquals("session1:e1", sinkQueue.poll());
+		waitForEmpty();
+
+		coalescer.offer("session1", "e2", WINDOW_NANOS);
+		assertEquals("session1:e2", sinkQueue.poll());
+		assertEquals(0, coalescer.getSuppressedCount());
+
+		// Readmitted after the trailing reset's window as well
+		coalescer.offer("session1", "e3", WINDOW_NANOS);
+		assertEquals("session1:e3", sinkQueue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		waitForEmpty();
+		coalescer.offer("session1", "e4", WINDOW_NANOS);
+		assertEquals("session1:e4", sinkQueue.poll());
+	}
+
+	/**
+	 * Each session has its own window.
+	 */
+	@Test
+	public void testPerSession() throws InterruptedException {
+		coalescer.offer("session1", "e1", WINDOW_NANOS);
+		coalescer.offer("session2", "e1", WINDOW_NANOS);
+		coalescer.offer("session1", "e2", WINDOW_NANOS);
+		assertEquals("session1:e1", sinkQueue.poll());
+		assertEquals("session2:e1", sinkQueue.poll());
+		assertNull(sinkQueue.poll());
+		assertEquals(2, coalescer.size());
+
+		assertEquals("session1:e2", sinkQueue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		waitForEmpty();
+		assertNull(sinkQueue.poll());
+	}
+}
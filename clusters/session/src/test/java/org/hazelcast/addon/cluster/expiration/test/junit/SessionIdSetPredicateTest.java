@@ -0,0 +1,166 @@
+package org.hazelcast.addon.cluster.expiration.test.junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.hazelcast.addon.cluster.expiration.ISessionIdPredicate;
+import org.hazelcast.addon.cluster.expiration.KeyType;
+import org.hazelcast.addon.cluster.expiration.SessionIdSetPredicate;
+import org.hazelcast.addon.cluster.expiration.metadata.ExpirationDataSerializableFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.partition.PartitionAwareKey;
+import com.hazelcast.query.Predicate;
+
+public class SessionIdSetPredicateTest {
+
+	private InternalSerializationService ss;
+
+	/**
+	 * Extracts the session ID from the keys that start with "custom:".
+	 */
+	public static class CustomSessionIdPredicate implements ISessionIdPredicate {
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public Predicate getPredicate(String primaryMapName, Object key) {
+			return null;
+		}
+
+		@Override
+		public String getSessionId(Object key) {
+			String keyStr = key.toString();
+			return keyStr.startsWith("custom:") ? keyStr.substring(7) : null;
+		}
+	}
+
+	@Before
+	public void setUp() {
+		ss = new DefaultSerializationServiceBuilder()
+				.addDataSerializableFactory(ExpirationDataSerializableFactory.FACTORY_ID,
+						new ExpirationDataSerializableFactory())
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		ss.dispose();
+	}
+
+	private static Map.Entry<Object, Object> entry(Object key) {
+		return new AbstractMap.SimpleEntry<Object, Object>(key, "value");
+	}
+
+	private static SessionIdSetPredicate stringPredicate(boolean isPostfix, List<String> sessionIds) {
+		return new SessionIdSetPredicate(KeyType.STRING, null, "@", isPostfix, null, null, sessionIds);
+	}
+
+	/**
+	 * The session IDs are looked up by binary search regardless of the order they
+	 * were given in. Duplicates are removed.
+	 */
+	@Test
+	public void testBinarySearch() {
+		List<String> sessionIds = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			sessionIds.add("session" + i);
+		}
+		sessionIds.add("session50");
+		Collections.shuffle(sessionIds);
+		SessionIdSetPredicate predicate = stringPredicate(false, sessionIds);
+		assertEquals(100, predicate.getSessionIdCount());
+
+		for (int i = 0; i < 100; i++) {
+			assertTrue(predicate.apply(entry("session" + i + "@key1")));
+			assertTrue(predicate.apply(entry("session" + i)));
+		}
+		assertFalse(predicate.apply(entry("session100@key1")));
+		assertFalse(predicate.apply(entry("session@key1")));
+		assertFalse(predicate.apply(entry("@key1")));
+		assertFalse(predicate.apply(entry("key1@session1")));
+	}
+
+	/**
+	 * The session ID is the last token of the key if postfix.
+	 */
+	@Test
+	public void testPostfix() {
+		SessionIdSetPredicate predicate = stringPredicate(true, Arrays.asList("session2", "session1"));
+		assertTrue(predicate.apply(entry("key1@session1")));
+		assertTrue(predicate.apply(entry("key1@key2@session2")));
+		assertFalse(predicate.apply(entry("session1@key1")));
+		assertFalse(predicate.apply(entry("key1@")));
+	}
+
+	/**
+	 * An empty set matches nothing.
+	 */
+	@Test
+	public void testEmpty() {
+		SessionIdSetPredicate predicate = stringPredicate(false, Collections.<String>emptyList());
+		assertEquals(0, predicate.getSessionIdCount());
+		assertFalse(predicate.apply(entry("session1@key1")));
+	}
+
+	/**
+	 * The session ID is the partition key of {@linkplain KeyType#PARTITION_AWARE}
+	 * keys. Other keys do not match.
+	 */
+	@Test
+	public void testPartitionAware() {
+		SessionIdSetPredicate predicate = new SessionIdSetPredicate(KeyType.PARTITION_AWARE, null, null, false, null,
+				null, Arrays.asList("session1"));
+		assertTrue(predicate.apply(entry(new PartitionAwareKey<String, String>("key1", "session1"))));
+		assertFalse(predicate.apply(entry(new PartitionAwareKey<String, String>("key1", "session2"))));
+		assertFalse(predicate.apply(entry("session1")));
+	}
+
+	/**
+	 * The predicate must round trip through the serialization service with its
+	 * class ID and match the same keys after deserialization.
+	 */
+	@Test
+	public void testRoundTrip() {
+		SessionIdSetPredicate predicate = new SessionIdSetPredicate(KeyType.STRING, null, "@", true, null,
+				"__key.sessionId", Arrays.asList("session3", "session1", "session2"));
+		Data data = ss.toData(predicate);
+		SessionIdSetPredicate predicate2 = ss.toObject(data);
+
+		assertEquals(ExpirationDataSerializableFactory.SESSION_ID_SET_PREDICATE, predicate2.getClassId());
+		assertEquals(3, predicate2.getSessionIdCount());
+		assertEquals(predicate.toString(), predicate2.toString());
+		assertTrue(predicate2.apply(entry("key1@session1")));
+		assertTrue(predicate2.apply(entry("key1@session3")));
+		assertFalse(predicate2.apply(entry("session1@key1")));
+		assertEquals(data, ss.toData(predicate2));
+	}
+
+	/**
+	 * The custom session ID predicate is recreated from its class name after
+	 * deserialization.
+	 */
+	@Test
+	public void testCustomRoundTrip() {
+		SessionIdSetPredicate predicate = new SessionIdSetPredicate(KeyType.CUSTOM, null, null, false,
+				new CustomSessionIdPredicate(), null, Arrays.asList("session1"));
+		assertTrue(predicate.apply(entry("custom:session1")));
+
+		SessionIdSetPredicate predicate2 = ss.toObject(ss.toData(predicate));
+		assertTrue(predicate2.apply(entry("custom:session1")));
+		assertFalse(predicate2.apply(entry("custom:session2")));
+		assertFalse(predicate2.apply(entry("session1")));
+	}
+}
@@ -0,0 +1,229 @@
+package org.hazelcast.addon.cluster.expiration.test.junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import org.hazelcast.addon.cluster.EntryRemoveProcessor;
+import org.hazelcast.addon.cluster.MapUtil;
+import org.hazelcast.addon.cluster.expiration.SessionIndex;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.PartitioningStrategyConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.serialization.Data;
+import com.hazelcast.map.IMap;
+import com.hazelcast.partition.strategy.StringAndPartitionAwarePartitioningStrategy;
+
+public class SessionIndexTest {
+
+	private final static long WAIT_MILLIS = 5000;
+
+	// Includes the delay of the reconciliation that follows the migration
+	private final static long MIGRATION_WAIT_MILLIS = 30000;
+
+	// Session ID is the postfix, i.e., "attr@sessionId"
+	private final static Function<Object, String> EXTRACTOR = key -> {
+		String keyStr = key.toString();
+		return keyStr.substring(keyStr.lastIndexOf('@') + 1);
+	};
+
+	private static HazelcastInstance hz;
+
+	private SessionIndex index;
+
+	@BeforeClass
+	public static void setUpClass() {
+		hz = Hazelcast.newHazelcastInstance(createConfig());
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (hz != null) {
+			hz.shutdown();
+		}
+	}
+
+	private static Config createConfig() {
+		Config config = new Config();
+		config.setClusterName("SessionIndexTest");
+		config.setProperty("hazelcast.phone.home.enabled", "false");
+		config.setProperty("hazelcast.wait.seconds.before.join", "0");
+		config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+		JoinConfig joinConfig = config.getNetworkConfig().getJoin();
+		joinConfig.getMulticastConfig().setEnabled(false);
+		joinConfig.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+		// Co-locates the relevant entries of each session
+		config.getMapConfig("mksp_*").setPartitioningStrategyConfig(
+				new PartitioningStrategyConfig(StringAndPartitionAwarePartitioningStrategy.class.getName()));
+		return config;
+	}
+
+	@After
+	public void tearDown() {
+		if (index != null) {
+			index.shutdown();
+		}
+	}
+
+	/**
+	 * Starts an index on the specified member that indexes the specified map and
+	 * waits until the map is indexed.
+	 */
+	private static SessionIndex startIndex(HazelcastInstance hz, String mapName) throws InterruptedException {
+		SessionIndex index = new SessionIndex(hz, null, "");
+		index.start(name -> name.equals(mapName) ? EXTRACTOR : null);
+		hz.getMap(mapName);
+		waitFor(() -> index.isIndexed(mapName));
+		return index;
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		waitFor(WAIT_MILLIS, condition);
+	}
+
+	private static void waitFor(long waitMillis, BooleanSupplier condition) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + waitMillis;
+		while (condition.getAsBoolean() == false && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+
+	/**
+	 * The existing entries of a map with a partitioning strategy are indexed in
+	 * the serialized form that the map stores, so that the removed keys are
+	 * routed to their partitions and deleted.
+	 */
+	@Test
+	public void testPartitioningStrategy() throws InterruptedException {
+		String mapName = "mksp_testPartitioningStrategy";
+		IMap<String, String> map = hz.getMap(mapName);
+		for (int i = 0; i < 10; i++) {
+			map.set("attr" + i + "@session1", "value");
+		}
+		map.set("attr0@session2", "value");
+		index = startIndex(hz, mapName);
+		waitFor(() -> index.getEntryCount() == 11);
+
+		List<Data> keyList = index.removeKeys("session1", mapName);
+		assertEquals(10, keyList.size());
+		for (Data keyData : keyList) {
+			assertTrue(keyData.hasPartitionHash());
+		}
+		MapUtil.executeOnPartitionKeys(map, keyList, new EntryRemoveProcessor());
+		assertEquals(1, map.size());
+		assertTrue(map.containsKey("attr0@session2"));
+		assertEquals(1, index.getEntryCount());
+	}
+
+	/**
+	 * The listener adds the keys of the new entries and removes the keys of the
+	 * removed, evicted and expired entries. Updates do not add the keys again.
+	 */
+	@Test
+	public void testListener() throws InterruptedException {
+		String mapName = "mksp_testListener";
+		IMap<String, String> map = hz.getMap(mapName);
+		index = startIndex(hz, mapName);
+
+		for (int i = 0; i < 3; i++) {
+			map.set("attr" + i + "@session1", "value");
+			map.set("attr" + i + "@session2", "value");
+		}
+		map.set("attr0@session3", "value", 100, TimeUnit.MILLISECONDS);
+		waitFor(() -> index.getEntryCount() == 7);
+		assertEquals(3, index.getSessionCount());
+		assertTrue(index.getMemorySize() > 0);
+
+		map.set("attr0@session1", "value2");
+		map.delete("attr0@session1");
+		map.evict("attr1@session1");
+		waitFor(() -> index.getEntryCount() == 5);
+
+		// Expired by the map's expiration task
+		waitFor(() -> map.containsKey("attr0@session3") == false && index.getSessionCount() == 2);
+		assertEquals(4, index.getEntryCount());
+
+		List<Data> keyList = index.removeKeys("session1", mapName);
+		assertEquals(1, keyList.size());
+		assertEquals(MapUtil.toKeyData(map, "attr2@session1"), keyList.get(0));
+		assertEquals(0, index.removeKeys("session1", mapName).size());
+		assertEquals(0, index.removeKeys("session2", "other").size());
+		assertEquals(1, index.getSessionCount());
+		assertEquals(3, index.getEntryCount());
+	}
+
+	/**
+	 * The removed keys that failed to be deleted can be put back into the index.
+	 */
+	@Test
+	public void testAddKeys() throws InterruptedException {
+		String mapName = "mksp_testAddKeys";
+		IMap<String, String> map = hz.getMap(mapName);
+		index = startIndex(hz, mapName);
+		for (int i = 0; i < 3; i++) {
+			map.set("attr" + i + "@session1", "value");
+		}
+		waitFor(() -> index.getEntryCount() == 3);
+
+		List<Data> keyList = index.removeKeys("session1", mapName);
+		assertEquals(0, index.getEntryCount());
+		index.addKeys(mapName, keyList);
+		assertEquals(3, index.getEntryCount());
+		assertEquals(new HashSet<Data>(keyList), new HashSet<Data>(index.removeKeys("session1", mapName)));
+	}
+
+	/**
+	 * The index is reconciled with the partitions that migrate as a member joins
+	 * and leaves. Each member indexes the keys of its own partitions only.
+	 */
+	@Test
+	public void testMigration() throws InterruptedException {
+		String mapName = "mksp_testMigration";
+		IMap<String, String> map = hz.getMap(mapName);
+		int count = 0;
+		for (int i = 0; i < 50; i++) {
+			for (int j = 0; j < 2; j++) {
+				map.set("attr" + j + "@session" + i, "value");
+				count++;
+			}
+		}
+		final int entryCount = count;
+		index = startIndex(hz, mapName);
+		waitFor(() -> index.getEntryCount() == entryCount);
+
+		HazelcastInstance hz2 = Hazelcast.newHazelcastInstance(createConfig());
+		SessionIndex index2 = null;
+		try {
+			SessionIndex index2f = startIndex(hz2, mapName);
+			index2 = index2f;
+			IMap<String, String> map2 = hz2.getMap(mapName);
+			waitFor(MIGRATION_WAIT_MILLIS, () -> index.getEntryCount() + index2f.getEntryCount() == entryCount
+					&& index.getEntryCount() == map.localKeySet().size()
+					&& index2f.getEntryCount() == map2.localKeySet().size());
+			assertTrue(index.getEntryCount() > 0);
+			assertTrue(index2f.getEntryCount() > 0);
+		} finally {
+			if (index2 != null) {
+				index2.shutdown();
+			}
+			hz2.shutdown();
+		}
+
+		// All the partitions migrate back
+		waitFor(MIGRATION_WAIT_MILLIS, () -> index.getEntryCount() == entryCount);
+		assertEquals(50, index.getSessionCount());
+	}
+}
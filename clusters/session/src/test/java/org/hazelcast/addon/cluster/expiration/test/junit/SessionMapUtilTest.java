@@ -1,10 +1,22 @@
 package org.hazelcast.addon.cluster.expiration.test.junit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.hazelcast.addon.cluster.expiration.PrefixRangePredicate;
+import org.hazelcast.addon.cluster.expiration.SessionIdExtractor;
 import org.hazelcast.addon.cluster.expiration.SessionMapUtil;
 import org.junit.Test;
 
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.impl.predicates.InPredicate;
+import com.hazelcast.query.impl.predicates.OrPredicate;
+
 public class SessionMapUtilTest {
 
 	/**
@@ -148,4 +160,57 @@ public class SessionMapUtilTest {
 
 		assertEquals(null, tag);
 	}
+
+	/**
+	 * STRING keys with the session ID attribute use IN on the attribute
+	 */
+	@Test
+	public void testStringKeyPredicateAttribute() {
+		List<String> keys = Arrays.asList("s1@a", "s2@b", "s1@c");
+
+		Predicate<?, ?> predicate = SessionMapUtil.createStringKeyPredicate(keys, key -> key, "@", false, true, true);
+
+		assertTrue(predicate instanceof InPredicate);
+		assertEquals(3, ((InPredicate) predicate).getValues().length);
+		assertTrue(predicate.toString().startsWith("__key." + SessionIdExtractor.ATTRIBUTE_NAME));
+	}
+
+	/**
+	 * STRING keys with the key range use a single PrefixRangePredicate
+	 */
+	@Test
+	public void testStringKeyPredicateRange() {
+		List<String> keys = Arrays.asList("s1@a", "s2@b", "s3");
+
+		Predicate<?, ?> predicate = SessionMapUtil.createStringKeyPredicate(keys, key -> key, "@", false, true, false);
+
+		assertTrue(predicate instanceof PrefixRangePredicate);
+		assertEquals(3, ((PrefixRangePredicate) predicate).getRangeCount());
+	}
+
+	/**
+	 * The key range does not apply to postfix session IDs, which are ORed LIKE
+	 * predicates
+	 */
+	@Test
+	public void testStringKeyPredicatePostfix() {
+		List<String> keys = Arrays.asList("a@s1", "b@s2");
+
+		Predicate<?, ?> predicate = SessionMapUtil.createStringKeyPredicate(keys, key -> key, "@", true, true, false);
+
+		assertTrue(predicate instanceof OrPredicate);
+		assertEquals(2, ((OrPredicate) predicate).getPredicates().length);
+	}
+
+	/**
+	 * No keys then no predicate
+	 */
+	@Test
+	public void testStringKeyPredicateEmpty() {
+		List<String> keys = Collections.emptyList();
+
+		assertNull(SessionMapUtil.createStringKeyPredicate(keys, key -> key, "@", false, false, true));
+		assertNull(SessionMapUtil.createStringKeyPredicate(keys, key -> key, "@", false, true, false));
+		assertNull(SessionMapUtil.createStringKeyPredicate(keys, key -> key, "@", false, false, false));
+	}
 }
@@ -0,0 +1,124 @@
+package org.hazelcast.addon.cluster.expiration.test.junit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.hazelcast.addon.cluster.expiration.metadata.ExpirationDataSerializableFactory;
+import org.hazelcast.addon.cluster.expiration.metadata.SessionMetadata;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hazelcast.internal.nio.BufferObjectDataOutput;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+
+public class SessionMetadataTest {
+
+	private InternalSerializationService ss;
+
+	@Before
+	public void setUp() {
+		ss = new DefaultSerializationServiceBuilder()
+				.addDataSerializableFactory(ExpirationDataSerializableFactory.FACTORY_ID,
+						new ExpirationDataSerializableFactory())
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		ss.dispose();
+	}
+
+	/**
+	 * Each map holds a set of keys in the order they were added. Adding a key
+	 * that the map already has has no effect.
+	 */
+	@Test
+	public void testKeySetPerMap() {
+		SessionMetadata sm = new SessionMetadata(1);
+		sm.addRelevantKey("mkm1_EN01", "session1@key1");
+		sm.addRelevantKey("mkm1_EN01", "session1@key2");
+		sm.addRelevantKey("mkm1_EN01", "session1@key1");
+		sm.addRelevantKeys("mkm2_EN01", Arrays.asList("session1@key1", "session1@key3", "session1@key3"));
+
+		assertEquals(4, sm.size());
+		assertEquals(2, sm.getMapCount());
+		assertEquals(Arrays.asList("session1@key1", "session1@key2"), sm.getRelevantKeys("mkm1_EN01"));
+		assertEquals(Arrays.asList("session1@key1", "session1@key3"), sm.getRelevantKeys("mkm2_EN01"));
+		assertEquals("session1@key1", sm.getRelevantKey("mkm1_EN01"));
+		assertNull(sm.getRelevantKey("other_EN01"));
+		assertEquals(0, sm.getRelevantKeys("other_EN01").size());
+	}
+
+	/**
+	 * Objects with the same keys are equal regardless of the order the keys were
+	 * added.
+	 */
+	@Test
+	public void testEquals() {
+		SessionMetadata sm = new SessionMetadata();
+		sm.addRelevantKey("mkm1_EN01", "session1@key1");
+		sm.addRelevantKey("mkm1_EN01", "session1@key2");
+		sm.addRelevantKey("mkm2_EN01", "session1@key1");
+		SessionMetadata sm2 = new SessionMetadata();
+		sm2.addRelevantKey("mkm2_EN01", "session1@key1");
+		sm2.addRelevantKey("mkm1_EN01", "session1@key2");
+		sm2.addRelevantKey("mkm1_EN01", "session1@key1");
+		assertEquals(sm, sm2);
+		assertEquals(sm.hashCode(), sm2.hashCode());
+
+		sm2.addRelevantKey("mkm2_EN01", "session1@key2");
+		assertNotEquals(sm, sm2);
+	}
+
+	/**
+	 * Multiple keys per map, including the same key in several maps, must round
+	 * trip through the serialization service.
+	 */
+	@Test
+	public void testRoundTrip() {
+		SessionMetadata sm = new SessionMetadata();
+		sm.addRelevantKey("mkm1_EN01", "session1@key1");
+		sm.addRelevantKey("mkm1_EN01", "session1@key2");
+		sm.addRelevantKey("mkm2_EN01", "session1@key1");
+		sm.addRelevantKey("mkm3_EN01", null);
+
+		SessionMetadata sm2 = ss.toObject(ss.toData(sm));
+		assertEquals(SessionMetadata.class, sm2.getClass());
+		assertEquals(sm, sm2);
+		assertEquals(Arrays.asList("session1@key1", "session1@key2"), sm2.getRelevantKeys("mkm1_EN01"));
+		assertEquals(Arrays.asList((Object) null), sm2.getRelevantKeys("mkm3_EN01"));
+	}
+
+	/**
+	 * The original format written by the releases that hold a single key per map
+	 * must still read back, and an object with a single key per map must be
+	 * written in the same format.
+	 */
+	@Test
+	public void testLegacyFormat() throws IOException {
+		BufferObjectDataOutput out = ss.createObjectDataOutput();
+		out.writeStringArray(new String[] { "mkm1_EN01", "mkm2_EN01" });
+		out.writeObject(new Object[] { "session1@key1", "session1@key2" });
+		byte[] bytes = out.toByteArray();
+
+		SessionMetadata sm = new SessionMetadata();
+		sm.readData(ss.createObjectDataInput(bytes));
+		assertEquals(2, sm.size());
+		assertEquals("session1@key1", sm.getRelevantKey("mkm1_EN01"));
+		assertEquals("session1@key2", sm.getRelevantKey("mkm2_EN01"));
+
+		SessionMetadata sm2 = new SessionMetadata();
+		sm2.addRelevantKey("mkm1_EN01", "session1@key1");
+		sm2.addRelevantKey("mkm2_EN01", "session1@key2");
+		BufferObjectDataOutput out2 = ss.createObjectDataOutput();
+		sm2.writeData(out2);
+		assertArrayEquals(bytes, out2.toByteArray());
+	}
+}
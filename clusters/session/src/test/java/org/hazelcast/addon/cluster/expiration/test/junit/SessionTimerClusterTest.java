@@ -0,0 +1,188 @@
+package org.hazelcast.addon.cluster.expiration.test.junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+import org.hazelcast.addon.cluster.MapUtil;
+import org.hazelcast.addon.cluster.expiration.SessionTimer;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.PartitioningStrategyConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.partition.strategy.StringAndPartitionAwarePartitioningStrategy;
+import com.hazelcast.query.Predicates;
+
+/**
+ * {@linkplain SessionTimerClusterTest} tests {@linkplain SessionTimer} on a
+ * two-member cluster. Each member times the sessions of its own partitions.
+ */
+public class SessionTimerClusterTest {
+
+	private final static long TICK_MILLIS = 10;
+	private final static long TIMEOUT_MILLIS = 300;
+
+	// Allowance for the listener and timer threads to be scheduled
+	private final static long SLACK_MILLIS = 5000;
+
+	private static HazelcastInstance hz1;
+	private static HazelcastInstance hz2;
+
+	private SessionTimer timer1;
+	private SessionTimer timer2;
+
+	// Sessions received by the expiration handler of each member
+	private final BlockingQueue<Object> expiredQueue1 = new LinkedBlockingQueue<Object>();
+	private final BlockingQueue<Object> expiredQueue2 = new LinkedBlockingQueue<Object>();
+
+	@BeforeClass
+	public static void setUpClass() {
+		hz1 = Hazelcast.newHazelcastInstance(createConfig());
+		hz2 = Hazelcast.newHazelcastInstance(createConfig());
+		assertEquals(2, hz1.getCluster().getMembers().size());
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (hz2 != null) {
+			hz2.shutdown();
+		}
+		if (hz1 != null) {
+			hz1.shutdown();
+		}
+	}
+
+	private static Config createConfig() {
+		Config config = new Config();
+		config.setClusterName("SessionTimerClusterTest");
+		config.setProperty("hazelcast.phone.home.enabled", "false");
+		config.setProperty("hazelcast.wait.seconds.before.join", "0");
+		config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+		JoinConfig joinConfig = config.getNetworkConfig().getJoin();
+		joinConfig.getMulticastConfig().setEnabled(false);
+		joinConfig.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+		config.getMapConfig("smks_*").setPartitioningStrategyConfig(
+				new PartitioningStrategyConfig(StringAndPartitionAwarePartitioningStrategy.class.getName()));
+		return config;
+	}
+
+	@After
+	public void tearDown() {
+		if (timer1 != null) {
+			timer1.shutdown();
+		}
+		if (timer2 != null) {
+			timer2.shutdown();
+		}
+	}
+
+	/**
+	 * Starts a timer on each member that times the specified map and waits until
+	 * the map is timed. The expiration handler of each member adds the expired
+	 * session to the member's queue and then invokes the specified handler.
+	 */
+	private void startTimers(String mapName, BiConsumer<HazelcastInstance, Object> handler)
+			throws InterruptedException {
+		timer1 = new SessionTimer(hz1, null, "", TICK_MILLIS, false);
+		timer1.start(name -> name.equals(mapName) ? TIMEOUT_MILLIS : null, (name, key) -> {
+			handler.accept(hz1, key);
+			expiredQueue1.add(key);
+		});
+		timer2 = new SessionTimer(hz2, null, "", TICK_MILLIS, false);
+		timer2.start(name -> name.equals(mapName) ? TIMEOUT_MILLIS : null, (name, key) -> {
+			handler.accept(hz2, key);
+			expiredQueue2.add(key);
+		});
+		hz1.getMap(mapName);
+		waitFor(() -> timer1.isTimed(mapName) && timer2.isTimed(mapName));
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + SLACK_MILLIS;
+		while (condition.getAsBoolean() == false && System.currentTimeMillis() < timeout) {
+			Thread.sleep(TICK_MILLIS);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+
+	/**
+	 * The existing entries of a map with a partitioning strategy are armed with
+	 * the strategy, so that each session is expired by the owner of its
+	 * partition.
+	 */
+	@Test
+	public void testPartitioningStrategy() throws InterruptedException {
+		String mapName = "smks_testPartitioningStrategy";
+		IMap<String, String> map = hz1.getMap(mapName);
+		Set<Object> keySet = new HashSet<Object>();
+		for (int i = 0; i < 20; i++) {
+			String key = "key1@session" + i;
+			map.set(key, "value");
+			keySet.add(key);
+		}
+		startTimers(mapName, (hz, key) -> {
+		});
+		waitFor(() -> timer1.getSessionCount() + timer2.getSessionCount() == keySet.size());
+		assertTrue(timer1.getSessionCount() > 0);
+		assertTrue(timer2.getSessionCount() > 0);
+
+		waitFor(() -> timer1.getSessionCount() + timer2.getSessionCount() == 0);
+		waitFor(() -> expiredQueue1.size() == keySet.size() && expiredQueue2.size() == keySet.size());
+		assertEquals(keySet, new HashSet<Object>(expiredQueue1));
+		assertEquals(keySet, new HashSet<Object>(expiredQueue2));
+		assertEquals(keySet.size(), timer1.getExpiredCount() + timer2.getExpiredCount());
+		waitFor(() -> map.size() == 0);
+	}
+
+	/**
+	 * An expired session is passed to the expiration handler of every member, so
+	 * that each member removes the relevant entries of its own partitions. No
+	 * relevant entries may remain on either member.
+	 */
+	@Test
+	public void testBroadcast() throws InterruptedException {
+		String mapName = "smks_testBroadcast";
+		String relevantMapName = "mks_testBroadcast";
+		IMap<String, String> map = hz1.getMap(mapName);
+		IMap<String, String> relevantMap = hz1.getMap(relevantMapName);
+		Set<Object> keySet = new HashSet<Object>();
+		for (int i = 0; i < 3; i++) {
+			String sessionId = "session" + i;
+			for (int j = 0; j < 20; j++) {
+				relevantMap.set(sessionId + "@attr" + j, "value");
+			}
+			keySet.add(sessionId);
+		}
+		assertTrue(hz1.getMap(relevantMapName).localKeySet().size() > 0);
+		assertTrue(hz2.getMap(relevantMapName).localKeySet().size() > 0);
+
+		// Like the engines, the handler removes the local relevant entries only
+		startTimers(mapName, (hz, key) -> MapUtil.removeMemberAllKeySet(hz.getMap(relevantMapName),
+				Predicates.like("__key", key + "@%")));
+		for (Object key : keySet) {
+			map.set((String) key, "value");
+		}
+
+		waitFor(() -> expiredQueue1.size() == keySet.size() && expiredQueue2.size() == keySet.size());
+		assertEquals(keySet, new HashSet<Object>(expiredQueue1));
+		assertEquals(keySet, new HashSet<Object>(expiredQueue2));
+		assertEquals(keySet.size(), timer1.getExpiredCount() + timer2.getExpiredCount());
+		assertEquals(0, hz1.getMap(relevantMapName).localKeySet().size());
+		assertEquals(0, hz2.getMap(relevantMapName).localKeySet().size());
+		assertEquals(0, relevantMap.size());
+		waitFor(() -> map.size() == 0);
+	}
+}
@@ -0,0 +1,191 @@
+package org.hazelcast.addon.cluster.expiration.test.junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.hazelcast.addon.cluster.expiration.SessionTimer;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+
+public class SessionTimerTest {
+
+	private final static long TICK_MILLIS = 10;
+
+	// Allowance for the listener and timer threads to be scheduled
+	private final static long SLACK_MILLIS = 2000;
+
+	private static HazelcastInstance hz;
+
+	private SessionTimer timer;
+	private final BlockingQueue<Expired> expiredQueue = new LinkedBlockingQueue<Expired>();
+
+	private static class Expired {
+		final String mapName;
+		final Object key;
+		final long nanos = System.nanoTime();
+
+		Expired(String mapName, Object key) {
+			this.mapName = mapName;
+			this.key = key;
+		}
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+		Config config = new Config();
+		config.setClusterName("SessionTimerTest");
+		config.setProperty("hazelcast.phone.home.enabled", "false");
+		config.getNetworkConfig().getJoin().getMulticastConfig().setEnabled(false);
+		config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(false);
+		hz = Hazelcast.newHazelcastInstance(config);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (hz != null) {
+			hz.shutdown();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		if (timer != null) {
+			timer.shutdown();
+		}
+	}
+
+	/**
+	 * Starts a timer that times the specified map with the specified timeout and
+	 * waits until the map is timed.
+	 */
+	private IMap<String, String> startTimer(String mapName, long timeoutMillis) throws InterruptedException {
+		timer = new SessionTimer(hz, null, "", TICK_MILLIS, false);
+		timer.start(name -> name.equals(mapName) ? timeoutMillis : null,
+				(name, key) -> expiredQueue.add(new Expired(name, key)));
+		IMap<String, String> map = hz.getMap(mapName);
+		waitFor(() -> timer.isTimed(mapName));
+		return map;
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + SLACK_MILLIS;
+		while (condition.getAsBoolean() == false && System.currentTimeMillis() < timeout) {
+			Thread.sleep(TICK_MILLIS);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+
+	/**
+	 * Puts the specified entry, waits until it is armed and returns the time
+	 * before the put.
+	 */
+	private long put(IMap<String, String> map, String key, int expectedSessionCount) throws InterruptedException {
+		long nanos = System.nanoTime();
+		map.set(key, "value");
+		waitFor(() -> timer.getSessionCount() == expectedSessionCount);
+		return nanos;
+	}
+
+	/**
+	 * Asserts that the specified key expires at its deadline, i.e., not before
+	 * the timeout and within the slack after it.
+	 */
+	private void assertExpired(String mapName, String key, long armedNanos, long timeoutMillis)
+			throws InterruptedException {
+		Expired expired = expiredQueue.poll(timeoutMillis + SLACK_MILLIS, TimeUnit.MILLISECONDS);
+		assertNotNull(expired);
+		assertEquals(mapName, expired.mapName);
+		assertEquals(key, expired.key);
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(expired.nanos - armedNanos);
+		assertTrue("Expired early: " + elapsedMillis, elapsedMillis >= timeoutMillis);
+		assertTrue("Expired late: " + elapsedMillis, elapsedMillis < timeoutMillis + SLACK_MILLIS);
+	}
+
+	/**
+	 * A deadline within the level 0 wheel fires at its tick. The primary map
+	 * entry is removed.
+	 */
+	@Test
+	public void testExpiry() throws InterruptedException {
+		String mapName = "smkp_testExpiry";
+		long timeoutMillis = 20 * TICK_MILLIS;
+		IMap<String, String> map = startTimer(mapName, timeoutMillis);
+
+		long nanos = put(map, "session1", 1);
+		assertExpired(mapName, "session1", nanos, timeoutMillis);
+		assertEquals(0, timer.getSessionCount());
+		assertEquals(1, timer.getExpiredCount());
+		waitFor(() -> map.containsKey("session1") == false);
+	}
+
+	/**
+	 * A deadline beyond the level 0 wheel is cascaded down and fires at its
+	 * tick.
+	 */
+	@Test
+	public void testCascade() throws InterruptedException {
+		String mapName = "smkp_testCascade";
+		long timeoutMillis = 100 * TICK_MILLIS;
+		IMap<String, String> map = startTimer(mapName, timeoutMillis);
+
+		long nanos1 = put(map, "session1", 1);
+		long nanos2 = put(map, "session2", 2);
+		assertExpired(mapName, "session1", nanos1, timeoutMillis);
+		assertExpired(mapName, "session2", nanos2, timeoutMillis);
+		assertEquals(0, timer.getSessionCount());
+	}
+
+	/**
+	 * An update re-arms the session with a full timeout.
+	 */
+	@Test
+	public void testRearm() throws InterruptedException {
+		String mapName = "smkp_testRearm";
+		long timeoutMillis = 50 * TICK_MILLIS;
+		IMap<String, String> map = startTimer(mapName, timeoutMillis);
+
+		put(map, "session1", 1);
+		Thread.sleep(timeoutMillis / 2);
+		long nanos = put(map, "session1", 1);
+		assertExpired(mapName, "session1", nanos, timeoutMillis);
+	}
+
+	/**
+	 * Removing the primary map entry cancels the session. The entries are put
+	 * while the map's existing local entries may still be being armed, which
+	 * must not re-arm the removed session.
+	 */
+	@Test
+	public void testCancel() throws InterruptedException {
+		String mapName = "smkp_testCancel";
+		long timeoutMillis = 20 * TICK_MILLIS;
+		IMap<String, String> map = startTimer(mapName, timeoutMillis);
+
+		put(map, "session1", 1);
+		put(map, "session2", 2);
+		map.delete("session1");
+		waitFor(() -> timer.getSessionCount() == 1);
+
+		Expired expired = expiredQueue.poll(timeoutMillis + SLACK_MILLIS, TimeUnit.MILLISECONDS);
+		assertNotNull(expired);
+		assertEquals("session2", expired.key);
+		assertNull(expiredQueue.poll(timeoutMillis, TimeUnit.MILLISECONDS));
+		assertEquals(1, timer.getExpiredCount());
+		assertFalse(map.containsKey("session1"));
+	}
+}
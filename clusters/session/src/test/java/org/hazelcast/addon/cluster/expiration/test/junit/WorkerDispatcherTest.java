@@ -0,0 +1,202 @@
+package org.hazelcast.addon.cluster.expiration.test.junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hazelcast.addon.cluster.expiration.DispatchMode;
+import org.hazelcast.addon.cluster.expiration.OverflowPolicy;
+import org.hazelcast.addon.cluster.expiration.SessionExpirationServiceConfiguration;
+import org.hazelcast.addon.cluster.expiration.WorkerDispatcher;
+import org.hazelcast.addon.cluster.expiration.WorkerQueueConfig;
+import org.junit.Test;
+
+public class WorkerDispatcherTest {
+
+	private final static int WORKER_COUNT = 4;
+	private final static int PRODUCER_COUNT = 4;
+	private final static int EVENTS_PER_PRODUCER = 20000;
+	private final static int DRAIN_SIZE = 10;
+
+	/**
+	 * Event offered by a producer. Each producer numbers its events of a session
+	 * in order.
+	 */
+	static class Event {
+		final String sessionId;
+		final int producer;
+		final int seq;
+
+		Event(String sessionId, int producer, int seq) {
+			this.sessionId = sessionId;
+			this.producer = producer;
+			this.seq = seq;
+		}
+	}
+
+	/**
+	 * Records the events processed by the workers and the ordering violations.
+	 */
+	static class Checker {
+		final ConcurrentHashMap<String, AtomicInteger> activeMap = new ConcurrentHashMap<String, AtomicInteger>();
+		final ConcurrentHashMap<String, AtomicIntegerArray> lastSeqMap = new ConcurrentHashMap<String, AtomicIntegerArray>();
+		final AtomicLong processedCount = new AtomicLong();
+		final AtomicLong concurrentCount = new AtomicLong();
+		final AtomicLong outOfOrderCount = new AtomicLong();
+
+		void process(ArrayList<Event> batch) {
+			HashSet<String> sessionIds = new HashSet<String>();
+			for (Event event : batch) {
+				sessionIds.add(event.sessionId);
+			}
+			for (String sessionId : sessionIds) {
+				AtomicInteger active = activeMap.computeIfAbsent(sessionId, k -> new AtomicInteger());
+				if (active.incrementAndGet() != 1) {
+					concurrentCount.incrementAndGet();
+				}
+			}
+			for (Event event : batch) {
+				AtomicIntegerArray lastSeqs = lastSeqMap.computeIfAbsent(event.sessionId,
+						k -> newLastSeqs());
+				if (lastSeqs.getAndSet(event.producer, event.seq) >= event.seq) {
+					outOfOrderCount.incrementAndGet();
+				}
+			}
+			Thread.yield();
+			for (String sessionId : sessionIds) {
+				activeMap.get(sessionId).decrementAndGet();
+			}
+			processedCount.addAndGet(batch.size());
+		}
+
+		static AtomicIntegerArray newLastSeqs() {
+			AtomicIntegerArray lastSeqs = new AtomicIntegerArray(PRODUCER_COUNT);
+			for (int i = 0; i < PRODUCER_COUNT; i++) {
+				lastSeqs.set(i, -1);
+			}
+			return lastSeqs;
+		}
+	}
+
+	/**
+	 * Offers the events of the specified sessions from several producers and
+	 * processes them with work stealing enabled.
+	 */
+	private Checker run(String[] sessionIds) throws InterruptedException {
+		WorkerDispatcher<Event> dispatcher = new WorkerDispatcher<Event>(null, DispatchMode.SESSION, WORKER_COUNT, 1,
+				new WorkerQueueConfig());
+		Checker checker = new Checker();
+		long total = (long) PRODUCER_COUNT * EVENTS_PER_PRODUCER;
+		Thread[] workers = new Thread[WORKER_COUNT];
+		for (int i = 0; i < workers.length; i++) {
+			int queueIndex = i;
+			workers[i] = new Thread(() -> {
+				ArrayList<Event> batch = new ArrayList<Event>(DRAIN_SIZE);
+				try {
+					while (checker.processedCount.get() < total) {
+						if (dispatcher.drain(queueIndex, batch, DRAIN_SIZE) > 0) {
+							checker.process(batch);
+							batch.clear();
+						}
+					}
+				} catch (InterruptedException ex) {
+					// Terminated
+				} finally {
+					dispatcher.clear(queueIndex);
+				}
+			}, "worker-" + (i + 1));
+			workers[i].start();
+		}
+		Thread[] producers = new Thread[PRODUCER_COUNT];
+		for (int p = 0; p < producers.length; p++) {
+			int producer = p;
+			producers[p] = new Thread(() -> {
+				for (int seq = 0; seq < EVENTS_PER_PRODUCER; seq++) {
+					String sessionId = sessionIds[seq % sessionIds.length];
+					dispatcher.offer(dispatcher.getQueueIndex(sessionId), new Event(sessionId, producer, seq));
+				}
+			}, "producer-" + (p + 1));
+			producers[p].start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		for (Thread worker : workers) {
+			worker.join(30000);
+			worker.interrupt();
+		}
+		dispatcher.close();
+		assertEquals(total, checker.processedCount.get());
+		return checker;
+	}
+
+	/**
+	 * Events of a single session offered by several producers must be processed
+	 * one batch at a time in the order each producer offered them even if idle
+	 * workers steal.
+	 */
+	@Test
+	public void testSingleSessionOrder() throws InterruptedException {
+		Checker checker = run(new String[] { "session-1" });
+		assertEquals(0, checker.concurrentCount.get());
+		assertEquals(0, checker.outOfOrderCount.get());
+	}
+
+	/**
+	 * Events of many sessions must keep their per-session order while the
+	 * workers steal from each other.
+	 */
+	@Test
+	public void testMultiSessionOrder() throws InterruptedException {
+		String[] sessionIds = new String[64];
+		for (int i = 0; i < sessionIds.length; i++) {
+			sessionIds[i] = "session-" + i;
+		}
+		Checker checker = run(sessionIds);
+		assertEquals(0, checker.concurrentCount.get());
+		assertEquals(0, checker.outOfOrderCount.get());
+	}
+
+	/**
+	 * An event that finds its queue full enters the high watermark state without
+	 * waiting for the workers to drain. The state is left when a drain finds the
+	 * queues below half of the watermark.
+	 */
+	@Test
+	public void testOverflowHighWatermark() throws InterruptedException {
+		Properties properties = new Properties();
+		properties.setProperty(SessionExpirationServiceConfiguration.PROPERTY_QUEUE_CAPACITY, "4");
+		properties.setProperty(SessionExpirationServiceConfiguration.PROPERTY_QUEUE_OVERFLOW_POLICY,
+				OverflowPolicy.REJECT.name());
+		WorkerDispatcher<String> dispatcher = new WorkerDispatcher<String>(null, DispatchMode.SESSION, 1, 0,
+				new WorkerQueueConfig(properties, null, ""));
+		try {
+			for (int i = 0; i < 4; i++) {
+				assertTrue(dispatcher.offer(0, "e" + i));
+			}
+			assertFalse(dispatcher.isHighWatermark());
+			assertFalse(dispatcher.offer(0, "e4"));
+			assertTrue(dispatcher.isHighWatermark());
+			assertEquals(1, dispatcher.getHighWatermarkCount());
+			assertFalse(dispatcher.offer(0, "e5"));
+			assertEquals(1, dispatcher.getHighWatermarkCount());
+
+			ArrayList<String> batch = new ArrayList<String>();
+			assertEquals(4, dispatcher.drain(0, batch, 10));
+			assertTrue(dispatcher.isHighWatermark());
+			assertTrue(dispatcher.offer(0, "e6"));
+			assertEquals(1, dispatcher.drain(0, batch, 10));
+			assertFalse(dispatcher.isHighWatermark());
+		} finally {
+			dispatcher.close();
+		}
+	}
+}
@@ -0,0 +1,317 @@
+package org.hazelcast.addon.cluster.expiration.test.junit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hazelcast.addon.cluster.expiration.DispatchMode;
+import org.hazelcast.addon.cluster.expiration.OverflowPolicy;
+import org.hazelcast.addon.cluster.expiration.QueueType;
+import org.hazelcast.addon.cluster.expiration.SessionExpirationServiceConfiguration;
+import org.hazelcast.addon.cluster.expiration.SpillCodec;
+import org.hazelcast.addon.cluster.expiration.WaitStrategy;
+import org.hazelcast.addon.cluster.expiration.WorkerDispatcher;
+import org.hazelcast.addon.cluster.expiration.WorkerQueue;
+import org.hazelcast.addon.cluster.expiration.WorkerQueueConfig;
+import org.junit.Test;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.spi.impl.SerializationServiceSupport;
+
+public class WorkerQueueTest {
+
+	private final static int PRODUCER_COUNT = 4;
+	private final static int CONSUMER_COUNT = 4;
+	private final static int ELEMENTS_PER_PRODUCER = 20000;
+
+	/**
+	 * Offers the elements of several producers to a small bounded queue that
+	 * blocks when full, and consumes them with several consumers that alternate
+	 * between take(), poll() and drainTo(). Every element must be consumed
+	 * exactly once.
+	 */
+	private void testContention(QueueType queueType, WaitStrategy waitStrategy, int elementsPerProducer)
+			throws InterruptedException {
+		WorkerQueue<Integer> queue = WorkerQueue.create(queueType, 64, waitStrategy, OverflowPolicy.BLOCK);
+		int total = PRODUCER_COUNT * elementsPerProducer;
+		AtomicIntegerArray consumedCounts = new AtomicIntegerArray(total);
+		AtomicLong consumedCount = new AtomicLong();
+
+		Thread[] consumers = new Thread[CONSUMER_COUNT];
+		for (int i = 0; i < consumers.length; i++) {
+			int consumer = i;
+			consumers[i] = new Thread(() -> {
+				ArrayList<Integer> batch = new ArrayList<Integer>();
+				try {
+					for (int n = 0; consumedCount.get() < total; n++) {
+						batch.clear();
+						switch ((consumer + n) % 3) {
+						case 0:
+							Integer element = queue.poll(10, TimeUnit.MILLISECONDS);
+							if (element != null) {
+								batch.add(element);
+							}
+							break;
+						case 1:
+							queue.drainTo(batch, 16);
+							break;
+						default:
+							if (queue.size() > 0) {
+								batch.add(queue.take());
+							}
+							break;
+						}
+						for (Integer e : batch) {
+							consumedCounts.incrementAndGet(e);
+						}
+						consumedCount.addAndGet(batch.size());
+					}
+				} catch (InterruptedException ex) {
+					// Terminated
+				}
+			}, "consumer-" + (i + 1));
+			consumers[i].start();
+		}
+		Thread[] producers = new Thread[PRODUCER_COUNT];
+		for (int p = 0; p < producers.length; p++) {
+			int producer = p;
+			producers[p] = new Thread(() -> {
+				for (int i = 0; i < elementsPerProducer; i++) {
+					assertTrue(queue.offer(producer * elementsPerProducer + i));
+				}
+			}, "producer-" + (p + 1));
+			producers[p].start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		for (Thread consumer : consumers) {
+			consumer.join(30000);
+			consumer.interrupt();
+		}
+
+		assertEquals(total, consumedCount.get());
+		for (int i = 0; i < total; i++) {
+			assertEquals("element " + i, 1, consumedCounts.get(i));
+		}
+		assertEquals(0, queue.size());
+		assertEquals(0, queue.getRejectedCount());
+	}
+
+	/**
+	 * {@linkplain QueueType#LINKED} must hand over every element exactly once
+	 * under contention.
+	 */
+	@Test
+	public void testLinkedContention() throws InterruptedException {
+		testContention(QueueType.LINKED, WaitStrategy.PARK, ELEMENTS_PER_PRODUCER);
+	}
+
+	/**
+	 * {@linkplain QueueType#RING_BUFFER} must hand over every element exactly
+	 * once under contention with each wait strategy.
+	 */
+	@Test
+	public void testRingBufferContention() throws InterruptedException {
+		testContention(QueueType.RING_BUFFER, WaitStrategy.PARK, ELEMENTS_PER_PRODUCER);
+		// The spinning threads compete for the CPUs, so fewer elements
+		testContention(QueueType.RING_BUFFER, WaitStrategy.YIELD, ELEMENTS_PER_PRODUCER / 10);
+		testContention(QueueType.RING_BUFFER, WaitStrategy.BUSY_SPIN, ELEMENTS_PER_PRODUCER / 10);
+	}
+
+	/**
+	 * A single producer's elements must be taken in FIFO order, and the ring
+	 * buffer capacity must be rounded up to a power of two.
+	 */
+	@Test
+	public void testFifo() throws InterruptedException {
+		for (QueueType queueType : QueueType.values()) {
+			WorkerQueue<Integer> queue = WorkerQueue.create(queueType, 6, WaitStrategy.PARK, OverflowPolicy.REJECT);
+			int capacity = queue.getCapacity();
+			assertEquals(queueType == QueueType.RING_BUFFER ? 8 : 6, capacity);
+			for (int i = 0; i < capacity; i++) {
+				assertTrue(queue.offer(i));
+			}
+			assertEquals(capacity, queue.size());
+			assertEquals(0, (int) queue.take());
+			ArrayList<Integer> batch = new ArrayList<Integer>();
+			assertEquals(capacity - 1, queue.drainTo(batch, capacity));
+			for (int i = 0; i < batch.size(); i++) {
+				assertEquals(i + 1, (int) batch.get(i));
+			}
+			assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	/**
+	 * {@linkplain OverflowPolicy#REJECT} must reject and count the elements that
+	 * do not fit.
+	 */
+	@Test
+	public void testReject() {
+		for (QueueType queueType : QueueType.values()) {
+			WorkerQueue<Integer> queue = WorkerQueue.create(queueType, 4, WaitStrategy.PARK, OverflowPolicy.REJECT);
+			for (int i = 0; i < 4; i++) {
+				assertTrue(queue.offer(i));
+			}
+			assertFalse(queue.offer(4));
+			assertFalse(queue.offer(5));
+			assertEquals(2, queue.getRejectedCount());
+			assertEquals(4, queue.size());
+		}
+	}
+
+	/**
+	 * {@linkplain OverflowPolicy#COALESCE} must drop the elements that are
+	 * already in the queue and accept them again once they have been consumed.
+	 */
+	@Test
+	public void testCoalesce() throws InterruptedException {
+		for (QueueType queueType : QueueType.values()) {
+			WorkerQueue<String> queue = WorkerQueue.create(queueType, 4, WaitStrategy.PARK,
+					OverflowPolicy.COALESCE);
+			assertTrue(queue.offer("session1"));
+			assertTrue(queue.offer("session2"));
+			assertTrue(queue.offer("session1"));
+			assertEquals(2, queue.size());
+			assertEquals(1, queue.getCoalescedCount());
+
+			assertEquals("session1", queue.take());
+			assertTrue(queue.offer("session1"));
+			assertEquals(2, queue.size());
+			assertEquals(1, queue.getCoalescedCount());
+		}
+	}
+
+	/**
+	 * {@linkplain OverflowPolicy#BLOCK} must block the producer on the full queue
+	 * until an element is consumed.
+	 */
+	@Test
+	public void testBlock() throws InterruptedException {
+		for (QueueType queueType : QueueType.values()) {
+			WorkerQueue<Integer> queue = WorkerQueue.create(queueType, 4, WaitStrategy.PARK, OverflowPolicy.BLOCK);
+			for (int i = 0; i < 4; i++) {
+				assertTrue(queue.offer(i));
+			}
+			Thread producer = new Thread(() -> queue.offer(4));
+			producer.start();
+			producer.join(200);
+			assertTrue(producer.isAlive());
+			assertEquals(1, queue.getBlockedCount());
+
+			assertEquals(0, (int) queue.take());
+			producer.join(10000);
+			assertFalse(producer.isAlive());
+			assertEquals(4, queue.size());
+			assertEquals(0, queue.getRejectedCount());
+		}
+	}
+
+	/**
+	 * {@linkplain OverflowPolicy#BLOCK} with a block timeout must reject the
+	 * element after the timeout.
+	 */
+	@Test
+	public void testBlockTimeout() {
+		for (QueueType queueType : QueueType.values()) {
+			Properties properties = new Properties();
+			properties.setProperty(SessionExpirationServiceConfiguration.PROPERTY_QUEUE_TYPE, queueType.name());
+			properties.setProperty(SessionExpirationServiceConfiguration.PROPERTY_QUEUE_CAPACITY, "4");
+			properties.setProperty(SessionExpirationServiceConfiguration.PROPERTY_QUEUE_OVERFLOW_POLICY, "BLOCK");
+			properties.setProperty(SessionExpirationServiceConfiguration.PROPERTY_QUEUE_BLOCK_TIMEOUT_MILLIS, "50");
+			WorkerQueue<Integer> queue = new WorkerQueueConfig(properties, null, "").createQueue();
+			for (int i = 0; i < 4; i++) {
+				assertTrue(queue.offer(i));
+			}
+			long startTime = System.nanoTime();
+			assertFalse(queue.offer(4));
+			assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(50));
+			assertEquals(1, queue.getBlockedCount());
+			assertEquals(1, queue.getRejectedCount());
+		}
+	}
+
+	/**
+	 * {@linkplain OverflowPolicy#SPILL} must write the elements that do not fit to
+	 * the overflow file and hand them over in the offered order, including the
+	 * elements that arrive while the file is being drained.
+	 */
+	@Test
+	public void testSpill() throws IOException, InterruptedException {
+		InternalSerializationService ss = new DefaultSerializationServiceBuilder().build();
+		HazelcastInstance hz = (HazelcastInstance) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { HazelcastInstance.class, SerializationServiceSupport.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getName":
+						return "test";
+					case "getSerializationService":
+						return ss;
+					default:
+						return null;
+					}
+				});
+		SpillCodec<Integer> codec = new SpillCodec<Integer>() {
+			@Override
+			public void write(Integer element, ObjectDataOutput out) throws IOException {
+				out.writeInt(element);
+			}
+
+			@Override
+			public Integer read(ObjectDataInput in) throws IOException {
+				return in.readInt();
+			}
+		};
+		File dir = Files.createTempDirectory("spill").toFile();
+		for (QueueType queueType : QueueType.values()) {
+			Properties properties = new Properties();
+			properties.setProperty(SessionExpirationServiceConfiguration.PROPERTY_QUEUE_TYPE, queueType.name());
+			properties.setProperty(SessionExpirationServiceConfiguration.PROPERTY_QUEUE_CAPACITY, "4");
+			properties.setProperty(SessionExpirationServiceConfiguration.PROPERTY_QUEUE_OVERFLOW_POLICY, "SPILL");
+			properties.setProperty(SessionExpirationServiceConfiguration.PROPERTY_QUEUE_SPILL_DIR,
+					dir.getAbsolutePath());
+			WorkerDispatcher<Integer> dispatcher = new WorkerDispatcher<Integer>(hz, DispatchMode.LEAST_LOADED, 1, 0,
+					new WorkerQueueConfig(properties, null, ""), queueType.name(), codec, null, "");
+			for (int i = 0; i < 10; i++) {
+				assertTrue(dispatcher.offer(0, i));
+			}
+			assertEquals(6, dispatcher.getSpilledCount());
+			assertEquals(6, dispatcher.getSpillSize());
+			// Includes the spilled elements
+			assertEquals(10, dispatcher.size(0));
+
+			ArrayList<Integer> batch = new ArrayList<Integer>();
+			dispatcher.drain(0, batch, 6);
+			// Stays behind the spilled elements
+			assertTrue(dispatcher.offer(0, 10));
+			while (batch.size() < 11) {
+				dispatcher.drain(0, batch, 11 - batch.size());
+			}
+			for (int i = 0; i < batch.size(); i++) {
+				assertEquals(i, (int) batch.get(i));
+			}
+			assertEquals(0, dispatcher.getSpillSize());
+			assertEquals(0, dispatcher.getRejectedCount());
+			dispatcher.close();
+		}
+		assertEquals(0, dir.listFiles().length);
+		dir.delete();
+		ss.dispose();
+	}
+}